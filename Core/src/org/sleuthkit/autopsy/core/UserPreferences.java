@@ -34,6 +34,8 @@ public final class UserPreferences {
     public static final String HIDE_KNOWN_FILES_IN_VIEWS_TREE = "HideKnownFilesInViewsTree"; //NON-NLS 
     public static final String DISPLAY_TIMES_IN_LOCAL_TIME = "DisplayTimesInLocalTime"; //NON-NLS
     public static final String NUMBER_OF_FILE_INGEST_THREADS = "NumberOfFileIngestThreads"; //NON-NLS
+    public static final String NUMBER_OF_FILE_EXPORT_THREADS = "NumberOfFileExportThreads"; //NON-NLS
+    public static final String KEEP_TIMELINE_EVENTS_IN_MEMORY = "KeepTimelineEventsInMemory"; //NON-NLS
 
     // Prevent instantiation.
     private UserPreferences() {
@@ -87,4 +89,20 @@ public static void setNumberOfFileIngestThreads(int value) {
         preferences.putInt(NUMBER_OF_FILE_INGEST_THREADS, value);
     }
 
+    public static int numberOfFileExportThreads() {
+        return preferences.getInt(NUMBER_OF_FILE_EXPORT_THREADS, 4);
+    }
+
+    public static void setNumberOfFileExportThreads(int value) {
+        preferences.putInt(NUMBER_OF_FILE_EXPORT_THREADS, value);
+    }
+
+    public static boolean keepTimelineEventsInMemory() {
+        return preferences.getBoolean(KEEP_TIMELINE_EVENTS_IN_MEMORY, false);
+    }
+
+    public static void setKeepTimelineEventsInMemory(boolean value) {
+        preferences.putBoolean(KEEP_TIMELINE_EVENTS_IN_MEMORY, value);
+    }
+
 }
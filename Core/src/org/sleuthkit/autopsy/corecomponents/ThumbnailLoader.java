@@ -0,0 +1,287 @@
+/*
+ * Autopsy Forensic Browser
+ *
+ * Copyright 2015 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.autopsy.corecomponents;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.awt.EventQueue;
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+import java.beans.PropertyChangeEvent;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.sleuthkit.autopsy.casemodule.Case;
+import org.sleuthkit.autopsy.corelibs.ScalrWrapper;
+import org.sleuthkit.autopsy.coreutils.ImageUtils;
+import org.sleuthkit.autopsy.coreutils.Logger;
+import org.sleuthkit.datamodel.Content;
+
+/**
+ * Loads the thumbnails shown by the {@link DataResultViewerThumbnail} on a
+ * small shared pool of threads, and keeps them in memory at every size they
+ * were loaded at, until the case changes.
+ *
+ * Thumbnails of visible files are loaded most recently requested first, so
+ * when scrolling quickly the thumbnails that are on screen now are loaded
+ * before the ones that were scrolled past. Prefetched thumbnails are only
+ * loaded when there are no visible ones waiting. Only so many requests are
+ * kept: the oldest are dropped, and their callbacks run so that they can be
+ * requested again if they are still on screen.
+ */
+final class ThumbnailLoader {
+
+    private static final Logger LOGGER = Logger.getLogger(ThumbnailLoader.class.getName());
+
+    private static final int MAX_PENDING = 500;
+
+    private static final int[] SIZES = {ImageUtils.ICON_SIZE_LARGE, ImageUtils.ICON_SIZE_MEDIUM, ImageUtils.ICON_SIZE_SMALL};
+
+    private static ThumbnailLoader instance;
+
+    /**
+     * the loaded thumbnails, by key (see {@link #key(long, int)})
+     */
+    private final Cache<Long, Image> thumbnails = CacheBuilder.newBuilder()
+            .maximumSize(5000)
+            .softValues()
+            .build();
+
+    private final ExecutorService loaders = Executors.newFixedThreadPool(Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors())),
+            new BasicThreadFactory.Builder().namingPattern("thumbnail loader-%d").daemon(true).build()); //NON-NLS
+
+    /**
+     * the requests waiting to be loaded, the next to load at the front
+     */
+    @GuardedBy("this")
+    private final Deque<Request> queue = new ArrayDeque<>();
+
+    /**
+     * the requests waiting to be loaded, by key, so the same thumbnail is not
+     * queued twice.
+     */
+    @GuardedBy("this")
+    private final Map<Long, Request> pending = new HashMap<>();
+
+    static synchronized ThumbnailLoader getDefault() {
+        if (instance == null) {
+            instance = new ThumbnailLoader();
+        }
+        return instance;
+    }
+
+    /**
+     * incremented when the case changes, so loads started for the old case
+     * are not kept.
+     */
+    @GuardedBy("this")
+    private long generation = 0;
+
+    private ThumbnailLoader() {
+        //object IDs start over in every case, so forget the old case's thumbnails
+        Case.addPropertyChangeListener((PropertyChangeEvent evt) -> {
+            if (Case.Events.CURRENT_CASE.toString().equals(evt.getPropertyName())) {
+                clear();
+            }
+        });
+    }
+
+    /**
+     * Forget all the loaded thumbnails and drop the waiting requests.
+     */
+    private synchronized void clear() {
+        generation++;
+        queue.clear();
+        pending.clear();
+        thumbnails.invalidateAll();
+    }
+
+    /**
+     * @return the key of the thumbnail of the given size of the content with
+     *         the given ID. Sizes are less than 2^16.
+     */
+    private static long key(long contentID, int size) {
+        return (contentID << 16) | (size & 0xFFFF);
+    }
+
+    /**
+     * @return the loaded thumbnail of the given size of the given content, or
+     *         null if it has not been loaded.
+     */
+    @Nullable
+    Image get(Content content, int size) {
+        return thumbnails.getIfPresent(key(content.getId(), size));
+    }
+
+    /**
+     * Get a stand in for a thumbnail that has not been loaded yet: a loaded
+     * thumbnail of another size of the same content, scaled to the given
+     * size.
+     *
+     * @return the scaled thumbnail, or null if no size has been loaded
+     */
+    @Nullable
+    Image getScaledStandIn(Content content, int size) {
+        for (int otherSize : SIZES) {
+            final Image other = (otherSize == size) ? null : thumbnails.getIfPresent(key(content.getId(), otherSize));
+            if (other instanceof BufferedImage) {
+                return ScalrWrapper.resizeFast((BufferedImage) other, size);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Load the thumbnail of the given size of the given visible content, ahead
+     * of any thumbnails requested before it.
+     *
+     * @param content  the content to load the thumbnail of
+     * @param size     the size of the thumbnail
+     * @param onLoaded run on the EDT when the thumbnail has been loaded, or
+     *                 its request was dropped.
+     */
+    void load(Content content, int size, Runnable onLoaded) {
+        enqueue(content, size, onLoaded, true);
+    }
+
+    /**
+     * Load the thumbnail of the given size of the given content, that is not
+     * visible yet but may soon be, once no visible thumbnails are waiting.
+     */
+    void prefetch(Content content, int size) {
+        if (get(content, size) == null) {
+            enqueue(content, size, null, false);
+        }
+    }
+
+    private void enqueue(Content content, int size, @Nullable Runnable onLoaded, boolean visible) {
+        final List<Runnable> dropped = new ArrayList<>();
+        synchronized (this) {
+            final long key = key(content.getId(), size);
+            Request request = pending.get(key);
+            if (request == null) {
+                request = new Request(content, size, key, generation);
+                pending.put(key, request);
+                loaders.execute(this::loadNext);
+            } else if (request.loading == false && visible) {
+                //move it to the front
+                queue.remove(request);
+            }
+            if (onLoaded != null) {
+                request.callbacks.add(onLoaded);
+            }
+            if (request.loading) {
+                //it will be done soon, the callback will run then
+            } else if (visible) {
+                queue.addFirst(request);
+            } else if (queue.contains(request) == false) {
+                queue.addLast(request);
+            }
+
+            while (queue.size() > MAX_PENDING) {
+                final Request oldest = queue.removeLast();
+                pending.remove(oldest.key);
+                dropped.addAll(oldest.callbacks);
+            }
+        }
+        dropped.forEach(EventQueue::invokeLater);
+    }
+
+    /**
+     * Load the thumbnail at the front of the queue, if any. Run once on the
+     * loader threads for each request queued, so there is nothing to do for
+     * the requests that were dropped. Thumbnails of videos are finished on
+     * the video thumbnailer threads, so the loader threads go on to the next
+     * request instead of waiting for the video to be decoded.
+     */
+    private void loadNext() {
+        final Request request;
+        synchronized (this) {
+            request = queue.pollFirst();
+            if (request == null) {
+                return;
+            }
+            request.loading = true;
+        }
+        try {
+            ImageUtils.getThumbnailAsync(request.content, request.size)
+                    .whenComplete((thumbnail, ex) -> finish(request, thumbnail, ex));
+        } catch (Exception ex) {
+            finish(request, null, ex);
+        }
+    }
+
+    /**
+     * Keep the loaded thumbnail of the given request, and run its callbacks.
+     * If it could not be loaded the default thumbnail is kept in its place,
+     * so that it is not requested again every time it is shown.
+     */
+    private void finish(Request request, @Nullable Image thumbnail, @Nullable Throwable ex) {
+        if (ex != null) {
+            LOGGER.log(Level.WARNING, "Error loading thumbnail of " + request.content.getName(), ex); //NON-NLS
+        }
+        final List<Runnable> callbacks;
+        synchronized (this) {
+            if (request.generation != generation) {
+                //the case changed while it was loading
+                return;
+            }
+            thumbnails.put(request.key, (ex == null && thumbnail != null) ? thumbnail : ImageUtils.getDefaultThumbnail());
+            pending.remove(request.key);
+            callbacks = new ArrayList<>(request.callbacks);
+        }
+        callbacks.forEach(EventQueue::invokeLater);
+    }
+
+    private static class Request {
+
+        private final Content content;
+        private final int size;
+        private final long key;
+        private final long generation;
+
+        /**
+         * the callbacks to run when the thumbnail is loaded, guarded by the
+         * loader
+         */
+        private final List<Runnable> callbacks = new ArrayList<>(1);
+
+        /**
+         * true once the request has been taken off the queue, guarded by the
+         * loader
+         */
+        private boolean loading = false;
+
+        Request(Content content, int size, long key, long generation) {
+            this.content = content;
+            this.size = size;
+            this.key = key;
+            this.generation = generation;
+        }
+    }
+}
@@ -19,35 +19,47 @@
 package org.sleuthkit.autopsy.corecomponents;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
-import org.openide.nodes.AbstractNode;
+import java.util.Set;
+import java.util.WeakHashMap;
 import org.openide.nodes.Children;
 import org.openide.nodes.Node;
-import org.openide.util.lookup.Lookups;
 import org.sleuthkit.autopsy.coreutils.ImageUtils;
-import org.sleuthkit.autopsy.coreutils.Logger;
 import org.sleuthkit.datamodel.Content;
 
 /**
  * Complementary class to ThumbnailViewNode. Children node factory. Wraps around
  * original data result children nodes of the passed in parent node, and creates
- * filter nodes for the supported children nodes, adding the bitmap data. If
- * original nodes are lazy loaded, this will support lazy loading. Currently, we
- * add a page node hierarchy to divide children nodes into "pages".
+ * filter nodes for the supported children nodes, adding the bitmap data.
  *
- * Filter-node like class, but adds additional hierarchy (pages) as parents of
- * the filtered nodes.
+ * The keys are the indexes of the original children, and both the original
+ * children and the filter nodes are created lazily, as they are shown (or
+ * prefetched) by the view, so there is no need to divide the children into
+ * pages. Whether a child is supported is only checked when its node is
+ * created, unsupported children are hidden then.
  */
 class ThumbnailViewChildren extends Children.Keys<Integer> {
 
-    static final int IMAGES_PER_PAGE = 200;
-    private Node parent;
-    private final HashMap<Integer, List<Node>> pages = new HashMap<>();
-    private int totalImages = 0;
-    private int totalPages = 0;
+    private final Node parent;
     private int iconSize = ImageUtils.ICON_SIZE_MEDIUM;
-    private static final Logger logger = Logger.getLogger(ThumbnailViewChildren.class.getName());
+
+    /**
+     * the number of keys
+     */
+    private volatile int totalChildren = 0;
+
+    /**
+     * the keys of the children found so far not to be supported
+     */
+    private final Set<Integer> unsupportedKeys = Collections.synchronizedSet(new HashSet<>());
+
+    /**
+     * the nodes created so far, to change their icon size without creating
+     * the rest.
+     */
+    private final Set<ThumbnailViewNode> createdNodes = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
 
     /**
      * the constructor
@@ -66,70 +78,48 @@ protected void addNotify() {
         setupKeys();
     }
 
-    int getTotalPages() {
-        return totalPages;
-    }
-
+    /**
+     * @return the number of children that may be images: all the children,
+     *         less those that were found not to be supported when their nodes
+     *         were created.
+     */
     int getTotalImages() {
-        return totalImages;
+        return totalChildren - unsupportedKeys.size();
     }
 
+    /**
+     * Make a key for each original child, by index, without creating the
+     * original children.
+     */
     private void setupKeys() {
-        //divide the supported content into buckets
-        totalImages = 0;
-        //TODO when lazy loading of original nodes is fixed
-        //we should be asking the datamodel for the children instead
-        //and not counting the children nodes (which might not be preloaded at this point)
-        final List<Node> suppContent = new ArrayList<>();
-        for (Node child : parent.getChildren().getNodes()) {
-            if (isSupported(child)) {
-                ++totalImages;
-                //Content content = child.getLookup().lookup(Content.class);
-                //suppContent.add(content);
-                suppContent.add(child);
-            }
-        }
-
-        if (totalImages == 0) {
-            return;
-        }
-
-        totalPages = 0;
-        if (totalImages < IMAGES_PER_PAGE) {
-            totalPages = 1;
-        } else {
-            totalPages = totalImages / IMAGES_PER_PAGE;
-            if (totalPages % totalImages != 0) {
-                ++totalPages;
-            }
-        }
-
-        int prevImages = 0;
-        for (int page = 1; page <= totalPages; ++page) {
-            int toAdd = Math.min(IMAGES_PER_PAGE, totalImages - prevImages);
-            List<Node> pageContent = suppContent.subList(prevImages, prevImages + toAdd);
-            pages.put(page, pageContent);
-            prevImages += toAdd;
-        }
-
-        Integer[] pageNums = new Integer[totalPages];
-        for (int i = 0; i < totalPages; ++i) {
-            pageNums[i] = i + 1;
+        totalChildren = parent.getChildren().getNodesCount();
+        final List<Integer> keys = new ArrayList<>(totalChildren);
+        for (int i = 0; i < totalChildren; i++) {
+            keys.add(i);
         }
-        setKeys(pageNums);
+        setKeys(keys);
     }
 
     @Override
     protected void removeNotify() {
         super.removeNotify();
-        pages.clear();
-        totalImages = 0;
+        setKeys(Collections.<Integer>emptyList());
+        createdNodes.clear();
+        unsupportedKeys.clear();
+        totalChildren = 0;
     }
 
     @Override
-    protected Node[] createNodes(Integer pageNum) {
-        final ThumbnailPageNode pageNode = new ThumbnailPageNode(pageNum);
-        return new Node[]{pageNode};
+    protected Node[] createNodes(Integer key) {
+        final Node wrapped = parent.getChildren().getNodeAt(key);
+        if (isSupported(wrapped)) {
+            final ThumbnailViewNode thumb = new ThumbnailViewNode(wrapped, iconSize);
+            createdNodes.add(thumb);
+            return new Node[]{thumb};
+        } else {
+            unsupportedKeys.add(key);
+            return new Node[]{};
+        }
     }
 
     public static boolean isSupported(Node node) {
@@ -142,63 +132,19 @@ public static boolean isSupported(Node node) {
         return false;
     }
 
-    public void setIconSize(int iconSize) {
-        this.iconSize = iconSize;
-    }
-
     /**
-     * Node representing page node, a parent of image nodes, with a name showing
-     * children range
+     * Set the icon size of the nodes created so far, and of the nodes created
+     * from now on. The nodes that are shown will load thumbnails of the new
+     * size.
      */
-    private class ThumbnailPageNode extends AbstractNode {
-
-        ThumbnailPageNode(Integer pageNum) {
-            super(new ThumbnailPageNodeChildren(pages.get(pageNum)), Lookups.singleton(pageNum));
-            setName(Integer.toString(pageNum));
-            int from = 1 + ((pageNum - 1) * IMAGES_PER_PAGE);
-            int showImages = Math.min(IMAGES_PER_PAGE, totalImages - (from - 1));
-            int to = from + showImages - 1;
-            setDisplayName(from + "-" + to);
-
-            this.setIconBaseWithExtension("org/sleuthkit/autopsy/images/Folder-icon.png"); //NON-NLS
-
-        }
-    }
-
-    //TODO insert node at beginning pressing which goes back to page view
-    private class ThumbnailPageNodeChildren extends Children.Keys<Node> {
-
-        //wrapped original nodes
-        private List<Node> contentImages = null;
-
-        ThumbnailPageNodeChildren(List<Node> contentImages) {
-            super(true);
-
-            this.contentImages = contentImages;
-        }
-
-        @Override
-        protected void addNotify() {
-            super.addNotify();
-
-            setKeys(contentImages);
-        }
-
-        @Override
-        protected void removeNotify() {
-            super.removeNotify();
-
-            setKeys(new ArrayList<Node>());
+    public void setIconSize(int iconSize) {
+        this.iconSize = iconSize;
+        final List<ThumbnailViewNode> nodes;
+        synchronized (createdNodes) {
+            nodes = new ArrayList<>(createdNodes);
         }
-
-        @Override
-        protected Node[] createNodes(Node wrapped) {
-            if (wrapped != null) {
-                final ThumbnailViewNode thumb = new ThumbnailViewNode(wrapped, iconSize);
-                return new Node[]{thumb};
-            } else {
-                return new Node[]{};
-            }
+        for (ThumbnailViewNode node : nodes) {
+            node.setIconSize(iconSize);
         }
     }
 }
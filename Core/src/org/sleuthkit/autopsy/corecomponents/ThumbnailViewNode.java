@@ -20,32 +20,27 @@
 
 import java.awt.Image;
 import java.awt.Toolkit;
-import java.awt.event.ActionEvent;
-import java.lang.ref.SoftReference;
-import java.util.concurrent.ExecutionException;
-import javax.swing.SwingWorker;
-import javax.swing.Timer;
-import org.netbeans.api.progress.ProgressHandle;
-import org.netbeans.api.progress.ProgressHandleFactory;
 import org.openide.nodes.FilterNode;
 import org.openide.nodes.Node;
-import org.openide.util.Exceptions;
 import org.sleuthkit.autopsy.coreutils.ImageUtils;
 import org.sleuthkit.datamodel.Content;
 
 /**
  * Node that wraps around original node and adds the bitmap icon representing
- * the picture
+ * the picture. The icon is loaded by the shared {@link ThumbnailLoader} the
+ * first time it is asked for, that is when the node is shown.
  */
 class ThumbnailViewNode extends FilterNode {
 
     static private final Image waitingIcon = Toolkit.getDefaultToolkit().createImage(ThumbnailViewNode.class.getResource("/org/sleuthkit/autopsy/images/working_spinner.gif"));
 
-    private SoftReference<Image> iconCache = null;
     private int iconSize = ImageUtils.ICON_SIZE_MEDIUM;
 
-    private SwingWorker<Image, Object> swingWorker;
-    private Timer timer;
+    /**
+     * true while a thumbnail has been requested from the loader and not
+     * delivered yet, so it is only requested once.
+     */
+    private boolean loading = false;
 
     /**
      * the constructor
@@ -66,61 +61,41 @@ public String getDisplayName() {
 
     @Override
     public Image getIcon(int type) {
-        Image icon = null;
-
-        if (iconCache != null) {
-            icon = iconCache.get();
+        final Content content = this.getLookup().lookup(Content.class);
+        if (content == null) {
+            return ImageUtils.getDefaultThumbnail();
         }
-
+        final ThumbnailLoader loader = ThumbnailLoader.getDefault();
+        final Image icon = loader.get(content, iconSize);
         if (icon != null) {
             return icon;
-        } else {
-            final Content content = this.getLookup().lookup(Content.class);
-            if (content == null) {
-                return ImageUtils.getDefaultThumbnail();
-            }
-            if (swingWorker == null || swingWorker.isDone()) {
-                swingWorker = new SwingWorker<Image, Object>() {
-                    final private ProgressHandle progressHandle = ProgressHandleFactory.createHandle("generating thumbnail for video file " + content.getName());
-
-                    @Override
-                    protected Image doInBackground() throws Exception {
-                        progressHandle.start();
-                        return ImageUtils.getThumbnail(content, iconSize);
-                    }
+        }
+        if (loading == false) {
+            loading = true;
+            loader.load(content, iconSize, () -> {
+                loading = false;
+                fireIconChange();
+            });
+        }
+        //show the thumbnail at another size, if there is one, until this size is loaded
+        final Image standIn = loader.getScaledStandIn(content, iconSize);
+        return standIn != null ? standIn : waitingIcon;
+    }
 
-                    @Override
-                    protected void done() {
-                        super.done();
-                        try {
-                            iconCache = new SoftReference<>(super.get());
-                            progressHandle.finish();
-                            fireIconChange();
-                            if (timer != null) {
-                                timer.stop();
-                                timer = null;
-                            }
-                        } catch (InterruptedException | ExecutionException ex) {
-                            Exceptions.printStackTrace(ex);
-                        }
-                        swingWorker = null;
-                    }
-                };
-                swingWorker.execute();
-            }
-            if (timer == null) {
-                timer = new Timer(100, (ActionEvent e) -> {
-                    fireIconChange();
-                });
-                timer.start();
-            }
-            return waitingIcon;
+    /**
+     * Start loading the thumbnail of this node, because it may be shown soon.
+     */
+    void prefetch() {
+        final Content content = this.getLookup().lookup(Content.class);
+        if (content != null) {
+            ThumbnailLoader.getDefault().prefetch(content, iconSize);
         }
     }
 
     public void setIconSize(int iconSize) {
-        this.iconSize = iconSize;
-        iconCache = null;
-        swingWorker = null;
+        if (this.iconSize != iconSize) {
+            this.iconSize = iconSize;
+            fireIconChange();
+        }
     }
 }
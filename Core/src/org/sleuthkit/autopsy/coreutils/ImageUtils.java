@@ -22,27 +22,37 @@
  */
 package org.sleuthkit.autopsy.coreutils;
 
+import com.drew.imaging.ImageMetadataReader;
+import com.drew.imaging.ImageProcessingException;
+import com.drew.metadata.Metadata;
+import com.drew.metadata.exif.ExifThumbnailDirectory;
 import com.google.common.io.Files;
 import java.awt.Image;
 import java.awt.image.BufferedImage;
 import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Paths;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Objects;
 import static java.util.Objects.isNull;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
 import java.util.logging.Level;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.concurrent.BasicThreadFactory;
 import org.opencv.core.Core;
@@ -58,14 +68,14 @@
 /**
  *
  * Utilities for working with Images and creating thumbnails. Reuses thumbnails
- * by storing them in the case's cache directory.
+ * by storing them in the case's {@link ThumbnailStore}.
  */
 public class ImageUtils {
 
     private static final Logger LOGGER = Logger.getLogger(ImageUtils.class.getName());
 
     /**
-     * save thumbnails to disk as this format
+     * export thumbnails to files as this format
      */
     private static final String FORMAT = "png"; //NON-NLS
 
@@ -134,7 +144,8 @@ public class ImageUtils {
     private static FileTypeDetector fileTypeDetector;
 
     /**
-     * thread that saves generated thumbnails to disk in the background
+     * thread that saves generated thumbnails to the thumbnail store in the
+     * background
      */
     private static final Executor imageSaver
             = Executors.newSingleThreadExecutor(new BasicThreadFactory.Builder()
@@ -296,28 +307,98 @@ public static Image getIcon(Content content, int iconSize) {
     public static Image getThumbnail(Content content, int iconSize) {
         if (content instanceof AbstractFile) {
             AbstractFile file = (AbstractFile) content;
-            // If a thumbnail file is already saved locally
-            File cacheFile = getCachedThumbnailLocation(content.getId());
-            if (cacheFile.exists()) {
-                try {
-                    BufferedImage thumbnail = ImageIO.read(cacheFile);
-                    if (isNull(thumbnail) || thumbnail.getWidth() != iconSize) {
-                        return generateAndSaveThumbnail(file, iconSize, cacheFile);
-                    } else {
-                        return thumbnail;
-                    }
-                } catch (Exception ex) {
-                    LOGGER.log(Level.WARNING, "Error while reading image: " + content.getName(), ex); //NON-NLS
-                    return generateAndSaveThumbnail(file, iconSize, cacheFile);
-                }
-            } else {
-                return generateAndSaveThumbnail(file, iconSize, cacheFile);
+            BufferedImage thumbnail = getStoredThumbnail(file, iconSize);
+            if (thumbnail != null) {
+                return thumbnail;
             }
+            return generateAndSaveThumbnail(file, iconSize);
         } else {
             return DEFAULT_THUMBNAIL;
         }
     }
 
+    /**
+     * Get a thumbnail of a specified size, as in
+     * {@link #getThumbnail(org.sleuthkit.datamodel.Content, int)}, without
+     * waiting for videos to be decoded. Thumbnails of images are still made
+     * on the calling thread, but those of videos are made on the video
+     * thumbnailer threads, so callers that make image thumbnails are not held
+     * up by them.
+     *
+     * @param content
+     * @param iconSize
+     *
+     * @return a future of the thumbnail, or of a default one if there was a
+     *         problem making a thumbnail. It is already complete unless the
+     *         content is a video whose thumbnail has to be made.
+     */
+    public static CompletableFuture<Image> getThumbnailAsync(Content content, int iconSize) {
+        if (content instanceof AbstractFile) {
+            AbstractFile file = (AbstractFile) content;
+            BufferedImage stored = getStoredThumbnail(file, iconSize);
+            if (stored != null) {
+                return CompletableFuture.completedFuture(stored);
+            }
+            if (openCVLoaded && VideoUtils.isVideoThumbnailSupported(file)) {
+                return VideoUtils.generateVideoThumbnailAsync(file, iconSize).<Image>thenApply(thumbnail -> {
+                    if (thumbnail == null) {
+                        return DEFAULT_THUMBNAIL;
+                    }
+                    saveThumbnail(file, iconSize, thumbnail);
+                    return thumbnail;
+                });
+            }
+        }
+        return CompletableFuture.completedFuture(getThumbnail(content, iconSize));
+    }
+
+    /**
+     * Get the thumbnail of the given size of the given file, if it was
+     * already made: from the thumbnail store, or from a thumbnail file saved
+     * by an older version.
+     *
+     * @return the thumbnail, or null if it has not been made yet
+     */
+    @Nullable
+    private static BufferedImage getStoredThumbnail(AbstractFile file, int iconSize) {
+        // If a thumbnail of this size is already in the store
+        ThumbnailStore store = getThumbnailStore();
+        if (store != null) {
+            BufferedImage thumbnail = store.get(file.getId(), iconSize);
+            if (thumbnail != null) {
+                return thumbnail;
+            }
+        }
+        // If a thumbnail file was saved locally by an older version
+        File cacheFile = getCachedThumbnailLocation(file.getId());
+        if (cacheFile.exists()) {
+            try {
+                BufferedImage thumbnail = ImageIO.read(cacheFile);
+                if (isNull(thumbnail) == false && thumbnail.getWidth() == iconSize) {
+                    saveThumbnail(file, iconSize, thumbnail);
+                    return thumbnail;
+                }
+            } catch (Exception ex) {
+                LOGGER.log(Level.WARNING, "Error while reading image: " + file.getName(), ex); //NON-NLS
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the thumbnail store of the current case, or null if there is no
+     *         open case or the store could not be opened.
+     */
+    @Nullable
+    static ThumbnailStore getThumbnailStore() {
+        try {
+            return ThumbnailStore.getForCurrentCase();
+        } catch (IllegalStateException | IOException ex) {
+            LOGGER.log(Level.WARNING, "Failed to open the thumbnail store.", ex); //NON-NLS
+            return null;
+        }
+    }
+
     /**
      * Get a thumbnail of a specified size. Generates the image if it is not
      * already cached.
@@ -347,13 +428,28 @@ public static File getIconFile(Content content, int iconSize) {
      * @param content
      * @param iconSize
      *
+     * Thumbnails are kept in the {@link ThumbnailStore}, this exports the
+     * thumbnail to an image file, for callers that need one (eg reports).
+     *
      * @return File object for cached image. Is guaranteed to exist, as long as
      *         there was not an error generating or saving the thumbnail.
      */
     @Nullable
     public static File getCachedThumbnailFile(Content content, int iconSize) {
-        getThumbnail(content, iconSize);
-        return getCachedThumbnailLocation(content.getId());
+        Image thumbnail = getThumbnail(content, iconSize);
+        File cacheFile = getCachedThumbnailLocation(content.getId());
+        if (thumbnail instanceof BufferedImage && thumbnail != DEFAULT_THUMBNAIL) {
+            try {
+                BufferedImage existing = cacheFile.exists() ? ImageIO.read(cacheFile) : null;
+                if (isNull(existing) || existing.getWidth() != ((BufferedImage) thumbnail).getWidth()) {
+                    Files.createParentDirs(cacheFile);
+                    ImageIO.write((BufferedImage) thumbnail, FORMAT, cacheFile);
+                }
+            } catch (IllegalArgumentException | IOException ex) {
+                LOGGER.log(Level.WARNING, "Could not write thumbnail file: " + content.getName(), ex); //NON-NLS
+            }
+        }
+        return cacheFile;
     }
 
     /**
@@ -444,6 +540,29 @@ public static boolean isPngFileHeader(AbstractFile file) {
         }
     }
 
+    /**
+     * Check if the given file is a TIFF based on header.
+     *
+     * @param file
+     *
+     * @return true if TIFF file, false otherwise
+     */
+    private static boolean isTiffFileHeader(AbstractFile file) {
+        if (file.getSize() < 10) {
+            return false;
+        }
+
+        try {
+            byte[] fileHeaderBuffer = readHeader(file, 4);
+            //little endian "II*\0" or big endian "MM\0*"
+            return ((fileHeaderBuffer[0] == 'I') && (fileHeaderBuffer[1] == 'I') && (fileHeaderBuffer[2] == 42) && (fileHeaderBuffer[3] == 0))
+                    || ((fileHeaderBuffer[0] == 'M') && (fileHeaderBuffer[1] == 'M') && (fileHeaderBuffer[2] == 0) && (fileHeaderBuffer[3] == 42));
+        } catch (TskCoreException ex) {
+            //ignore if can't read the first few bytes, not a TIFF
+            return false;
+        }
+    }
+
     private static byte[] readHeader(AbstractFile file, int buffLength) throws TskCoreException {
         byte[] fileHeaderBuffer = new byte[buffLength];
         int bytesRead = file.read(fileHeaderBuffer, 0, buffLength);
@@ -458,13 +577,12 @@ private static byte[] readHeader(AbstractFile file, int buffLength) throws TskCo
     /**
      * Generate an icon and save it to specified location.
      *
-     * @param file      File to generate icon for
+     * @param file     File to generate icon for
      * @param iconSize
-     * @param cacheFile Location to save thumbnail to
      *
      * @return Generated icon or null on error
      */
-    private static Image generateAndSaveThumbnail(AbstractFile file, int iconSize, File cacheFile) {
+    private static Image generateAndSaveThumbnail(AbstractFile file, int iconSize) {
         BufferedImage thumbnail = null;
         try {
             if (VideoUtils.isVideoThumbnailSupported(file)) {
@@ -481,18 +599,7 @@ private static Image generateAndSaveThumbnail(AbstractFile file, int iconSize, F
                 return DEFAULT_THUMBNAIL;
 
             } else {
-                BufferedImage toSave = thumbnail;
-                imageSaver.execute(() -> {
-                    try {
-                        Files.createParentDirs(cacheFile);
-                        if (cacheFile.exists()) {
-                            cacheFile.delete();
-                        }
-                        ImageIO.write(toSave, FORMAT, cacheFile);
-                    } catch (IllegalArgumentException | IOException ex1) {
-                        LOGGER.log(Level.WARNING, "Could not write cache thumbnail: " + file, ex1); //NON-NLS
-                    }
-                });
+                saveThumbnail(file, iconSize, thumbnail);
             }
         } catch (NullPointerException ex) {
             logger.log(Level.WARNING, "Could not write cache thumbnail: " + file, ex); //NON-NLS
@@ -500,6 +607,26 @@ private static Image generateAndSaveThumbnail(AbstractFile file, int iconSize, F
         return thumbnail;
     }
 
+    /**
+     * Add the given thumbnail to the thumbnail store, in the background.
+     *
+     * @param file      the file the thumbnail is of
+     * @param iconSize  the size of the thumbnail
+     * @param thumbnail the thumbnail
+     */
+    private static void saveThumbnail(AbstractFile file, int iconSize, BufferedImage thumbnail) {
+        ThumbnailStore store = getThumbnailStore();
+        if (store != null) {
+            imageSaver.execute(() -> {
+                try {
+                    store.put(file.getId(), iconSize, thumbnail);
+                } catch (IllegalArgumentException | IOException ex) {
+                    LOGGER.log(Level.WARNING, "Could not write cache thumbnail: " + file, ex); //NON-NLS
+                }
+            });
+        }
+    }
+
     /**
      *
      * Generate and return a scaled image
@@ -513,8 +640,21 @@ private static Image generateAndSaveThumbnail(AbstractFile file, int iconSize, F
     @Nullable
     private static BufferedImage generateImageThumbnail(Content content, int iconSize) {
 
-        try (InputStream inputStream = new BufferedInputStream(new ReadContentInputStream(content));) {
-            BufferedImage bi = ImageIO.read(inputStream);
+        try {
+            /*
+             * Try the cheapest source of pixels first: the thumbnail embedded
+             * in the EXIF data of JPEGs and TIFFs, then a subsampled decode of
+             * the image, and only then a full decode.
+             */
+            BufferedImage bi = readEmbeddedThumbnail(content, iconSize);
+            if (bi == null) {
+                bi = readSubsampledImage(content, iconSize);
+            }
+            if (bi == null) {
+                try (InputStream inputStream = new BufferedInputStream(new ReadContentInputStream(content));) {
+                    bi = ImageIO.read(inputStream);
+                }
+            }
 
             if (bi == null) {
                 LOGGER.log(Level.WARNING, "No image reader for file: {0}", content.getName()); //NON-NLS
@@ -538,4 +678,80 @@ private static BufferedImage generateImageThumbnail(Content content, int iconSiz
         }
     }
 
+    /**
+     * Read the thumbnail embedded in the EXIF data of the given JPEG or TIFF,
+     * if it has one that is at least as big as the requested size.
+     *
+     * @param content
+     * @param iconSize
+     *
+     * @return the embedded thumbnail, or null if the content is not a JPEG or
+     *         TIFF, has no (big enough) embedded thumbnail, or there was a
+     *         problem reading it.
+     */
+    @Nullable
+    private static BufferedImage readEmbeddedThumbnail(Content content, int iconSize) {
+        if ((content instanceof AbstractFile) == false
+                || (isJpegFileHeader((AbstractFile) content) == false && isTiffFileHeader((AbstractFile) content) == false)) {
+            return null;
+        }
+        try (BufferedInputStream inputStream = new BufferedInputStream(new ReadContentInputStream(content));) {
+            Metadata metadata = ImageMetadataReader.readMetadata(inputStream, true);
+            ExifThumbnailDirectory thumbnailDir = metadata.getDirectory(ExifThumbnailDirectory.class);
+            if (thumbnailDir == null || thumbnailDir.hasThumbnailData() == false) {
+                return null;
+            }
+            BufferedImage thumbnail = ImageIO.read(new ByteArrayInputStream(thumbnailDir.getThumbnailData()));
+            //embedded thumbnails are usually about 160x120, too small for the larger icon sizes
+            if (thumbnail == null || Math.max(thumbnail.getWidth(), thumbnail.getHeight()) < iconSize) {
+                return null;
+            }
+            return thumbnail;
+        } catch (ImageProcessingException | IOException ex) {
+            LOGGER.log(Level.FINE, "Could not read embedded thumbnail of: " + content.getName(), ex); //NON-NLS
+            return null;
+        }
+    }
+
+    /**
+     * Decode the given image at a resolution close to (but no less than twice)
+     * the requested size, by reading only every nth pixel of every nth row, so
+     * the full size image is never held in memory.
+     *
+     * @param content
+     * @param iconSize
+     *
+     * @return the subsampled image, or null if there is no reader for the
+     *         image or there was a problem reading it with subsampling.
+     */
+    @Nullable
+    private static BufferedImage readSubsampledImage(Content content, int iconSize) {
+        try (InputStream inputStream = new BufferedInputStream(new ReadContentInputStream(content));
+                ImageInputStream imageInputStream = ImageIO.createImageInputStream(inputStream);) {
+            if (imageInputStream == null) {
+                return null;
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(imageInputStream);
+            if (readers.hasNext() == false) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(imageInputStream, true, true);
+                final int largestDimension = Math.max(reader.getWidth(0), reader.getHeight(0));
+                //keep twice the pixels needed, so the final resize still has something to smooth
+                final int subsampling = Math.max(1, largestDimension / (2 * iconSize));
+
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        } catch (IOException | IllegalArgumentException | IllegalStateException ex) {
+            LOGGER.log(Level.FINE, "Could not read subsampled image: " + content.getName(), ex); //NON-NLS
+            return null;
+        }
+    }
+
 }
@@ -0,0 +1,227 @@
+/*
+ * Autopsy Forensic Browser
+ *
+ * Copyright 2015 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.autopsy.coreutils;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Deque;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Level;
+import org.sqlite.SQLiteConfig;
+
+/**
+ * A small pool of read-only connections to a SQLite database that is written
+ * through a separate connection in write-ahead log (WAL) mode.
+ *
+ * In WAL mode readers do not block the writer and the writer does not block
+ * readers: each read sees the database as of the last commit when it started.
+ * So queries made through the pool can run in parallel with each other and
+ * with an open write transaction on the write connection, which is owned and
+ * serialized by the database class itself.
+ *
+ * Each {@link ReadConnection} holds the read side of a read/write lock until it
+ * is closed. The write side, {@link #getExclusiveLock()}, is for operations
+ * that must not overlap any read, such as dropping and recreating the tables
+ * or closing the database. ReadConnections must be closed by the thread that
+ * got them, ideally with try-with-resources. A thread that asks for a
+ * ReadConnection while it already holds one shares the connection it holds,
+ * so nested queries can not exhaust the pool.
+ */
+public final class SQLiteConnectionPool {
+
+    private static final Logger LOGGER = Logger.getLogger(SQLiteConnectionPool.class.getName());
+
+    private final String dbPath;
+    private final Semaphore permits;
+    private final Deque<Connection> idleConnections = new ConcurrentLinkedDeque<>();
+    private final ReentrantReadWriteLock rwLock = new ReentrantReadWriteLock(true); //use fairness policy
+    private final ThreadLocal<ReadConnection> heldConnection = new ThreadLocal<>();
+
+    /**
+     * guarded by rwLock
+     */
+    private boolean closed = false;
+
+    /**
+     * @param dbPath         the path to the SQLite database file
+     * @param maxConnections the maximum number of read connections open at
+     *                       once. Connections are opened as needed.
+     */
+    public SQLiteConnectionPool(String dbPath, int maxConnections) {
+        this.dbPath = dbPath;
+        this.permits = new Semaphore(Math.max(1, maxConnections), true);
+    }
+
+    /**
+     * Put the database of the given (write) connection into write-ahead log
+     * mode. The mode is persistent, but setting it again is harmless.
+     *
+     * @param writeConnection
+     *
+     * @return true if the database is now in WAL mode, false if SQLite refused
+     *         (e.g. for an in memory database), in which case it keeps its old
+     *         journal mode and readers will be blocked by writes.
+     *
+     * @throws SQLException
+     */
+    public static boolean enableWriteAheadLog(Connection writeConnection) throws SQLException {
+        try (Statement statement = writeConnection.createStatement();
+                ResultSet rs = statement.executeQuery("PRAGMA journal_mode = WAL")) { //NON-NLS
+            return rs.next() && "wal".equalsIgnoreCase(rs.getString(1)); //NON-NLS
+        }
+    }
+
+    /**
+     * Get a read-only connection from the pool, waiting for one to be returned
+     * if they are all in use.
+     *
+     * @return a ReadConnection, that must be closed to return it to the pool.
+     *
+     * @throws SQLException if the pool is closed, a new connection could not
+     *                      be opened, or the thread was interrupted while
+     *                      waiting.
+     */
+    public ReadConnection getReadConnection() throws SQLException {
+        ReadConnection held = heldConnection.get();
+        if (held != null) {
+            held.holdCount++;
+            return held;
+        }
+        final Lock readLock = rwLock.readLock();
+        readLock.lock();
+        boolean acquired = false;
+        try {
+            if (closed) {
+                throw new SQLException("The connection pool for " + dbPath + " is closed."); //NON-NLS
+            }
+            permits.acquire();
+            acquired = true;
+            Connection connection = idleConnections.pollFirst();
+            if (connection == null || connection.isClosed()) {
+                connection = openReadConnection();
+            }
+            held = new ReadConnection(connection, readLock);
+            heldConnection.set(held);
+            return held;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            readLock.unlock();
+            throw new SQLException("Interrupted while waiting for a connection to " + dbPath, ex); //NON-NLS
+        } catch (SQLException | RuntimeException ex) {
+            if (acquired) {
+                permits.release();
+            }
+            readLock.unlock();
+            throw ex;
+        }
+    }
+
+    /**
+     * @return the lock that excludes all reads through this pool while it is
+     *         held.
+     */
+    public Lock getExclusiveLock() {
+        return rwLock.writeLock();
+    }
+
+    /**
+     * Close all the connections in the pool, waiting for the ones in use to be
+     * returned. After this, getReadConnection will throw.
+     */
+    public void close() {
+        rwLock.writeLock().lock();
+        try {
+            closed = true;
+            Connection connection;
+            while ((connection = idleConnections.pollFirst()) != null) {
+                try {
+                    connection.close();
+                } catch (SQLException ex) {
+                    LOGGER.log(Level.WARNING, "Failed to close read connection to " + dbPath, ex); //NON-NLS
+                }
+            }
+        } finally {
+            rwLock.writeLock().unlock();
+        }
+    }
+
+    private Connection openReadConnection() throws SQLException {
+        SQLiteConfig config = new SQLiteConfig();
+        config.setReadOnly(true);
+        Connection connection = DriverManager.getConnection("jdbc:sqlite:" + dbPath, config.toProperties()); //NON-NLS
+        try (Statement statement = connection.createStatement()) {
+            //wait rather than fail if a checkpoint has the database locked
+            statement.execute("PRAGMA busy_timeout = 5000"); //NON-NLS
+            statement.execute("PRAGMA temp_store = MEMORY"); //NON-NLS
+            statement.execute("PRAGMA cache_size = 10000"); //NON-NLS
+        }
+        return connection;
+    }
+
+    /**
+     * A read-only connection borrowed from the pool. Closing it returns the
+     * connection to the pool, once it has been closed as many times as it was
+     * gotten by its thread.
+     */
+    public final class ReadConnection implements AutoCloseable {
+
+        private final Connection connection;
+        private final Lock readLock;
+        private int holdCount = 1;
+
+        private ReadConnection(Connection connection, Lock readLock) {
+            this.connection = connection;
+            this.readLock = readLock;
+        }
+
+        public Connection getConnection() {
+            return connection;
+        }
+
+        public Statement createStatement() throws SQLException {
+            return connection.createStatement();
+        }
+
+        public PreparedStatement prepareStatement(String sql) throws SQLException {
+            return connection.prepareStatement(sql);
+        }
+
+        @Override
+        public void close() {
+            if (holdCount == 0) {
+                return;
+            }
+            holdCount--;
+            if (holdCount > 0) {
+                return;
+            }
+            heldConnection.remove();
+            idleConnections.addFirst(connection);
+            permits.release();
+            readLock.unlock();
+        }
+    }
+}
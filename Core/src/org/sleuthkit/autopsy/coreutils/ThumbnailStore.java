@@ -0,0 +1,486 @@
+/*
+ * Autopsy Forensic Browser
+ *
+ * Copyright 2015 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.autopsy.coreutils;
+
+import java.awt.image.BufferedImage;
+import java.beans.PropertyChangeEvent;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import javax.imageio.ImageIO;
+import org.sleuthkit.autopsy.casemodule.Case;
+
+/**
+ * Stores the thumbnails of a case in a few large pack files, rather than one
+ * image file per thumbnail, along with an index from (file ID, size) to the
+ * pack, offset and length of the thumbnail.
+ *
+ * Thumbnails are compressed (as JPEG, or PNG if they have transparency) and
+ * appended to the current pack file, and their index records appended to the
+ * index file, so a write never rewrites anything. Reads are positional reads
+ * of the already open pack file, so loading a thumbnail costs one read call
+ * and no file open. The packs are not memory mapped, since a mapping can't be
+ * released when the store is closed, which would keep the pack files locked
+ * until it is garbage collected. Any number of sizes of thumbnail may be
+ * stored for the same file, a later thumbnail of the same file and size
+ * replaces an earlier one in the index.
+ *
+ * A FileChannel is closed if the thread using it is interrupted, so the reads
+ * and writes are done with the interrupt status cleared (and restored after),
+ * and a pack closed by an interrupt anyway is reopened.
+ *
+ * If the application exits during a write, the index may end with a partial
+ * record, or one that points past the end of its pack: these are ignored when
+ * the store is opened.
+ */
+public final class ThumbnailStore {
+
+    private static final Logger LOGGER = Logger.getLogger(ThumbnailStore.class.getName());
+
+    private static final String INDEX_FILE_NAME = "thumbnails.idx"; //NON-NLS
+    private static final String PACK_FILE_PREFIX = "thumbnails-"; //NON-NLS
+    private static final String PACK_FILE_EXTENSION = ".pack"; //NON-NLS
+
+    /**
+     * the largest a pack file is allowed to grow to before a new one is
+     * started.
+     */
+    private static final long MAX_PACK_SIZE = 256L * 1024 * 1024;
+
+    /**
+     * the size of an index record: file ID, size, pack number, offset, length
+     */
+    private static final int INDEX_RECORD_SIZE = 8 + 4 + 4 + 8 + 4;
+
+    @GuardedBy("ThumbnailStore.class")
+    private static ThumbnailStore currentStore;
+
+    @GuardedBy("ThumbnailStore.class")
+    private static boolean caseListenerAdded = false;
+
+    private final Path directory;
+
+    /**
+     * the index, from key (see {@link #key(long, int)}) to entry
+     */
+    private final Map<Long, Entry> index = new ConcurrentHashMap<>();
+
+    /**
+     * the open pack files, by pack number
+     */
+    @GuardedBy("this")
+    private final List<Pack> packs = new ArrayList<>();
+
+    @GuardedBy("this")
+    private DataOutputStream indexOut;
+
+    @GuardedBy("this")
+    private boolean closed = false;
+
+    /**
+     * Get the thumbnail store of the current case, opening it (and closing the
+     * store of the previous case) if needed.
+     *
+     * @return the thumbnail store of the current case
+     *
+     * @throws IllegalStateException if there is no open case
+     * @throws IOException           if the store could not be opened
+     */
+    public static synchronized ThumbnailStore getForCurrentCase() throws IOException {
+        if (caseListenerAdded == false) {
+            //close the store when its case is closed, so its files are not held open
+            Case.addPropertyChangeListener((PropertyChangeEvent evt) -> {
+                if (Case.Events.CURRENT_CASE.toString().equals(evt.getPropertyName()) && evt.getNewValue() == null) {
+                    closeCurrentStore();
+                }
+            });
+            caseListenerAdded = true;
+        }
+        Path directory = Paths.get(Case.getCurrentCase().getCacheDirectory(), "thumbnails"); //NON-NLS
+        if (currentStore == null || currentStore.directory.equals(directory) == false) {
+            if (currentStore != null) {
+                currentStore.close();
+            }
+            currentStore = new ThumbnailStore(directory);
+        }
+        return currentStore;
+    }
+
+    private static synchronized void closeCurrentStore() {
+        if (currentStore != null) {
+            currentStore.close();
+            currentStore = null;
+        }
+    }
+
+    /**
+     * open the store in the given directory, creating it if needed.
+     *
+     * @param directory
+     *
+     * @throws IOException
+     */
+    private ThumbnailStore(Path directory) throws IOException {
+        this.directory = directory;
+        Files.createDirectories(directory);
+
+        //open the existing packs
+        for (int packNumber = 0; Files.exists(getPackPath(packNumber)); packNumber++) {
+            packs.add(new Pack(packNumber));
+        }
+
+        //read the index, the later records of a key replace the earlier ones
+        Path indexPath = directory.resolve(INDEX_FILE_NAME);
+        long completeRecords = 0;
+        if (Files.exists(indexPath)) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexPath.toFile())))) {
+                while (true) {
+                    final long fileID = in.readLong();
+                    final int size = in.readInt();
+                    final int packNumber = in.readInt();
+                    final long offset = in.readLong();
+                    final int length = in.readInt();
+                    if (packNumber < packs.size() && offset + length <= packs.get(packNumber).channel.size()) {
+                        index.put(key(fileID, size), new Entry(packNumber, offset, length));
+                    }
+                    completeRecords++;
+                }
+            } catch (EOFException ex) {
+                //the end of the index, or a partially written last record
+            }
+            //drop any partial last record, so the records appended from now on line up
+            try (FileChannel indexChannel = FileChannel.open(indexPath, StandardOpenOption.WRITE)) {
+                indexChannel.truncate(completeRecords * INDEX_RECORD_SIZE);
+            }
+        }
+        indexOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexPath.toFile(), true)));
+    }
+
+    private Path getPackPath(int packNumber) {
+        return directory.resolve(PACK_FILE_PREFIX + packNumber + PACK_FILE_EXTENSION);
+    }
+
+    /**
+     * @return the key of the thumbnail of the given size of the file with the
+     *         given ID. Sizes are less than 2^16, object IDs are far less than
+     *         2^47.
+     */
+    private static long key(long fileID, int size) {
+        return (fileID << 16) | (size & 0xFFFF);
+    }
+
+    /**
+     * @param fileID the object ID of the file
+     * @param size   the size of the thumbnail
+     *
+     * @return true if there is a thumbnail of the given size of the given file
+     *         in the store.
+     */
+    public boolean contains(long fileID, int size) {
+        return index.containsKey(key(fileID, size));
+    }
+
+    /**
+     * Get the stored thumbnail of the given size of the given file.
+     *
+     * @param fileID the object ID of the file
+     * @param size   the size of the thumbnail
+     *
+     * @return the thumbnail, or null if there is none or it could not be read.
+     */
+    @Nullable
+    public BufferedImage get(long fileID, int size) {
+        final Entry entry = index.get(key(fileID, size));
+        if (entry == null) {
+            return null;
+        }
+        try {
+            ByteBuffer bytes = getBytes(entry);
+            return (bytes == null) ? null : ImageIO.read(new ByteBufferInputStream(bytes));
+        } catch (ClosedChannelException ex) {
+            //the store was closed during the read
+            return null;
+        } catch (IOException ex) {
+            LOGGER.log(Level.WARNING, "Failed to read thumbnail of file " + fileID + " from the thumbnail store.", ex); //NON-NLS
+            return null;
+        }
+    }
+
+    /**
+     * Read the bytes of the given entry. Positional reads of a FileChannel may
+     * run concurrently, so only finding the pack is done under the lock.
+     *
+     * @return the bytes of the given entry, or null if the store is closed.
+     *
+     * @throws ClosedChannelException if the store is closed during the read
+     */
+    private ByteBuffer getBytes(Entry entry) throws IOException {
+        final Pack pack;
+        synchronized (this) {
+            if (closed) {
+                return null;
+            }
+            pack = packs.get(entry.packNumber);
+        }
+        return uninterruptibly(pack, channel -> {
+            ByteBuffer bytes = ByteBuffer.allocate(entry.length);
+            while (bytes.hasRemaining()) {
+                if (channel.read(bytes, entry.offset + bytes.position()) < 0) {
+                    throw new EOFException("Thumbnail pack file " + pack.number + " ends before the thumbnail at offset " + entry.offset); //NON-NLS
+                }
+            }
+            bytes.flip();
+            return bytes;
+        });
+    }
+
+    /**
+     * Do the given I/O on the channel of the given pack with the interrupt
+     * status of this thread cleared, restoring it after. If the channel is
+     * closed by an interrupt anyway, it is reopened and the I/O tried once
+     * more, so one interrupted thread can't close the pack for everyone.
+     *
+     * @throws ClosedChannelException if the store is closed
+     */
+    private <T> T uninterruptibly(Pack pack, PackIO<T> io) throws IOException {
+        boolean interrupted = Thread.interrupted();
+        try {
+            try {
+                return io.run(getOpenChannel(pack));
+            } catch (ClosedByInterruptException ex) {
+                interrupted |= Thread.interrupted();
+                return io.run(getOpenChannel(pack));
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * @return the channel of the given pack, reopened if it was closed by an
+     *         interrupt
+     *
+     * @throws ClosedChannelException if the store is closed
+     */
+    private FileChannel getOpenChannel(Pack pack) throws IOException {
+        final FileChannel channel = pack.channel;
+        if (channel.isOpen()) {
+            return channel;
+        }
+        synchronized (this) {
+            if (closed) {
+                throw new ClosedChannelException();
+            }
+            if (pack.channel.isOpen() == false) {
+                pack.open();
+            }
+            return pack.channel;
+        }
+    }
+
+    /**
+     * I/O on the channel of a pack
+     */
+    @FunctionalInterface
+    private interface PackIO<T> {
+
+        T run(FileChannel channel) throws IOException;
+    }
+
+    /**
+     * Compress the given thumbnail and add it to the store, replacing any
+     * thumbnail of the same size of the same file.
+     *
+     * @param fileID    the object ID of the file
+     * @param size      the size of the thumbnail
+     * @param thumbnail the thumbnail
+     *
+     * @throws IOException if the thumbnail could not be compressed or written
+     */
+    public void put(long fileID, int size, BufferedImage thumbnail) throws IOException {
+        //compress outside of the lock
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        BufferedImage toWrite = thumbnail;
+        String format = "png"; //NON-NLS
+        if (thumbnail.getColorModel().hasAlpha() == false) {
+            //JPEG is much smaller and faster to decode, but can't have transparency
+            format = "jpg"; //NON-NLS
+            if (thumbnail.getType() != BufferedImage.TYPE_INT_RGB && thumbnail.getType() != BufferedImage.TYPE_3BYTE_BGR) {
+                toWrite = new BufferedImage(thumbnail.getWidth(), thumbnail.getHeight(), BufferedImage.TYPE_INT_RGB);
+                toWrite.getGraphics().drawImage(thumbnail, 0, 0, null);
+            }
+        }
+        if (ImageIO.write(toWrite, format, compressed) == false) {
+            throw new IOException("No image writer for " + format); //NON-NLS
+        }
+        append(fileID, size, compressed.toByteArray());
+    }
+
+    private synchronized void append(long fileID, int size, byte[] bytes) throws IOException {
+        if (closed) {
+            return;
+        }
+        Pack pack = packs.isEmpty() ? null : packs.get(packs.size() - 1);
+        if (pack == null || uninterruptibly(pack, FileChannel::size) + bytes.length > MAX_PACK_SIZE) {
+            pack = new Pack(packs.size());
+            packs.add(pack);
+        }
+        final long offset = uninterruptibly(pack, FileChannel::size);
+        uninterruptibly(pack, channel -> {
+            //a write cut short by an interrupt is written again from the start, at the same offset
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer, offset + buffer.position());
+            }
+            return null;
+        });
+
+        //write the index record only after the thumbnail itself
+        indexOut.writeLong(fileID);
+        indexOut.writeInt(size);
+        indexOut.writeInt(pack.number);
+        indexOut.writeLong(offset);
+        indexOut.writeInt(bytes.length);
+        indexOut.flush();
+
+        index.put(key(fileID, size), new Entry(pack.number, offset, bytes.length));
+    }
+
+    /**
+     * Close the pack and index files. The store can not be used after this.
+     */
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        index.clear();
+        for (Pack pack : packs) {
+            try {
+                pack.channel.close();
+            } catch (IOException ex) {
+                LOGGER.log(Level.WARNING, "Failed to close thumbnail pack file.", ex); //NON-NLS
+            }
+        }
+        packs.clear();
+        try {
+            indexOut.close();
+        } catch (IOException ex) {
+            LOGGER.log(Level.WARNING, "Failed to close thumbnail index file.", ex); //NON-NLS
+        }
+    }
+
+    /**
+     * where a thumbnail is stored
+     */
+    private static final class Entry {
+
+        private final int packNumber;
+        private final long offset;
+        private final int length;
+
+        Entry(int packNumber, long offset, int length) {
+            this.packNumber = packNumber;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    /**
+     * an open pack file
+     */
+    private final class Pack {
+
+        private final int number;
+
+        /**
+         * replaced if it is closed by an interrupt, see
+         * {@link #getOpenChannel(Pack)}
+         */
+        private volatile FileChannel channel;
+
+        Pack(int number) throws IOException {
+            this.number = number;
+            open();
+        }
+
+        private void open() throws IOException {
+            channel = FileChannel.open(getPackPath(number),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+    }
+
+    /**
+     * An InputStream over a ByteBuffer, so ImageIO can decode straight from
+     * the bytes read from the pack.
+     */
+    private static final class ByteBufferInputStream extends InputStream {
+
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = Objects.requireNonNull(buffer);
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? (buffer.get() & 0xFF) : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (buffer.hasRemaining() == false) {
+                return -1;
+            }
+            final int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
@@ -19,19 +19,31 @@
 package org.sleuthkit.autopsy.coreutils;
 
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.logging.Level;
+import javax.annotation.Nullable;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
 import org.netbeans.api.progress.ProgressHandle;
 import org.netbeans.api.progress.ProgressHandleFactory;
 import org.opencv.core.Mat;
+import org.opencv.core.Size;
 import org.opencv.highgui.VideoCapture;
+import org.opencv.imgproc.Imgproc;
 import org.sleuthkit.autopsy.casemodule.Case;
 import org.sleuthkit.autopsy.corelibs.ScalrWrapper;
 import static org.sleuthkit.autopsy.coreutils.ImageUtils.isMediaThumbnailSupported;
@@ -39,7 +51,9 @@
 import org.sleuthkit.datamodel.AbstractFile;
 
 /**
- *
+ * Utilities for working with videos and making thumbnails of them. Video
+ * thumbnails are made on a small pool of threads of their own, from a grid of
+ * frames that is kept in the case's {@link ThumbnailStore}.
  */
 public class VideoUtils {
 
@@ -77,8 +91,49 @@ public static SortedSet<String> getSupportedVideoMimeTypes() {
     private static final int CV_CAP_PROP_FRAME_COUNT = 7;
     private static final int CV_CAP_PROP_FPS = 5;
 
+    /**
+     * the largest dimension of a frame strip, the largest thumbnail that is
+     * requested of a video.
+     */
+    private static final int FRAME_STRIP_SIZE = 1024;
+
+    /**
+     * the size the frame strip of a video is kept under in the thumbnail
+     * store, no thumbnail has this size.
+     */
+    private static final int FRAME_STRIP_KEY = 0;
+
+    /**
+     * when the next frame of a strip is less than this many milliseconds past
+     * the current position, step to it instead of seeking. Seeking decodes
+     * from the keyframe before the target anyway, so for short gaps it only
+     * adds the cost of flushing and refilling the decoder.
+     */
+    private static final double MAX_STEP_MILLIS = 2000;
+
     static final Logger LOGGER = Logger.getLogger(VideoUtils.class.getName());
 
+    /**
+     * threads that decode the frame strips of videos, separate from (and
+     * smaller than) the threads making image thumbnails, since decoding a
+     * video takes much more time and memory than decoding an image.
+     */
+    private static final ExecutorService videoThumbnailer
+            = Executors.newFixedThreadPool(Math.max(1, Math.min(2, Runtime.getRuntime().availableProcessors() / 2)),
+                    new BasicThreadFactory.Builder().namingPattern("video thumbnailer-%d").daemon(true).build()); //NON-NLS
+
+    /**
+     * the frame strips currently being made, by file ID, so that concurrent
+     * requests for thumbnails of the same video decode it only once.
+     */
+    private static final ConcurrentHashMap<Long, CompletableFuture<BufferedImage>> pendingStrips = new ConcurrentHashMap<>();
+
+    /**
+     * locks on the temp copies of videos, by file ID, so a video is only
+     * extracted once even if it is requested by several threads.
+     */
+    private static final ConcurrentHashMap<Long, Object> extractionLocks = new ConcurrentHashMap<>();
+
     private VideoUtils() {
     }
 
@@ -86,80 +141,212 @@ public static File getTempVideoFile(AbstractFile file) {
         return Paths.get(Case.getCurrentCase().getTempDirectory(), "videos", file.getId() + "." + file.getNameExtension()).toFile();
     }
 
+    /**
+     * Get the temp copy of the given video, extracting it if it has not been
+     * extracted already. The copy is written under another name and then
+     * renamed, so a partial copy is never mistaken for a complete one.
+     *
+     * @param file the video to extract
+     *
+     * @return the temp copy of the video, see {@link #getTempVideoFile}
+     *
+     * @throws IOException if the video could not be extracted
+     */
+    public static File extractTempVideoFile(AbstractFile file) throws IOException {
+        final File tempFile = getTempVideoFile(file);
+        synchronized (extractionLocks.computeIfAbsent(file.getId(), id -> new Object())) {
+            if (tempFile.exists() == false || tempFile.length() < file.getSize()) {
+                com.google.common.io.Files.createParentDirs(tempFile);
+                final File partialFile = new File(tempFile.getPath() + ".part"); //NON-NLS
+                ProgressHandle progress = ProgressHandleFactory.createHandle("extracting temporary file " + file.getName());
+                progress.start(100);
+                try {
+                    ContentUtils.writeToFile(file, partialFile, progress, null, true);
+                } finally {
+                    progress.finish();
+                }
+                Files.move(partialFile.toPath(), tempFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        return tempFile;
+    }
+
     public static boolean isVideoThumbnailSupported(AbstractFile file) {
         return isMediaThumbnailSupported(file, SUPPORTED_VIDEO_MIME_TYPES, SUPPORTED_VIDEO_EXTENSIONS, CONDITIONAL_MIME_TYPES);
     }
 
+    /**
+     * Make a thumbnail of the given video: a grid of frames from throughout
+     * it, scaled to the given size. The grid (the frame strip) is kept in the
+     * thumbnail store, so thumbnails of other sizes don't decode the video
+     * again.
+     *
+     * This waits for the video to be decoded, callers that must not wait
+     * should use {@link #generateVideoThumbnailAsync(AbstractFile, int)}.
+     *
+     * @param file     the video
+     * @param iconSize the size of the thumbnail
+     *
+     * @return the thumbnail, or null if no frames could be read from the video
+     */
+    @Nullable
     static BufferedImage generateVideoThumbnail(AbstractFile file, int iconSize) {
-        java.io.File tempFile = getTempVideoFile(file);
-
         try {
-            if (tempFile.exists() == false || tempFile.length() < file.getSize()) {
-                com.google.common.io.Files.createParentDirs(tempFile);
-                ProgressHandle progress = ProgressHandleFactory.createHandle("extracting temporary file " + file.getName());
-                progress.start(100);
+            return generateVideoThumbnailAsync(file, iconSize).get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException ex) {
+            LOGGER.log(Level.WARNING, "Could not make thumbnail of: " + file.getName(), ex.getCause()); //NON-NLS
+            return null;
+        }
+    }
+
+    /**
+     * Make a thumbnail of the given video as in
+     * {@link #generateVideoThumbnail(AbstractFile, int)}, without waiting for
+     * the video to be decoded.
+     *
+     * @param file     the video
+     * @param iconSize the size of the thumbnail
+     *
+     * @return a future of the thumbnail, or of null if no frames could be
+     *         read from the video. It is already complete if the frame strip
+     *         was in the thumbnail store, else it completes on the video
+     *         thumbnailer threads.
+     */
+    static CompletableFuture<BufferedImage> generateVideoThumbnailAsync(AbstractFile file, int iconSize) {
+        return getFrameStrip(file).thenApply(frameStrip -> frameStrip == null ? null : ScalrWrapper.resizeFast(frameStrip, iconSize));
+    }
+
+    /**
+     * Get the frame strip of the given video from the thumbnail store, or
+     * start making it on the video thumbnailer threads.
+     *
+     * @return a future of the frame strip, or of null if it could not be made
+     */
+    private static CompletableFuture<BufferedImage> getFrameStrip(AbstractFile file) {
+        final ThumbnailStore store = ImageUtils.getThumbnailStore();
+        if (store != null) {
+            final BufferedImage stored = store.get(file.getId(), FRAME_STRIP_KEY);
+            if (stored != null) {
+                return CompletableFuture.completedFuture(stored);
+            }
+        }
+
+        final CompletableFuture<BufferedImage> pending = pendingStrips.computeIfAbsent(file.getId(), fileID -> CompletableFuture.supplyAsync(() -> {
+            final BufferedImage frameStrip = readFrameStrip(file);
+            if (frameStrip != null && store != null) {
                 try {
-                    ContentUtils.writeToFile(file, tempFile, progress, null, true);
+                    store.put(file.getId(), FRAME_STRIP_KEY, frameStrip);
                 } catch (IOException ex) {
-                    LOGGER.log(Level.WARNING, "Error buffering file", ex); //NON-NLS
+                    LOGGER.log(Level.WARNING, "Could not store frame strip of: " + file.getName(), ex); //NON-NLS
                 }
-                progress.finish();
             }
+            return frameStrip;
+        }, videoThumbnailer).exceptionally(ex -> {
+            LOGGER.log(Level.WARNING, "Could not make frame strip of: " + file.getName(), ex); //NON-NLS
+            return null;
+        }));
+        pending.whenComplete((frameStrip, ex) -> pendingStrips.remove(file.getId(), pending));
+        return pending;
+    }
+
+    /**
+     * Decode THUMB_COLUMNS * THUMB_ROWS frames, evenly spaced from 500ms into
+     * the given video, into a grid no bigger than FRAME_STRIP_SIZE.
+     *
+     * The frames are read in order, stepping forward to the next one when it
+     * is close and seeking otherwise, and are scaled by OpenCV before being
+     * copied into the grid a row of pixels at a time.
+     *
+     * @return the grid of frames, or null if no frames could be read. Frames
+     *         after the first that could not be read are left black.
+     */
+    @Nullable
+    private static BufferedImage readFrameStrip(AbstractFile file) {
+        final File tempFile;
+        try {
+            tempFile = extractTempVideoFile(file);
         } catch (IOException ex) {
+            LOGGER.log(Level.WARNING, "Error buffering file", ex); //NON-NLS
             return null;
         }
 
         VideoCapture videoFile = new VideoCapture(); // will contain the video
-
         if (!videoFile.open(tempFile.toString())) {
             return null;
         }
-        double fps = videoFile.get(CV_CAP_PROP_FPS); // gets frame per second
-        double totalFrames = videoFile.get(CV_CAP_PROP_FRAME_COUNT); // gets total frames
-        if (fps <= 0 || totalFrames <= 0) {
-            return null;
-        }
-        double milliseconds = 1000 * (totalFrames / fps); //total milliseconds
+        try {
+            double fps = videoFile.get(CV_CAP_PROP_FPS); // gets frame per second
+            double totalFrames = videoFile.get(CV_CAP_PROP_FRAME_COUNT); // gets total frames
+            if (fps <= 0 || totalFrames <= 0) {
+                return null;
+            }
+            double milliseconds = 1000 * (totalFrames / fps); //total milliseconds
 
-        double timestamp = Math.min(milliseconds, 500); //default time to check for is 500ms, unless the files is extremely small
+            double timestamp = Math.min(milliseconds, 500); //default time to check for is 500ms, unless the files is extremely small
 
-        int framkeskip = Double.valueOf(Math.floor((milliseconds - timestamp) / (THUMB_COLUMNS * THUMB_ROWS))).intValue();
+            double frameSkip = Math.floor((milliseconds - timestamp) / (THUMB_COLUMNS * THUMB_ROWS));
+            final int maxSteps = (int) Math.ceil(MAX_STEP_MILLIS * fps / 1000);
 
-        Mat imageMatrix = new Mat();
-        BufferedImage bufferedImage = null;
+            Mat frame = new Mat();
+            Mat tile = new Mat();
+            BufferedImage frameStrip = null;
+            byte[] stripPixels = null;
+            byte[] tilePixels = null;
+            int tileWidth = 0;
+            int tileHeight = 0;
 
-        for (int x = 0; x < THUMB_COLUMNS; x++) {
-            for (int y = 0; y < THUMB_ROWS; y++) {
-                if (!videoFile.set(CV_CAP_PROP_POS_MSEC, timestamp + x * framkeskip + y * framkeskip * THUMB_COLUMNS)) {
-                    break; // if we can't set the time, return black for that frame
+            //left to right, top to bottom, so the frames are read in order
+            for (int i = 0; i < THUMB_COLUMNS * THUMB_ROWS; i++) {
+                final double target = timestamp + i * frameSkip;
+                final double position = videoFile.get(CV_CAP_PROP_POS_MSEC);
+                if (i == 0 || position > target || target - position > MAX_STEP_MILLIS) {
+                    if (!videoFile.set(CV_CAP_PROP_POS_MSEC, target)) {
+                        break; // if we can't set the time, leave the rest of the frames black
+                    }
                 }
-                //read the frame into the image/matrix
-                if (!videoFile.read(imageMatrix)) {
-                    break; //if the image for some reason is bad, return black for that frame
+                //skip (without converting) the frames before the target, within bounds in case the position is unreliable
+                boolean grabbed = videoFile.grab();
+                for (int step = 0; grabbed && step < maxSteps && videoFile.get(CV_CAP_PROP_POS_MSEC) < target; step++) {
+                    grabbed = videoFile.grab();
                 }
-
-                if (bufferedImage == null) {
-                    bufferedImage = new BufferedImage(imageMatrix.cols() * THUMB_COLUMNS, imageMatrix.rows() * THUMB_ROWS, BufferedImage.TYPE_3BYTE_BGR);
+                if (!grabbed || !videoFile.retrieve(frame) || frame.empty()) {
+                    break; //if the frame for some reason is bad, leave the rest of the frames black
                 }
 
-                byte[] data = new byte[imageMatrix.rows() * imageMatrix.cols() * (int) (imageMatrix.elemSize())];
-                imageMatrix.get(0, 0, data); //copy the image to data
+                if (frameStrip == null) {
+                    final double scale = Math.min(1.0, Math.min((double) FRAME_STRIP_SIZE / (frame.cols() * THUMB_COLUMNS),
+                            (double) FRAME_STRIP_SIZE / (frame.rows() * THUMB_ROWS)));
+                    tileWidth = Math.max(1, (int) Math.round(frame.cols() * scale));
+                    tileHeight = Math.max(1, (int) Math.round(frame.rows() * scale));
+                    //TYPE_3BYTE_BGR has the same pixel layout as an OpenCV frame, so the bytes can be copied as is
+                    frameStrip = new BufferedImage(tileWidth * THUMB_COLUMNS, tileHeight * THUMB_ROWS, BufferedImage.TYPE_3BYTE_BGR);
+                    stripPixels = ((DataBufferByte) frameStrip.getRaster().getDataBuffer()).getData();
+                    tilePixels = new byte[tileWidth * tileHeight * 3];
+                }
 
-                //todo: this looks like we are swapping the first and third channels.  so we can use  BufferedImage.TYPE_3BYTE_BGR
-                if (imageMatrix.channels() == 3) {
-                    for (int k = 0; k < data.length; k += 3) {
-                        byte temp = data[k];
-                        data[k] = data[k + 2];
-                        data[k + 2] = temp;
-                    }
+                Imgproc.resize(frame, tile, new Size(tileWidth, tileHeight), 0, 0, Imgproc.INTER_AREA);
+                if (tile.channels() == 1) {
+                    Imgproc.cvtColor(tile, tile, Imgproc.COLOR_GRAY2BGR);
+                } else if (tile.channels() == 4) {
+                    Imgproc.cvtColor(tile, tile, Imgproc.COLOR_BGRA2BGR);
                 }
+                tile.get(0, 0, tilePixels);
 
-                bufferedImage.getRaster().setDataElements(imageMatrix.cols() * x, imageMatrix.rows() * y, imageMatrix.cols(), imageMatrix.rows(), data);
+                final int rowLength = tileWidth * 3;
+                final int stripRowLength = frameStrip.getWidth() * 3;
+                final int x = i % THUMB_COLUMNS;
+                final int y = i / THUMB_COLUMNS;
+                for (int row = 0; row < tileHeight; row++) {
+                    System.arraycopy(tilePixels, row * rowLength,
+                            stripPixels, (y * tileHeight + row) * stripRowLength + x * rowLength, rowLength);
+                }
             }
+            return frameStrip;
+        } finally {
+            videoFile.release(); // close the file
         }
-
-        videoFile.release(); // close the file
-
-        return bufferedImage == null ? bufferedImage : ScalrWrapper.resizeFast(bufferedImage, iconSize);
     }
 }
@@ -0,0 +1,328 @@
+/*
+ * Autopsy Forensic Browser
+ *
+ * Copyright 2015 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.autopsy.directorytree;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import javax.xml.bind.DatatypeConverter;
+import org.netbeans.api.progress.ProgressHandle;
+import org.openide.util.NbBundle;
+import org.sleuthkit.autopsy.coreutils.Logger;
+import org.sleuthkit.autopsy.datamodel.ContentUtils;
+import org.sleuthkit.datamodel.AbstractFile;
+import org.sleuthkit.datamodel.Content;
+import org.sleuthkit.datamodel.Directory;
+import org.sleuthkit.datamodel.ReadContentInputStream;
+import org.sleuthkit.datamodel.TskCoreException;
+import org.sleuthkit.datamodel.VirtualDirectory;
+
+/**
+ * Exports a set of files and folders using a pool of writer threads. The
+ * calling thread walks the selected folders and queues every file to export,
+ * the writer threads copy the queued files with large reusable buffers and
+ * compute their MD5 and SHA-1 while the data is streamed. A CSV manifest with
+ * the source path, exported path, size and digests of every exported file is
+ * written alongside the exported files, so the export can be verified without
+ * reading the files a second time.
+ */
+final class BulkFileExporter {
+
+    private static final Logger logger = Logger.getLogger(BulkFileExporter.class.getName());
+    private static final int BUFFER_SIZE = 1024 * 1024;
+    private static final int QUEUE_CAPACITY = 1000;
+    private static final ExportTask POISON_PILL = new ExportTask(null, null);
+    private static final String MANIFEST_HEADER = "Object ID,Source Path,Exported Path,Size,MD5,SHA-1"; //NON-NLS
+
+    private final int numberOfWriters;
+    private final File manifestFile;
+    private final BlockingQueue<ExportTask> exportQueue = new LinkedBlockingQueue<>(QUEUE_CAPACITY);
+    private final AtomicInteger filesExported = new AtomicInteger(0);
+    private BufferedWriter manifestWriter;
+    private ProgressHandle progress;
+    private Future<?> worker;
+
+    /**
+     * the results of the writer threads, checked while waiting for room in
+     * the queue so the export doesn't wait forever if they have all stopped
+     */
+    private final List<Future<Void>> writerResults = new ArrayList<>();
+
+    /**
+     * Constructs an exporter.
+     *
+     * @param manifestFile    the CSV file the manifest is written to
+     * @param numberOfWriters the number of threads that write files
+     */
+    BulkFileExporter(File manifestFile, int numberOfWriters) {
+        this.manifestFile = manifestFile;
+        this.numberOfWriters = Math.max(1, numberOfWriters);
+    }
+
+    /**
+     * A file or folder to export and the location to export it to.
+     */
+    static final class ExportTask {
+
+        private final AbstractFile source;
+        private final File destination;
+
+        ExportTask(AbstractFile source, File destination) {
+            this.source = source;
+            this.destination = destination;
+        }
+
+        AbstractFile getSource() {
+            return source;
+        }
+
+        File getDestination() {
+            return destination;
+        }
+    }
+
+    /**
+     * Exports the given files and folders, recursing into folders, and writes
+     * the manifest. Blocks until every queued file has been written.
+     *
+     * @param tasks    the files and folders to export
+     * @param progress progress bar handle to update, if available. null
+     *                 otherwise
+     * @param worker   the background task the export runs within, or null,
+     *                 used to handle cancellation
+     *
+     * @return the number of files exported
+     *
+     * @throws IOException          if the manifest could not be written
+     * @throws InterruptedException if the thread was interrupted while
+     *                              waiting for the writers
+     */
+    int export(List<ExportTask> tasks, ProgressHandle progress, Future<?> worker) throws IOException, InterruptedException {
+        this.progress = progress;
+        this.worker = worker;
+        writerResults.clear();
+        ExecutorService writers = Executors.newFixedThreadPool(numberOfWriters,
+                new ThreadFactoryBuilder().setNameFormat("bulk-file-export-%d").build()); //NON-NLS
+        try (BufferedWriter writer = Files.newBufferedWriter(manifestFile.toPath(), StandardCharsets.UTF_8)) {
+            manifestWriter = writer;
+            manifestWriter.write(MANIFEST_HEADER);
+            manifestWriter.newLine();
+
+            for (int i = 0; i < numberOfWriters; i++) {
+                writerResults.add(writers.submit(new FileWriterTask()));
+            }
+            try {
+                for (ExportTask task : tasks) {
+                    if (isCancelled()) {
+                        break;
+                    }
+                    enqueue(task.getSource(), task.getDestination());
+                }
+            } finally {
+                for (int i = 0; i < numberOfWriters; i++) {
+                    if (offer(POISON_PILL) == false) {
+                        break;
+                    }
+                }
+            }
+            for (Future<Void> result : writerResults) {
+                try {
+                    result.get();
+                } catch (ExecutionException ex) {
+                    logger.log(Level.SEVERE, "Error writing exported files", ex.getCause()); //NON-NLS
+                }
+            }
+        } finally {
+            writers.shutdownNow();
+            writers.awaitTermination(1, TimeUnit.MINUTES);
+        }
+        return filesExported.get();
+    }
+
+    /**
+     * Queues a file for export, or creates the destination folder and queues
+     * the children of a folder.
+     *
+     * @param source      the file or folder to export
+     * @param destination the location to export it to
+     *
+     * @throws InterruptedException if interrupted while waiting for room in
+     *                              the queue
+     * @throws IOException          if every writer thread has stopped
+     */
+    private void enqueue(AbstractFile source, File destination) throws InterruptedException, IOException {
+        if (source instanceof Directory || source instanceof VirtualDirectory) {
+            // don't extract . and .. directories
+            if (ContentUtils.isDotDirectory(source)) {
+                return;
+            }
+            destination.mkdir();
+            try {
+                for (Content child : source.getChildren()) {
+                    if (isCancelled()) {
+                        return;
+                    }
+                    if (child instanceof AbstractFile) {
+                        enqueue((AbstractFile) child, new File(destination, child.getName()));
+                    }
+                }
+            } catch (TskCoreException ex) {
+                logger.log(Level.SEVERE, "Trouble fetching children to extract.", ex); //NON-NLS
+            }
+        } else if (offer(new ExportTask(source, destination)) == false) {
+            throw new IOException("Every export writer thread has stopped"); //NON-NLS
+        }
+    }
+
+    /**
+     * Puts the given task in the export queue, waiting for room in it as long
+     * as any writer thread is still running.
+     *
+     * @return true if the task was queued, false if every writer has stopped
+     *
+     * @throws InterruptedException if interrupted while waiting for room in
+     *                              the queue
+     */
+    private boolean offer(ExportTask task) throws InterruptedException {
+        while (exportQueue.offer(task, 1, TimeUnit.SECONDS) == false) {
+            if (writerResults.stream().allMatch(Future::isDone)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isCancelled() {
+        return worker != null && worker.isCancelled();
+    }
+
+    /**
+     * Appends a row to the manifest. Fields are always quoted, since paths may
+     * contain commas.
+     */
+    private synchronized void writeManifestRow(AbstractFile source, File destination, long size, String md5, String sha1) throws IOException {
+        String sourcePath;
+        try {
+            sourcePath = source.getUniquePath();
+        } catch (TskCoreException ex) {
+            logger.log(Level.WARNING, "Could not get unique path of file " + source.getId(), ex); //NON-NLS
+            sourcePath = source.getName();
+        }
+        manifestWriter.write(Long.toString(source.getId()));
+        manifestWriter.write(',');
+        manifestWriter.write(quote(sourcePath));
+        manifestWriter.write(',');
+        manifestWriter.write(quote(destination.getAbsolutePath()));
+        manifestWriter.write(',');
+        manifestWriter.write(Long.toString(size));
+        manifestWriter.write(',');
+        manifestWriter.write(md5);
+        manifestWriter.write(',');
+        manifestWriter.write(sha1);
+        manifestWriter.newLine();
+    }
+
+    private static String quote(String field) {
+        return "\"" + field.replace("\"", "\"\"") + "\"";
+    }
+
+    /**
+     * Takes files off the export queue until it gets the poison pill. Each
+     * writer owns its buffer and digests, so nothing is allocated per file.
+     */
+    private final class FileWriterTask implements Callable<Void> {
+
+        @Override
+        public Void call() throws IOException, InterruptedException, NoSuchAlgorithmException {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            MessageDigest md5 = MessageDigest.getInstance("MD5"); //NON-NLS
+            MessageDigest sha1 = MessageDigest.getInstance("SHA-1"); //NON-NLS
+            while (true) {
+                ExportTask task = exportQueue.take();
+                if (task == POISON_PILL) {
+                    return null;
+                }
+                if (isCancelled()) {
+                    continue;
+                }
+                try {
+                    exportFile(task, buffer, md5, sha1);
+                } catch (IOException | RuntimeException ex) {
+                    logger.log(Level.SEVERE, "Trouble extracting file to " + task.getDestination().getAbsolutePath(), ex); //NON-NLS
+                }
+            }
+        }
+
+        private void exportFile(ExportTask task, byte[] buffer, MessageDigest md5, MessageDigest sha1) throws IOException {
+            AbstractFile source = task.getSource();
+            md5.reset();
+            sha1.reset();
+            long totalRead = 0;
+            boolean copied = false;
+            try {
+                try (InputStream in = new ReadContentInputStream(source);
+                        OutputStream out = new FileOutputStream(task.getDestination())) {
+                    int len;
+                    while ((len = in.read(buffer)) != -1) {
+                        if (isCancelled()) {
+                            return;
+                        }
+                        out.write(buffer, 0, len);
+                        md5.update(buffer, 0, len);
+                        sha1.update(buffer, 0, len);
+                        totalRead += len;
+                    }
+                }
+                copied = true;
+            } finally {
+                //don't leave a truncated copy that is not in the manifest
+                if (copied == false && task.getDestination().exists() && task.getDestination().delete() == false) {
+                    logger.log(Level.WARNING, "Could not delete partially exported file " + task.getDestination().getAbsolutePath()); //NON-NLS
+                }
+            }
+            writeManifestRow(source, task.getDestination(), totalRead,
+                    DatatypeConverter.printHexBinary(md5.digest()).toLowerCase(),
+                    DatatypeConverter.printHexBinary(sha1.digest()).toLowerCase());
+            int count = filesExported.incrementAndGet();
+            if (progress != null) {
+                progress.progress(NbBundle.getMessage(BulkFileExporter.class, "BulkFileExporter.progress.fileCount", count, source.getName()));
+            }
+        }
+    }
+}
@@ -21,9 +21,12 @@
 import java.awt.Component;
 import java.awt.event.ActionEvent;
 import java.io.File;
+import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Date;
 import java.util.Iterator;
+import java.util.List;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutionException;
 import java.util.logging.Level;
@@ -39,8 +42,8 @@
 import org.openide.util.Cancellable;
 import org.openide.util.Utilities;
 import org.sleuthkit.autopsy.casemodule.Case;
+import org.sleuthkit.autopsy.core.UserPreferences;
 import org.sleuthkit.autopsy.coreutils.MessageNotifyUtil;
-import org.sleuthkit.autopsy.datamodel.ContentUtils.ExtractFscContentVisitor;
 import org.sleuthkit.datamodel.AbstractFile;
 import org.sleuthkit.autopsy.coreutils.FileUtil;
 import org.sleuthkit.autopsy.datamodel.ContentUtils;
@@ -53,6 +56,7 @@
 public final class ExtractAction extends AbstractAction {
 
     private Logger logger = Logger.getLogger(ExtractAction.class.getName());
+    private static final String MANIFEST_FILE_PREFIX = "ExportManifest-"; //NON-NLS
 
     // This class is a singleton to support multi-selection of nodes, since 
     // org.openide.nodes.NodeOp.findActions(Node[] nodes) will only pick up an Action if every 
@@ -105,7 +109,7 @@ private void extractFile(ActionEvent e, AbstractFile selectedFile) {
         if (fileChooser.showSaveDialog((Component) e.getSource()) == JFileChooser.APPROVE_OPTION) {
             ArrayList<FileExtractionTask> fileExtractionTasks = new ArrayList<>();
             fileExtractionTasks.add(new FileExtractionTask(selectedFile, fileChooser.getSelectedFile()));
-            runExtractionTasks(e, fileExtractionTasks);
+            runExtractionTasks(e, fileExtractionTasks, fileChooser.getSelectedFile().getParentFile());
         }
     }
 
@@ -138,11 +142,20 @@ private void extractFiles(ActionEvent e, Collection<? extends AbstractFile> sele
                 // If there is an attribute name, change the ":". Otherwise the extracted file will be hidden
                 fileExtractionTasks.add(new FileExtractionTask(source, new File(destinationFolder, source.getId() + "-" + source.getName().replace(':', '_'))));
             }
-            runExtractionTasks(e, fileExtractionTasks);
+            runExtractionTasks(e, fileExtractionTasks, destinationFolder);
         }
     }
 
-    private void runExtractionTasks(ActionEvent e, ArrayList<FileExtractionTask> fileExtractionTasks) {
+    /**
+     * Verifies the destinations of the extraction tasks and starts extracting
+     * them in the background.
+     *
+     * @param e                   The action event.
+     * @param fileExtractionTasks The files and folders to extract.
+     * @param manifestFolder      The folder the export manifest is written
+     *                            to.
+     */
+    private void runExtractionTasks(ActionEvent e, ArrayList<FileExtractionTask> fileExtractionTasks, File manifestFolder) {
 
         // verify all of the sources and destinations are OK
         for (Iterator<FileExtractionTask> it = fileExtractionTasks.iterator(); it.hasNext();) {
@@ -179,7 +192,7 @@ private void runExtractionTasks(ActionEvent e, ArrayList<FileExtractionTask> fil
         // launch a thread to do the work
         if (!fileExtractionTasks.isEmpty()) {
             try {
-                FileExtracter extracter = new FileExtracter(fileExtractionTasks);
+                FileExtracter extracter = new FileExtracter(fileExtractionTasks, manifestFolder);
                 extracter.execute();
             } catch (Exception ex) {
                 logger.log(Level.WARNING, "Unable to start background file extraction thread", ex); //NON-NLS
@@ -209,9 +222,11 @@ private class FileExtracter extends SwingWorker<Object, Void> {
         private Logger logger = Logger.getLogger(FileExtracter.class.getName());
         private ProgressHandle progress;
         private ArrayList<FileExtractionTask> extractionTasks;
+        private final File manifestFolder;
 
-        FileExtracter(ArrayList<FileExtractionTask> extractionTasks) {
+        FileExtracter(ArrayList<FileExtractionTask> extractionTasks, File manifestFolder) {
             this.extractionTasks = extractionTasks;
+            this.manifestFolder = manifestFolder;
         }
 
         @Override
@@ -241,11 +256,15 @@ public boolean cancel() {
              * calculateProgressBarWorkUnits(task.source); }
              * progress.switchToDeterminate(workUnits);
              */
-            // Do the extraction tasks.
+            // Do the extraction tasks. Files are written by a pool of writer
+            // threads that also hash them for the export manifest.
+            List<BulkFileExporter.ExportTask> exportTasks = new ArrayList<>();
             for (FileExtractionTask task : this.extractionTasks) {
-                // @@@ Note, we are no longer passing in progress
-                ExtractFscContentVisitor.extract(task.source, task.destination, null, this);
+                exportTasks.add(new BulkFileExporter.ExportTask(task.source, task.destination));
             }
+            String manifestName = MANIFEST_FILE_PREFIX + new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date()) + ".csv"; //NON-NLS
+            BulkFileExporter exporter = new BulkFileExporter(new File(manifestFolder, manifestName), UserPreferences.numberOfFileExportThreads());
+            exporter.export(exportTasks, progress, this);
 
             return null;
         }
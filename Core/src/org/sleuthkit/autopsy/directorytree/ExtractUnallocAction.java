@@ -18,18 +18,25 @@
  */
 package org.sleuthkit.autopsy.directorytree;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import java.awt.Component;
 import java.awt.Frame;
 import java.awt.event.ActionEvent;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import javax.swing.AbstractAction;
 import javax.swing.JFileChooser;
@@ -185,8 +192,12 @@ private List<LayoutFile> getUnallocFiles(Content c) {
      */
     private class ExtractUnallocWorker extends SwingWorker<Integer, Integer> {
 
+        private static final int BUFFER_SIZE = 1024 * 1024;
+        private static final int MAX_WRITER_THREADS = 4;
+        private static final long PROGRESS_INTERVAL_MS = 500;
         private ProgressHandle progress;
-        private boolean canceled = false;
+        private volatile boolean canceled = false;
+        private final AtomicLong bytesWritten = new AtomicLong(0);
         private List<UnallocStruct> lus = new ArrayList<UnallocStruct>();
         private File currentlyProcessing;
         private int totalSizeinMegs;
@@ -227,73 +238,124 @@ private int toMb(long bytes) {
 
         @Override
         protected Integer doInBackground() {
-            try {
-                progress = ProgressHandleFactory.createHandle(
-                        NbBundle.getMessage(this.getClass(), "ExtractUnallocAction.progress.extractUnalloc.title"), new Cancellable() {
-                            @Override
-                            public boolean cancel() {
-                                logger.log(Level.INFO, "Canceling extraction of unallocated space"); //NON-NLS
-                                canceled = true;
-                                if (progress != null) {
-                                    progress.setDisplayName(NbBundle.getMessage(this.getClass(),
-                                                    "ExtractUnallocAction.progress.displayName.cancelling.text"));
-                                }
-                                return true;
-                            }
-                        });
-                int MAX_BYTES = 8192;
-                byte[] buf = new byte[MAX_BYTES];    //read 8kb at a time                         
-
-                //Begin the actual File IO
-                progress.start(totalSizeinMegs);
-                int kbs = 0; //Each completion of the while loop adds one to kbs. 16kb * 64 = 1mb. 
-                int mbs = 0; //Increments every 128th tick of  kbs
-                for (UnallocStruct u : this.lus) {
-                    currentlyProcessing = u.getFile();
-                    logger.log(Level.INFO, "Writing Unalloc file to " + currentlyProcessing.getPath()); //NON-NLS
-                    OutputStream dos = new FileOutputStream(currentlyProcessing);
-                    long bytes = 0;
-                    int i = 0;
-                    while (i < u.getLayouts().size() && bytes != u.getSizeInBytes()) {
-                        LayoutFile f = u.getLayouts().get(i);
-                        long offsetPerFile = 0L;
-                        int bytesRead;
-                        while (offsetPerFile != f.getSize() && !canceled) {
-                            if (++kbs % 128 == 0) {
-                                mbs++;
-                                progress.progress(NbBundle.getMessage(this.getClass(),
-                                        "ExtractUnallocAction.processing.counter.msg",
-                                        mbs, totalSizeinMegs), mbs - 1);
+            progress = ProgressHandleFactory.createHandle(
+                    NbBundle.getMessage(this.getClass(), "ExtractUnallocAction.progress.extractUnalloc.title"), new Cancellable() {
+                        @Override
+                        public boolean cancel() {
+                            logger.log(Level.INFO, "Canceling extraction of unallocated space"); //NON-NLS
+                            canceled = true;
+                            if (progress != null) {
+                                progress.setDisplayName(NbBundle.getMessage(this.getClass(),
+                                                "ExtractUnallocAction.progress.displayName.cancelling.text"));
                             }
-                            bytesRead = f.read(buf, offsetPerFile, MAX_BYTES);
-                            offsetPerFile += bytesRead;
-                            dos.write(buf, 0, bytesRead);
+                            return true;
                         }
-                        bytes += f.getSize();
-                        i++;
-                    }
-                    dos.flush();
-                    dos.close();
+                    });
 
-                    if (canceled) {
-                        u.getFile().delete();
-                        logger.log(Level.INFO, "Canceled extraction of " + u.getFileName() + " and deleted file"); //NON-NLS
-                    } else {
-                        logger.log(Level.INFO, "Finished writing unalloc file " + u.getFile().getPath()); //NON-NLS
-                    }
+            //Begin the actual File IO, one writer thread per volume
+            progress.start(totalSizeinMegs);
+            int numberOfWriters = Math.max(1, Math.min(lus.size(), MAX_WRITER_THREADS));
+            ExecutorService writers = Executors.newFixedThreadPool(numberOfWriters,
+                    new ThreadFactoryBuilder().setNameFormat("extract-unalloc-%d").build()); //NON-NLS
+            try {
+                List<Future<Void>> results = new ArrayList<>();
+                for (UnallocStruct u : this.lus) {
+                    results.add(writers.submit(() -> {
+                        writeUnallocFile(u);
+                        return null;
+                    }));
                 }
-                progress.finish();
-
-            } catch (IOException ioe) {
-                logger.log(Level.WARNING, "Could not create Unalloc File; error writing file", ioe); //NON-NLS
+                writers.shutdown();
+                long startTime = System.nanoTime();
+                while (!writers.awaitTermination(PROGRESS_INTERVAL_MS, TimeUnit.MILLISECONDS)) {
+                    updateProgress(startTime);
+                }
+                updateProgress(startTime);
+                for (Future<Void> result : results) {
+                    result.get();
+                }
+            } catch (InterruptedException ex) {
+                canceled = true;
+                writers.shutdownNow();
+                logger.log(Level.WARNING, "Interrupted while writing Unalloc Files", ex); //NON-NLS
                 return -1;
-            } catch (TskCoreException tce) {
-                logger.log(Level.WARNING, "Could not create Unalloc File; error getting image info", tce); //NON-NLS
+            } catch (ExecutionException ex) {
+                logger.log(Level.WARNING, "Could not create Unalloc File", ex.getCause()); //NON-NLS
                 return -1;
+            } finally {
+                progress.finish();
             }
             return 1;
         }
 
+        /**
+         * Writes the unallocated space of one volume to its Unalloc file. The
+         * file is preallocated to its final size and every LayoutFile is
+         * written at its own offset using large reads, so a short or failed
+         * read leaves a zero filled gap instead of shifting the data after it.
+         *
+         * @param u the volume to write
+         *
+         * @throws IOException      if the Unalloc file could not be written
+         * @throws TskCoreException if the unallocated space could not be read
+         */
+        private void writeUnallocFile(UnallocStruct u) throws IOException, TskCoreException {
+            File outputFile = u.getFile();
+            logger.log(Level.INFO, "Writing Unalloc file to " + outputFile.getPath()); //NON-NLS
+            byte[] buf = new byte[BUFFER_SIZE];
+            ByteBuffer byteBuffer = ByteBuffer.wrap(buf);
+            try (RandomAccessFile raf = new RandomAccessFile(outputFile, "rw"); //NON-NLS
+                    FileChannel channel = raf.getChannel()) {
+                raf.setLength(u.getSizeInBytes());
+                long fileStart = 0;
+                for (LayoutFile f : u.getLayouts()) {
+                    if (canceled) {
+                        break;
+                    }
+                    long offsetPerFile = 0L;
+                    while (offsetPerFile < f.getSize() && !canceled) {
+                        int bytesRead = f.read(buf, offsetPerFile, (int) Math.min(BUFFER_SIZE, f.getSize() - offsetPerFile));
+                        if (bytesRead <= 0) {
+                            logger.log(Level.WARNING, "Could not read unallocated file {0} at offset {1}, skipping the rest of it", new Object[]{f.getId(), offsetPerFile}); //NON-NLS
+                            break;
+                        }
+                        byteBuffer.clear();
+                        byteBuffer.limit(bytesRead);
+                        long position = fileStart + offsetPerFile;
+                        while (byteBuffer.hasRemaining()) {
+                            position += channel.write(byteBuffer, position);
+                        }
+                        offsetPerFile += bytesRead;
+                        bytesWritten.addAndGet(bytesRead);
+                    }
+                    fileStart += f.getSize();
+                }
+            }
+
+            if (canceled) {
+                outputFile.delete();
+                logger.log(Level.INFO, "Canceled extraction of " + u.getFileName() + " and deleted file"); //NON-NLS
+            } else {
+                logger.log(Level.INFO, "Finished writing unalloc file " + outputFile.getPath()); //NON-NLS
+            }
+        }
+
+        /**
+         * Updates the progress bar with the number of MBs written so far and
+         * the average throughput since the start of the extraction.
+         *
+         * @param startTime the value of System.nanoTime() when writing started
+         */
+        private void updateProgress(long startTime) {
+            long bytes = bytesWritten.get();
+            int mbs = toMb(bytes);
+            double seconds = (System.nanoTime() - startTime) / 1000000000.0;
+            long mbPerSecond = seconds > 0 ? Math.round(bytes / (1024.0 * 1024.0) / seconds) : 0;
+            progress.progress(NbBundle.getMessage(this.getClass(),
+                    "ExtractUnallocAction.processing.throughput.msg",
+                    mbs, totalSizeinMegs, mbPerSecond), Math.min(mbs, totalSizeinMegs));
+        }
+
         @Override
         protected void done() {
             if (isImage) {
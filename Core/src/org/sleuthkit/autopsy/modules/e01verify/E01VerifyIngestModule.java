@@ -18,8 +18,15 @@
  */
 package org.sleuthkit.autopsy.modules.e01verify;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import javax.xml.bind.DatatypeConverter;
 import org.openide.util.NbBundle;
@@ -44,12 +51,17 @@ public class E01VerifyIngestModule implements DataSourceIngestModule {
 
     private static final Logger logger = Logger.getLogger(E01VerifyIngestModule.class.getName());
     private static final long DEFAULT_CHUNK_SIZE = 32 * 1024;
+    private static final int CHUNKS_PER_READ = 32;
+    private static final int NUMBER_OF_BUFFERS = 4;
+    private static final ReadBuffer END_OF_DATA = new ReadBuffer(0);
     private static final IngestServices services = IngestServices.getInstance();
 
     private MessageDigest messageDigest;
+    private MessageDigest sha1Digest;
     private boolean verified = false;
     private boolean skipped = false;
     private String calculatedHash = "";
+    private String calculatedSha1 = "";
     private String storedHash = "";
     private IngestJobContext context;
 
@@ -62,6 +74,7 @@ public void startUp(IngestJobContext context) throws IngestModuleException {
         verified = false;
         storedHash = "";
         calculatedHash = "";
+        calculatedSha1 = "";
 
         try {
             messageDigest = MessageDigest.getInstance("MD5"); //NON-NLS
@@ -70,6 +83,13 @@ public void startUp(IngestJobContext context) throws IngestModuleException {
             throw new RuntimeException(
                     NbBundle.getMessage(this.getClass(), "EwfVerifyIngestModule.startUp.exception.failGetMd5"));
         }
+        try {
+            sha1Digest = MessageDigest.getInstance("SHA-1"); //NON-NLS
+        } catch (NoSuchAlgorithmException ex) {
+            logger.log(Level.WARNING, "Error getting sha1 algorithm", ex); //NON-NLS
+            throw new RuntimeException(
+                    NbBundle.getMessage(this.getClass(), "EwfVerifyIngestModule.startUp.exception.failGetSha1"));
+        }
     }
 
     @Override
@@ -122,40 +142,72 @@ public ProcessResult process(Content dataSource, DataSourceIngestModuleProgress
         }
 
         // Libewf uses a sector size of 64 times the sector size, which is the
-        // motivation for using it here.
+        // motivation for using it here. Several chunks are read at a time to
+        // keep the number of reads down.
         long chunkSize = 64 * img.getSsize();
         chunkSize = (chunkSize == 0) ? DEFAULT_CHUNK_SIZE : chunkSize;
-
-        int totalChunks = (int) Math.ceil(size / chunkSize);
-        logger.log(Level.INFO, "Total chunks = {0}", totalChunks); //NON-NLS
-        int read;
-
-        byte[] data;
-        statusHelper.switchToDeterminate(totalChunks);
-
-        // Read in byte size chunks and update the hash value with the data.
-        for (int i = 0; i < totalChunks; i++) {
-            if (context.dataSourceIngestIsCancelled()) {
-                return ProcessResult.OK;
-            }
-            data = new byte[(int) chunkSize];
-            try {
-                read = img.read(data, i * chunkSize, chunkSize);
-            } catch (TskCoreException ex) {
-                String msg = NbBundle.getMessage(this.getClass(),
-                        "EwfVerifyIngestModule.process.errReadImgAtChunk", imgName, i);
-                services.postMessage(IngestMessage.createMessage(MessageType.ERROR, E01VerifierModuleFactory.getModuleName(), msg));
-                logger.log(Level.SEVERE, msg, ex);
-                return ProcessResult.ERROR;
+        long readSize = chunkSize * CHUNKS_PER_READ;
+
+        int totalReads = (int) ((size + readSize - 1) / readSize);
+        logger.log(Level.INFO, "Total reads = {0}", totalReads); //NON-NLS
+        statusHelper.switchToDeterminate(totalReads);
+
+        // The image is read on this thread into a ring of reusable buffers
+        // while a second thread hashes the filled buffers, so reading and
+        // hashing overlap.
+        BlockingQueue<ReadBuffer> freeBuffers = new ArrayBlockingQueue<>(NUMBER_OF_BUFFERS);
+        BlockingQueue<ReadBuffer> filledBuffers = new ArrayBlockingQueue<>(NUMBER_OF_BUFFERS + 1);
+        for (int i = 0; i < NUMBER_OF_BUFFERS; i++) {
+            freeBuffers.add(new ReadBuffer((int) readSize));
+        }
+        ExecutorService hashExecutor = Executors.newSingleThreadExecutor(
+                new ThreadFactoryBuilder().setNameFormat("e01-verify-hash-%d").build()); //NON-NLS
+        try {
+            Future<Void> hashTask = hashExecutor.submit(() -> {
+                ReadBuffer buffer;
+                while ((buffer = filledBuffers.take()) != END_OF_DATA) {
+                    messageDigest.update(buffer.data, 0, buffer.length);
+                    sha1Digest.update(buffer.data, 0, buffer.length);
+                    freeBuffers.put(buffer);
+                }
+                return null;
+            });
+
+            // Read in byte size chunks and hand them to the hashing thread.
+            for (int i = 0; i < totalReads; i++) {
+                if (context.dataSourceIngestIsCancelled()) {
+                    return ProcessResult.OK;
+                }
+                ReadBuffer buffer = freeBuffers.take();
+                long offset = i * readSize;
+                try {
+                    buffer.length = Math.max(0, img.read(buffer.data, offset, Math.min(readSize, size - offset)));
+                } catch (TskCoreException ex) {
+                    String msg = NbBundle.getMessage(this.getClass(),
+                            "EwfVerifyIngestModule.process.errReadImgAtChunk", imgName, i);
+                    services.postMessage(IngestMessage.createMessage(MessageType.ERROR, E01VerifierModuleFactory.getModuleName(), msg));
+                    logger.log(Level.SEVERE, msg, ex);
+                    return ProcessResult.ERROR;
+                }
+                filledBuffers.put(buffer);
+                statusHelper.progress(i);
             }
-            messageDigest.update(data);
-            statusHelper.progress(i);
+            filledBuffers.put(END_OF_DATA);
+            hashTask.get();
+        } catch (InterruptedException | ExecutionException ex) {
+            String msg = NbBundle.getMessage(this.getClass(), "EwfVerifyIngestModule.process.errProcImg", imgName);
+            logger.log(Level.SEVERE, msg, ex);
+            return ProcessResult.ERROR;
+        } finally {
+            hashExecutor.shutdownNow();
         }
 
         // Finish generating the hash and get it as a string value
         calculatedHash = DatatypeConverter.printHexBinary(messageDigest.digest()).toLowerCase();
+        calculatedSha1 = DatatypeConverter.printHexBinary(sha1Digest.digest()).toLowerCase();
         verified = calculatedHash.equals(storedHash);
         logger.log(Level.INFO, "Hash calculated from {0}: {1}", new Object[]{imgName, calculatedHash}); //NON-NLS
+        logger.log(Level.INFO, "SHA-1 calculated from {0}: {1}", new Object[]{imgName, calculatedSha1}); //NON-NLS
 
         logger.log(Level.INFO, "complete() {0}", E01VerifierModuleFactory.getModuleName()); //NON-NLS
         String msg;
@@ -169,9 +221,24 @@ public ProcessResult process(Content dataSource, DataSourceIngestModuleProgress
         extra += NbBundle.getMessage(this.getClass(), "EwfVerifyIngestModule.shutDown.resultLi", msg);
         extra += NbBundle.getMessage(this.getClass(), "EwfVerifyIngestModule.shutDown.calcHashLi", calculatedHash);
         extra += NbBundle.getMessage(this.getClass(), "EwfVerifyIngestModule.shutDown.storedHashLi", storedHash);
+        extra += NbBundle.getMessage(this.getClass(), "EwfVerifyIngestModule.shutDown.calcSha1Li", calculatedSha1);
         services.postMessage(IngestMessage.createMessage(MessageType.INFO, E01VerifierModuleFactory.getModuleName(), imgName + msg, extra));
         logger.log(Level.INFO, "{0}{1}", new Object[]{imgName, msg});
 
         return ProcessResult.OK;
     }
+
+    /**
+     * A reusable buffer passed from the reading thread to the hashing thread,
+     * along with the number of bytes that were read into it.
+     */
+    private static final class ReadBuffer {
+
+        private final byte[] data;
+        private int length;
+
+        ReadBuffer(int size) {
+            this.data = new byte[size];
+        }
+    }
 }
@@ -18,13 +18,19 @@
  */
 package org.sleuthkit.autopsy.modules.embeddedfileextractor;
 
+import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.logging.Level;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipInputStream;
 import org.apache.poi.OldFileFormatException;
 import org.apache.poi.hslf.model.Picture;
 import org.apache.poi.hslf.usermodel.PictureData;
@@ -58,6 +64,7 @@ class ImageExtractor {
     private final IngestJobContext context;
     private String parentFileName;
     private final String UNKNOWN_NAME_PREFIX = "image_";
+    private static final int OOXML_READ_BUFFER_SIZE = 64 * 1024;
     private final FileTypeDetector fileTypeDetector;
 
     private String moduleDirRelative;
@@ -159,20 +166,16 @@ void extractImage(AbstractFile abstractFile) {
                 listOfExtractedImages = extractImagesFromDoc(abstractFile);
                 break;
             case DOCX:
-                listOfExtractedImages = extractImagesFromDocx(abstractFile);
+            case PPTX:
+            case XLSX:
+                listOfExtractedImages = extractImagesFromOOXML(abstractFile);
                 break;
             case PPT:
                 listOfExtractedImages = extractImagesFromPpt(abstractFile);
                 break;
-            case PPTX:
-                listOfExtractedImages = extractImagesFromPptx(abstractFile);
-                break;
             case XLS:
                 listOfExtractedImages = extractImagesFromXls(abstractFile);
                 break;
-            case XLSX:
-                listOfExtractedImages = extractImagesFromXlsx(abstractFile);
-                break;
             default:
                 break;
         }
@@ -197,6 +200,103 @@ void extractImage(AbstractFile abstractFile) {
         }
     }
 
+    /**
+     * Extract images from OOXML (docx, pptx, xlsx) format files by streaming
+     * the media parts directly out of the zip container. Falls back to the POI
+     * object model if the container can not be read as a zip file.
+     *
+     * @param af the file from which images are to be extracted.
+     *
+     * @return list of extracted images. Returns null in case no images were
+     *         extracted.
+     */
+    private List<ExtractedImage> extractImagesFromOOXML(AbstractFile af) {
+        String mediaFolder;
+        switch (abstractFileExtractionFormat) {
+            case DOCX:
+                mediaFolder = "word/media/"; //NON-NLS
+                break;
+            case PPTX:
+                mediaFolder = "ppt/media/"; //NON-NLS
+                break;
+            case XLSX:
+                mediaFolder = "xl/media/"; //NON-NLS
+                break;
+            default:
+                return null;
+        }
+        try {
+            return streamMediaParts(af, mediaFolder);
+        } catch (IOException ex) {
+            logger.log(Level.WARNING, NbBundle.getMessage(this.getClass(), "EmbeddedFileExtractorIngestModule.ImageExtractor.ooxmlContainer.stream.err", af.getName()), ex); //NON-NLS
+        }
+        switch (abstractFileExtractionFormat) {
+            case DOCX:
+                return extractImagesFromDocx(af);
+            case PPTX:
+                return extractImagesFromPptx(af);
+            case XLSX:
+                return extractImagesFromXlsx(af);
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Copies every part under the given media folder of an OOXML zip container
+     * to the module output folder. The parts are streamed from the container
+     * to disk, so neither the document model nor the picture bytes are ever
+     * held in memory.
+     *
+     * @param af          the file from which images are to be extracted.
+     * @param mediaFolder the folder inside the zip container that holds the
+     *                    media parts, e.g. "word/media/".
+     *
+     * @return list of extracted images. Returns null in case no images were
+     *         extracted.
+     *
+     * @throws IOException if the file could not be read as a zip container.
+     */
+    private List<ExtractedImage> streamMediaParts(AbstractFile af, String mediaFolder) throws IOException {
+        List<ExtractedImage> listOfExtractedImages = new ArrayList<>();
+        String outputFolderPath = null;
+        boolean isZipContainer = false;
+        try (ZipInputStream zis = new ZipInputStream(new BufferedInputStream(new ReadContentInputStream(af), OOXML_READ_BUFFER_SIZE))) {
+            ZipEntry entry;
+            while ((entry = zis.getNextEntry()) != null) {
+                isZipContainer = true;
+                String entryName = entry.getName();
+                if (entry.isDirectory() || !entryName.startsWith(mediaFolder)) {
+                    continue;
+                }
+                String fileName = entryName.substring(mediaFolder.length());
+                if (fileName.isEmpty() || fileName.contains("/")) {
+                    continue;
+                }
+                // the output folder is only created once the first image is found.
+                if (outputFolderPath == null) {
+                    outputFolderPath = getOutputFolderPath(this.parentFileName);
+                    if (outputFolderPath == null) {
+                        logger.log(Level.WARNING, NbBundle.getMessage(this.getClass(), "EmbeddedFileExtractorIngestModule.ImageExtractor.extractImageFrom.outputPath.exception.msg", af.getName()));
+                        return null;
+                    }
+                }
+                long size;
+                try {
+                    size = Files.copy(zis, Paths.get(outputFolderPath, fileName), StandardCopyOption.REPLACE_EXISTING);
+                } catch (IOException ex) {
+                    logger.log(Level.WARNING, "Could not write to the provided location: " + Paths.get(outputFolderPath, fileName), ex); //NON-NLS
+                    continue;
+                }
+                listOfExtractedImages.add(new ExtractedImage(fileName, getFileRelativePath(fileName), size, af));
+            }
+        }
+        if (!isZipContainer) {
+            throw new ZipException("No zip entries found in " + af.getName()); //NON-NLS
+        }
+        return listOfExtractedImages.isEmpty() ? null : listOfExtractedImages;
+    }
+
     /**
      * Extract images from doc format files.
      *
@@ -0,0 +1,89 @@
+/*
+ * Autopsy Forensic Browser
+ *
+ * Copyright 2015 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.autopsy.modules.hashdatabase;
+
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import javax.swing.JOptionPane;
+import org.openide.util.HelpCtx;
+import org.openide.util.NbBundle;
+import org.openide.util.actions.CallableSystemAction;
+import org.sleuthkit.autopsy.casemodule.Case;
+
+/**
+ * Lists every group of files in the case that share an MD5 hash. The files are
+ * shown in a single results window, ordered by hash so the copies of each file
+ * are next to each other.
+ */
+class HashDbDuplicatesAction extends CallableSystemAction {
+
+    static final String ACTION_NAME = NbBundle.getMessage(HashDbDuplicatesAction.class, "HashDbDuplicatesAction.actionName");
+    private static HashDbDuplicatesAction instance = null;
+
+    HashDbDuplicatesAction() {
+        super();
+        setEnabled(Case.isCaseOpen()); //no guarantee listener executed, so check here
+
+        Case.addPropertyChangeListener(new PropertyChangeListener() {
+
+            @Override
+            public void propertyChange(PropertyChangeEvent evt) {
+                if (evt.getPropertyName().equals(Case.Events.CURRENT_CASE.toString())) {
+                    setEnabled(evt.getNewValue() != null);
+                }
+            }
+        });
+    }
+
+    public static HashDbDuplicatesAction getDefault() {
+        if (instance == null) {
+            instance = new HashDbDuplicatesAction();
+        }
+        return instance;
+    }
+
+    @Override
+    public void performAction() {
+        // Make sure at least 1 file has an md5 hash
+        if (HashDbSearcher.countFilesMd5Hashed() > 0) {
+            HashDbSearchThread.forDuplicateGroups().execute();
+        } else {
+            JOptionPane.showMessageDialog(null,
+                    NbBundle.getMessage(this.getClass(),
+                            "HashDbSearchAction.dlgMsg.noFilesHaveMD5Calculated"),
+                    NbBundle.getMessage(this.getClass(), "HashDbSearchAction.dlgMsg.title"),
+                    JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
+    @Override
+    public String getName() {
+        return ACTION_NAME;
+    }
+
+    @Override
+    public HelpCtx getHelpCtx() {
+        return HelpCtx.DEFAULT_HELP;
+    }
+
+    @Override
+    protected boolean asynchronous() {
+        return false;
+    }
+}
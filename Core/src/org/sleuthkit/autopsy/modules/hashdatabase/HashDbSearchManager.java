@@ -40,9 +40,19 @@ class HashDbSearchManager {
 
     private Map<String, List<AbstractFile>> map;
     private List<AbstractFile> kvContents;
+    private final String title;
 
     public HashDbSearchManager(Map<String, List<AbstractFile>> map) {
+        this(map, NbBundle.getMessage(HashDbSearchManager.class, "HashDbSearchManager.MD5HashSearch"));
+    }
+
+    /**
+     * @param map   md5 hashes mapped to the files with that hash
+     * @param title the title of the results window
+     */
+    HashDbSearchManager(Map<String, List<AbstractFile>> map, String title) {
         this.map = map;
+        this.title = title;
         init();
     }
 
@@ -81,9 +91,9 @@ public void execute() {
                 rootNode = Node.EMPTY;
             }
 
-            final String pathText = NbBundle.getMessage(this.getClass(), "HashDbSearchManager.MD5HashSearch");
+            final String pathText = title;
             TopComponent searchResultWin = DataResultTopComponent.createInstance(
-                    NbBundle.getMessage(this.getClass(), "HashDbSearchManager.MD5HashSearch"),
+                    title,
                     pathText,
                     rootNode,
                     kvCollection.size());
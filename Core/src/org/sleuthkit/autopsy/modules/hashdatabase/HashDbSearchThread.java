@@ -40,6 +40,7 @@ class HashDbSearchThread extends SwingWorker<Object, Void> {
     private Map<String, List<AbstractFile>> map;
     private ArrayList<String> hashes = new ArrayList<>();
     private AbstractFile file;
+    private boolean findDuplicateGroups = false;
 
     HashDbSearchThread(AbstractFile file) {
         this.file = file;
@@ -50,6 +51,18 @@ class HashDbSearchThread extends SwingWorker<Object, Void> {
         this.hashes = hashes;
     }
 
+    /**
+     * Creates a search for every group of files in the case that share an MD5
+     * hash, rather than for a given list of hashes.
+     *
+     * @return the search thread
+     */
+    static HashDbSearchThread forDuplicateGroups() {
+        HashDbSearchThread thread = new HashDbSearchThread(new ArrayList<String>());
+        thread.findDuplicateGroups = true;
+        return thread;
+    }
+
     @Override
     protected Object doInBackground() throws Exception {
         logger.log(Level.INFO, "Starting background processing for file search by MD5 hash."); //NON-NLS
@@ -72,7 +85,11 @@ public boolean cancel() {
         progress.switchToIndeterminate();
 
         // Do the querying
-        map = HashDbSearcher.findFilesBymd5(hashes, progress, this);
+        if (findDuplicateGroups) {
+            map = HashDbSearcher.findDuplicateGroups(progress, this);
+        } else {
+            map = HashDbSearcher.findFilesBymd5(hashes, progress, this);
+        }
         logger.log(Level.INFO, "Done background processing"); //NON-NLS
 
         return null;
@@ -109,7 +126,9 @@ protected void done() {
                         return;
                     }
                 }
-                HashDbSearchManager man = new HashDbSearchManager(map);
+                HashDbSearchManager man = findDuplicateGroups
+                        ? new HashDbSearchManager(map, NbBundle.getMessage(this.getClass(), "HashDbSearchManager.duplicateFiles"))
+                        : new HashDbSearchManager(map);
                 man.execute();
             } else {
                 logger.log(Level.INFO, "File search by MD5 hash was canceled."); //NON-NLS
@@ -18,16 +18,24 @@
  */
 package org.sleuthkit.autopsy.modules.hashdatabase;
 
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.logging.Level;
 import javax.swing.SwingWorker;
 import org.netbeans.api.progress.ProgressHandle;
 import org.sleuthkit.autopsy.casemodule.Case;
+import org.sleuthkit.autopsy.coreutils.Logger;
 import org.sleuthkit.datamodel.AbstractFile;
 import org.sleuthkit.datamodel.FsContent;
 import org.sleuthkit.datamodel.SleuthkitCase;
+import org.sleuthkit.datamodel.SleuthkitCase.CaseDbQuery;
+import org.sleuthkit.datamodel.TskCoreException;
 
 /**
  * Searches by MD5 hash to find all files with the same hash, and subsequently
@@ -35,6 +43,13 @@
  */
 class HashDbSearcher {
 
+    private static final Logger logger = Logger.getLogger(HashDbSearcher.class.getName());
+
+    /**
+     * The maximum number of hashes looked up with a single query.
+     */
+    private static final int HASHES_PER_QUERY = 500;
+
     /**
      * Given a string hash value, find all files with that hash.
      *
@@ -50,47 +65,115 @@ static List<AbstractFile> findFilesByMd5(String md5Hash) {
 
     /**
      * Given a list of string hash values, returns a map of md5 hashes to the
-     * list of files hit.
+     * list of files hit. The hashes are looked up in batches, one query per
+     * batch, instead of one query per hash.
      *
      * @param md5Hash hash values to match files with
      *
      * @return a Map of md5 hashes mapped to the list of files hit
      */
     static Map<String, List<AbstractFile>> findFilesBymd5(List<String> md5Hash) {
-        Map<String, List<AbstractFile>> map = new LinkedHashMap<String, List<AbstractFile>>();
-        for (String md5 : md5Hash) {
-            List<AbstractFile> files = findFilesByMd5(md5);
-            if (!files.isEmpty()) {
-                map.put(md5, files);
-            }
+        Map<String, List<AbstractFile>> map = new LinkedHashMap<>();
+        for (int start = 0; start < md5Hash.size(); start += HASHES_PER_QUERY) {
+            findFilesBymd5Batch(md5Hash.subList(start, Math.min(start + HASHES_PER_QUERY, md5Hash.size())), map);
         }
         return map;
     }
 
     // Same as above, but with a given ProgressHandle to accumulate and StringWorker to check if cancelled
-
     static Map<String, List<AbstractFile>> findFilesBymd5(List<String> md5Hash, ProgressHandle progress, SwingWorker<Object, Void> worker) {
-        Map<String, List<AbstractFile>> map = new LinkedHashMap<String, List<AbstractFile>>();
+        Map<String, List<AbstractFile>> map = new LinkedHashMap<>();
         if (!worker.isCancelled()) {
             progress.switchToDeterminate(md5Hash.size());
-            int size = 0;
-            for (String md5 : md5Hash) {
+            for (int start = 0; start < md5Hash.size(); start += HASHES_PER_QUERY) {
                 if (worker.isCancelled()) {
                     break;
                 }
-                List<AbstractFile> files = findFilesByMd5(md5);
-                if (!files.isEmpty()) {
-                    map.put(md5, files);
-                }
-                size++;
+                int end = Math.min(start + HASHES_PER_QUERY, md5Hash.size());
+                findFilesBymd5Batch(md5Hash.subList(start, end), map);
                 if (!worker.isCancelled()) {
-                    progress.progress(size);
+                    progress.progress(end);
                 }
             }
         }
         return map;
     }
 
+    /**
+     * Looks up a batch of hashes with a single query and adds the hits to the
+     * map, in the order the hashes were given. Values that are not well formed
+     * MD5 hashes are skipped.
+     *
+     * @param md5Hashes hash values to match files with
+     * @param map       the map of md5 hashes to files to add the hits to
+     */
+    private static void findFilesBymd5Batch(List<String> md5Hashes, Map<String, List<AbstractFile>> map) {
+        List<String> keys = new ArrayList<>();
+        StringBuilder inClause = new StringBuilder();
+        for (String md5 : md5Hashes) {
+            if (md5 == null || !md5.matches("[a-fA-F0-9]{32}")) { //NON-NLS
+                continue;
+            }
+            keys.add(md5);
+            if (inClause.length() > 0) {
+                inClause.append(',');
+            }
+            inClause.append('\'').append(md5.toLowerCase()).append('\'');
+        }
+        if (keys.isEmpty()) {
+            return;
+        }
+        final SleuthkitCase skCase = Case.getCurrentCase().getSleuthkitCase();
+        Map<String, List<AbstractFile>> hits = new HashMap<>();
+        try {
+            //empty files all have the same hash, skip them as SleuthkitCase.findFilesByMd5 does
+            for (AbstractFile file : skCase.findAllFilesWhere("md5 IN (" + inClause + ") AND size > 0 ORDER BY obj_id")) { //NON-NLS
+                List<AbstractFile> files = hits.get(file.getMd5Hash().toLowerCase());
+                if (files == null) {
+                    files = new ArrayList<>();
+                    hits.put(file.getMd5Hash().toLowerCase(), files);
+                }
+                files.add(file);
+            }
+        } catch (TskCoreException ex) {
+            logger.log(Level.SEVERE, "Error finding files by md5 hash", ex); //NON-NLS
+            return;
+        }
+        for (String md5 : keys) {
+            List<AbstractFile> files = hits.get(md5.toLowerCase());
+            if (files != null) {
+                map.put(md5, files);
+            }
+        }
+    }
+
+    /**
+     * Finds every group of two or more non-empty files in the case that share
+     * an MD5 hash, from the hashes recorded by the hash lookup module. The
+     * shared hashes are found with a single query, and then their files are
+     * looked up in batches, so the search can be cancelled between batches.
+     *
+     * @param progress the progress handle to report the batches looked up to
+     * @param worker   the worker to check for cancellation
+     *
+     * @return a Map of md5 hashes mapped to the files with that hash, ordered
+     *         by hash. Only hashes shared by more than one file are included.
+     */
+    static Map<String, List<AbstractFile>> findDuplicateGroups(ProgressHandle progress, SwingWorker<Object, Void> worker) {
+        List<String> hashes = new ArrayList<>();
+        final SleuthkitCase skCase = Case.getCurrentCase().getSleuthkitCase();
+        try (CaseDbQuery dbQuery = skCase.executeQuery("SELECT md5 FROM tsk_files WHERE md5 IS NOT NULL AND md5 != '' AND size > 0 GROUP BY md5 HAVING COUNT(*) > 1 ORDER BY md5")) { //NON-NLS
+            ResultSet resultSet = dbQuery.getResultSet();
+            while (resultSet.next()) {
+                hashes.add(resultSet.getString("md5")); //NON-NLS
+            }
+        } catch (TskCoreException | SQLException ex) {
+            logger.log(Level.SEVERE, "Error finding duplicate files", ex); //NON-NLS
+            return new LinkedHashMap<>();
+        }
+        return findFilesBymd5(hashes, progress, worker);
+    }
+
     /**
      * Given a file, returns a list of all files with the same hash as the given
      * file.
@@ -71,6 +71,7 @@
 import org.sleuthkit.autopsy.events.ContentTagAddedEvent;
 import org.sleuthkit.autopsy.events.ContentTagDeletedEvent;
 import org.sleuthkit.autopsy.ingest.IngestManager;
+import org.sleuthkit.autopsy.ingest.ModuleDataEvent;
 import org.sleuthkit.autopsy.timeline.events.FilteredEventsModel;
 import org.sleuthkit.autopsy.timeline.events.db.EventsRepository;
 import org.sleuthkit.autopsy.timeline.events.type.EventType;
@@ -80,6 +81,7 @@
 import org.sleuthkit.autopsy.timeline.zooming.DescriptionLOD;
 import org.sleuthkit.autopsy.timeline.zooming.EventTypeZoomLevel;
 import org.sleuthkit.autopsy.timeline.zooming.ZoomParams;
+import org.sleuthkit.datamodel.BlackboardArtifact;
 import org.sleuthkit.datamodel.SleuthkitCase;
 import org.sleuthkit.datamodel.SleuthkitCase.CaseDbQuery;
 import org.sleuthkit.datamodel.TskCoreException;
@@ -274,45 +276,66 @@ boolean rebuildRepo() {
             }
         }
         LOGGER.log(Level.INFO, "Beginning generation of timeline"); // NON-NLS
-        try {
-            SwingUtilities.invokeLater(() -> {
-                if (isWindowOpen()) {
-                    mainFrame.close();
+        SwingUtilities.invokeLater(() -> {
+            if (isWindowOpen()) {
+                mainFrame.close();
+            }
+        });
+        final Boolean injestRunning = IngestManager.getInstance().isIngestRunning();
+        //TODO: verify this locking is correct? -jm
+        synchronized (eventsRepository) {
+            eventsRepository.rebuildRepository(() -> {
+
+                synchronized (eventsRepository) {
+                    //the high-water marks are recorded by the repository
+                    eventsRepository.recordWasIngestRunning(injestRunning);
                 }
+                synchronized (TimeLineController.this) {
+                    //TODO: this looks hacky.  what is going on? should this be an event?
+                    needsHistogramRebuild.set(true);
+                    needsHistogramRebuild.set(false);
+                    showWindow();
+                }
+
+                Platform.runLater(() -> {
+                    //TODO: should this be an event?
+                    newEventsFlag.set(false);
+                    historyManager.reset(filteredEvents.getRequestedZoomParamters().get());
+                    TimeLineController.this.showFullRange();
+                });
             });
-            final SleuthkitCase sleuthkitCase = Case.getCurrentCase().getSleuthkitCase();
-            final long lastObjId = sleuthkitCase.getLastObjectId();
-            final long lastArtfID = getCaseLastArtifactID(sleuthkitCase);
-            final Boolean injestRunning = IngestManager.getInstance().isIngestRunning();
-            //TODO: verify this locking is correct? -jm
-            synchronized (eventsRepository) {
-                eventsRepository.rebuildRepository(() -> {
-
-                    synchronized (eventsRepository) {
-                        eventsRepository.recordLastObjID(lastObjId);
-                        eventsRepository.recordLastArtifactID(lastArtfID);
+        }
+        return true;
+    }
+
+    /**
+     * add the events for files and artifacts added to the case since the repo
+     * was last built or updated, without rebuilding the whole repo.
+     */
+    void updateRepo() {
+        LOGGER.log(Level.INFO, "Beginning incremental update of timeline"); // NON-NLS
+        final Boolean injestRunning = IngestManager.getInstance().isIngestRunning();
+        synchronized (eventsRepository) {
+            eventsRepository.updateRepository(() -> {
+
+                synchronized (eventsRepository) {
+                    //an update can't fix events added during an earlier ingest, so never clear the flag here
+                    if (injestRunning) {
                         eventsRepository.recordWasIngestRunning(injestRunning);
                     }
-                    synchronized (TimeLineController.this) {
-                        //TODO: this looks hacky.  what is going on? should this be an event?
-                        needsHistogramRebuild.set(true);
-                        needsHistogramRebuild.set(false);
-                        showWindow();
-                    }
+                }
+                synchronized (TimeLineController.this) {
+                    needsHistogramRebuild.set(true);
+                    needsHistogramRebuild.set(false);
+                    showWindow();
+                }
 
-                    Platform.runLater(() -> {
-                        //TODO: should this be an event?
-                        newEventsFlag.set(false);
-                        historyManager.reset(filteredEvents.getRequestedZoomParamters().get());
-                        TimeLineController.this.showFullRange();
-                    });
+                Platform.runLater(() -> {
+                    newEventsFlag.set(false);
+                    TimeLineController.this.showFullRange();
                 });
-            }
-        } catch (TskCoreException ex) {
-            LOGGER.log(Level.SEVERE, "Error when generating timeline, ", ex); // NON-NLS
-            return false;
+            });
         }
-        return true;
     }
 
     public void showFullRange() {
@@ -327,10 +350,12 @@ synchronized public void closeTimeLine() {
             IngestManager.getInstance().removeIngestModuleEventListener(ingestModuleListener);
             IngestManager.getInstance().removeIngestJobEventListener(ingestJobListener);
             Case.removePropertyChangeListener(caseListener);
+            mainFrame.disposeVisualization();
             mainFrame.close();
             mainFrame.setVisible(false);
             mainFrame = null;
         }
+        eventsRepository.close();
     }
 
     /**
@@ -365,9 +390,9 @@ synchronized void openTimeLine() {
                 final SleuthkitCase sleuthkitCase = autoCase.getSleuthkitCase();
                 if (sleuthkitCase.getLastObjectId() != timeLineLastObjectId
                         || getCaseLastArtifactID(sleuthkitCase) != eventsRepository.getLastArtfactID()) {
-                    if (confirmOutOfDateRebuild()) {
-                        repoRebuilt = rebuildRepo();
-                    }
+                    //only add what is new, the UI is shown once the update is done
+                    updateRepo();
+                    repoRebuilt = true;
                 }
             }
 
@@ -752,8 +777,13 @@ public void propertyChange(PropertyChangeEvent evt) {
                     //ModuleContentEvent doesn't seem to provide any usefull information...
                     break;
                 case DATA_ADDED:
-//                    Collection<BlackboardArtifact> artifacts = ((ModuleDataEvent) evt.getOldValue()).getArtifacts();
-                    //new artifacts, insert them into db
+                    //new artifacts are inserted into the db by the incremental update when ingest finishes,
+                    //but hash set hits change the flags of existing events so apply them now.
+                    ModuleDataEvent dataEvent = (ModuleDataEvent) evt.getOldValue();
+                    if (dataEvent.getArtifactType() == BlackboardArtifact.ARTIFACT_TYPE.TSK_HASHSET_HIT
+                            && dataEvent.getArtifacts() != null) {
+                        filteredEvents.handleHashSetHitsAdded(dataEvent.getArtifacts());
+                    }
                     break;
                 case FILE_DONE:
 //                    Long fileID = (Long) evt.getOldValue();
@@ -774,12 +804,10 @@ public void propertyChange(PropertyChangeEvent evt) {
             switch (IngestManager.IngestJobEvent.valueOf(evt.getPropertyName())) {
                 case CANCELLED:
                 case COMPLETED:
-                    //if we are doing incremental updates, drop this
+                    //add the events for the files and artifacts from this job
                     SwingUtilities.invokeLater(() -> {
                         if (isWindowOpen()) {
-                            if (confirmOutOfDateRebuild()) {
-                                rebuildRepo();
-                            }
+                            updateRepo();
                         }
                     });
             }
@@ -805,14 +833,9 @@ public void propertyChange(PropertyChangeEvent evt) {
                     filteredEvents.handleTagDeleted((ContentTagDeletedEvent) evt);
                     break;
                 case DATA_SOURCE_ADDED:
-//                    Content content = (Content) evt.getNewValue();
-                    //if we are doing incremental updates, drop this
-                    SwingUtilities.invokeLater(() -> {
-                        if (isWindowOpen()) {
-                            if (confirmOutOfDateRebuild()) {
-                                rebuildRepo();
-                            }
-                        }
+                    //the new events are added when the ingest job for the data source finishes
+                    Platform.runLater(() -> {
+                        newEventsFlag.set(true);
                     });
                     break;
                 case CURRENT_CASE:
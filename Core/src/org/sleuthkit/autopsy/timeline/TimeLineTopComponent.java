@@ -151,6 +151,14 @@ synchronized private void customizeComponents() {
         });
     }
 
+    /**
+     * Dispose the visualization of the timeline, when its controller is
+     * closed.
+     */
+    void disposeVisualization() {
+        visualizationPanel.disposeVisualization();
+    }
+
     @Override
     public synchronized void setController(TimeLineController controller) {
         this.controller = controller;
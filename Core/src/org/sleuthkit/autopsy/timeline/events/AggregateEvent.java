@@ -25,6 +25,7 @@
 import org.joda.time.Interval;
 import org.sleuthkit.autopsy.timeline.events.type.EventType;
 import org.sleuthkit.autopsy.timeline.utils.IntervalUtils;
+import org.sleuthkit.autopsy.timeline.utils.SortedLongSet;
 import org.sleuthkit.autopsy.timeline.zooming.DescriptionLOD;
 
 /**
@@ -132,9 +133,9 @@ public static AggregateEvent merge(AggregateEvent aggEvent1, AggregateEvent ag2)
         if (!aggEvent1.getDescription().equals(ag2.getDescription())) {
             throw new IllegalArgumentException("aggregate events are not compatible they have different descriptions");
         }
-        Sets.SetView<Long> idsUnion = Sets.union(aggEvent1.getEventIDs(), ag2.getEventIDs());
-        Sets.SetView<Long> hashHitsUnion = Sets.union(aggEvent1.getEventIDsWithHashHits(), ag2.getEventIDsWithHashHits());
-        Sets.SetView<Long> taggedUnion = Sets.union(aggEvent1.getEventIDsWithTags(), ag2.getEventIDsWithTags());
+        Set<Long> idsUnion = SortedLongSet.union(aggEvent1.eventIDs, ag2.eventIDs);
+        Set<Long> hashHitsUnion = SortedLongSet.union(aggEvent1.hashHits, ag2.hashHits);
+        Set<Long> taggedUnion = SortedLongSet.union(aggEvent1.tagged, ag2.tagged);
 
         return new AggregateEvent(IntervalUtils.span(aggEvent1.span, ag2.span), aggEvent1.getType(), idsUnion, hashHitsUnion, taggedUnion, aggEvent1.getDescription(), aggEvent1.lod);
     }
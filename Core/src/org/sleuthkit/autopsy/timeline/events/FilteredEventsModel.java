@@ -20,6 +20,7 @@
 
 import com.google.common.eventbus.EventBus;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -50,10 +51,12 @@
 import org.sleuthkit.autopsy.timeline.filters.RootFilter;
 import org.sleuthkit.autopsy.timeline.filters.TextFilter;
 import org.sleuthkit.autopsy.timeline.filters.TypeFilter;
+import org.sleuthkit.autopsy.timeline.utils.RangeDivisionInfo;
 import org.sleuthkit.autopsy.timeline.zooming.DescriptionLOD;
 import org.sleuthkit.autopsy.timeline.zooming.EventTypeZoomLevel;
 import org.sleuthkit.autopsy.timeline.zooming.ZoomParams;
 import org.sleuthkit.datamodel.BlackboardArtifact;
+import org.sleuthkit.datamodel.BlackboardAttribute;
 import org.sleuthkit.datamodel.Content;
 import org.sleuthkit.datamodel.TskCoreException;
 
@@ -219,6 +222,30 @@ public Map<EventType, Long> getEventCounts(Interval timeRange) {
         return repo.countEvents(new ZoomParams(timeRange, typeZoom, filter, null));
     }
 
+    /**
+     * return the number of events that pass the requested filter, per period
+     * and per event type, for the given time range divided into periods as
+     * determined by {@link RangeDivisionInfo}.
+     *
+     * NOTE: this method does not change the requested time range
+     *
+     * @param timeRange the time range to count events in
+     *
+     * @return a map from the start of each period (in millis from unix epoch)
+     *         to the counts of events of each type in that period. Periods
+     *         without events are not included.
+     */
+    public Map<Long, Map<EventType, Long>> getEventCountsByPeriod(Interval timeRange) {
+
+        final RootFilter filter;
+        final EventTypeZoomLevel typeZoom;
+        synchronized (this) {
+            filter = requestedFilter.get();
+            typeZoom = requestedTypeZoom.get();
+        }
+        return repo.countEventsByPeriod(new ZoomParams(timeRange, typeZoom, filter, null));
+    }
+
     /**
      * @return a read only view of the time range requested via
      *         {@link #requestTimeRange(org.joda.time.Interval)}
@@ -357,6 +384,28 @@ synchronized public void handleTagDeleted(ContentTagDeletedEvent e) {
         }
     }
 
+    /**
+     * mark the events of the files in the given hash set hit artifacts as
+     * hash hits.
+     *
+     * @param hashSetHits TSK_HASHSET_HIT artifacts posted by ingest
+     */
+    synchronized public void handleHashSetHitsAdded(Collection<BlackboardArtifact> hashSetHits) {
+        for (BlackboardArtifact artifact : hashSetHits) {
+            try {
+                Set<String> hashSetNames = new HashSet<>();
+                for (BlackboardAttribute attribute : artifact.getAttributes()) {
+                    if (attribute.getAttributeTypeID() == BlackboardAttribute.ATTRIBUTE_TYPE.TSK_SET_NAME.getTypeID()) {
+                        hashSetNames.add(attribute.getValueString());
+                    }
+                }
+                repo.markEventsHashHit(artifact.getObjectID(), hashSetNames);
+            } catch (TskCoreException ex) {
+                LOGGER.log(Level.SEVERE, "unable to get hash set names of hash set hit.", ex);
+            }
+        }
+    }
+
     synchronized public void registerForEvents(Object o) {
         eventbus.register(o);
     }
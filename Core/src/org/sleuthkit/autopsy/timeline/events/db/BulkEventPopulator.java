@@ -0,0 +1,626 @@
+/*
+ * Autopsy Forensic Browser
+ *
+ * Copyright 2015 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.autopsy.timeline.events.db;
+
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.SetMultimap;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.stream.Collectors;
+import org.apache.commons.lang3.StringUtils;
+import org.openide.util.NbBundle;
+import org.sleuthkit.autopsy.coreutils.Logger;
+import org.sleuthkit.autopsy.timeline.ProgressWindow;
+import org.sleuthkit.autopsy.timeline.events.type.ArtifactEventType;
+import org.sleuthkit.autopsy.timeline.events.type.EventType;
+import org.sleuthkit.autopsy.timeline.events.type.FileSystemTypes;
+import org.sleuthkit.autopsy.timeline.events.type.RootEventType;
+import org.sleuthkit.datamodel.AbstractFile;
+import org.sleuthkit.datamodel.BlackboardArtifact;
+import org.sleuthkit.datamodel.BlackboardAttribute;
+import org.sleuthkit.datamodel.SleuthkitCase;
+import org.sleuthkit.datamodel.SleuthkitCase.CaseDbQuery;
+import org.sleuthkit.datamodel.TskCoreException;
+import org.sleuthkit.datamodel.TskData;
+
+/**
+ * Populates the events database with set based queries against the case
+ * database, rather than looking up each file and artifact individually.
+ *
+ * Only files and artifacts with ids above the given minimums (and at or below
+ * the last ids in the case when population starts) are added, so the same
+ * class does both full rebuilds and incremental updates. An incremental update
+ * also catches the existing events up with hash set hits and tags that were
+ * added since they were inserted.
+ *
+ * Hash set hits, tagged files and artifacts, and the parent of every object
+ * (used to find data sources) are each loaded up front with a single query.
+ * Then one producer thread pages through tsk_files by object id and another
+ * walks the artifact based event types, both turning rows into
+ * {@link EventDB.PendingEvent}s. The calling thread drains the batches and
+ * inserts them with batched prepared statements in the given transaction.
+ */
+final class BulkEventPopulator {
+
+    private static final Logger LOGGER = Logger.getLogger(BulkEventPopulator.class.getName());
+
+    /**
+     * number of tsk_files rows read per query, so we don't hold the case
+     * database lock for the whole scan
+     */
+    private static final int FILES_PER_PAGE = 10000;
+
+    /**
+     * number of events handed to the database per batch
+     */
+    private static final int EVENTS_PER_BATCH = 1000;
+
+    private static final int QUEUE_CAPACITY = 16;
+
+    private final SleuthkitCase skCase;
+    private final EventDB eventDB;
+    private final long minObjID;
+    private final long minArtifactID;
+    private long maxObjID;
+    private long maxArtifactID;
+    private final Consumer<ProgressWindow.ProgressUpdate> progressListener;
+    private final Future<?> worker;
+
+    private final BlockingQueue<List<EventDB.PendingEvent>> eventQueue = new LinkedBlockingQueue<>(QUEUE_CAPACITY);
+    private final AtomicInteger itemsProcessed = new AtomicInteger(0);
+
+    private final SetMultimap<Long, String> hashSetsByObjID = HashMultimap.create();
+    private final Set<Long> taggedObjIDs = new HashSet<>();
+    private final Set<Long> taggedArtifactIDs = new HashSet<>();
+    private final Set<Long> retaggedEventIDs = new HashSet<>();
+    private final Set<Long> newHashHitEventIDs = new HashSet<>();
+    private DataSourceResolver dataSourceResolver;
+
+    /**
+     * @param skCase           the case database to read files and artifacts
+     *                         from
+     * @param eventDB          the events database to populate
+     * @param minObjID         only files with ids greater than this are added,
+     *                         -1 to add all files
+     * @param minArtifactID    only artifacts with ids greater than this are
+     *                         added, -1 to add all artifacts
+     * @param progressListener receives progress updates
+     * @param worker           the background task the population runs
+     *                         within, used to handle cancellation
+     */
+    BulkEventPopulator(SleuthkitCase skCase, EventDB eventDB, long minObjID, long minArtifactID, Consumer<ProgressWindow.ProgressUpdate> progressListener, Future<?> worker) {
+        this.skCase = skCase;
+        this.eventDB = eventDB;
+        this.minObjID = minObjID;
+        this.minArtifactID = minArtifactID;
+        this.progressListener = progressListener;
+        this.worker = worker;
+    }
+
+    /**
+     * @return the highest file id that events were added for, the high-water
+     *         mark to use as the minimum in the next incremental update
+     */
+    long getMaxObjID() {
+        return maxObjID;
+    }
+
+    /**
+     * @return the highest artifact id that events were added for, the
+     *         high-water mark to use as the minimum in the next incremental
+     *         update
+     */
+    long getMaxArtifactID() {
+        return maxArtifactID;
+    }
+
+    /**
+     * @return the ids of the events that were already in the database and
+     *         whose tagged flag was changed by an incremental update
+     */
+    Set<Long> getRetaggedEventIDs() {
+        return Collections.unmodifiableSet(retaggedEventIDs);
+    }
+
+    /**
+     * @return the ids of the events that were already in the database and
+     *         were marked as hash set hits by an incremental update
+     */
+    Set<Long> getNewHashHitEventIDs() {
+        return Collections.unmodifiableSet(newHashHitEventIDs);
+    }
+
+    private boolean isIncremental() {
+        return minObjID >= 0;
+    }
+
+    /**
+     * Insert events for the files and artifacts in the case.
+     *
+     * @param trans the transaction to insert events in
+     *
+     * @throws TskCoreException     if the lookup tables could not be loaded
+     *                              from the case database, or reading the
+     *                              files or artifacts failed. The events
+     *                              inserted so far should then be rolled
+     *                              back.
+     * @throws InterruptedException if the calling thread was interrupted
+     *                              while waiting for events
+     */
+    @NbBundle.Messages({"progressWindow.msg.loadingCaseData=loading hash set hits, tags and data sources",
+        "progressWindow.msg.populatingEvents=populating events"})
+    void populate(EventDB.EventTransaction trans) throws TskCoreException, InterruptedException {
+        progressListener.accept(new ProgressWindow.ProgressUpdate(0, -1, Bundle.progressWindow_msg_loadingCaseData(), ""));
+        //fix the upper bounds first, anything added while we run is left for the next update
+        maxObjID = skCase.getLastObjectId();
+        maxArtifactID = count("SELECT MAX(artifact_id) AS count FROM blackboard_artifacts"); // NON-NLS
+        loadHashSetHits();
+        loadTags();
+        dataSourceResolver = new DataSourceResolver();
+
+        final List<ArtifactEventType> artifactTypes = RootEventType.allTypes.stream()
+                .filter(ArtifactEventType.class::isInstance)
+                .map(ArtifactEventType.class::cast)
+                .collect(Collectors.toList());
+        final int total = (int) Math.min(Integer.MAX_VALUE, countFiles() + countArtifacts(artifactTypes));
+
+        ExecutorService producers = Executors.newFixedThreadPool(2,
+                new ThreadFactoryBuilder().setNameFormat("timeline-populate-%d").build()); //NON-NLS
+        try {
+            List<Future<Void>> results = new ArrayList<>();
+            results.add(producers.submit(new FileEventProducer()));
+            results.add(producers.submit(new ArtifactEventProducer(artifactTypes)));
+
+            while (isCancelled() == false) {
+                checkProducers(results);
+                boolean producersDone = results.stream().allMatch(Future::isDone);
+                List<EventDB.PendingEvent> batch = eventQueue.poll(100, TimeUnit.MILLISECONDS);
+                if (batch != null) {
+                    eventDB.insertEvents(batch, trans);
+                    progressListener.accept(new ProgressWindow.ProgressUpdate(itemsProcessed.get(), total, Bundle.progressWindow_msg_populatingEvents(), ""));
+                } else if (producersDone) {
+                    break;
+                }
+            }
+
+            checkProducers(results);
+        } finally {
+            producers.shutdownNow();
+            producers.awaitTermination(1, TimeUnit.MINUTES);
+        }
+
+        if (isIncremental() && isCancelled() == false) {
+            updateExistingEvents();
+        }
+    }
+
+    /**
+     * Rethrow the failure of any producer that has finished, so that a
+     * partial population is not committed.
+     *
+     * @throws TskCoreException if a producer failed
+     */
+    private void checkProducers(List<Future<Void>> results) throws TskCoreException, InterruptedException {
+        for (Future<Void> result : results) {
+            if (result.isDone() && result.isCancelled() == false) {
+                try {
+                    result.get();
+                } catch (ExecutionException ex) {
+                    throw new TskCoreException("Error reading events from the case database.", ex.getCause()); // NON-NLS
+                }
+            }
+        }
+    }
+
+    /**
+     * bring the tagged and hash hit flags of events that were already in the
+     * database up to date.
+     */
+    @NbBundle.Messages({"progressWindow.msg.updatingExistingEvents=updating tags and hash set hits of existing events"})
+    private void updateExistingEvents() throws TskCoreException {
+        progressListener.accept(new ProgressWindow.ProgressUpdate(0, -1, Bundle.progressWindow_msg_updatingExistingEvents(), ""));
+        //tags can be removed as well as added, so reset all the flags
+        retaggedEventIDs.addAll(eventDB.updateTaggedFlags(taggedObjIDs, taggedArtifactIDs));
+
+        //hash set hits found since the last update, on files that already had events
+        for (Long objID : getObjIDsWithNewHashSetHits()) {
+            newHashHitEventIDs.addAll(eventDB.markEventsHashHit(objID, hashSetsByObjID.get(objID)));
+        }
+    }
+
+    @SuppressWarnings("deprecation")
+    private Set<Long> getObjIDsWithNewHashSetHits() throws TskCoreException {
+        Set<Long> objIDs = new HashSet<>();
+        String query = "SELECT DISTINCT obj_id FROM blackboard_artifacts" // NON-NLS
+                + " WHERE artifact_type_id = " + BlackboardArtifact.ARTIFACT_TYPE.TSK_HASHSET_HIT.getTypeID() // NON-NLS
+                + " AND artifact_id > " + minArtifactID + " AND artifact_id <= " + maxArtifactID // NON-NLS
+                + " AND obj_id <= " + minObjID; // NON-NLS
+        try (CaseDbQuery dbQuery = skCase.executeQuery(query)) {
+            ResultSet rs = dbQuery.getResultSet();
+            while (rs.next()) {
+                objIDs.add(rs.getLong("obj_id")); // NON-NLS
+            }
+        } catch (SQLException ex) {
+            throw new TskCoreException("Error loading new hash set hits.", ex); // NON-NLS
+        }
+        return objIDs;
+    }
+
+    private boolean isCancelled() {
+        return worker != null && worker.isCancelled();
+    }
+
+    /**
+     * load the names of the hash sets each file has hits in
+     */
+    @SuppressWarnings("deprecation")
+    private void loadHashSetHits() throws TskCoreException {
+        String query = "SELECT blackboard_artifacts.obj_id, blackboard_attributes.value_text " // NON-NLS
+                + "FROM blackboard_artifacts, blackboard_attributes " // NON-NLS
+                + "WHERE blackboard_artifacts.artifact_type_id = " + BlackboardArtifact.ARTIFACT_TYPE.TSK_HASHSET_HIT.getTypeID() // NON-NLS
+                + " AND blackboard_attributes.artifact_id = blackboard_artifacts.artifact_id" // NON-NLS
+                + " AND blackboard_attributes.attribute_type_id = " + BlackboardAttribute.ATTRIBUTE_TYPE.TSK_SET_NAME.getTypeID(); // NON-NLS
+        try (CaseDbQuery dbQuery = skCase.executeQuery(query)) {
+            ResultSet rs = dbQuery.getResultSet();
+            while (rs.next()) {
+                hashSetsByObjID.put(rs.getLong("obj_id"), rs.getString("value_text")); // NON-NLS
+            }
+        } catch (SQLException ex) {
+            throw new TskCoreException("Error loading hash set hits.", ex); // NON-NLS
+        }
+    }
+
+    /**
+     * load the ids of all tagged files and artifacts
+     */
+    @SuppressWarnings("deprecation")
+    private void loadTags() throws TskCoreException {
+        try (CaseDbQuery dbQuery = skCase.executeQuery("SELECT DISTINCT obj_id FROM content_tags")) { // NON-NLS
+            ResultSet rs = dbQuery.getResultSet();
+            while (rs.next()) {
+                taggedObjIDs.add(rs.getLong("obj_id")); // NON-NLS
+            }
+        } catch (SQLException ex) {
+            throw new TskCoreException("Error loading tagged files.", ex); // NON-NLS
+        }
+        try (CaseDbQuery dbQuery = skCase.executeQuery("SELECT DISTINCT artifact_id FROM blackboard_artifact_tags")) { // NON-NLS
+            ResultSet rs = dbQuery.getResultSet();
+            while (rs.next()) {
+                taggedArtifactIDs.add(rs.getLong("artifact_id")); // NON-NLS
+            }
+        } catch (SQLException ex) {
+            throw new TskCoreException("Error loading tagged artifacts.", ex); // NON-NLS
+        }
+    }
+
+    private long countFiles() throws TskCoreException {
+        return count("SELECT COUNT(*) AS count FROM tsk_files WHERE name != '.' AND name != '..'" // NON-NLS
+                + " AND obj_id > " + minObjID + " AND obj_id <= " + maxObjID); // NON-NLS
+    }
+
+    private long countArtifacts(List<ArtifactEventType> artifactTypes) throws TskCoreException {
+        if (artifactTypes.isEmpty()) {
+            return 0;
+        }
+        return count("SELECT COUNT(*) AS count FROM blackboard_artifacts WHERE artifact_type_id IN (" // NON-NLS
+                + artifactTypes.stream()
+                .map(type -> Integer.toString(type.getArtifactType().getTypeID()))
+                .collect(Collectors.joining(",")) + ")" // NON-NLS
+                + " AND artifact_id > " + minArtifactID + " AND artifact_id <= " + maxArtifactID); // NON-NLS
+    }
+
+    @SuppressWarnings("deprecation")
+    private long count(String query) throws TskCoreException {
+        try (CaseDbQuery dbQuery = skCase.executeQuery(query)) {
+            ResultSet rs = dbQuery.getResultSet();
+            return rs.next() ? rs.getLong("count") : 0; // NON-NLS
+        } catch (SQLException ex) {
+            throw new TskCoreException("Error executing count query.", ex); // NON-NLS
+        }
+    }
+
+    /**
+     * queue a batch of events for insertion, if it is not empty
+     *
+     * @return a new, empty, batch
+     */
+    private List<EventDB.PendingEvent> queueBatch(List<EventDB.PendingEvent> batch) throws InterruptedException {
+        if (batch.isEmpty() == false) {
+            eventQueue.put(batch);
+            return new ArrayList<>(EVENTS_PER_BATCH);
+        }
+        return batch;
+    }
+
+    /**
+     * Pages through tsk_files in object id order and creates the mac time
+     * events for each file.
+     */
+    private final class FileEventProducer implements Callable<Void> {
+
+        /**
+         * map from file system object id to the part of the unique path that
+         * comes before the parent path of files in that file system
+         */
+        private final Map<Long, String> uniquePathPrefixes = new HashMap<>();
+
+        @Override
+        @SuppressWarnings("deprecation")
+        public Void call() throws TskCoreException, InterruptedException {
+            long lastObjID = minObjID;
+            List<EventDB.PendingEvent> batch = new ArrayList<>(EVENTS_PER_BATCH);
+            boolean morePages = true;
+            while (morePages && isCancelled() == false) {
+                morePages = false;
+                String query = "SELECT obj_id, fs_obj_id, name, parent_path, atime, mtime, ctime, crtime, known FROM tsk_files " // NON-NLS
+                        + "WHERE obj_id > " + lastObjID + " AND obj_id <= " + maxObjID + " AND name != '.' AND name != '..' " // NON-NLS
+                        + "ORDER BY obj_id LIMIT " + FILES_PER_PAGE; // NON-NLS
+                try (CaseDbQuery dbQuery = skCase.executeQuery(query)) {
+                    ResultSet rs = dbQuery.getResultSet();
+                    while (rs.next()) {
+                        morePages = true;
+                        lastObjID = rs.getLong("obj_id"); // NON-NLS
+                        addFileEvents(rs, lastObjID, batch);
+                        itemsProcessed.incrementAndGet();
+                        if (batch.size() >= EVENTS_PER_BATCH) {
+                            batch = queueBatch(batch);
+                        }
+                    }
+                } catch (SQLException ex) {
+                    throw new TskCoreException("Error reading files for timeline.", ex); // NON-NLS
+                }
+            }
+            queueBatch(batch);
+            return null;
+        }
+
+        private void addFileEvents(ResultSet rs, long fID, List<EventDB.PendingEvent> batch) throws SQLException {
+            //TODO: This is broken for logical files? fix -jm
+            //TODO: logical files don't necessarily have valid timestamps, so ... -jm
+            final String parentPath = StringUtils.defaultString(rs.getString("parent_path")); // NON-NLS
+            final String name = rs.getString("name"); // NON-NLS
+            long fsObjID = rs.getLong("fs_obj_id"); // NON-NLS
+            final String uniquePath;
+            try {
+                uniquePath = getUniquePath(fID, rs.wasNull() ? null : fsObjID, parentPath, name);
+            } catch (TskCoreException ex) {
+                LOGGER.log(Level.WARNING, "failed to insert mac event for file : " + fID, ex); // NON-NLS
+                return;
+            }
+            final long datasourceID = dataSourceResolver.getDataSourceID(fID);
+            String datasourceName = StringUtils.substringBefore(StringUtils.stripStart(uniquePath, "/"), parentPath);
+            String rootFolder = StringUtils.substringBetween(parentPath, "/", "/");
+            String shortDesc = datasourceName + "/" + StringUtils.defaultIfBlank(rootFolder, "");
+            String medD = datasourceName + parentPath;
+            final TskData.FileKnown known = TskData.FileKnown.valueOf(rs.getByte("known")); // NON-NLS
+            Set<String> hashSets = hashSetsByObjID.get(fID);
+            boolean tagged = taggedObjIDs.contains(fID);
+
+            //insert it into the db if time is > 0  => time is legitimate (drops logical files)
+            addFileEvent(rs.getLong("atime"), FileSystemTypes.FILE_ACCESSED, datasourceID, fID, uniquePath, medD, shortDesc, known, hashSets, tagged, batch); // NON-NLS
+            addFileEvent(rs.getLong("mtime"), FileSystemTypes.FILE_MODIFIED, datasourceID, fID, uniquePath, medD, shortDesc, known, hashSets, tagged, batch); // NON-NLS
+            addFileEvent(rs.getLong("ctime"), FileSystemTypes.FILE_CHANGED, datasourceID, fID, uniquePath, medD, shortDesc, known, hashSets, tagged, batch); // NON-NLS
+            addFileEvent(rs.getLong("crtime"), FileSystemTypes.FILE_CREATED, datasourceID, fID, uniquePath, medD, shortDesc, known, hashSets, tagged, batch); // NON-NLS
+        }
+
+        private void addFileEvent(long time, EventType type, long datasourceID, long fID,
+                String uniquePath, String medD, String shortDesc, TskData.FileKnown known,
+                Set<String> hashSets, boolean tagged, List<EventDB.PendingEvent> batch) {
+            if (time > 0) {
+                batch.add(new EventDB.PendingEvent(time, type, datasourceID, fID, null, uniquePath, medD, shortDesc, known, hashSets, tagged));
+            }
+        }
+
+        /**
+         * Get the unique path of a file. For files in a file system the part
+         * of the unique path in front of the parent path is the same for every
+         * file, so it is looked up once per file system. Other files (carved,
+         * derived and local files) are looked up individually.
+         */
+        private String getUniquePath(long fID, Long fsObjID, String parentPath, String name) throws TskCoreException {
+            if (fsObjID != null) {
+                String prefix = uniquePathPrefixes.get(fsObjID);
+                if (prefix != null) {
+                    return prefix + parentPath + name;
+                }
+            }
+            AbstractFile f = skCase.getAbstractFileById(fID);
+            if (f == null) {
+                throw new TskCoreException("Failed to get data for file : " + fID); // NON-NLS
+            }
+            final String uniquePath = f.getUniquePath();
+            if (fsObjID != null && uniquePath.endsWith(parentPath + name)) {
+                uniquePathPrefixes.put(fsObjID, StringUtils.removeEnd(uniquePath, parentPath + name));
+            }
+            return uniquePath;
+        }
+    }
+
+    /**
+     * Creates the events for each of the artifact based event types.
+     */
+    private final class ArtifactEventProducer implements Callable<Void> {
+
+        private final List<ArtifactEventType> artifactTypes;
+
+        ArtifactEventProducer(List<ArtifactEventType> artifactTypes) {
+            this.artifactTypes = artifactTypes;
+        }
+
+        @Override
+        @SuppressWarnings("deprecation")
+        public Void call() throws TskCoreException, InterruptedException {
+            List<EventDB.PendingEvent> batch = new ArrayList<>(EVENTS_PER_BATCH);
+            //TODO: use (not-yet existing api) to grab all artifacts with timestamps, rather than the hardcoded lists in EventType -jm
+            for (ArtifactEventType type : artifactTypes) {
+                if (isCancelled()) {
+                    break;
+                }
+                //get all the blackboard artifacts corresponding to the given event sub_type
+                for (BlackboardArtifact bbart : skCase.getMatchingArtifacts("WHERE blackboard_artifacts.artifact_type_id = " + type.getArtifactType().getTypeID() // NON-NLS
+                        + " AND blackboard_artifacts.artifact_id > " + minArtifactID // NON-NLS
+                        + " AND blackboard_artifacts.artifact_id <= " + maxArtifactID)) { // NON-NLS
+                    if (isCancelled()) {
+                        break;
+                    }
+                    //for each artifact, extract the relevant information for the descriptions
+                    ArtifactEventType.AttributeEventDescription eventDescription = ArtifactEventType.AttributeEventDescription.buildEventDescription(type, bbart);
+
+                    if (eventDescription != null && eventDescription.getTime() > 0L) {  //insert it into the db if time is > 0  => time is legitimate
+                        final long objID = bbart.getObjectID();
+                        batch.add(new EventDB.PendingEvent(eventDescription.getTime(), type,
+                                dataSourceResolver.getDataSourceID(objID), objID, bbart.getArtifactID(),
+                                eventDescription.getFullDescription(), eventDescription.getMedDescription(), eventDescription.getShortDescription(),
+                                null, hashSetsByObjID.get(objID), taggedArtifactIDs.contains(bbart.getArtifactID())));
+                    }
+                    itemsProcessed.incrementAndGet();
+                    if (batch.size() >= EVENTS_PER_BATCH) {
+                        batch = queueBatch(batch);
+                    }
+                }
+            }
+            queueBatch(batch);
+            return null;
+        }
+    }
+
+    /**
+     * Finds the data source of objects using the parent ids of all the objects
+     * in the case, loaded with one query in object id order. Parents are
+     * always added to the case before their children, so the data source of
+     * each object's parent is known by the time the object is read.
+     *
+     * Rather than the data source of every object, only the runs of
+     * consecutive object ids with the same data source are kept: objects are
+     * mostly added one data source at a time, so there are few runs even in
+     * cases with tens of millions of objects.
+     */
+    private final class DataSourceResolver {
+
+        /**
+         * the first object id of each run, in increasing order
+         */
+        private long[] runStarts = new long[64];
+
+        /**
+         * the data source of the objects in each run, 0 if it is not known
+         */
+        private long[] runDataSources = new long[64];
+
+        private int runCount = 0;
+
+        /**
+         * the highest object id that was loaded, later objects are looked up
+         * individually
+         */
+        private long lastLoadedObjID = 0;
+
+        @SuppressWarnings("deprecation")
+        DataSourceResolver() throws TskCoreException {
+            try (CaseDbQuery dbQuery = skCase.executeQuery("SELECT obj_id, par_obj_id FROM tsk_objects ORDER BY obj_id")) { // NON-NLS
+                ResultSet rs = dbQuery.getResultSet();
+                while (rs.next()) {
+                    final long objID = rs.getLong("obj_id"); // NON-NLS
+                    final long parentID = rs.getLong("par_obj_id"); //null parent is read as 0 // NON-NLS
+                    final long dataSourceID;
+                    if (parentID == 0) {
+                        dataSourceID = objID;
+                    } else if (parentID < objID) {
+                        dataSourceID = findLoaded(parentID);
+                    } else {
+                        //not expected, leave it to be looked up individually
+                        dataSourceID = 0;
+                    }
+                    addObject(objID, dataSourceID);
+                    lastLoadedObjID = objID;
+                }
+            } catch (SQLException ex) {
+                throw new TskCoreException("Error loading object parents.", ex); // NON-NLS
+            }
+        }
+
+        /**
+         * extend the last run with the given object, or start a new run if
+         * its data source is different.
+         */
+        private void addObject(long objID, long dataSourceID) {
+            if (runCount > 0 && runDataSources[runCount - 1] == dataSourceID) {
+                return;
+            }
+            if (runCount == runStarts.length) {
+                runStarts = Arrays.copyOf(runStarts, runCount * 2);
+                runDataSources = Arrays.copyOf(runDataSources, runCount * 2);
+            }
+            runStarts[runCount] = objID;
+            runDataSources[runCount] = dataSourceID;
+            runCount++;
+        }
+
+        /**
+         * @return the data source of the run the given loaded object is in,
+         *         or 0 if it is not known.
+         */
+        private long findLoaded(long objID) {
+            int index = Arrays.binarySearch(runStarts, 0, runCount, objID);
+            if (index < 0) {
+                //the run that starts before the object
+                index = -index - 2;
+            }
+            return index < 0 ? 0 : runDataSources[index];
+        }
+
+        synchronized long getDataSourceID(long objID) {
+            if (objID <= 0 || objID > lastLoadedObjID) {
+                //added after we loaded the parents
+                return lookUpDataSourceID(objID);
+            }
+            final long dataSourceID = findLoaded(objID);
+            return dataSourceID == 0 ? lookUpDataSourceID(objID) : dataSourceID;
+        }
+
+        private long lookUpDataSourceID(long objID) {
+            try {
+                return skCase.getContentById(objID).getDataSource().getId();
+            } catch (TskCoreException ex) {
+                LOGGER.log(Level.WARNING, "Failed to get data source of object " + objID, ex); // NON-NLS
+                return objID;
+            }
+        }
+    }
+}
@@ -0,0 +1,720 @@
+/*
+ * Autopsy Forensic Browser
+ *
+ * Copyright 2015 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.autopsy.timeline.events.db;
+
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.SetMultimap;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.IntPredicate;
+import java.util.logging.Level;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import javax.annotation.concurrent.Immutable;
+import org.apache.commons.lang3.StringUtils;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.joda.time.Interval;
+import org.sleuthkit.autopsy.coreutils.Logger;
+import org.sleuthkit.autopsy.timeline.TimeLineController;
+import org.sleuthkit.autopsy.timeline.events.AggregateEvent;
+import org.sleuthkit.autopsy.timeline.events.type.BaseTypes;
+import org.sleuthkit.autopsy.timeline.events.type.EventType;
+import org.sleuthkit.autopsy.timeline.events.type.RootEventType;
+import org.sleuthkit.autopsy.timeline.filters.AbstractFilter;
+import org.sleuthkit.autopsy.timeline.filters.DataSourceFilter;
+import org.sleuthkit.autopsy.timeline.filters.DataSourcesFilter;
+import org.sleuthkit.autopsy.timeline.filters.Filter;
+import org.sleuthkit.autopsy.timeline.filters.HashHitsFilter;
+import org.sleuthkit.autopsy.timeline.filters.HashSetFilter;
+import org.sleuthkit.autopsy.timeline.filters.HideKnownFilter;
+import org.sleuthkit.autopsy.timeline.filters.IntersectionFilter;
+import org.sleuthkit.autopsy.timeline.filters.RootFilter;
+import org.sleuthkit.autopsy.timeline.filters.TextFilter;
+import org.sleuthkit.autopsy.timeline.filters.TypeFilter;
+import org.sleuthkit.autopsy.timeline.filters.UnionFilter;
+import org.sleuthkit.autopsy.timeline.utils.RangeDivisionInfo;
+import org.sleuthkit.autopsy.timeline.utils.SortedLongSet;
+import org.sleuthkit.autopsy.timeline.zooming.DescriptionLOD;
+import org.sleuthkit.autopsy.timeline.zooming.EventTypeZoomLevel;
+import org.sleuthkit.autopsy.timeline.zooming.TimeUnits;
+import org.sleuthkit.autopsy.timeline.zooming.ZoomParams;
+import org.sleuthkit.datamodel.TskData;
+
+/**
+ * An in-memory, column oriented copy of the events table, that answers the
+ * same counting and aggregating queries as the {@link EventDB} without going
+ * to SQLite.
+ *
+ * Each column is a primitive array indexed by row, and the rows are sorted by
+ * time, so the events in a time range are a contiguous slice of the arrays,
+ * found with a binary search. Filters are compiled to predicates on row
+ * numbers and evaluated in a scan of the slice, in parallel for large slices.
+ * The descriptions are dictionary encoded: each distinct description is kept
+ * once and the rows hold its index, so a text filter is tested once per
+ * distinct description rather than once per row. The tagged and hash hit flags
+ * are bitsets, with one more bitset of rows per hash set.
+ *
+ * A store is immutable. Changes to the tags or hash hits make a new store that
+ * shares the unchanged columns, so queries running on the old one are not
+ * affected. The SQLite database remains the durable copy: a store can be
+ * dropped and loaded from it again at any time.
+ */
+@Immutable
+final class EventColumnStore {
+
+    private static final Logger LOGGER = Logger.getLogger(EventColumnStore.class.getName());
+
+    private static final String COUNT_EVENTS_SQL = "select count(*) as count, total(hash_hit != 0) as hash_hits from events"; // NON-NLS
+
+    /**
+     * the number and total length of the distinct descriptions, which are the
+     * entries of the description dictionary
+     */
+    private static final String COUNT_DESCRIPTIONS_SQL = "select count(*) as count, total(length(description)) as length from" // NON-NLS
+            + " (select full_description as description from events union select med_description from events" // NON-NLS
+            + " union select short_description from events)"; // NON-NLS
+
+    private static final String LOAD_EVENTS_SQL = "select event_id, time, sub_type, base_type, datasource_id, known_state, tagged, hash_hit," // NON-NLS
+            + " full_description, med_description, short_description from events order by time, event_id"; // NON-NLS
+
+    private static final String LOAD_HASH_SET_HITS_SQL = "select event_id, hash_set_id from hash_set_hits"; // NON-NLS
+
+    /**
+     * rough number of bytes of heap used per event, for deciding if a case is
+     * too big to load
+     */
+    private static final long BYTES_PER_EVENT = 64;
+
+    /**
+     * rough number of bytes of heap used per distinct description, not
+     * counting its characters: the String and its char array, and the entry,
+     * table slot, and boxed code in the dictionary used while loading.
+     */
+    private static final long BYTES_PER_DESCRIPTION = 112;
+
+    /**
+     * rough number of bytes of heap used per event with hash hits, by the
+     * entry, table slot, and boxed id and row in the map from event id to row
+     * used while loading
+     */
+    private static final long BYTES_PER_HASH_HIT = 72;
+
+    /**
+     * slices with fewer rows than this are scanned on the calling thread
+     */
+    private static final int PARALLEL_SCAN_THRESHOLD = 1 << 16;
+
+    private static final byte KNOWN = TskData.FileKnown.KNOWN.getFileKnownValue();
+
+    private final int size;
+
+    private final long[] eventIDs;
+
+    /**
+     * in seconds from unix epoch, ascending
+     */
+    private final long[] times;
+
+    /**
+     * index into {@link RootEventType#allTypes}
+     */
+    private final int[] subTypes;
+
+    /**
+     * ordinal of {@link BaseTypes}
+     */
+    private final byte[] baseTypes;
+
+    /**
+     * index into {@link #dataSourceIDs}
+     */
+    private final int[] dataSources;
+    private final long[] dataSourceIDs;
+
+    private final byte[] knownStates;
+
+    /**
+     * indices into {@link #descriptions}
+     */
+    private final int[] fullDescriptions;
+    private final int[] medDescriptions;
+    private final int[] shortDescriptions;
+    private final String[] descriptions;
+
+    private final BitSet tagged;
+    private final BitSet hashHits;
+
+    /**
+     * map from hash set id to the rows of the events that are hits in that
+     * hash set
+     */
+    private final Map<Long, BitSet> hashSetHits;
+
+    private EventColumnStore(int size, long[] eventIDs, long[] times, int[] subTypes, byte[] baseTypes, int[] dataSources, long[] dataSourceIDs, byte[] knownStates,
+            int[] fullDescriptions, int[] medDescriptions, int[] shortDescriptions, String[] descriptions,
+            BitSet tagged, BitSet hashHits, Map<Long, BitSet> hashSetHits) {
+        this.size = size;
+        this.eventIDs = eventIDs;
+        this.times = times;
+        this.subTypes = subTypes;
+        this.baseTypes = baseTypes;
+        this.dataSources = dataSources;
+        this.dataSourceIDs = dataSourceIDs;
+        this.knownStates = knownStates;
+        this.fullDescriptions = fullDescriptions;
+        this.medDescriptions = medDescriptions;
+        this.shortDescriptions = shortDescriptions;
+        this.descriptions = descriptions;
+        this.tagged = tagged;
+        this.hashHits = hashHits;
+        this.hashSetHits = hashSetHits;
+    }
+
+    /**
+     * a copy of the given store with new tagged and hash hit columns
+     */
+    private EventColumnStore(EventColumnStore store, BitSet tagged, BitSet hashHits, Map<Long, BitSet> hashSetHits) {
+        this(store.size, store.eventIDs, store.times, store.subTypes, store.baseTypes, store.dataSources, store.dataSourceIDs, store.knownStates,
+                store.fullDescriptions, store.medDescriptions, store.shortDescriptions, store.descriptions,
+                tagged, hashHits, hashSetHits);
+    }
+
+    /**
+     * Load all the events in the database into a new store. All the queries
+     * are made in one read transaction, so the store is a consistent snapshot
+     * of the database.
+     *
+     * @param connection a connection to the events database, that is not used
+     *                   by any other thread until this returns
+     *
+     * @return the new store, or null if there are too many events to fit in
+     *         the available memory.
+     *
+     * @throws SQLException
+     */
+    static EventColumnStore load(Connection connection) throws SQLException {
+        final boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try (Statement stmt = connection.createStatement()) {
+            int count = 0;
+            long hashHitCount = 0;
+            try (ResultSet rs = stmt.executeQuery(COUNT_EVENTS_SQL)) {
+                if (rs.next()) {
+                    count = rs.getInt("count"); // NON-NLS
+                    hashHitCount = rs.getLong("hash_hits"); // NON-NLS
+                }
+            }
+            long descriptionBytes;
+            try (ResultSet rs = stmt.executeQuery(COUNT_DESCRIPTIONS_SQL)) {
+                //java chars are two bytes
+                descriptionBytes = rs.next() ? rs.getLong("count") * BYTES_PER_DESCRIPTION + 2 * rs.getLong("length") : 0; // NON-NLS
+            }
+            final Runtime runtime = Runtime.getRuntime();
+            final long estimatedBytes = count * BYTES_PER_EVENT + hashHitCount * BYTES_PER_HASH_HIT + descriptionBytes;
+            if (estimatedBytes > runtime.maxMemory() / 4) {
+                LOGGER.log(Level.WARNING, "Not loading {0} timeline events into memory, they would use about {1} of the {2} bytes available.", new Object[]{count, estimatedBytes, runtime.maxMemory()}); // NON-NLS
+                return null;
+            }
+
+            long[] eventIDs = new long[count];
+            long[] times = new long[count];
+            int[] subTypes = new int[count];
+            byte[] baseTypes = new byte[count];
+            int[] dataSources = new int[count];
+            byte[] knownStates = new byte[count];
+            int[] fullDescriptions = new int[count];
+            int[] medDescriptions = new int[count];
+            int[] shortDescriptions = new int[count];
+            BitSet tagged = new BitSet(count);
+            BitSet hashHits = new BitSet(count);
+            Map<Long, Integer> dataSourceCodes = new HashMap<>();
+            Map<String, Integer> descriptionCodes = new HashMap<>();
+            //map from event id to row, for just the events with hash hits
+            Map<Long, Integer> hashHitRows = new HashMap<>();
+
+            int row = 0;
+            try (ResultSet rs = stmt.executeQuery(LOAD_EVENTS_SQL)) {
+                //the count and the rows are read in the same transaction, so they agree
+                while (rs.next() && row < count) {
+                    eventIDs[row] = rs.getLong("event_id"); // NON-NLS
+                    times[row] = rs.getLong("time"); // NON-NLS
+                    subTypes[row] = rs.getInt("sub_type"); // NON-NLS
+                    baseTypes[row] = (byte) rs.getInt("base_type"); // NON-NLS
+                    dataSources[row] = dataSourceCodes.computeIfAbsent(rs.getLong("datasource_id"), id -> dataSourceCodes.size()); // NON-NLS
+                    knownStates[row] = rs.getByte("known_state"); // NON-NLS
+                    fullDescriptions[row] = descriptionCodes.computeIfAbsent(rs.getString("full_description"), descr -> descriptionCodes.size()); // NON-NLS
+                    medDescriptions[row] = descriptionCodes.computeIfAbsent(rs.getString("med_description"), descr -> descriptionCodes.size()); // NON-NLS
+                    shortDescriptions[row] = descriptionCodes.computeIfAbsent(rs.getString("short_description"), descr -> descriptionCodes.size()); // NON-NLS
+                    if (rs.getInt("tagged") != 0) { // NON-NLS
+                        tagged.set(row);
+                    }
+                    if (rs.getInt("hash_hit") != 0) { // NON-NLS
+                        hashHits.set(row);
+                        hashHitRows.put(eventIDs[row], row);
+                    }
+                    row++;
+                }
+            }
+
+            Map<Long, BitSet> hashSetHits = new HashMap<>();
+            try (ResultSet rs = stmt.executeQuery(LOAD_HASH_SET_HITS_SQL)) {
+                while (rs.next()) {
+                    Integer hitRow = hashHitRows.get(rs.getLong("event_id")); // NON-NLS
+                    if (hitRow != null) {
+                        hashSetHits.computeIfAbsent(rs.getLong("hash_set_id"), id -> new BitSet()).set(hitRow); // NON-NLS
+                    }
+                }
+            }
+
+            long[] dataSourceIDs = new long[dataSourceCodes.size()];
+            dataSourceCodes.forEach((id, code) -> dataSourceIDs[code] = id);
+            String[] descriptions = new String[descriptionCodes.size()];
+            descriptionCodes.forEach((descr, code) -> descriptions[code] = descr);
+
+            return new EventColumnStore(row, eventIDs, times, subTypes, baseTypes, dataSources, dataSourceIDs, knownStates,
+                    fullDescriptions, medDescriptions, shortDescriptions, descriptions,
+                    tagged, hashHits, hashSetHits);
+        } finally {
+            //end the read transaction
+            connection.rollback();
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    /**
+     * @return the number of events in this store
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * @param updatedEventIDs the ids of the events whose tagged state changed
+     * @param isTagged        the new tagged state of the events
+     *
+     * @return a copy of this store with the tagged flag of the given events
+     *         set to the given state
+     */
+    EventColumnStore withTagged(Set<Long> updatedEventIDs, boolean isTagged) {
+        BitSet newTagged = (BitSet) tagged.clone();
+        for (int row : findRows(updatedEventIDs)) {
+            newTagged.set(row, isTagged);
+        }
+        return new EventColumnStore(this, newTagged, hashHits, hashSetHits);
+    }
+
+    /**
+     * @param updatedEventIDs the ids of the events that are new hash hits
+     * @param hashSetIDs      the ids of the hash sets the events are hits in
+     *
+     * @return a copy of this store with the given events marked as hits in
+     *         the given hash sets
+     */
+    EventColumnStore withHashHits(Set<Long> updatedEventIDs, Set<Long> hashSetIDs) {
+        final int[] rows = findRows(updatedEventIDs);
+        BitSet newHashHits = (BitSet) hashHits.clone();
+        Map<Long, BitSet> newHashSetHits = new HashMap<>(hashSetHits);
+        for (Long hashSetID : hashSetIDs) {
+            BitSet oldHits = hashSetHits.get(hashSetID);
+            newHashSetHits.put(hashSetID, (oldHits == null) ? new BitSet() : (BitSet) oldHits.clone());
+        }
+        for (int row : rows) {
+            newHashHits.set(row);
+            for (Long hashSetID : hashSetIDs) {
+                newHashSetHits.get(hashSetID).set(row);
+            }
+        }
+        return new EventColumnStore(this, tagged, newHashHits, newHashSetHits);
+    }
+
+    /**
+     * the equivalent of {@link EventDB#countEventsByType(ZoomParams)}
+     */
+    Map<EventType, Long> countEventsByType(ZoomParams params) {
+        if (params.getTimeRange() == null) {
+            return Collections.emptyMap();
+        }
+        long start = params.getTimeRange().getStartMillis() / 1000;
+        long end = params.getTimeRange().getEndMillis() / 1000;
+        if (start == end) {
+            end++;
+        }
+        final boolean useSubTypes = (params.getTypeZoomLevel() == EventTypeZoomLevel.SUB_TYPE);
+        return toTypeMap(countByType(lowerBound(start), lowerBound(end), compile(params.getFilter()), useSubTypes), useSubTypes);
+    }
+
+    /**
+     * the equivalent of {@link EventDB#countEventsByPeriod(ZoomParams)}
+     */
+    Map<Long, Map<EventType, Long>> countEventsByPeriod(ZoomParams params) {
+        if (params.getTimeRange() == null) {
+            return Collections.emptyMap();
+        }
+        RangeDivisionInfo rangeInfo = RangeDivisionInfo.getRangeDivisionInfo(params.getTimeRange());
+        final boolean useSubTypes = (params.getTypeZoomLevel() == EventTypeZoomLevel.SUB_TYPE);
+        final IntPredicate filter = compile(params.getFilter());
+
+        return getPeriodSlices(rangeInfo.getLowerBound() / 1000, rangeInfo.getUpperBound() / 1000, rangeInfo.getPeriodSize())
+                .parallelStream()
+                .map(slice -> new PeriodCounts(slice.periodStart, toTypeMap(countByType(slice.from, slice.to, filter, useSubTypes), useSubTypes)))
+                .filter(periodCounts -> periodCounts.counts.isEmpty() == false)
+                .collect(Collectors.toMap(periodCounts -> periodCounts.periodStart, periodCounts -> periodCounts.counts));
+    }
+
+    /**
+     * the equivalent of {@link EventDB#getAggregatedEvents(ZoomParams)}
+     */
+    List<AggregateEvent> getAggregatedEvents(ZoomParams params) {
+        final Interval timeRange = params.getTimeRange();
+        final DescriptionLOD lod = params.getDescrLOD();
+        final boolean useSubTypes = (params.getTypeZoomLevel() == EventTypeZoomLevel.SUB_TYPE);
+        final int[] descriptionColumn = getDescriptionColumn(lod);
+        final IntPredicate filter = compile(params.getFilter());
+
+        RangeDivisionInfo rangeInfo = RangeDivisionInfo.getRangeDivisionInfo(timeRange);
+        long start = timeRange.getStartMillis() / 1000;
+        long end = timeRange.getEndMillis() / 1000;
+        if (start == end) {
+            end++;
+        }
+
+        //group the events in each period by type and description, like the group by of the sql query
+        List<AggregateEvent> perPeriodAggregates = getPeriodSlices(start, end, rangeInfo.getPeriodSize())
+                .parallelStream()
+                .flatMap(slice -> {
+                    Map<Long, AggregateBuilder> groups = new HashMap<>();
+                    for (int row = slice.from; row < slice.to; row++) {
+                        if (filter.test(row)) {
+                            final int typeCode = useSubTypes ? subTypes[row] : baseTypes[row];
+                            final int descriptionCode = descriptionColumn[row];
+                            groups.computeIfAbsent(((long) typeCode << 32) | descriptionCode, key -> new AggregateBuilder(typeCode, descriptions[descriptionCode]))
+                                    .add(row);
+                        }
+                    }
+                    return groups.values().stream();
+                })
+                .map(builder -> builder.build(useSubTypes, lod))
+                .collect(Collectors.toList());
+
+        //effectively map from type to (map from description to events)
+        Map<EventType, SetMultimap<String, AggregateEvent>> typeMap = new HashMap<>();
+        for (AggregateEvent aggregateEvent : perPeriodAggregates) {
+            typeMap.computeIfAbsent(aggregateEvent.getType(), type -> HashMultimap.create())
+                    .put(aggregateEvent.getDescription(), aggregateEvent);
+        }
+        return EventDB.mergeAggregateEvents(typeMap, rangeInfo.getPeriodSize().getPeriod());
+    }
+
+    /**
+     * @param eventIDs
+     *
+     * @return the rows of the events with the given ids
+     */
+    private int[] findRows(Set<Long> eventIDs) {
+        if (eventIDs.isEmpty()) {
+            return new int[0];
+        }
+        return rows(0, size).filter(row -> eventIDs.contains(this.eventIDs[row])).toArray();
+    }
+
+    /**
+     * @return a stream of the row numbers in [from, to), that is parallel if
+     *         there are enough rows to make it worthwhile
+     */
+    private static IntStream rows(int from, int to) {
+        IntStream rows = IntStream.range(from, to);
+        return (to - from >= PARALLEL_SCAN_THRESHOLD) ? rows.parallel() : rows;
+    }
+
+    /**
+     * @param time in seconds from unix epoch
+     *
+     * @return the first row with a time at or after the given time
+     */
+    private int lowerBound(long time) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (times[mid] < time) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return an array of the counts of the rows in [from, to) that pass the
+     *         filter, indexed by sub type or base type code
+     */
+    private long[] countByType(int from, int to, IntPredicate filter, boolean useSubTypes) {
+        final int types = useSubTypes ? RootEventType.allTypes.size() : BaseTypes.values().length;
+        return rows(from, to)
+                .filter(filter)
+                .collect(() -> new long[types],
+                        (counts, row) -> counts[useSubTypes ? subTypes[row] : baseTypes[row]]++,
+                        (counts1, counts2) -> {
+                            for (int i = 0; i < types; i++) {
+                                counts1[i] += counts2[i];
+                            }
+                        });
+    }
+
+    private static Map<EventType, Long> toTypeMap(long[] counts, boolean useSubTypes) {
+        Map<EventType, Long> typeMap = new HashMap<>();
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0) {
+                typeMap.put(getType(i, useSubTypes), counts[i]);
+            }
+        }
+        return typeMap;
+    }
+
+    private static EventType getType(int typeCode, boolean useSubTypes) {
+        return useSubTypes ? RootEventType.allTypes.get(typeCode) : BaseTypes.values()[typeCode];
+    }
+
+    private int[] getDescriptionColumn(DescriptionLOD lod) {
+        switch (lod) {
+            case FULL:
+                return fullDescriptions;
+            case MEDIUM:
+                return medDescriptions;
+            case SHORT:
+            default:
+                return shortDescriptions;
+        }
+    }
+
+    /**
+     * Divide the rows in the given time range into slices by the periods of
+     * the given size, in the same time zone that the EventDB uses to format
+     * periods. Periods without events are skipped.
+     *
+     * @param start      the start of the range, in seconds from unix epoch
+     * @param end        the end of the range (exclusive), in seconds from unix
+     *                   epoch
+     * @param periodSize
+     *
+     * @return the slices of rows, in time order
+     */
+    private List<PeriodSlice> getPeriodSlices(long start, long end, TimeUnits periodSize) {
+        final DateTimeZone zone = EventDB.isLocalTimeZone() ? TimeLineController.getJodaTimeZone() : DateTimeZone.UTC;
+        final int endRow = lowerBound(end);
+        List<PeriodSlice> slices = new ArrayList<>();
+        int row = lowerBound(start);
+        while (row < endRow) {
+            //start the next period at the next event, skipping any empty periods
+            DateTime periodStart = EventDB.roundFloor(new DateTime(times[row] * 1000, zone), periodSize);
+            int nextRow = (periodSize.getPeriod() == null)
+                    ? endRow
+                    : Math.min(endRow, lowerBound(periodStart.plus(periodSize.getPeriod()).getMillis() / 1000));
+            slices.add(new PeriodSlice(periodStart.getMillis(), row, nextRow));
+            row = nextRow;
+        }
+        return slices;
+    }
+
+    /**
+     * Compile the given filter into a predicate on row numbers, that accepts
+     * the same events as the where clause {@link SQLHelper} makes for the
+     * filter.
+     *
+     * @param filter
+     *
+     * @return a predicate that is true for the rows of the events that pass
+     *         the filter
+     */
+    private IntPredicate compile(Filter filter) {
+        if (filter == null) {
+            return row -> true;
+        } else if (filter instanceof HashHitsFilter) {
+            return compile((HashHitsFilter) filter);
+        } else if (filter instanceof DataSourceFilter) {
+            return compile((DataSourceFilter) filter);
+        } else if (filter instanceof DataSourcesFilter) {
+            return compile((DataSourcesFilter) filter);
+        } else if (filter instanceof HideKnownFilter) {
+            return filter.isSelected() ? row -> knownStates[row] != KNOWN : row -> true;
+        } else if (filter instanceof TextFilter) {
+            return compile((TextFilter) filter);
+        } else if (filter instanceof TypeFilter) {
+            return compile((TypeFilter) filter);
+        } else if (filter instanceof IntersectionFilter) {
+            return ((IntersectionFilter<?>) filter).getSubFilters().stream()
+                    .filter(Filter::isSelected)
+                    .map(this::compile)
+                    .reduce(IntPredicate::and)
+                    .orElse(row -> true);
+        } else if (filter instanceof UnionFilter) {
+            return ((UnionFilter<?>) filter).getSubFilters().stream()
+                    .filter(Filter::isSelected)
+                    .map(this::compile)
+                    .reduce(IntPredicate::or)
+                    .orElse(row -> true);
+        } else {
+            return row -> true;
+        }
+    }
+
+    private IntPredicate compile(HashHitsFilter filter) {
+        if (filter.isSelected() && (false == filter.isDisabled()) && (filter.getSubFilters().isEmpty() == false)) {
+            BitSet rows = new BitSet();
+            filter.getSubFilters().stream()
+                    .filter((HashSetFilter t) -> t.isSelected() && !t.isDisabled())
+                    .map(hashSetFilter -> hashSetHits.get(hashSetFilter.getHashSetID()))
+                    .filter(hits -> hits != null)
+                    .forEach(rows::or);
+            return rows::get;
+        } else {
+            return row -> true;
+        }
+    }
+
+    private IntPredicate compile(DataSourceFilter filter) {
+        return filter.isSelected() ? compileDataSources(Collections.singleton(filter.getDataSourceID())) : row -> true;
+    }
+
+    private IntPredicate compile(DataSourcesFilter filter) {
+        return filter.isSelected()
+                ? compileDataSources(filter.getSubFilters().stream()
+                        .filter(AbstractFilter::isSelected)
+                        .map(DataSourceFilter::getDataSourceID)
+                        .collect(Collectors.toSet()))
+                : row -> true;
+    }
+
+    private IntPredicate compileDataSources(Set<Long> selectedIDs) {
+        boolean[] selected = new boolean[dataSourceIDs.length];
+        for (int i = 0; i < dataSourceIDs.length; i++) {
+            selected[i] = selectedIDs.contains(dataSourceIDs[i]);
+        }
+        return row -> selected[dataSources[row]];
+    }
+
+    private IntPredicate compile(TextFilter filter) {
+        if (filter.isSelected() == false || StringUtils.isBlank(filter.getText())) {
+            return row -> true;
+        }
+        //like sqlite's like, match case insensitively
+        final String strippedFilterText = StringUtils.strip(filter.getText());
+        boolean[] matches = new boolean[descriptions.length];
+        rows(0, descriptions.length).forEach(i -> matches[i] = StringUtils.containsIgnoreCase(descriptions[i], strippedFilterText));
+        return row -> matches[medDescriptions[row]] || matches[fullDescriptions[row]] || matches[shortDescriptions[row]];
+    }
+
+    private IntPredicate compile(TypeFilter filter) {
+        boolean[] active = new boolean[RootEventType.allTypes.size()];
+        for (int subType : SQLHelper.getActiveSubTypes(filter)) {
+            if (subType >= 0) {
+                active[subType] = true;
+            }
+        }
+        return row -> active[subTypes[row]];
+    }
+
+    /**
+     * the rows [from, to) of the events in the period starting at
+     * periodStart
+     */
+    private static final class PeriodSlice {
+
+        /**
+         * in millis from unix epoch
+         */
+        private final long periodStart;
+        private final int from;
+        private final int to;
+
+        private PeriodSlice(long periodStart, int from, int to) {
+            this.periodStart = periodStart;
+            this.from = from;
+            this.to = to;
+        }
+    }
+
+    private static final class PeriodCounts {
+
+        private final long periodStart;
+        private final Map<EventType, Long> counts;
+
+        private PeriodCounts(long periodStart, Map<EventType, Long> counts) {
+            this.periodStart = periodStart;
+            this.counts = counts;
+        }
+    }
+
+    /**
+     * accumulates the rows of one (period, type, description) group
+     */
+    private final class AggregateBuilder {
+
+        private final int typeCode;
+        private final String description;
+        private long[] ids = new long[4];
+        private int count = 0;
+        private final List<Long> taggedIDs = new ArrayList<>();
+        private final List<Long> hashHitIDs = new ArrayList<>();
+        private long minTime = Long.MAX_VALUE;
+        private long maxTime = Long.MIN_VALUE;
+
+        private AggregateBuilder(int typeCode, String description) {
+            this.typeCode = typeCode;
+            this.description = description;
+        }
+
+        private void add(int row) {
+            if (count == ids.length) {
+                ids = Arrays.copyOf(ids, count * 2);
+            }
+            ids[count++] = eventIDs[row];
+            if (tagged.get(row)) {
+                taggedIDs.add(eventIDs[row]);
+            }
+            if (hashHits.get(row)) {
+                hashHitIDs.add(eventIDs[row]);
+            }
+            minTime = Math.min(minTime, times[row]);
+            maxTime = Math.max(maxTime, times[row]);
+        }
+
+        private AggregateEvent build(boolean useSubTypes, DescriptionLOD lod) {
+            return new AggregateEvent(new Interval(minTime * 1000, maxTime * 1000, TimeLineController.getJodaTimeZone()),
+                    getType(typeCode, useSubTypes),
+                    SortedLongSet.of(Arrays.copyOf(ids, count)),
+                    SortedLongSet.of(hashHitIDs.stream().mapToLong(Long::longValue).toArray()),
+                    SortedLongSet.of(taggedIDs.stream().mapToLong(Long::longValue).toArray()),
+                    description,
+                    lod);
+        }
+    }
+}
@@ -19,7 +19,10 @@
 package org.sleuthkit.autopsy.timeline.events.db;
 
 import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
 import com.google.common.collect.SetMultimap;
+import com.google.common.collect.Sets;
 import java.nio.file.Paths;
 import java.sql.Connection;
 import java.sql.DriverManager;
@@ -41,18 +44,21 @@
 import java.util.Set;
 import java.util.TimeZone;
 import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Level;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 import javax.annotation.Nonnull;
 import org.apache.commons.lang3.StringUtils;
+import org.joda.time.DateTime;
 import org.joda.time.DateTimeZone;
 import org.joda.time.Interval;
 import org.joda.time.Period;
+import org.joda.time.format.DateTimeFormatter;
+import org.joda.time.format.ISODateTimeFormat;
 import org.openide.util.Exceptions;
 import org.sleuthkit.autopsy.casemodule.Case;
 import org.sleuthkit.autopsy.coreutils.Logger;
+import org.sleuthkit.autopsy.coreutils.SQLiteConnectionPool;
 import org.sleuthkit.autopsy.timeline.TimeLineController;
 import org.sleuthkit.autopsy.timeline.events.AggregateEvent;
 import org.sleuthkit.autopsy.timeline.events.TimeLineEvent;
@@ -61,6 +67,7 @@
 import org.sleuthkit.autopsy.timeline.events.type.RootEventType;
 import org.sleuthkit.autopsy.timeline.filters.RootFilter;
 import org.sleuthkit.autopsy.timeline.utils.RangeDivisionInfo;
+import org.sleuthkit.autopsy.timeline.utils.SortedLongSet;
 import org.sleuthkit.autopsy.timeline.zooming.DescriptionLOD;
 import static org.sleuthkit.autopsy.timeline.zooming.DescriptionLOD.FULL;
 import static org.sleuthkit.autopsy.timeline.zooming.DescriptionLOD.MEDIUM;
@@ -95,7 +102,8 @@ private enum DBInfoKey {
 
         LAST_ARTIFACT_ID("last_artifact_id"), // NON-NLS
         LAST_OBJECT_ID("last_object_id"), // NON-NLS
-        WAS_INGEST_RUNNING("was_ingest_running"); // NON-NLS
+        WAS_INGEST_RUNNING("was_ingest_running"), // NON-NLS
+        ROLLUP_TIME_ZONE("rollup_time_zone"); // NON-NLS
 
         private final String keyName;
 
@@ -111,6 +119,16 @@ public String toString() {
 
     private static final java.util.logging.Logger LOGGER = Logger.getLogger(EventDB.class.getName());
 
+    /**
+     * maximum number of ids to put in one "IN (...)" clause
+     */
+    private static final int MAX_IDS_PER_STATEMENT = 500;
+
+    /**
+     * the resolutions kept in the event_rollups table, finest first
+     */
+    private static final List<TimeUnits> ROLLUP_RESOLUTIONS = Arrays.asList(MINUTES, HOURS, DAYS, MONTHS, YEARS);
+
     static {
         //make sure sqlite driver is loaded, possibly redundant
         try {
@@ -146,29 +164,49 @@ public static EventDB getEventDB(Case autoCase) {
     private final String dbPath;
 
     private PreparedStatement getDBInfoStmt;
-    private PreparedStatement getEventByIDStmt;
-    private PreparedStatement getMaxTimeStmt;
-    private PreparedStatement getMinTimeStmt;
-    private PreparedStatement getDataSourceIDsStmt;
     private PreparedStatement insertRowStmt;
     private PreparedStatement recordDBInfoStmt;
     private PreparedStatement insertHashSetStmt;
     private PreparedStatement insertHashHitStmt;
     private PreparedStatement selectHashSetStmt;
-    private PreparedStatement countAllEventsStmt;
     private PreparedStatement dropEventsTableStmt;
     private PreparedStatement dropHashSetHitsTableStmt;
     private PreparedStatement dropHashSetsTableStmt;
     private PreparedStatement dropDBInfoTableStmt;
+    private PreparedStatement dropRollupsTableStmt;
+    private PreparedStatement getMaxEventIDStmt;
     private PreparedStatement selectEventsFromOBjectAndArtifactStmt;
+    private PreparedStatement selectEventsFromFileStmt;
 
     private final Set<PreparedStatement> preparedStatements = new HashSet<>();
 
-    private final Lock DBLock = new ReentrantReadWriteLock(true).writeLock(); //using exclusive lock for all db ops for now
+    /**
+     * the number of read-only connections used for queries from the views
+     */
+    private static final int READ_CONNECTIONS = 4;
+
+    private static final String GET_DATASOURCE_IDS_SQL = "SELECT DISTINCT datasource_id FROM events"; // NON-NLS
+    private static final String GET_MAX_TIME_SQL = "SELECT Max(time) AS max FROM events"; // NON-NLS
+    private static final String GET_MIN_TIME_SQL = "SELECT Min(time) AS min FROM events"; // NON-NLS
+    private static final String GET_EVENT_BY_ID_SQL = "SELECT * FROM events WHERE event_id =  ?"; // NON-NLS
+    private static final String COUNT_ALL_EVENTS_SQL = "SELECT count(*) AS count FROM events"; // NON-NLS
+
+    /**
+     * exclusive lock for the write connection (con). Queries that only read
+     * use a connection from the readPool instead, and see the database as of
+     * the last commit.
+     */
+    private final Lock DBLock = new ReentrantLock(true);
+
+    private final SQLiteConnectionPool readPool;
+
+    //cache of hash set name -> hash_set_id, guarded by DBLock
+    private final Map<String, Integer> hashSetIDs = new HashMap<>();
 
     private EventDB(Case autoCase) throws SQLException, Exception {
         //should this go into module output (or even cache, we should be able to rebuild it)?
         this.dbPath = Paths.get(autoCase.getCaseDirectory(), "events.db").toString(); //NON-NLS
+        this.readPool = new SQLiteConnectionPool(dbPath, READ_CONNECTIONS);
         initializeDB();
     }
 
@@ -182,6 +220,7 @@ public void finalize() throws Throwable {
     }
 
     void closeDBCon() {
+        readPool.close();
         if (con != null) {
             try {
                 closeStatements();
@@ -194,16 +233,14 @@ void closeDBCon() {
     }
 
     public Interval getSpanningInterval(Collection<Long> eventIDs) {
-        DBLock.lock();
-        try (Statement stmt = con.createStatement();
+        try (SQLiteConnectionPool.ReadConnection readCon = readPool.getReadConnection();
+                Statement stmt = readCon.createStatement();
                 ResultSet rs = stmt.executeQuery("select Min(time), Max(time) from events where event_id in (" + StringUtils.join(eventIDs, ", ") + ")");) { // NON-NLS
             while (rs.next()) {
                 return new Interval(rs.getLong("Min(time)"), rs.getLong("Max(time)") + 1, DateTimeZone.UTC); // NON-NLS
             }
         } catch (SQLException ex) {
             LOGGER.log(Level.SEVERE, "Error executing get spanning interval query.", ex); // NON-NLS
-        } finally {
-            DBLock.unlock();
         }
         return null;
     }
@@ -224,15 +261,14 @@ void commitTransaction(EventTransaction tr, Boolean notify) {
      *         error.
      */
     int countAllEvents() {
-        DBLock.lock();
-        try (ResultSet rs = countAllEventsStmt.executeQuery()) { // NON-NLS
+        try (SQLiteConnectionPool.ReadConnection readCon = readPool.getReadConnection();
+                PreparedStatement countAllEventsStmt = readCon.prepareStatement(COUNT_ALL_EVENTS_SQL);
+                ResultSet rs = countAllEventsStmt.executeQuery()) {
             while (rs.next()) {
                 return rs.getInt("count"); // NON-NLS
             }
         } catch (SQLException ex) {
             LOGGER.log(Level.SEVERE, "Error counting all events", ex);
-        } finally {
-            DBLock.unlock();
         }
         return -1;
     }
@@ -262,15 +298,25 @@ Map<EventType, Long> countEventsByType(ZoomParams params) {
      */
     void reInitializeDB() {
         DBLock.lock();
+        //don't let queries see the tables half dropped
+        readPool.getExclusiveLock().lock();
         try {
+            hashSetIDs.clear();
             dropEventsTableStmt.executeUpdate();
             dropHashSetHitsTableStmt.executeUpdate();
             dropHashSetsTableStmt.executeUpdate();
             dropDBInfoTableStmt.executeUpdate();
-            initializeDB();;
+            dropRollupsTableStmt.executeUpdate();
+            initializeDB();
+            //until the rebuild finishes and records its own marks, an
+            //unfinished (cancelled or failed) rebuild must force another one
+            recordLastObjID(-1L);
+            recordLastArtifactID(-1);
+            recordWasIngestRunning(false);
         } catch (SQLException ex) {
             LOGGER.log(Level.SEVERE, "could not drop old tables table", ex); // NON-NLS
         } finally {
+            readPool.getExclusiveLock().unlock();
             DBLock.unlock();
         }
     }
@@ -279,33 +325,35 @@ Interval getBoundingEventsInterval(Interval timeRange, RootFilter filter) {
         long start = timeRange.getStartMillis() / 1000;
         long end = timeRange.getEndMillis() / 1000;
         final String sqlWhere = SQLHelper.getSQLWhere(filter);
-        DBLock.lock();
-        try (Statement stmt = con.createStatement(); //can't use prepared statement because of complex where clause
+        Long start2 = null;
+        Long end2 = null;
+        try (SQLiteConnectionPool.ReadConnection readCon = readPool.getReadConnection();
+                Statement stmt = readCon.createStatement(); //can't use prepared statement because of complex where clause
                 ResultSet rs = stmt.executeQuery(" select (select Max(time) from events" + useHashHitTablesHelper(filter) + " where time <=" + start + " and " + sqlWhere + ") as start,"
                         + "(select Min(time) from  from events" + useHashHitTablesHelper(filter) + " where time >= " + end + " and " + sqlWhere + ") as end")) { // NON-NLS
             while (rs.next()) {
 
-                long start2 = rs.getLong("start"); // NON-NLS
-                long end2 = rs.getLong("end"); // NON-NLS
-
-                if (end2 == 0) {
-                    end2 = getMaxTime();
-                }
-                return new Interval(start2 * 1000, (end2 + 1) * 1000, TimeLineController.getJodaTimeZone());
+                start2 = rs.getLong("start"); // NON-NLS
+                end2 = rs.getLong("end"); // NON-NLS
+                break;
             }
         } catch (SQLException ex) {
             LOGGER.log(Level.SEVERE, "Failed to get MIN time.", ex); // NON-NLS
-        } finally {
-            DBLock.unlock();
         }
-        return null;
+        if (start2 == null) {
+            return null;
+        }
+        //only after the read connection is returned, so we don't hold two at once
+        if (end2 == 0) {
+            end2 = getMaxTime();
+        }
+        return new Interval(start2 * 1000, (end2 + 1) * 1000, TimeLineController.getJodaTimeZone());
     }
 
     TimeLineEvent getEventById(Long eventID) {
         TimeLineEvent result = null;
-        DBLock.lock();
-        try {
-            getEventByIDStmt.clearParameters();
+        try (SQLiteConnectionPool.ReadConnection readCon = readPool.getReadConnection();
+                PreparedStatement getEventByIDStmt = readCon.prepareStatement(GET_EVENT_BY_ID_SQL)) {
             getEventByIDStmt.setLong(1, eventID);
             try (ResultSet rs = getEventByIDStmt.executeQuery()) {
                 while (rs.next()) {
@@ -315,8 +363,6 @@ TimeLineEvent getEventById(Long eventID) {
             }
         } catch (SQLException sqlEx) {
             LOGGER.log(Level.SEVERE, "exception while querying for event with id = " + eventID, sqlEx); // NON-NLS
-        } finally {
-            DBLock.unlock();
         }
         return result;
     }
@@ -331,9 +377,9 @@ Set<Long> getEventIDs(Long startTime, Long endTime, RootFilter filter) {
         }
         Set<Long> resultIDs = new HashSet<>();
 
-        DBLock.lock();
         final String query = "select event_id from  from events" + useHashHitTablesHelper(filter) + " where time >=  " + startTime + " and time <" + endTime + " and " + SQLHelper.getSQLWhere(filter); // NON-NLS
-        try (Statement stmt = con.createStatement();
+        try (SQLiteConnectionPool.ReadConnection readCon = readPool.getReadConnection();
+                Statement stmt = readCon.createStatement();
                 ResultSet rs = stmt.executeQuery(query)) {
 
             while (rs.next()) {
@@ -342,8 +388,6 @@ Set<Long> getEventIDs(Long startTime, Long endTime, RootFilter filter) {
 
         } catch (SQLException sqlEx) {
             LOGGER.log(Level.SEVERE, "failed to execute query for event ids in range", sqlEx); // NON-NLS
-        } finally {
-            DBLock.unlock();
         }
 
         return resultIDs;
@@ -368,8 +412,9 @@ boolean hasNewColumns() {
 
     Set<Long> getDataSourceIDs() {
         HashSet<Long> hashSet = new HashSet<>();
-        DBLock.lock();
-        try (ResultSet rs = getDataSourceIDsStmt.executeQuery()) {
+        try (SQLiteConnectionPool.ReadConnection readCon = readPool.getReadConnection();
+                PreparedStatement getDataSourceIDsStmt = readCon.prepareStatement(GET_DATASOURCE_IDS_SQL);
+                ResultSet rs = getDataSourceIDsStmt.executeQuery()) {
             while (rs.next()) {
                 long datasourceID = rs.getLong("datasource_id");
                 //this relies on the fact that no tskObj has ID 0 but 0 is the default value for the datasource_id column in the events table.
@@ -379,16 +424,15 @@ Set<Long> getDataSourceIDs() {
             }
         } catch (SQLException ex) {
             LOGGER.log(Level.SEVERE, "Failed to get MAX time.", ex); // NON-NLS
-        } finally {
-            DBLock.unlock();
         }
         return hashSet;
     }
 
     Map<Long, String> getHashSetNames() {
         Map<Long, String> hashSets = new HashMap<>();
-        DBLock.lock();
-        try (ResultSet rs = con.createStatement().executeQuery("select * from hash_sets")) {
+        try (SQLiteConnectionPool.ReadConnection readCon = readPool.getReadConnection();
+                Statement stmt = readCon.createStatement();
+                ResultSet rs = stmt.executeQuery("select * from hash_sets")) { // NON-NLS
             while (rs.next()) {
                 long hashSetID = rs.getLong("hash_set_id");
                 String hashSetName = rs.getString("hash_set_name");
@@ -396,8 +440,6 @@ Map<Long, String> getHashSetNames() {
             }
         } catch (SQLException ex) {
             LOGGER.log(Level.SEVERE, "Failed to get hash sets.", ex); // NON-NLS
-        } finally {
-            DBLock.unlock();
         }
         return Collections.unmodifiableMap(hashSets);
     }
@@ -406,15 +448,14 @@ Map<Long, String> getHashSetNames() {
      * @return maximum time in seconds from unix epoch
      */
     Long getMaxTime() {
-        DBLock.lock();
-        try (ResultSet rs = getMaxTimeStmt.executeQuery()) {
+        try (SQLiteConnectionPool.ReadConnection readCon = readPool.getReadConnection();
+                PreparedStatement getMaxTimeStmt = readCon.prepareStatement(GET_MAX_TIME_SQL);
+                ResultSet rs = getMaxTimeStmt.executeQuery()) {
             while (rs.next()) {
                 return rs.getLong("max"); // NON-NLS
             }
         } catch (SQLException ex) {
             LOGGER.log(Level.SEVERE, "Failed to get MAX time.", ex); // NON-NLS
-        } finally {
-            DBLock.unlock();
         }
         return -1l;
     }
@@ -423,15 +464,14 @@ Long getMaxTime() {
      * @return maximum time in seconds from unix epoch
      */
     Long getMinTime() {
-        DBLock.lock();
-        try (ResultSet rs = getMinTimeStmt.executeQuery()) {
+        try (SQLiteConnectionPool.ReadConnection readCon = readPool.getReadConnection();
+                PreparedStatement getMinTimeStmt = readCon.prepareStatement(GET_MIN_TIME_SQL);
+                ResultSet rs = getMinTimeStmt.executeQuery()) {
             while (rs.next()) {
                 return rs.getLong("min"); // NON-NLS
             }
         } catch (SQLException ex) {
             LOGGER.log(Level.SEVERE, "Failed to get MIN time.", ex); // NON-NLS
-        } finally {
-            DBLock.unlock();
         }
         return -1l;
     }
@@ -542,6 +582,31 @@ final synchronized void initializeDB() {
                 LOGGER.log(Level.SEVERE, "problem creating hash_set_hits table", ex);
             }
 
+            //rollups from before the key columns were NOT NULL may hold duplicate rows, rebuild them
+            final boolean rebuildRollups = hasTable("event_rollups") == false || hasNullableRollupKeys();
+            if (rebuildRollups) {
+                try (Statement stmt = con.createStatement()) {
+                    stmt.execute("DROP TABLE IF EXISTS event_rollups"); // NON-NLS
+                } catch (SQLException ex) {
+                    LOGGER.log(Level.SEVERE, "problem dropping old event_rollups table", ex); // NON-NLS
+                }
+            }
+            try (Statement stmt = con.createStatement()) {
+                String sql = "CREATE TABLE if not exists event_rollups " // NON-NLS
+                        + "(resolution INTEGER NOT NULL, " // NON-NLS
+                        + " local_time INTEGER NOT NULL, " // NON-NLS
+                        + " period_start INTEGER NOT NULL, " // NON-NLS
+                        + " datasource_id INTEGER NOT NULL, " // NON-NLS
+                        + " sub_type INTEGER NOT NULL, " // NON-NLS
+                        + " base_type INTEGER, " // NON-NLS
+                        + " known_state INTEGER NOT NULL, " // NON-NLS
+                        + " count INTEGER, " // NON-NLS
+                        + " PRIMARY KEY (resolution, local_time, period_start, datasource_id, sub_type, known_state))"; // NON-NLS
+                stmt.execute(sql);
+            } catch (SQLException ex) {
+                LOGGER.log(Level.SEVERE, "problem creating event_rollups table", ex); // NON-NLS
+            }
+
             createIndex("events", Arrays.asList("file_id"));
             createIndex("events", Arrays.asList("artifact_id"));
             createIndex("events", Arrays.asList("sub_type", "time"));
@@ -553,25 +618,28 @@ final synchronized void initializeDB() {
                         "INSERT INTO events (datasource_id,file_id ,artifact_id, time, sub_type, base_type, full_description, med_description, short_description, known_state, hash_hit, tagged) " // NON-NLS
                         + "VALUES (?,?,?,?,?,?,?,?,?,?,?,?)"); // NON-NLS
 
-                getDataSourceIDsStmt = prepareStatement("SELECT DISTINCT datasource_id FROM events"); // NON-NLS
-                getMaxTimeStmt = prepareStatement("SELECT Max(time) AS max FROM events"); // NON-NLS
-                getMinTimeStmt = prepareStatement("SELECT Min(time) AS min FROM events"); // NON-NLS
-                getEventByIDStmt = prepareStatement("SELECT * FROM events WHERE event_id =  ?"); // NON-NLS
                 recordDBInfoStmt = prepareStatement("INSERT OR REPLACE INTO db_info (key, value) values (?, ?)"); // NON-NLS
                 getDBInfoStmt = prepareStatement("SELECT value FROM db_info WHERE key = ?"); // NON-NLS
                 insertHashSetStmt = prepareStatement("INSERT OR IGNORE INTO hash_sets (hash_set_name)  values (?)");
                 selectHashSetStmt = prepareStatement("SELECT hash_set_id FROM hash_sets WHERE hash_set_name = ?");
                 insertHashHitStmt = prepareStatement("INSERT OR IGNORE INTO hash_set_hits (hash_set_id, event_id) values (?,?)");
-                countAllEventsStmt = prepareStatement("SELECT count(*) AS count FROM events");
                 dropEventsTableStmt = prepareStatement("DROP TABLE IF EXISTS events");
                 dropHashSetHitsTableStmt = prepareStatement("DROP TABLE IF EXISTS hash_set_hits");
                 dropHashSetsTableStmt = prepareStatement("DROP TABLE IF EXISTS hash_sets");
-                dropDBInfoTableStmt = prepareStatement("DROP TABLE IF EXISTS db_ino");
+                dropDBInfoTableStmt = prepareStatement("DROP TABLE IF EXISTS db_info"); // NON-NLS
+                dropRollupsTableStmt = prepareStatement("DROP TABLE IF EXISTS event_rollups"); // NON-NLS
+                getMaxEventIDStmt = prepareStatement("SELECT Max(event_id) AS max FROM events"); // NON-NLS
                 selectEventsFromOBjectAndArtifactStmt = prepareStatement("SELECT event_id FROM events WHERE file_id == ? AND artifact_id IS ?");
+                selectEventsFromFileStmt = prepareStatement("SELECT event_id FROM events WHERE file_id == ?");
             } catch (SQLException sQLException) {
                 LOGGER.log(Level.SEVERE, "failed to prepareStatment", sQLException); // NON-NLS
             }
 
+            if (rebuildRollups || TimeZone.getDefault().getID().equals(getDBInfo(DBInfoKey.ROLLUP_TIME_ZONE, "")) == false) {
+                //events db from before the rollups were added, or the local time rollups are in another zone
+                updateRollups(0);
+            }
+
         } finally {
             DBLock.unlock();
         }
@@ -614,6 +682,35 @@ private boolean hasDBColumn(@Nonnull final String dbColumn) {
         return false;
     }
 
+    /**
+     * @return true if the event_rollups table is from before its key columns
+     *         were NOT NULL, when events with no data source or known state
+     *         were counted in a new row each time the rollups were updated.
+     */
+    private boolean hasNullableRollupKeys() {
+        try (Statement stmt = con.createStatement();
+                ResultSet rs = stmt.executeQuery("PRAGMA table_info(event_rollups)")) { // NON-NLS
+            while (rs.next()) {
+                if ("datasource_id".equals(rs.getString("name"))) { // NON-NLS
+                    return rs.getInt("notnull") == 0; // NON-NLS
+                }
+            }
+        } catch (SQLException ex) {
+            LOGGER.log(Level.SEVERE, "problem executing pragma", ex); // NON-NLS
+        }
+        return true;
+    }
+
+    private boolean hasTable(@Nonnull final String tableName) {
+        try (Statement stmt = con.createStatement();
+                ResultSet rs = stmt.executeQuery("SELECT name FROM sqlite_master WHERE type='table' AND name='" + tableName + "'")) { // NON-NLS
+            return rs.next();
+        } catch (SQLException ex) {
+            LOGGER.log(Level.SEVERE, "problem checking for table " + tableName, ex); // NON-NLS
+        }
+        return false;
+    }
+
     private boolean hasDataSourceIDColumn() {
         return hasDBColumn("datasource_id");
     }
@@ -646,70 +743,27 @@ void insertEvent(long time, EventType type, long datasourceID, long objID,
             String shortDescription, TskData.FileKnown known, Set<String> hashSetNames,
             boolean tagged,
             EventTransaction transaction) {
+        insertEvent(new PendingEvent(time, type, datasourceID, objID, artifactID, fullDescription, medDescription, shortDescription, known, hashSetNames, tagged), transaction);
+    }
 
+    private void insertEvent(PendingEvent event, EventTransaction transaction) {
         if (transaction.isClosed()) {
             throw new IllegalArgumentException("can't update database with closed transaction"); // NON-NLS
         }
-        int typeNum;
-        int superTypeNum;
-
-        typeNum = RootEventType.allTypes.indexOf(type);
-        superTypeNum = type.getSuperType().ordinal();
 
         DBLock.lock();
         try {
-
-            //"INSERT INTO events (datasource_id,file_id ,artifact_id, time, sub_type, base_type, full_description, med_description, short_description, known_state, hashHit, tagged) " 
-            insertRowStmt.clearParameters();
-            insertRowStmt.setLong(1, datasourceID);
-            insertRowStmt.setLong(2, objID);
-            if (artifactID != null) {
-                insertRowStmt.setLong(3, artifactID);
-            } else {
-                insertRowStmt.setNull(3, Types.NULL);
-            }
-            insertRowStmt.setLong(4, time);
-
-            if (typeNum != -1) {
-                insertRowStmt.setInt(5, typeNum);
-            } else {
-                insertRowStmt.setNull(5, Types.INTEGER);
-            }
-
-            insertRowStmt.setInt(6, superTypeNum);
-            insertRowStmt.setString(7, fullDescription);
-            insertRowStmt.setString(8, medDescription);
-            insertRowStmt.setString(9, shortDescription);
-
-            insertRowStmt.setByte(10, known == null ? TskData.FileKnown.UNKNOWN.getFileKnownValue() : known.getFileKnownValue());
-
-            insertRowStmt.setInt(11, hashSetNames.isEmpty() ? 0 : 1);
-            insertRowStmt.setInt(12, tagged ? 1 : 0);
-
+            bindInsertRowStmt(event);
             insertRowStmt.executeUpdate();
 
             try (ResultSet generatedKeys = insertRowStmt.getGeneratedKeys()) {
                 while (generatedKeys.next()) {
                     long eventID = generatedKeys.getLong("last_insert_rowid()");
-                    for (String name : hashSetNames) {
-
-                        // "insert or ignore into hash_sets (hash_set_name)  values (?)"
-                        insertHashSetStmt.setString(1, name);
-                        insertHashSetStmt.executeUpdate();
-
-                        //TODO: use nested select to get hash_set_id rather than seperate statement/query
-                        //"select hash_set_id from hash_sets where hash_set_name = ?"
-                        selectHashSetStmt.setString(1, name);
-                        try (ResultSet rs = selectHashSetStmt.executeQuery()) {
-                            while (rs.next()) {
-                                int hashsetID = rs.getInt("hash_set_id");
-                                //"insert or ignore into hash_set_hits (hash_set_id, obj_id) values (?,?)";
-                                insertHashHitStmt.setInt(1, hashsetID);
-                                insertHashHitStmt.setLong(2, eventID);
-                                insertHashHitStmt.executeUpdate();
-                                break;
-                            }
-                        }
+                    for (String name : event.hashSetNames) {
+                        //"insert or ignore into hash_set_hits (hash_set_id, obj_id) values (?,?)";
+                        insertHashHitStmt.setInt(1, getHashSetID(name));
+                        insertHashHitStmt.setLong(2, eventID);
+                        insertHashHitStmt.executeUpdate();
                     }
                     break;
                 }
@@ -722,6 +776,112 @@ void insertEvent(long time, EventType type, long datasourceID, long objID,
         }
     }
 
+    /**
+     * Insert a batch of events using the given transaction. Events without
+     * hash set hits are sent to the database as a single JDBC batch, events
+     * with hash set hits are inserted one at a time since we need their
+     * generated ids to record the hits.
+     *
+     * @param events      the events to insert
+     * @param transaction the transaction to insert the events in
+     */
+    void insertEvents(Collection<PendingEvent> events, EventTransaction transaction) {
+        if (transaction.isClosed()) {
+            throw new IllegalArgumentException("can't update database with closed transaction"); // NON-NLS
+        }
+
+        List<PendingEvent> hashHitEvents = new ArrayList<>();
+        DBLock.lock();
+        try {
+            for (PendingEvent event : events) {
+                if (event.hashSetNames.isEmpty()) {
+                    bindInsertRowStmt(event);
+                    insertRowStmt.addBatch();
+                } else {
+                    hashHitEvents.add(event);
+                }
+            }
+            insertRowStmt.executeBatch();
+        } catch (SQLException ex) {
+            LOGGER.log(Level.SEVERE, "failed to insert batch of events", ex); // NON-NLS
+            try {
+                insertRowStmt.clearBatch();
+            } catch (SQLException ex1) {
+                LOGGER.log(Level.SEVERE, "failed to clear batch of events", ex1); // NON-NLS
+            }
+        } finally {
+            DBLock.unlock();
+        }
+
+        for (PendingEvent event : hashHitEvents) {
+            insertEvent(event, transaction);
+        }
+    }
+
+    /**
+     * set the parameters of the insertRowStmt from the given event. Caller
+     * must hold the DBLock.
+     */
+    private void bindInsertRowStmt(PendingEvent event) throws SQLException {
+        int typeNum = RootEventType.allTypes.indexOf(event.type);
+        int superTypeNum = event.type.getSuperType().ordinal();
+
+        //"INSERT INTO events (datasource_id,file_id ,artifact_id, time, sub_type, base_type, full_description, med_description, short_description, known_state, hashHit, tagged) " 
+        insertRowStmt.clearParameters();
+        insertRowStmt.setLong(1, event.datasourceID);
+        insertRowStmt.setLong(2, event.objID);
+        if (event.artifactID != null) {
+            insertRowStmt.setLong(3, event.artifactID);
+        } else {
+            insertRowStmt.setNull(3, Types.NULL);
+        }
+        insertRowStmt.setLong(4, event.time);
+
+        if (typeNum != -1) {
+            insertRowStmt.setInt(5, typeNum);
+        } else {
+            insertRowStmt.setNull(5, Types.INTEGER);
+        }
+
+        insertRowStmt.setInt(6, superTypeNum);
+        insertRowStmt.setString(7, event.fullDescription);
+        insertRowStmt.setString(8, event.medDescription);
+        insertRowStmt.setString(9, event.shortDescription);
+
+        insertRowStmt.setByte(10, event.known == null ? TskData.FileKnown.UNKNOWN.getFileKnownValue() : event.known.getFileKnownValue());
+
+        insertRowStmt.setInt(11, event.hashSetNames.isEmpty() ? 0 : 1);
+        insertRowStmt.setInt(12, event.tagged ? 1 : 0);
+    }
+
+    /**
+     * get the id of the hash set with the given name, inserting it into the
+     * hash_sets table if it is not there yet. Ids are cached so each hash set
+     * is only looked up once per population. Caller must hold the DBLock.
+     */
+    private int getHashSetID(String name) throws SQLException {
+        Integer hashSetID = hashSetIDs.get(name);
+        if (hashSetID == null) {
+            // "insert or ignore into hash_sets (hash_set_name)  values (?)"
+            insertHashSetStmt.setString(1, name);
+            insertHashSetStmt.executeUpdate();
+
+            //"select hash_set_id from hash_sets where hash_set_name = ?"
+            selectHashSetStmt.setString(1, name);
+            try (ResultSet rs = selectHashSetStmt.executeQuery()) {
+                while (rs.next()) {
+                    hashSetID = rs.getInt("hash_set_id");
+                    hashSetIDs.put(name, hashSetID);
+                    break;
+                }
+            }
+            if (hashSetID == null) {
+                throw new SQLException("failed to get id of hash set " + name); // NON-NLS
+            }
+        }
+        return hashSetID;
+    }
+
     Set<Long> markEventsTagged(long objectID, Long artifactID, boolean tagged) {
         HashSet<Long> eventIDs = new HashSet<>();
 
@@ -752,6 +912,203 @@ Set<Long> markEventsTagged(long objectID, Long artifactID, boolean tagged) {
         return eventIDs;
     }
 
+    /**
+     * @return the highest event id in the database, or 0 if there are no
+     *         events
+     */
+    long getMaxEventID() {
+        DBLock.lock();
+        try (ResultSet rs = getMaxEventIDStmt.executeQuery()) {
+            while (rs.next()) {
+                return rs.getLong("max"); // NON-NLS
+            }
+        } catch (SQLException ex) {
+            LOGGER.log(Level.SEVERE, "Failed to get max event id.", ex); // NON-NLS
+        } finally {
+            DBLock.unlock();
+        }
+        return 0;
+    }
+
+    /**
+     * Add the events with ids greater than the given id to the rollup tables.
+     *
+     * The event_rollups table holds the count of events per period, type, data
+     * source and known state, for each of the resolutions in
+     * {@link #ROLLUP_RESOLUTIONS}, with periods in both local time and UTC.
+     * The counts of the new events are computed into a temporary delta table,
+     * finest resolution from the events and each coarser resolution from the
+     * one below it, then added to the existing counts. Events with no data
+     * source, sub type, or known state are counted under -1, so that each
+     * count has exactly one row. The local time periods are those of the
+     * default time zone, which is recorded: if it is not the zone the existing
+     * rollups were made in, or no events are skipped, all the rollups are
+     * rebuilt from the events. If called from the thread that holds an open
+     * transaction, the changes are part of that transaction.
+     *
+     * @param afterEventID only events with ids greater than this are added
+     */
+    void updateRollups(long afterEventID) {
+        DBLock.lock();
+        try (Statement stmt = con.createStatement()) {
+            final String zoneID = TimeZone.getDefault().getID();
+            if (afterEventID <= 0 || zoneID.equals(getDBInfo(DBInfoKey.ROLLUP_TIME_ZONE, "")) == false) {
+                stmt.executeUpdate("DELETE FROM event_rollups"); // NON-NLS
+                afterEventID = 0;
+            }
+            stmt.execute("DROP TABLE IF EXISTS temp.rollup_delta"); // NON-NLS
+            stmt.execute("CREATE TEMP TABLE rollup_delta " // NON-NLS
+                    + "(resolution INTEGER, local_time INTEGER, period_start INTEGER, datasource_id INTEGER," // NON-NLS
+                    + " sub_type INTEGER, base_type INTEGER, known_state INTEGER, count INTEGER)"); // NON-NLS
+
+            for (boolean localTime : new boolean[]{true, false}) {
+                final int localTimeFlag = localTime ? 1 : 0;
+                TimeUnits finest = ROLLUP_RESOLUTIONS.get(0);
+                stmt.executeUpdate("INSERT INTO rollup_delta SELECT " + finest.ordinal() + ", " + localTimeFlag + ", " // NON-NLS
+                        + getPeriodStartExpression(finest, "time", localTime) + " AS start, IFNULL(datasource_id, -1) AS datasource, IFNULL(sub_type, -1) AS subtype, base_type, IFNULL(known_state, -1) AS known, count(*)" // NON-NLS
+                        + " FROM events WHERE event_id > " + afterEventID // NON-NLS
+                        + " GROUP BY start, datasource, subtype, base_type, known"); // NON-NLS
+
+                for (int i = 1; i < ROLLUP_RESOLUTIONS.size(); i++) {
+                    TimeUnits resolution = ROLLUP_RESOLUTIONS.get(i);
+                    stmt.executeUpdate("INSERT INTO rollup_delta SELECT " + resolution.ordinal() + ", " + localTimeFlag + ", " // NON-NLS
+                            + getPeriodStartExpression(resolution, "period_start", localTime) + " AS start, datasource_id, sub_type, base_type, known_state, SUM(count)" // NON-NLS
+                            + " FROM rollup_delta WHERE resolution = " + ROLLUP_RESOLUTIONS.get(i - 1).ordinal() + " AND local_time = " + localTimeFlag // NON-NLS
+                            + " GROUP BY start, datasource_id, sub_type, base_type, known_state"); // NON-NLS
+                }
+            }
+
+            stmt.executeUpdate("INSERT OR REPLACE INTO event_rollups " // NON-NLS
+                    + "(resolution, local_time, period_start, datasource_id, sub_type, base_type, known_state, count)" // NON-NLS
+                    + " SELECT d.resolution, d.local_time, d.period_start, d.datasource_id, d.sub_type, d.base_type, d.known_state," // NON-NLS
+                    + " d.count + IFNULL((SELECT r.count FROM event_rollups AS r WHERE r.resolution = d.resolution" // NON-NLS
+                    + " AND r.local_time = d.local_time AND r.period_start = d.period_start AND r.datasource_id = d.datasource_id" // NON-NLS
+                    + " AND r.sub_type = d.sub_type AND r.known_state = d.known_state), 0)" // NON-NLS
+                    + " FROM rollup_delta AS d"); // NON-NLS
+            stmt.execute("DROP TABLE temp.rollup_delta"); // NON-NLS
+            recordDBInfo(DBInfoKey.ROLLUP_TIME_ZONE, zoneID);
+        } catch (SQLException ex) {
+            LOGGER.log(Level.SEVERE, "failed to update event rollups", ex); // NON-NLS
+        } finally {
+            DBLock.unlock();
+        }
+    }
+
+    /**
+     * mark all the events derived from the given file (the file's own events
+     * and the events of artifacts on it) as hits in the given hash sets. If
+     * called from the thread that holds an open transaction, the changes are
+     * part of that transaction.
+     *
+     * @param objectID     the id of the file that was found in the hash sets
+     * @param hashSetNames the names of the hash sets the file was found in
+     *
+     * @return the ids of the updated events
+     */
+    Set<Long> markEventsHashHit(long objectID, Set<String> hashSetNames) {
+        HashSet<Long> eventIDs = new HashSet<>();
+        if (hashSetNames.isEmpty()) {
+            return eventIDs;
+        }
+
+        DBLock.lock();
+        try {
+            selectEventsFromFileStmt.clearParameters();
+            selectEventsFromFileStmt.setLong(1, objectID);
+            try (ResultSet executeQuery = selectEventsFromFileStmt.executeQuery();) {
+                while (executeQuery.next()) {
+                    eventIDs.add(executeQuery.getLong("event_id"));
+                }
+            }
+            if (eventIDs.isEmpty() == false) {
+                try (Statement updateStatement = con.createStatement();) {
+                    updateStatement.executeUpdate("UPDATE events SET hash_hit = 1" // NON-NLS
+                            + " WHERE event_id IN (" + StringUtils.join(eventIDs, ",") + ")"); // NON-NLS
+                }
+                for (String name : hashSetNames) {
+                    int hashSetID = getHashSetID(name);
+                    for (Long eventID : eventIDs) {
+                        insertHashHitStmt.setInt(1, hashSetID);
+                        insertHashHitStmt.setLong(2, eventID);
+                        insertHashHitStmt.addBatch();
+                    }
+                }
+                insertHashHitStmt.executeBatch();
+            }
+        } catch (SQLException ex) {
+            LOGGER.log(Level.SEVERE, "failed to mark events of file " + objectID + " as hash hits", ex); // NON-NLS
+        } finally {
+            DBLock.unlock();
+        }
+        return eventIDs;
+    }
+
+    /**
+     * set the tagged flag of every event from the given sets of tagged files
+     * and artifacts, clearing it on all other events. Used to catch up on
+     * tags that were added or removed while the timeline was not listening.
+     *
+     * @param taggedObjIDs      the ids of all tagged files
+     * @param taggedArtifactIDs the ids of all tagged artifacts
+     *
+     * @return the ids of the events whose tagged flag changed
+     */
+    Set<Long> updateTaggedFlags(Set<Long> taggedObjIDs, Set<Long> taggedArtifactIDs) {
+        Set<Long> wasTagged = new HashSet<>();
+        Set<Long> isTagged = new HashSet<>();
+        DBLock.lock();
+        try (Statement updateStatement = con.createStatement();) {
+            selectEventIDs(updateStatement, "SELECT event_id FROM events WHERE tagged != 0", wasTagged); // NON-NLS
+            updateStatement.executeUpdate("UPDATE events SET tagged = 0 WHERE tagged != 0"); // NON-NLS
+            for (List<Long> objIDs : Iterables.partition(taggedObjIDs, MAX_IDS_PER_STATEMENT)) {
+                updateStatement.executeUpdate("UPDATE events SET tagged = 1 WHERE artifact_id IS NULL" // NON-NLS
+                        + " AND file_id IN (" + StringUtils.join(objIDs, ",") + ")"); // NON-NLS
+            }
+            for (List<Long> artifactIDs : Iterables.partition(taggedArtifactIDs, MAX_IDS_PER_STATEMENT)) {
+                updateStatement.executeUpdate("UPDATE events SET tagged = 1" // NON-NLS
+                        + " WHERE artifact_id IN (" + StringUtils.join(artifactIDs, ",") + ")"); // NON-NLS
+            }
+            selectEventIDs(updateStatement, "SELECT event_id FROM events WHERE tagged != 0", isTagged); // NON-NLS
+        } catch (SQLException ex) {
+            LOGGER.log(Level.SEVERE, "failed to update tagged flags", ex); // NON-NLS
+        } finally {
+            DBLock.unlock();
+        }
+        return Sets.symmetricDifference(wasTagged, isTagged).immutableCopy();
+    }
+
+    private static void selectEventIDs(Statement stmt, String query, Set<Long> eventIDs) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery(query)) {
+            while (rs.next()) {
+                eventIDs.add(rs.getLong("event_id")); // NON-NLS
+            }
+        }
+    }
+
+    /**
+     * @param eventID
+     *
+     * @return the smallest interval containing all the events with ids greater
+     *         than the given id, in seconds from unix epoch (like
+     *         {@link #getSpanningInterval(java.util.Collection)}), or null if
+     *         there are no such events.
+     */
+    Interval getSpanningIntervalOfEventsAfter(long eventID) {
+        try (SQLiteConnectionPool.ReadConnection readCon = readPool.getReadConnection();
+                Statement stmt = readCon.createStatement();
+                ResultSet rs = stmt.executeQuery("select Min(time), Max(time), count(*) from events where event_id > " + eventID)) { // NON-NLS
+            while (rs.next()) {
+                if (rs.getLong("count(*)") == 0) { // NON-NLS
+                    return null;
+                }
+                return new Interval(rs.getLong("Min(time)"), rs.getLong("Max(time)") + 1, DateTimeZone.UTC); // NON-NLS
+            }
+        } catch (SQLException ex) {
+            LOGGER.log(Level.SEVERE, "Error executing get spanning interval query.", ex); // NON-NLS
+        }
+        return null;
+    }
+
     void recordLastArtifactID(long lastArtfID) {
         recordDBInfo(DBInfoKey.LAST_ARTIFACT_ID, lastArtfID);
     }
@@ -808,6 +1165,16 @@ private void configureDB() throws SQLException {
             DBLock.unlock();
         }
 
+        //let the read connections query while the write connection is in a transaction
+        DBLock.lock();
+        try {
+            if (SQLiteConnectionPool.enableWriteAheadLog(con) == false) {
+                LOGGER.log(Level.WARNING, "Failed to put events.db in WAL mode, queries may fail while events are being added."); // NON-NLS
+            }
+        } finally {
+            DBLock.unlock();
+        }
+
         try {
             LOGGER.log(Level.INFO, String.format("sqlite-jdbc version %s loaded in %s mode", // NON-NLS
                     SQLiteJDBCLoader.getVersion(), SQLiteJDBCLoader.isNativeMode()
@@ -856,30 +1223,102 @@ private Map<EventType, Long> countEvents(Long startTime, Long endTime, RootFilte
         //do we want the root or subtype column of the databse
         final boolean useSubTypes = (zoomLevel == EventTypeZoomLevel.SUB_TYPE);
 
-        //get some info about the range of dates requested
-        final String queryString = "select count(*), " + useSubTypeHelper(useSubTypes)
-                + " from events" + useHashHitTablesHelper(filter) + " where time >= " + startTime + " and time < " + endTime + " and " + SQLHelper.getSQLWhere(filter) // NON-NLS
-                + " GROUP BY " + useSubTypeHelper(useSubTypes); // NON-NLS
+        //if the range lines up with the periods of one of the rollup resolutions, sum the rollups instead of counting the events
+        final TimeUnits rollupResolution = SQLHelper.canUseRollups(filter) ? getAlignedRollupResolution(startTime, endTime) : null;
+        final String queryString;
+        if (rollupResolution != null) {
+            queryString = "select SUM(count) as count, " + useSubTypeHelper(useSubTypes) // NON-NLS
+                    + " from event_rollups where " + getRollupWhere(rollupResolution, startTime, endTime) + " and " + SQLHelper.getSQLWhere(filter) // NON-NLS
+                    + " GROUP BY " + useSubTypeHelper(useSubTypes); // NON-NLS
+        } else {
+            queryString = "select count(*) as count, " + useSubTypeHelper(useSubTypes) // NON-NLS
+                    + " from events" + useHashHitTablesHelper(filter) + " where time >= " + startTime + " and time < " + endTime + " and " + SQLHelper.getSQLWhere(filter) // NON-NLS
+                    + " GROUP BY " + useSubTypeHelper(useSubTypes); // NON-NLS
+        }
 
-        DBLock.lock();
-        try (Statement stmt = con.createStatement();
+        try (SQLiteConnectionPool.ReadConnection readCon = readPool.getReadConnection();
+                Statement stmt = readCon.createStatement();
                 ResultSet rs = stmt.executeQuery(queryString);) {
             while (rs.next()) {
                 EventType type = useSubTypes
                         ? RootEventType.allTypes.get(rs.getInt("sub_type"))
                         : BaseTypes.values()[rs.getInt("base_type")];
 
-                typeMap.put(type, rs.getLong("count(*)")); // NON-NLS
+                typeMap.put(type, rs.getLong("count")); // NON-NLS
             }
 
         } catch (Exception ex) {
             LOGGER.log(Level.SEVERE, "Error getting count of events from db.", ex); // NON-NLS
-        } finally {
-            DBLock.unlock();
         }
         return typeMap;
     }
 
+    /**
+     * get the counts of the events that pass the filter of the given zoom
+     * params, per period and per event type, with one grouped query. The time
+     * range of the params is rounded out and divided into periods as
+     * determined by {@link RangeDivisionInfo}, so the periods line up with the
+     * bars of the counts chart.
+     *
+     * @param params the params that control what events to count, the range
+     *               to divide into periods and the event type level to
+     *               organize the counts by
+     *
+     * If the periods are minutes or longer and the filter does not need the
+     * descriptions or hash hits, the counts are summed from the event_rollups
+     * table instead of counted from the events.
+     *
+     * @return a map from the start of each period (in millis from unix epoch)
+     *         to a map from event type to count. Periods without events are
+     *         not included.
+     */
+    Map<Long, Map<EventType, Long>> countEventsByPeriod(ZoomParams params) {
+        if (params.getTimeRange() == null) {
+            return Collections.emptyMap();
+        }
+        RangeDivisionInfo rangeInfo = RangeDivisionInfo.getRangeDivisionInfo(params.getTimeRange());
+        long start = rangeInfo.getLowerBound() / 1000;
+        long end = rangeInfo.getUpperBound() / 1000;
+        final boolean useSubTypes = (params.getTypeZoomLevel() == EventTypeZoomLevel.SUB_TYPE);
+        final RootFilter filter = params.getFilter();
+
+        //the periods are formatted by sqlite in local time or UTC, parse them the same way
+        final DateTimeFormatter periodParser = ISODateTimeFormat.dateHourMinuteSecond()
+                .withZone(isLocalTimeZone() ? TimeLineController.getJodaTimeZone() : DateTimeZone.UTC);
+
+        final boolean useRollups = ROLLUP_RESOLUTIONS.contains(rangeInfo.getPeriodSize()) && SQLHelper.canUseRollups(filter);
+        final String queryString;
+        if (useRollups) {
+            queryString = "select period_start, SUM(count) as count, " + useSubTypeHelper(useSubTypes) // NON-NLS
+                    + " from event_rollups where " + getRollupWhere(rangeInfo.getPeriodSize(), start, end) + " and " + SQLHelper.getSQLWhere(filter) // NON-NLS
+                    + " GROUP BY period_start, " + useSubTypeHelper(useSubTypes); // NON-NLS
+        } else {
+            queryString = "select " + getStrfTimeExpression(rangeInfo.getPeriodSize()) + " as interval, count(*) as count, " + useSubTypeHelper(useSubTypes) // NON-NLS
+                    + " from events" + useHashHitTablesHelper(filter) + " where time >= " + start + " and time < " + end + " and " + SQLHelper.getSQLWhere(filter) // NON-NLS
+                    + " GROUP BY interval, " + useSubTypeHelper(useSubTypes); // NON-NLS
+        }
+
+        Map<Long, Map<EventType, Long>> periodMap = new HashMap<>();
+        try (SQLiteConnectionPool.ReadConnection readCon = readPool.getReadConnection();
+                Statement stmt = readCon.createStatement();
+                ResultSet rs = stmt.executeQuery(queryString);) {
+            while (rs.next()) {
+                long periodStart = useRollups
+                        ? rs.getLong("period_start") * 1000 // NON-NLS
+                        : periodParser.parseMillis(rs.getString("interval")); // NON-NLS
+                EventType type = useSubTypes
+                        ? RootEventType.allTypes.get(rs.getInt("sub_type"))
+                        : BaseTypes.values()[rs.getInt("base_type")];
+
+                periodMap.computeIfAbsent(periodStart, k -> new HashMap<>())
+                        .put(type, rs.getLong("count")); // NON-NLS
+            }
+        } catch (Exception ex) {
+            LOGGER.log(Level.SEVERE, "Error getting counts of events per period from db.", ex); // NON-NLS
+        }
+        return periodMap;
+    }
+
     List<AggregateEvent> getAggregatedEvents(ZoomParams params) {
         return getAggregatedEvents(params.getTimeRange(), params.getFilter(), params.getTypeZoomLevel(), params.getDescrLOD());
     }
@@ -921,47 +1360,33 @@ private List<AggregateEvent> getAggregatedEvents(Interval timeRange, RootFilter
             end++;
         }
 
-        //get a sqlite srtftime format string
-        String strfTimeFormat = getStrfTimeFormat(rangeInfo.getPeriodSize());
-
         //effectively map from type to (map from description to events)
         Map<EventType, SetMultimap< String, AggregateEvent>> typeMap = new HashMap<>();
 
         //get all agregate events in this time unit
-        DBLock.lock();
-        String query = "select strftime('" + strfTimeFormat + "',time , 'unixepoch'" + (TimeLineController.getTimeZone().get().equals(TimeZone.getDefault()) ? ", 'localtime'" : "") + ") as interval,"
-                + "  group_concat(events.event_id) as event_ids, Min(time), Max(time),  " + descriptionColumn + ", " + useSubTypeHelper(useSubTypes)
+        //the tagged and hash hit subsets are concatenated in the same pass, group_concat skips the nulls
+        String query = "select " + getStrfTimeExpression(rangeInfo.getPeriodSize()) + " as interval,"
+                + "  group_concat(events.event_id) as event_ids," // NON-NLS
+                + "  group_concat(CASE WHEN events.tagged != 0 THEN events.event_id END) as tagged_ids," // NON-NLS
+                + "  group_concat(CASE WHEN events.hash_hit != 0 THEN events.event_id END) as hash_hit_ids," // NON-NLS
+                + "  Min(time), Max(time),  " + descriptionColumn + ", " + useSubTypeHelper(useSubTypes)
                 + " from events" + useHashHitTablesHelper(filter) + " where " + "time >= " + start + " and time < " + end + " and " + SQLHelper.getSQLWhere(filter) // NON-NLS
                 + " group by interval, " + useSubTypeHelper(useSubTypes) + " , " + descriptionColumn // NON-NLS
                 + " order by Min(time)"; // NON-NLS
         // scoop up requested events in groups organized by interval, type, and desription
-        try (ResultSet rs = con.createStatement().executeQuery(query);) {
+        try (SQLiteConnectionPool.ReadConnection readCon = readPool.getReadConnection();
+                Statement stmt = readCon.createStatement();
+                ResultSet rs = stmt.executeQuery(query);) {
             while (rs.next()) {
                 Interval interval = new Interval(rs.getLong("Min(time)") * 1000, rs.getLong("Max(time)") * 1000, TimeLineController.getJodaTimeZone());
-                String eventIDS = rs.getString("event_ids");
                 EventType type = useSubTypes ? RootEventType.allTypes.get(rs.getInt("sub_type")) : BaseTypes.values()[rs.getInt("base_type")];
 
-                HashSet<Long> hashHits = new HashSet<>();
-                HashSet<Long> tagged = new HashSet<>();
-                try (Statement st2 = con.createStatement();
-                        ResultSet hashQueryResults = st2.executeQuery("select event_id , tagged, hash_hit from events where event_id in (" + eventIDS + ")");) {
-                    while (hashQueryResults.next()) {
-                        long eventID = hashQueryResults.getLong("event_id");
-                        if (hashQueryResults.getInt("tagged") != 0) {
-                            tagged.add(eventID);
-                        }
-                        if (hashQueryResults.getInt("hash_hit") != 0) {
-                            hashHits.add(eventID);
-                        }
-                    }
-                }
-
                 AggregateEvent aggregateEvent = new AggregateEvent(
                         interval, // NON-NLS
                         type,
-                        Stream.of(eventIDS.split(",")).map(Long::valueOf).collect(Collectors.toSet()), // NON-NLS
-                        hashHits,
-                        tagged,
+                        SortedLongSet.parse(rs.getString("event_ids")), // NON-NLS
+                        SortedLongSet.parse(rs.getString("hash_hit_ids")), // NON-NLS
+                        SortedLongSet.parse(rs.getString("tagged_ids")), // NON-NLS
                         rs.getString(descriptionColumn),
                         lod);
 
@@ -976,16 +1401,28 @@ private List<AggregateEvent> getAggregatedEvents(Interval timeRange, RootFilter
 
         } catch (SQLException ex) {
             Exceptions.printStackTrace(ex);
-        } finally {
-            DBLock.unlock();
         }
 
+        return mergeAggregateEvents(typeMap, rangeInfo.getPeriodSize().getPeriod());
+    }
+
+    /**
+     * merge the aggregate events of each type and description that are in
+     * adjacent or nearby periods.
+     *
+     * @param typeMap        map from type to (map from description to the
+     *                       aggregate events of one period each)
+     * @param timeUnitLength the length of the periods, used to decide if the
+     *                       gap between two aggregate events is small enough
+     *                       to merge them
+     *
+     * @return a list of aggregate events, one per type/description spanning
+     *         consecutive periods
+     */
+    static List<AggregateEvent> mergeAggregateEvents(Map<EventType, SetMultimap<String, AggregateEvent>> typeMap, Period timeUnitLength) {
         //result list to return
         ArrayList<AggregateEvent> aggEvents = new ArrayList<>();
 
-        //save this for use when comparing gap size
-        Period timeUnitLength = rangeInfo.getPeriodSize().getPeriod();
-
         //For each (type, description) key, merge agg events
         for (SetMultimap<String, AggregateEvent> descrMap : typeMap.values()) {
             for (String descr : descrMap.keySet()) {
@@ -1019,6 +1456,21 @@ private List<AggregateEvent> getAggregatedEvents(Interval timeRange, RootFilter
         return aggEvents;
     }
 
+    /**
+     * Load all the events into a new in-memory column store.
+     *
+     * @return the new store, or null if there are too many events to hold in
+     *         memory or there was an error loading them.
+     */
+    EventColumnStore loadColumnStore() {
+        try (SQLiteConnectionPool.ReadConnection readCon = readPool.getReadConnection()) {
+            return EventColumnStore.load(readCon.getConnection());
+        } catch (SQLException ex) {
+            LOGGER.log(Level.SEVERE, "Failed to load the timeline events into memory.", ex); // NON-NLS
+            return null;
+        }
+    }
+
     private String useHashHitTablesHelper(RootFilter filter) {
         return SQLHelper.hasActiveHashFilter(filter) ? ", hash_set_hits" : "";
     }
@@ -1050,6 +1502,29 @@ private long getDBInfo(DBInfoKey key, long defaultValue) {
         return defaultValue;
     }
 
+    private String getDBInfo(DBInfoKey key, String defaultValue) {
+        DBLock.lock();
+        try {
+            getDBInfoStmt.setString(1, key.toString());
+
+            try (ResultSet rs = getDBInfoStmt.executeQuery()) {
+                String result = defaultValue;
+                while (rs.next()) {
+                    result = rs.getString("value"); // NON-NLS
+                }
+                return result;
+            } catch (SQLException ex) {
+                LOGGER.log(Level.SEVERE, "failed to read key: " + key + " from db_info", ex); // NON-NLS
+            } finally {
+                DBLock.unlock();
+            }
+        } catch (SQLException ex) {
+            LOGGER.log(Level.SEVERE, "failed to set key: " + key + " on getDBInfoStmt ", ex); // NON-NLS
+        }
+
+        return defaultValue;
+    }
+
     private String getDescriptionColumn(DescriptionLOD lod) {
         switch (lod) {
             case FULL:
@@ -1062,6 +1537,88 @@ private String getDescriptionColumn(DescriptionLOD lod) {
         }
     }
 
+    /**
+     * @return true if the timeline is showing times in the default (local)
+     *         time zone, in which case sqlite should format times as
+     *         'localtime', otherwise they are formatted in UTC.
+     */
+    static boolean isLocalTimeZone() {
+        return TimeLineController.getTimeZone().get().equals(TimeZone.getDefault());
+    }
+
+    /**
+     * @return a sqlite expression that formats the time column as the start of
+     *         the period of the given size that contains it
+     */
+    private String getStrfTimeExpression(TimeUnits periodSize) {
+        return "strftime('" + getStrfTimeFormat(periodSize) + "',time , 'unixepoch'" + (isLocalTimeZone() ? ", 'localtime'" : "") + ")"; // NON-NLS
+    }
+
+    /**
+     * @param periodSize one of the {@link #ROLLUP_RESOLUTIONS}
+     * @param column     the column holding the time to round down, in seconds
+     *                   from unix epoch
+     * @param localTime  true to use periods in local time, false for UTC
+     *
+     * @return a sqlite expression for the start, in seconds from unix epoch,
+     *         of the period of the given size that contains the time in the
+     *         given column
+     */
+    private String getPeriodStartExpression(TimeUnits periodSize, String column, boolean localTime) {
+        return "CAST(strftime('%s', strftime('" + getStrfTimeFormat(periodSize) + "', " + column + ", 'unixepoch'" // NON-NLS
+                + (localTime ? ", 'localtime'), 'utc')" : "))") + " AS INTEGER)"; // NON-NLS
+    }
+
+    /**
+     * @return the where clause that selects the rollups of the given
+     *         resolution, in the zone the timeline is showing, that start in
+     *         the given range (in seconds from unix epoch)
+     */
+    private String getRollupWhere(TimeUnits resolution, long start, long end) {
+        return "resolution = " + resolution.ordinal() + " and local_time = " + (isLocalTimeZone() ? 1 : 0) // NON-NLS
+                + " and period_start >= " + start + " and period_start < " + end; // NON-NLS
+    }
+
+    /**
+     * Find the coarsest rollup resolution whose periods line up with both ends
+     * of the given range, so that the range is exactly covered by whole
+     * periods.
+     *
+     * @param start the start of the range, in seconds from unix epoch
+     * @param end   the end of the range, in seconds from unix epoch
+     *
+     * @return the resolution, or null if the range does not line up with the
+     *         periods of any resolution
+     */
+    private static TimeUnits getAlignedRollupResolution(long start, long end) {
+        final DateTimeZone zone = isLocalTimeZone() ? TimeLineController.getJodaTimeZone() : DateTimeZone.UTC;
+        final DateTime startTime = new DateTime(start * 1000, zone);
+        final DateTime endTime = new DateTime(end * 1000, zone);
+        for (TimeUnits resolution : Lists.reverse(ROLLUP_RESOLUTIONS)) {
+            if (startTime.equals(roundFloor(startTime, resolution)) && endTime.equals(roundFloor(endTime, resolution))) {
+                return resolution;
+            }
+        }
+        return null;
+    }
+
+    static DateTime roundFloor(DateTime time, TimeUnits periodSize) {
+        switch (periodSize) {
+            case YEARS:
+                return time.year().roundFloorCopy();
+            case MONTHS:
+                return time.monthOfYear().roundFloorCopy();
+            case DAYS:
+                return time.dayOfMonth().roundFloorCopy();
+            case HOURS:
+                return time.hourOfDay().roundFloorCopy();
+            case MINUTES:
+                return time.minuteOfHour().roundFloorCopy();
+            default:
+                return time.secondOfMinute().roundFloorCopy();
+        }
+    }
+
     private String getStrfTimeFormat(TimeUnits info) {
         switch (info) {
             case DAYS:
@@ -1101,6 +1658,56 @@ private void recordDBInfo(DBInfoKey key, long value) {
         }
     }
 
+    private void recordDBInfo(DBInfoKey key, String value) {
+        DBLock.lock();
+        try {
+            recordDBInfoStmt.setString(1, key.toString());
+            recordDBInfoStmt.setString(2, value);
+            recordDBInfoStmt.executeUpdate();
+        } catch (SQLException ex) {
+            LOGGER.log(Level.SEVERE, "failed to set dbinfo  key: " + key + " value: " + value, ex); // NON-NLS
+        } finally {
+            DBLock.unlock();
+
+        }
+    }
+
+    /**
+     * the values of one event that has not been inserted into the database
+     * yet, used to queue events for batched insertion.
+     */
+    static final class PendingEvent {
+
+        private final long time;
+        private final EventType type;
+        private final long datasourceID;
+        private final long objID;
+        private final Long artifactID;
+        private final String fullDescription;
+        private final String medDescription;
+        private final String shortDescription;
+        private final TskData.FileKnown known;
+        private final Set<String> hashSetNames;
+        private final boolean tagged;
+
+        PendingEvent(long time, EventType type, long datasourceID, long objID,
+                Long artifactID, String fullDescription, String medDescription,
+                String shortDescription, TskData.FileKnown known, Set<String> hashSetNames,
+                boolean tagged) {
+            this.time = time;
+            this.type = type;
+            this.datasourceID = datasourceID;
+            this.objID = objID;
+            this.artifactID = artifactID;
+            this.fullDescription = fullDescription;
+            this.medDescription = medDescription;
+            this.shortDescription = shortDescription;
+            this.known = known;
+            this.hashSetNames = hashSetNames;
+            this.tagged = tagged;
+        }
+    }
+
     /**
      * inner class that can reference access database connection
      */
@@ -1133,6 +1740,8 @@ private EventTransaction() {
         private void rollback() {
             if (!closed) {
                 try {
+                    //rolled back hash sets may have been cached
+                    hashSetIDs.clear();
                     con.rollback();
 
                 } catch (SQLException ex1) {
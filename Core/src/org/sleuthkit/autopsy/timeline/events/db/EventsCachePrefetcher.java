@@ -0,0 +1,174 @@
+/*
+ * Autopsy Forensic Browser
+ *
+ * Copyright 2015 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.autopsy.timeline.events.db;
+
+import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import org.joda.time.Interval;
+import org.sleuthkit.autopsy.coreutils.Logger;
+import org.sleuthkit.autopsy.timeline.zooming.DescriptionLOD;
+import org.sleuthkit.autopsy.timeline.zooming.EventTypeZoomLevel;
+import org.sleuthkit.autopsy.timeline.zooming.ZoomParams;
+
+/**
+ * Loads the cache entries the user is likely to ask for next, in the
+ * background, after each view change: the neighbouring time ranges (panning
+ * and zooming), and the next finer and coarser event type and description
+ * levels.
+ *
+ * Only the prefetches for the most recent view are run: when the view changes
+ * again, the prefetches that have not started yet are skipped. Prefetches are
+ * run one at a time on a low priority thread so they don't compete with the
+ * queries of the view itself.
+ */
+final class EventsCachePrefetcher {
+
+    private static final Logger LOGGER = Logger.getLogger(EventsCachePrefetcher.class.getName());
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+            .setNameFormat("timeline-cache-prefetch-%d") // NON-NLS
+            .setDaemon(true)
+            .setPriority(Thread.MIN_PRIORITY)
+            .build());
+
+    /**
+     * incremented for every new view, so stale prefetches can be skipped
+     */
+    private final AtomicLong viewGeneration = new AtomicLong();
+
+    /**
+     * incremented every time cache entries are invalidated, so a prefetch that
+     * was loading during an invalidation doesn't leave a stale entry behind
+     */
+    private final AtomicLong invalidationEpoch = new AtomicLong();
+
+    private volatile ZoomParams lastPrefetched;
+
+    /**
+     * Prefetch the entries of the given cache for the neighbours of the given
+     * params. Does nothing if the neighbours of these params were the last
+     * ones prefetched.
+     *
+     * @param params          the params of the current view
+     * @param cache           the cache the current view uses
+     * @param includeDescrLOD true if the cached values depend on the
+     *                        description level of detail, so the finer and
+     *                        coarser levels should be prefetched too
+     */
+    <V> void prefetchAround(ZoomParams params, LoadingCache<ZoomParams, V> cache, boolean includeDescrLOD) {
+        if (params.getTimeRange() == null || Objects.equals(params, lastPrefetched)) {
+            return;
+        }
+        lastPrefetched = params;
+        final long generation = viewGeneration.incrementAndGet();
+        for (ZoomParams neighbour : getNeighbours(params, includeDescrLOD)) {
+            if (executor.isShutdown()) {
+                return;
+            }
+            executor.execute(() -> {
+                if (viewGeneration.get() != generation || cache.getIfPresent(neighbour) != null) {
+                    return;
+                }
+                final long epoch = invalidationEpoch.get();
+                try {
+                    cache.getUnchecked(neighbour);
+                } catch (RuntimeException ex) {
+                    LOGGER.log(Level.WARNING, "Failed to prefetch timeline data for " + neighbour.getTimeRange(), ex); // NON-NLS
+                }
+                if (invalidationEpoch.get() != epoch) {
+                    //the entry may have been loaded from data that is now out of date
+                    cache.invalidate(neighbour);
+                }
+            });
+        }
+    }
+
+    /**
+     * Stop prefetching: skip the waiting prefetches and interrupt the running
+     * one. Called when the database the caches load from is closed. No more
+     * prefetches are run after this.
+     */
+    void shutdown() {
+        viewGeneration.incrementAndGet();
+        executor.shutdownNow();
+    }
+
+    /**
+     * Must be called whenever entries of the prefetched caches are invalidated.
+     */
+    void cachesInvalidated() {
+        invalidationEpoch.incrementAndGet();
+        lastPrefetched = null;
+    }
+
+    /**
+     * @param params
+     * @param includeDescrLOD true to include the finer and coarser description
+     *                        levels of detail
+     *
+     * @return the params the user is most likely to go to from the given
+     *         params, most likely first.
+     */
+    static List<ZoomParams> getNeighbours(ZoomParams params, boolean includeDescrLOD) {
+        List<ZoomParams> neighbours = new ArrayList<>();
+        Interval range = params.getTimeRange();
+        long duration = range.toDurationMillis();
+
+        //pan back and forward by a whole range
+        neighbours.add(params.withTimeRange(new Interval(range.getStartMillis() - duration, range.getStartMillis(), range.getChronology())));
+        neighbours.add(params.withTimeRange(new Interval(range.getEndMillis(), range.getEndMillis() + duration, range.getChronology())));
+
+        //zoom out and in around the center
+        long center = range.getStartMillis() + duration / 2;
+        neighbours.add(params.withTimeRange(new Interval(center - duration, center + duration, range.getChronology())));
+        if (duration >= 2000) {
+            neighbours.add(params.withTimeRange(new Interval(center - duration / 4, center + duration / 4, range.getChronology())));
+        }
+
+        //finer and coarser event types
+        EventTypeZoomLevel[] typeLevels = EventTypeZoomLevel.values();
+        int typeLevel = params.getTypeZoomLevel().ordinal();
+        if (typeLevel + 1 < typeLevels.length) {
+            neighbours.add(params.withTypeZoomLevel(typeLevels[typeLevel + 1]));
+        }
+        if (typeLevel > 0) {
+            neighbours.add(params.withTypeZoomLevel(typeLevels[typeLevel - 1]));
+        }
+
+        //finer and coarser descriptions
+        if (includeDescrLOD) {
+            DescriptionLOD next = params.getDescrLOD().next();
+            if (next != null) {
+                neighbours.add(params.withDescrLOD(next));
+            }
+            DescriptionLOD previous = params.getDescrLOD().previous();
+            if (previous != null) {
+                neighbours.add(params.withDescrLOD(previous));
+            }
+        }
+        return neighbours;
+    }
+}
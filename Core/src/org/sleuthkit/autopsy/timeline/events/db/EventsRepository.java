@@ -21,6 +21,7 @@
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -29,7 +30,11 @@
 import java.util.Set;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
 import java.util.logging.Level;
 import java.util.stream.Collectors;
 import javafx.beans.property.ReadOnlyObjectProperty;
@@ -38,34 +43,31 @@
 import javax.annotation.concurrent.GuardedBy;
 import javax.swing.JOptionPane;
 import javax.swing.SwingWorker;
-import org.apache.commons.lang3.StringUtils;
+import org.joda.time.DateTimeZone;
 import org.joda.time.Interval;
 import org.openide.util.NbBundle;
 import org.sleuthkit.autopsy.casemodule.Case;
-import org.sleuthkit.autopsy.casemodule.services.TagsManager;
+import org.sleuthkit.autopsy.core.UserPreferences;
 import org.sleuthkit.autopsy.coreutils.Logger;
 import org.sleuthkit.autopsy.timeline.ProgressWindow;
 import org.sleuthkit.autopsy.timeline.events.AggregateEvent;
 import org.sleuthkit.autopsy.timeline.events.FilteredEventsModel;
 import org.sleuthkit.autopsy.timeline.events.TimeLineEvent;
-import org.sleuthkit.autopsy.timeline.events.type.ArtifactEventType;
 import org.sleuthkit.autopsy.timeline.events.type.EventType;
-import org.sleuthkit.autopsy.timeline.events.type.FileSystemTypes;
-import org.sleuthkit.autopsy.timeline.events.type.RootEventType;
 import org.sleuthkit.autopsy.timeline.filters.RootFilter;
+import org.sleuthkit.autopsy.timeline.utils.RangeDivisionInfo;
 import org.sleuthkit.autopsy.timeline.zooming.ZoomParams;
-import org.sleuthkit.datamodel.AbstractFile;
-import org.sleuthkit.datamodel.BlackboardArtifact;
 import org.sleuthkit.datamodel.SleuthkitCase;
 import org.sleuthkit.datamodel.TskCoreException;
-import org.sleuthkit.datamodel.TskData;
 
 /**
  * Provides public API (over EventsDB) to access events. In theory this
  * insulates the rest of the timeline module form the details of the db
  * implementation. Since there are no other implementations of the database or
  * clients of this class, and no Java Interface defined yet, in practice this
- * just delegates everything to the eventDB
+ * just delegates everything to the eventDB, or, if it is turned on in the
+ * user preferences, answers the counting and aggregating queries from an
+ * in-memory {@link EventColumnStore} copy of the events.
  *
  * Concurrency Policy:
  *
@@ -91,8 +93,39 @@ public class EventsRepository {
 
     private final LoadingCache<Long, TimeLineEvent> idToEventCache;
     private final LoadingCache<ZoomParams, Map<EventType, Long>> eventCountsCache;
+    private final LoadingCache<ZoomParams, Map<Long, Map<EventType, Long>>> eventCountsByPeriodCache;
     private final LoadingCache<ZoomParams, List<AggregateEvent>> aggregateEventsCache;
 
+    private final EventsCachePrefetcher prefetcher = new EventsCachePrefetcher();
+
+    /**
+     * the in-memory copy of the events that queries are answered from instead
+     * of the EventDB, or null if it is turned off in the user preferences or
+     * is not loaded yet. Only replaced while holding this repository's lock,
+     * but read without it by the cache loaders.
+     */
+    private volatile EventColumnStore columnStore;
+
+    /**
+     * incremented every time a new column store load is started, so that only
+     * the result of the latest one is used
+     */
+    @GuardedBy("this")
+    private long columnStoreGeneration = 0;
+
+    /**
+     * changes to the tags and hash hits made while a column store is loading,
+     * to apply to it once it is loaded. They may already be in the loaded
+     * store, but applying them again is harmless.
+     */
+    @GuardedBy("this")
+    private final List<UnaryOperator<EventColumnStore>> pendingColumnStoreChanges = new ArrayList<>();
+
+    private final ExecutorService columnStoreLoader = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+            .setNameFormat("timeline-event-store-loader-%d") // NON-NLS
+            .setDaemon(true)
+            .build());
+
     private final ObservableMap<Long, String> datasourcesMap = FXCollections.observableHashMap();
     private final ObservableMap<Long, String> hashSetMap = FXCollections.observableHashMap();
     private final Case autoCase;
@@ -133,14 +166,86 @@ public EventsRepository(Case autoCase, ReadOnlyObjectProperty<ZoomParams> curren
         eventCountsCache = CacheBuilder.newBuilder()
                 .maximumSize(1000L)
                 .expireAfterAccess(10, TimeUnit.MINUTES)
-                .build(CacheLoader.from(eventDB::countEventsByType));
+                .build(CacheLoader.from(this::countEventsByTypeUncached));
+        eventCountsByPeriodCache = CacheBuilder.newBuilder()
+                .maximumSize(100L)
+                .expireAfterAccess(10, TimeUnit.MINUTES)
+                .build(CacheLoader.from(this::countEventsByPeriodUncached));
         aggregateEventsCache = CacheBuilder.newBuilder()
                 .maximumSize(1000L)
                 .expireAfterAccess(10, TimeUnit.MINUTES
-                ).build(CacheLoader.from(eventDB::getAggregatedEvents));
+                ).build(CacheLoader.from(this::getAggregatedEventsUncached));
         maxCache = CacheBuilder.newBuilder().build(CacheLoader.from(eventDB::getMaxTime));
         minCache = CacheBuilder.newBuilder().build(CacheLoader.from(eventDB::getMinTime));
         this.modelInstance = new FilteredEventsModel(this, currentStateProperty);
+        reloadColumnStore();
+    }
+
+    private Map<EventType, Long> countEventsByTypeUncached(ZoomParams params) {
+        final EventColumnStore store = columnStore;
+        return (store == null) ? eventDB.countEventsByType(params) : store.countEventsByType(params);
+    }
+
+    private Map<Long, Map<EventType, Long>> countEventsByPeriodUncached(ZoomParams params) {
+        final EventColumnStore store = columnStore;
+        return (store == null) ? eventDB.countEventsByPeriod(params) : store.countEventsByPeriod(params);
+    }
+
+    private List<AggregateEvent> getAggregatedEventsUncached(ZoomParams params) {
+        final EventColumnStore store = columnStore;
+        return (store == null) ? eventDB.getAggregatedEvents(params) : store.getAggregatedEvents(params);
+    }
+
+    /**
+     * Drop the in-memory copy of the events, and if it is turned on in the
+     * user preferences, start loading a new one in the background. Until it is
+     * loaded, queries go to the EventDB.
+     */
+    synchronized private void reloadColumnStore() {
+        columnStore = null;
+        pendingColumnStoreChanges.clear();
+        final long generation = ++columnStoreGeneration;
+        if (UserPreferences.keepTimelineEventsInMemory() == false || columnStoreLoader.isShutdown()) {
+            return;
+        }
+        columnStoreLoader.execute(() -> {
+            EventColumnStore store = eventDB.loadColumnStore();
+            synchronized (EventsRepository.this) {
+                if (store != null && generation == columnStoreGeneration) {
+                    for (UnaryOperator<EventColumnStore> change : pendingColumnStoreChanges) {
+                        store = change.apply(store);
+                    }
+                    pendingColumnStoreChanges.clear();
+                    columnStore = store;
+                    LOGGER.log(Level.INFO, "Loaded {0} timeline events into memory.", store.size()); // NON-NLS
+                }
+            }
+        });
+    }
+
+    /**
+     * Drop the in-memory copy of the events and stop the threads that load it
+     * and prefetch the caches. Called when the timeline of the case is
+     * closed, after which queries go to the EventDB.
+     */
+    synchronized public void close() {
+        columnStoreGeneration++;
+        columnStore = null;
+        pendingColumnStoreChanges.clear();
+        columnStoreLoader.shutdownNow();
+        prefetcher.shutdown();
+    }
+
+    /**
+     * apply the given change to the in-memory copy of the events, or save it
+     * to apply once the copy is loaded.
+     */
+    synchronized private void updateColumnStore(UnaryOperator<EventColumnStore> change) {
+        if (columnStore != null) {
+            columnStore = change.apply(columnStore);
+        } else if (UserPreferences.keepTimelineEventsInMemory()) {
+            pendingColumnStoreChanges.add(change);
+        }
     }
 
     /**
@@ -195,17 +300,34 @@ synchronized public Set<TimeLineEvent> getEventsById(Collection<Long> eventIDs)
     }
 
     synchronized public List<AggregateEvent> getAggregatedEvents(ZoomParams params) {
-        return aggregateEventsCache.getUnchecked(params);
+        List<AggregateEvent> aggregateEvents = aggregateEventsCache.getUnchecked(params);
+        prefetcher.prefetchAround(params, aggregateEventsCache, true);
+        return aggregateEvents;
     }
 
     synchronized public Map<EventType, Long> countEvents(ZoomParams params) {
         return eventCountsCache.getUnchecked(params);
     }
 
+    /**
+     * @param params the params that control what events to count and how to
+     *               divide the time range into periods
+     *
+     * @return a map from the start of each period (in millis from unix epoch)
+     *         to the counts of events of each type in that period
+     */
+    synchronized public Map<Long, Map<EventType, Long>> countEventsByPeriod(ZoomParams params) {
+        Map<Long, Map<EventType, Long>> counts = eventCountsByPeriodCache.getUnchecked(params);
+        prefetcher.prefetchAround(params, eventCountsByPeriodCache, false);
+        return counts;
+    }
+
     private void invalidateCaches() {
+        prefetcher.cachesInvalidated();
         minCache.invalidateAll();
         maxCache.invalidateAll();
         eventCountsCache.invalidateAll();
+        eventCountsByPeriodCache.invalidateAll();
         aggregateEventsCache.invalidateAll();
         idToEventCache.invalidateAll();
     }
@@ -223,7 +345,23 @@ synchronized public void rebuildRepository(Runnable r) {
             dbPopulationWorker.cancel(true);
 
         }
-        dbPopulationWorker = new DBPopulationWorker(r);
+        dbPopulationWorker = new DBPopulationWorker(r, false);
+        dbPopulationWorker.execute();
+    }
+
+    /**
+     * Add events for the files and artifacts that were added to the case since
+     * the repository was last built or updated, and bring the tags and hash
+     * set hits of the existing events up to date.
+     *
+     * @param r a Runnable to execute once the update is done
+     */
+    synchronized public void updateRepository(Runnable r) {
+        if (dbPopulationWorker != null) {
+            dbPopulationWorker.cancel(true);
+
+        }
+        dbPopulationWorker = new DBPopulationWorker(r, true);
         dbPopulationWorker.execute();
     }
 
@@ -239,106 +377,76 @@ private class DBPopulationWorker extends SwingWorker<Void, ProgressWindow.Progre
         //post population operation to execute
         private final Runnable postPopulationOperation;
         private final SleuthkitCase skCase;
-        private final TagsManager tagsManager;
+        private final boolean incremental;
 
-        public DBPopulationWorker(Runnable postPopulationOperation) {
+        public DBPopulationWorker(Runnable postPopulationOperation, boolean incremental) {
             progressDialog = new ProgressWindow(null, true, this);
             progressDialog.setVisible(true);
 
             skCase = autoCase.getSleuthkitCase();
-            tagsManager = autoCase.getServices().getTagsManager();
 
             this.postPopulationOperation = postPopulationOperation;
+            this.incremental = incremental;
         }
 
         @Override
-        @NbBundle.Messages({"progressWindow.msg.populateMacEventsFiles=populating mac events for files:",
-            "progressWindow.msg.reinit_db=(re)initializing events database",
+        @NbBundle.Messages({"progressWindow.msg.reinit_db=(re)initializing events database",
+            "progressWindow.msg.updatingRollups=updating event count rollups",
             "progressWindow.msg.commitingDb=committing events db"})
         protected Void doInBackground() throws Exception {
-            process(Arrays.asList(new ProgressWindow.ProgressUpdate(0, -1, Bundle.progressWindow_msg_reinit_db(), "")));
-            //reset database 
-            //TODO: can we do more incremental updates? -jm
-            eventDB.reInitializeDB();
-
-            //grab ids of all files
-            List<Long> files = skCase.findAllFileIdsWhere("name != '.' AND name != '..'");
+            long minObjID = -1;
+            long minArtifactID = -1;
+            if (incremental) {
+                //only add what is newer than the high-water marks of the last population
+                minObjID = eventDB.getLastObjID();
+                minArtifactID = eventDB.getLastArtfactID();
+            } else {
+                process(Arrays.asList(new ProgressWindow.ProgressUpdate(0, -1, Bundle.progressWindow_msg_reinit_db(), "")));
+                //reset database 
+                eventDB.reInitializeDB();
+            }
 
-            final int numFiles = files.size();
-            process(Arrays.asList(new ProgressWindow.ProgressUpdate(0, numFiles, Bundle.progressWindow_msg_populateMacEventsFiles(), "")));
+            //events newer than this are the ones added by this population
+            final long lastEventID = eventDB.getMaxEventID();
 
-            //insert file events into db
-            int i = 1;
+            //insert file and artifact based events into db
+            BulkEventPopulator populator = new BulkEventPopulator(skCase, eventDB, minObjID, minArtifactID, update -> process(Arrays.asList(update)), this);
             EventDB.EventTransaction trans = eventDB.beginTransaction();
-            for (final Long fID : files) {
-                if (isCancelled()) {
-                    break;
-                } else {
-                    try {
-                        AbstractFile f = skCase.getAbstractFileById(fID);
-
-                        if (f == null) {
-                            LOGGER.log(Level.WARNING, "Failed to get data for file : {0}", fID); // NON-NLS
-                        } else {
-                            //TODO: This is broken for logical files? fix -jm
-                            //TODO: logical files don't necessarily have valid timestamps, so ... -jm
-                            final String uniquePath = f.getUniquePath();
-                            final String parentPath = f.getParentPath();
-                            long datasourceID = f.getDataSource().getId();
-                            String datasourceName = StringUtils.substringBefore(StringUtils.stripStart(uniquePath, "/"), parentPath);
-                            String rootFolder = StringUtils.substringBetween(parentPath, "/", "/");
-                            String shortDesc = datasourceName + "/" + StringUtils.defaultIfBlank(rootFolder, "");
-                            String medD = datasourceName + parentPath;
-                            final TskData.FileKnown known = f.getKnown();                   
-                            Set<String> hashSets =  f.getHashSetNames() ;
-                            boolean tagged = !tagsManager.getContentTagsByContent(f).isEmpty();
-
-                            //insert it into the db if time is > 0  => time is legitimate (drops logical files)
-                            if (f.getAtime() > 0) {
-                                eventDB.insertEvent(f.getAtime(), FileSystemTypes.FILE_ACCESSED, datasourceID, fID, null, uniquePath, medD, shortDesc, known, hashSets, tagged, trans);
-                            }
-                            if (f.getMtime() > 0) {
-                                eventDB.insertEvent(f.getMtime(), FileSystemTypes.FILE_MODIFIED, datasourceID, fID, null, uniquePath, medD, shortDesc, known, hashSets, tagged, trans);
-                            }
-                            if (f.getCtime() > 0) {
-                                eventDB.insertEvent(f.getCtime(), FileSystemTypes.FILE_CHANGED, datasourceID, fID, null, uniquePath, medD, shortDesc, known, hashSets, tagged, trans);
-                            }
-                            if (f.getCrtime() > 0) {
-                                eventDB.insertEvent(f.getCrtime(), FileSystemTypes.FILE_CREATED, datasourceID, fID, null, uniquePath, medD, shortDesc, known, hashSets, tagged, trans);
-                            }
-
-                            process(Arrays.asList(new ProgressWindow.ProgressUpdate(i, numFiles,
-                                    Bundle.progressWindow_msg_populateMacEventsFiles(), f.getName())));
-                        }
-                    } catch (TskCoreException tskCoreException) {
-                        LOGGER.log(Level.WARNING, "failed to insert mac event for file : " + fID, tskCoreException); // NON-NLS
-                    }
-                }
-                i++;
-            }
-
-            //insert artifact based events
-            //TODO: use (not-yet existing api) to grab all artifacts with timestamps, rather than the hardcoded lists in EventType -jm
-            for (EventType type : RootEventType.allTypes) {
-                if (isCancelled()) {
-                    break;
+            boolean committed = false;
+            try {
+                populator.populate(trans);
+                /*
+                 * only a population that ran to completion moves the
+                 * high-water marks, otherwise the next incremental update
+                 * would skip the files and artifacts that were missed.
+                 */
+                if (isCancelled() == false) {
+                    process(Arrays.asList(new ProgressWindow.ProgressUpdate(0, -1, Bundle.progressWindow_msg_updatingRollups(), "")));
+                    eventDB.updateRollups(lastEventID);
+                    process(Arrays.asList(new ProgressWindow.ProgressUpdate(0, -1, Bundle.progressWindow_msg_commitingDb(), "")));
+                    eventDB.commitTransaction(trans, true);
+                    committed = true;
+                    eventDB.recordLastObjID(populator.getMaxObjID());
+                    eventDB.recordLastArtifactID(populator.getMaxArtifactID());
                 }
-                //skip file_system events, they are already handled above.
-                if (type instanceof ArtifactEventType) {
-                    populateEventType((ArtifactEventType) type, trans);
+            } finally {
+                if (committed == false) {
+                    process(Arrays.asList(new ProgressWindow.ProgressUpdate(0, -1, Bundle.progressWindow_msg_commitingDb(), "")));
+                    eventDB.rollBackTransaction(trans);
                 }
             }
 
-            process(Arrays.asList(new ProgressWindow.ProgressUpdate(0, -1, Bundle.progressWindow_msg_commitingDb(), "")));
-            if (isCancelled()) {
-                eventDB.rollBackTransaction(trans);
+            populateFilterMaps(skCase);
+            //the in-memory copy doesn't have the new events, drop it before the caches are refilled from it
+            reloadColumnStore();
+            if (incremental && isCancelled() == false) {
+                invalidateCachesForNewEvents(lastEventID);
+                invalidateCachesForEvents(populator.getRetaggedEventIDs(), false);
+                invalidateCachesForEvents(populator.getNewHashHitEventIDs(), true);
             } else {
-                eventDB.commitTransaction(trans, true);
+                invalidateCaches();
             }
 
-            populateFilterMaps(skCase);
-            invalidateCaches();
-
             return null;
         }
 
@@ -373,47 +481,6 @@ protected void done() {
             }
             postPopulationOperation.run();  //execute post db population operation
         }
-
-        /**
-         * populate all the events of one subtype
-         *
-         * @param subType the subtype to populate
-         * @param trans   the db transaction to use
-         * @param skCase  a reference to the sleuthkit case
-         */
-        @NbBundle.Messages({"# {0} - event type ", "progressWindow.populatingXevents=populating {0} events"})
-        private void populateEventType(final ArtifactEventType type, EventDB.EventTransaction trans) {
-            try {
-                //get all the blackboard artifacts corresponding to the given event sub_type
-                final ArrayList<BlackboardArtifact> blackboardArtifacts = skCase.getBlackboardArtifacts(type.getArtifactType());
-                final int numArtifacts = blackboardArtifacts.size();
-
-                process(Arrays.asList(new ProgressWindow.ProgressUpdate(0, numArtifacts,
-                        Bundle.progressWindow_populatingXevents(type.toString()), "")));
-
-                int i = 0;
-                for (final BlackboardArtifact bbart : blackboardArtifacts) {
-                    //for each artifact, extract the relevant information for the descriptions
-                    ArtifactEventType.AttributeEventDescription eventDescription = ArtifactEventType.AttributeEventDescription.buildEventDescription(type, bbart);
-
-                    if (eventDescription != null && eventDescription.getTime() > 0L) {  //insert it into the db if time is > 0  => time is legitimate
-                        long datasourceID = skCase.getContentById(bbart.getObjectID()).getDataSource().getId();
-
-                        AbstractFile f = skCase.getAbstractFileById(bbart.getObjectID());
-                        Set<String> hashSets =  f.getHashSetNames();
-                        boolean tagged = tagsManager.getBlackboardArtifactTagsByArtifact(bbart).isEmpty() == false;
-
-                        eventDB.insertEvent(eventDescription.getTime(), type, datasourceID, bbart.getObjectID(), bbart.getArtifactID(), eventDescription.getFullDescription(), eventDescription.getMedDescription(), eventDescription.getShortDescription(), null, hashSets, tagged, trans);
-                    }
-
-                    i++;
-                    process(Arrays.asList(new ProgressWindow.ProgressUpdate(i, numArtifacts,
-                            Bundle.progressWindow_populatingXevents(type), "")));
-                }
-            } catch (TskCoreException ex) {
-                LOGGER.log(Level.SEVERE, "There was a problem getting events with sub type = " + type.toString() + ".", ex); // NON-NLS
-            }
-        }
     }
 
     /**
@@ -440,12 +507,117 @@ synchronized private void populateFilterMaps(SleuthkitCase skCase) {
         }
     }
 
-  synchronized public Set<Long> markEventsTagged(long objID, Long artifactID, boolean tagged) {
+    synchronized public Set<Long> markEventsTagged(long objID, Long artifactID, boolean tagged) {
         Set<Long> updatedEventIDs = eventDB.markEventsTagged(objID, artifactID, tagged);
         if (!updatedEventIDs.isEmpty()) {
-            aggregateEventsCache.invalidateAll();
-            idToEventCache.invalidateAll(updatedEventIDs);
+            updateColumnStore(store -> store.withTagged(updatedEventIDs, tagged));
+            invalidateCachesForEvents(updatedEventIDs, false);
         }
         return updatedEventIDs;
     }
+
+    /**
+     * mark the events derived from the given file as hits in the given hash
+     * sets.
+     *
+     * @param objID        the id of the file that was found in the hash sets
+     * @param hashSetNames the names of the hash sets
+     *
+     * @return the ids of the events that were updated
+     */
+    synchronized public Set<Long> markEventsHashHit(long objID, Set<String> hashSetNames) {
+        Set<Long> updatedEventIDs = eventDB.markEventsHashHit(objID, hashSetNames);
+        if (!updatedEventIDs.isEmpty()) {
+            //there may be new hash sets to filter on
+            populateFilterMaps(autoCase.getSleuthkitCase());
+            final Set<Long> hashSetIDs = hashSetMap.entrySet().stream()
+                    .filter(hashSet -> hashSetNames.contains(hashSet.getValue()))
+                    .map(Map.Entry::getKey)
+                    .collect(Collectors.toSet());
+            updateColumnStore(store -> store.withHashHits(updatedEventIDs, hashSetIDs));
+            invalidateCachesForEvents(updatedEventIDs, true);
+        }
+        return updatedEventIDs;
+    }
+
+    /**
+     * invalidate only the cache entries that could include the given events:
+     * the events themselves and the aggregates (and, if the change affects
+     * hash set filtering, the counts) for time ranges that overlap them.
+     *
+     * @param updatedEventIDs the ids of events whose flags changed
+     * @param hashHitsChanged true if the hash set hits of the events changed,
+     *                        which changes the results of hash set filters
+     */
+    private void invalidateCachesForEvents(Set<Long> updatedEventIDs, boolean hashHitsChanged) {
+        if (updatedEventIDs.isEmpty()) {
+            return;
+        }
+        idToEventCache.invalidateAll(updatedEventIDs);
+        //the tagged flag doesn't affect any filter, so only the aggregates (which list the tagged events) are affected
+        invalidateCachesInSpan(eventDB.getSpanningInterval(updatedEventIDs),
+                hashHitsChanged ? SQLHelper::hasActiveHashFilter : filter -> false);
+    }
+
+    /**
+     * invalidate only the cache entries that could include the events added
+     * by an incremental update: those for time ranges that overlap the new
+     * events, with any filter, and the min and max times.
+     *
+     * @param lastEventID the highest event id before the update
+     */
+    private void invalidateCachesForNewEvents(long lastEventID) {
+        minCache.invalidateAll();
+        maxCache.invalidateAll();
+        Interval span = eventDB.getSpanningIntervalOfEventsAfter(lastEventID);
+        if (span != null) {
+            invalidateCachesInSpan(span, filter -> true);
+        }
+    }
+
+    /**
+     * invalidate the aggregate entries whose time range overlaps the given
+     * span, and the count entries whose time range overlaps the span and whose
+     * filter is affected.
+     *
+     * @param span           the span of the changed events, in seconds from
+     *                       unix epoch, or null if it is unknown, in which
+     *                       case all time ranges are treated as affected
+     * @param countsAffected tests whether a change to the events in the span
+     *                       changes the counts of events that pass a filter
+     */
+    private void invalidateCachesInSpan(Interval span, Predicate<RootFilter> countsAffected) {
+        prefetcher.cachesInvalidated();
+        //the events table stores times in seconds
+        final Interval affected = (span == null) ? null
+                : new Interval(span.getStartMillis() * 1000, span.getEndMillis() * 1000, DateTimeZone.UTC);
+
+        aggregateEventsCache.invalidateAll(aggregateEventsCache.asMap().keySet().stream()
+                .filter(params -> overlaps(params.getTimeRange(), affected))
+                .collect(Collectors.toList()));
+        eventCountsCache.invalidateAll(eventCountsCache.asMap().keySet().stream()
+                .filter(params -> countsAffected.test(params.getFilter()))
+                .filter(params -> overlaps(params.getTimeRange(), affected))
+                .collect(Collectors.toList()));
+        //the periods are rounded out from the requested range, so check the rounded range
+        eventCountsByPeriodCache.invalidateAll(eventCountsByPeriodCache.asMap().keySet().stream()
+                .filter(params -> countsAffected.test(params.getFilter()))
+                .filter(params -> overlaps(getRoundedTimeRange(params.getTimeRange()), affected))
+                .collect(Collectors.toList()));
+    }
+
+    /**
+     * @return true if either interval is null (unknown), or they overlap
+     */
+    private static boolean overlaps(Interval timeRange, Interval affected) {
+        return timeRange == null || affected == null || timeRange.overlaps(affected);
+    }
+
+    private static Interval getRoundedTimeRange(Interval timeRange) {
+        if (timeRange == null) {
+            return null;
+        }
+        RangeDivisionInfo rangeInfo = RangeDivisionInfo.getRangeDivisionInfo(timeRange);
+        return new Interval(rangeInfo.getLowerBound(), rangeInfo.getUpperBound(), DateTimeZone.UTC);
+    }
 }
@@ -29,7 +29,11 @@
  */
 public class SQLHelper {
 
-    private static List<Integer> getActiveSubTypes(TypeFilter filter) {
+    /**
+     * @return the indices in {@link RootEventType#allTypes} of the leaf types
+     *         that are selected in the given type filter
+     */
+    static List<Integer> getActiveSubTypes(TypeFilter filter) {
         if (filter.isSelected()) {
             if (filter.getSubFilters().isEmpty()) {
                 return Collections.singletonList(RootEventType.allTypes.indexOf(filter.getEventType()));
@@ -46,6 +50,20 @@ static boolean hasActiveHashFilter(RootFilter filter) {
         return hashHitFilter.isSelected() && false == hashHitFilter.isDisabled();
     }
 
+    /**
+     * The rollup tables only have the time, type, data source and known state
+     * of events, so they can only be used if the filter doesn't need the
+     * descriptions or hash set hits.
+     *
+     * @return true if the where clause for the given filter can be applied to
+     *         the event_rollups table
+     */
+    static boolean canUseRollups(RootFilter filter) {
+        TextFilter textFilter = filter.getTextFilter();
+        return hasActiveHashFilter(filter) == false
+                && (textFilter.isSelected() == false || StringUtils.isBlank(textFilter.getText()));
+    }
+
     private SQLHelper() {
     }
 
@@ -40,6 +40,10 @@ public HashHitsFilter getHashHitsFilter() {
         return hashFilter;
     }
 
+    public TextFilter getTextFilter() {
+        return textFilter;
+    }
+
     public RootFilter(HideKnownFilter knownFilter, HashHitsFilter hashFilter, TextFilter textFilter, TypeFilter typeFilter, DataSourcesFilter dataSourceFilter) {
         super(FXCollections.observableArrayList(knownFilter, hashFilter, textFilter, dataSourceFilter, typeFilter));
         this.knwonFilter = knownFilter;
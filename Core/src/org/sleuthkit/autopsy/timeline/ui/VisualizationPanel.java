@@ -395,6 +395,22 @@ private void setViewMode(VisualizationMode visualizationMode) {
         }
     }
 
+    /**
+     * Dispose the current visualization, when the controller it shows is
+     * closed. A new one is made if a controller is set again.
+     */
+    public synchronized void disposeVisualization() {
+        Platform.runLater(() -> {
+            synchronized (VisualizationPanel.this) {
+                if (visualization != null) {
+                    toolBar.getItems().removeAll(visualization.getSettingsNodes());
+                    visualization.dispose();
+                    visualization = null;
+                }
+            }
+        });
+    }
+
     synchronized void setVisualization(final AbstractVisualization<?, ?, ?, ?> newViz) {
         Platform.runLater(() -> {
             synchronized (VisualizationPanel.this) {
@@ -20,6 +20,7 @@
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
@@ -172,6 +173,9 @@ protected Boolean call() throws Exception {
                     EventType.allTypes.forEach(CountsViewPane.this::getSeries);
                 });
 
+                //query for the counts of all the periods at once
+                final Map<Long, Map<EventType, Long>> countsByPeriod = filteredEvents.getEventCountsByPeriod(rangeInfo.getTimeRange());
+
                 DateTime start = timeRange.getStart();
                 while (timeRange.contains(start)) {
 
@@ -179,8 +183,8 @@ protected Boolean call() throws Exception {
                     DateTime end = start.plus(rangeInfo.getPeriodSize().getPeriod());
                     final Interval interval = new Interval(start, end);
 
-                    //query for current range
-                    Map<EventType, Long> eventCounts = filteredEvents.getEventCounts(interval);
+                    //counts for current range
+                    Map<EventType, Long> eventCounts = countsByPeriod.getOrDefault(start.getMillis(), Collections.emptyMap());
 
                     //increment for next iteration
                     start = end;
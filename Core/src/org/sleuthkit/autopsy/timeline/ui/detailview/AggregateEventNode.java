@@ -167,17 +167,28 @@ public class AggregateEventNode extends StackPane {
     private final EventDetailChart chart;
 
     private SimpleObjectProperty<DescriptionLOD> descLOD = new SimpleObjectProperty<>();
+
+    /**
+     * the description level of detail of this node's event, below which the
+     * sub-clusters can not be collapsed
+     */
+    private final SimpleObjectProperty<DescriptionLOD> eventLOD = new SimpleObjectProperty<>();
     private DescriptionVisibility descrVis;
     private final SleuthkitCase sleuthkitCase;
     private final FilteredEventsModel eventsModel;
 
     private Tooltip tooltip;
+
+    /**
+     * the task loading the sub-clusters of this node, if one is running.
+     * Cancelled when the node is reused for another event.
+     */
+    private LoggedTask<List<AggregateEventNode>> subClusterTask;
+
     private final ImageView hashIV = new ImageView(HASH_PIN);
     private final ImageView tagIV = new ImageView(TAG);
 
     public AggregateEventNode(final AggregateEvent aggEvent, AggregateEventNode parentEventNode, EventDetailChart chart) {
-        this.aggEvent = aggEvent;
-        descLOD.set(aggEvent.getLOD());
         this.parentEventNode = parentEventNode;
         this.chart = chart;
         sleuthkitCase = chart.getController().getAutopsyCase().getSleuthkitCase();
@@ -187,14 +198,6 @@ public AggregateEventNode(final AggregateEvent aggEvent, AggregateEventNode pare
         HBox.setHgrow(region, Priority.ALWAYS);
 
         final HBox hBox = new HBox(descrLabel, countLabel, region, hashIV, tagIV, minusButton, plusButton);
-        if (aggEvent.getEventIDsWithHashHits().isEmpty()) {
-            hashIV.setManaged(false);
-            hashIV.setVisible(false);
-        }
-        if (aggEvent.getEventIDsWithTags().isEmpty()) {
-            tagIV.setManaged(false);
-            tagIV.setVisible(false);
-        }
         hBox.setPrefWidth(USE_COMPUTED_SIZE);
         hBox.setMinWidth(USE_PREF_SIZE);
         hBox.setPadding(new Insets(2, 5, 2, 5));
@@ -225,27 +228,20 @@ public AggregateEventNode(final AggregateEvent aggEvent, AggregateEventNode pare
         subNodePane.setPickOnBounds(false);
 
         //setup description label
-        eventTypeImageView.setImage(aggEvent.getType().getFXImage());
         descrLabel.setGraphic(eventTypeImageView);
         descrLabel.setPrefWidth(USE_COMPUTED_SIZE);
         descrLabel.setTextOverrun(OverrunStyle.CENTER_ELLIPSIS);
 
         descrLabel.setMouseTransparent(true);
-        setDescriptionVisibility(chart.getDescrVisibility().get());
-
-        //setup backgrounds
-        final Color evtColor = aggEvent.getType().getColor();
-        spanFill = new Background(new BackgroundFill(evtColor.deriveColor(0, 1, 1, .1), CORNER_RADII, Insets.EMPTY));
-        setBackground(new Background(new BackgroundFill(evtColor.deriveColor(0, 1, 1, .1), CORNER_RADII, Insets.EMPTY)));
+        descrVis = chart.getDescrVisibility().get();
         setCursor(Cursor.HAND);
-        spanRegion.setStyle("-fx-border-width:2 0 2 2; -fx-border-radius: 2; -fx-border-color: " + ColorUtilities.getRGBCode(evtColor) + ";"); // NON-NLS
-        spanRegion.setBackground(spanFill);
+        setEvent(aggEvent);
 
         //set up mouse hover effect and tooltip
         setOnMouseEntered((MouseEvent e) -> {
             //defer tooltip creation till needed, this had a surprisingly large impact on speed of loading the chart
             installTooltip();
-            spanRegion.setEffect(new DropShadow(10, evtColor));
+            spanRegion.setEffect(new DropShadow(10, getEvent().getType().getColor()));
             minusButton.setVisible(true);
             plusButton.setVisible(true);
             minusButton.setManaged(true);
@@ -264,7 +260,7 @@ public AggregateEventNode(final AggregateEvent aggEvent, AggregateEventNode pare
         setOnMouseClicked(new EventMouseHandler());
 
         plusButton.disableProperty().bind(descLOD.isEqualTo(DescriptionLOD.FULL));
-        minusButton.disableProperty().bind(descLOD.isEqualTo(aggEvent.getLOD()));
+        minusButton.disableProperty().bind(descLOD.isEqualTo(eventLOD));
 
         plusButton.setOnMouseClicked(e -> {
             final DescriptionLOD next = descLOD.get().next();
@@ -282,6 +278,41 @@ public AggregateEventNode(final AggregateEvent aggEvent, AggregateEventNode pare
         });
     }
 
+    /**
+     * Show the given event in this node, resetting everything that depends on
+     * the event. This lets the chart reuse nodes for different events as they
+     * scroll in and out of view, instead of making a new node for each.
+     *
+     * @param aggEvent the event to show
+     */
+    synchronized final void setEvent(AggregateEvent aggEvent) {
+        cancelSubClusterLoad();
+        this.aggEvent = aggEvent;
+        eventLOD.set(aggEvent.getLOD());
+        descLOD.set(aggEvent.getLOD());
+        subNodePane.getChildren().clear();
+        if (tooltip != null) {
+            Tooltip.uninstall(this, tooltip);
+            tooltip = null;
+        }
+
+        final boolean hasHashHits = aggEvent.getEventIDsWithHashHits().isEmpty() == false;
+        hashIV.setManaged(hasHashHits);
+        hashIV.setVisible(hasHashHits);
+        final boolean hasTags = aggEvent.getEventIDsWithTags().isEmpty() == false;
+        tagIV.setManaged(hasTags);
+        tagIV.setVisible(hasTags);
+
+        eventTypeImageView.setImage(aggEvent.getType().getFXImage());
+        setDescriptionVisibility(descrVis);
+
+        //setup backgrounds
+        final Color evtColor = aggEvent.getType().getColor();
+        spanRegion.setStyle("-fx-border-width:2 0 2 2; -fx-border-radius: 2; -fx-border-color: " + ColorUtilities.getRGBCode(evtColor) + ";"); // NON-NLS
+        setBorder(null);
+        applyHighlightEffect(false);
+    }
+
     synchronized private void installTooltip() {
         //TODO: all this work should probably go on a background thread...
         if (tooltip == null) {
@@ -348,6 +379,24 @@ public Pane getSubNodePane() {
         return subNodePane;
     }
 
+    /**
+     * @return true if the sub-clusters of this node are being loaded
+     */
+    synchronized boolean isLoadingSubClusters() {
+        return subClusterTask != null;
+    }
+
+    /**
+     * Cancel the loading of the sub-clusters of this node, if they are being
+     * loaded, so they are not shown in it.
+     */
+    synchronized void cancelSubClusterLoad() {
+        if (subClusterTask != null) {
+            subClusterTask.cancel(false);
+            subClusterTask = null;
+        }
+    }
+
     synchronized public AggregateEvent getEvent() {
         return aggEvent;
     }
@@ -464,6 +513,7 @@ public void setContextMenu(ContextMenu contextMenu) {
      * @param newDescriptionLOD
      */
     synchronized private void loadSubClusters(DescriptionLOD newDescriptionLOD) {
+        cancelSubClusterLoad();
         getSubNodePane().getChildren().clear();
         if (newDescriptionLOD == aggEvent.getLOD()) {
             chart.setRequiresLayout(true);
@@ -474,6 +524,9 @@ synchronized private void loadSubClusters(DescriptionLOD newDescriptionLOD) {
             combinedFilter.getSubFilters().addAll(new TextFilter(aggEvent.getDescription()),
                     new TypeFilter(aggEvent.getType()));
 
+            //the event the sub-clusters are loaded for, if the node is reused for another event they are not shown
+            final AggregateEvent parentEvent = aggEvent;
+
             //make a new end inclusive span (to 'filter' with)
             final Interval span = aggEvent.getSpan().withEndMillis(aggEvent.getSpan().getEndMillis() + 1000);
 
@@ -498,6 +551,12 @@ protected List<AggregateEventNode> call() throws Exception {
 
                         @Override
                         protected void succeeded() {
+                            synchronized (AggregateEventNode.this) {
+                                if (subClusterTask != this || aggEvent != parentEvent) {
+                                    return;
+                                }
+                                subClusterTask = null;
+                            }
                             try {
                                 chart.setCursor(Cursor.WAIT);
                                 //assign subNodes and request chart layout
@@ -510,9 +569,20 @@ protected void succeeded() {
                                 LOGGER.log(Level.SEVERE, "Error loading subnodes", ex);
                             }
                         }
+
+                        @Override
+                        protected void failed() {
+                            super.failed();
+                            synchronized (AggregateEventNode.this) {
+                                if (subClusterTask == this) {
+                                    subClusterTask = null;
+                                }
+                            }
+                        }
                     };
 
             //start task
+            subClusterTask = loggedTask;
             chart.getController().monitorTask(loggedTask);
         }
     }
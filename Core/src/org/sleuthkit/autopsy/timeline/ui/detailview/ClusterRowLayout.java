@@ -0,0 +1,300 @@
+/*
+ * Autopsy Forensic Browser
+ *
+ * Copyright 2015 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.autopsy.timeline.ui.detailview;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Assigns the top level clusters of an {@link EventDetailChart} to rows, and
+ * finds the runs of clusters that overlap too much and should be shown as
+ * density bands.
+ *
+ * Works only on plain data (the horizontal extent and height of each cluster)
+ * and touches no nodes, so that it can run off of the JavaFX thread for large
+ * datasets. The chart measures the clusters on the FX thread, runs this in the
+ * background, and then applies the resulting coordinates on the FX thread.
+ */
+final class ClusterRowLayout {
+
+    /**
+     * the horizontal gap that must be left between clusters in the same row
+     */
+    private static final double MIN_GAP = 4;
+
+    /**
+     * The measurements of one cluster. The boxes of a group must be in order
+     * of start time.
+     */
+    static final class Box {
+
+        private final double x;
+        private final double right;
+        private final double height;
+        private final boolean pinned;
+
+        /**
+         * @param x      the left edge of the cluster
+         * @param right  the right edge of the cluster, including its label
+         * @param height the height of the cluster, including any sub-clusters
+         * @param pinned true if the cluster must not be put into a density band
+         */
+        Box(double x, double right, double height, boolean pinned) {
+            this.x = x;
+            this.right = right;
+            this.height = height;
+            this.pinned = pinned;
+        }
+    }
+
+    /**
+     * A run of overlapping clusters to show as one density band.
+     */
+    static final class Band {
+
+        private final double x;
+        private double right;
+        private double y;
+
+        /**
+         * indices (into the flattened boxes of all groups) of the clusters in
+         * this band
+         */
+        private final List<Integer> members = new ArrayList<>();
+
+        private Band(double x) {
+            this.x = x;
+            this.right = x;
+        }
+
+        double getX() {
+            return x;
+        }
+
+        double getWidth() {
+            return right - x;
+        }
+
+        double getY() {
+            return y;
+        }
+
+        List<Integer> getMembers() {
+            return Collections.unmodifiableList(members);
+        }
+    }
+
+    /**
+     * The result of a layout: the y coordinate of every cluster that is not in
+     * a band, the bands, and the height of the whole layout.
+     */
+    static final class Result {
+
+        private final double[] ys;
+        private final int[] bandIndices;
+        private final List<Band> bands = new ArrayList<>();
+        private double maxY;
+
+        private Result(int size) {
+            ys = new double[size];
+            bandIndices = new int[size];
+            Arrays.fill(bandIndices, -1);
+        }
+
+        /**
+         * @return the y coordinate of the cluster with the given index, only
+         *         meaningful if it is not in a band.
+         */
+        double getY(int index) {
+            return ys[index];
+        }
+
+        /**
+         * @return true if the cluster with the given index is shown as part of
+         *         a band.
+         */
+        boolean isInBand(int index) {
+            return bandIndices[index] >= 0;
+        }
+
+        List<Band> getBands() {
+            return Collections.unmodifiableList(bands);
+        }
+
+        double getMaxY() {
+            return maxY;
+        }
+    }
+
+    private final boolean oneEventPerRow;
+
+    private final int maxOverlappingClusters;
+
+    /**
+     * @param oneEventPerRow         true to put every cluster (and band) in a
+     *                               row of its own
+     * @param maxOverlappingClusters the most clusters that may overlap
+     *                               horizontally before the overlapping run of
+     *                               them is put in a band
+     */
+    ClusterRowLayout(boolean oneEventPerRow, int maxOverlappingClusters) {
+        this.oneEventPerRow = oneEventPerRow;
+        this.maxOverlappingClusters = maxOverlappingClusters;
+    }
+
+    /**
+     * Lay out the given groups of clusters, one below the other. The clusters
+     * are indexed in the result in the order of the groups, and then the order
+     * of the boxes within each group.
+     *
+     * @param groups the groups of clusters to lay out, each one in order of
+     *               start time.
+     *
+     * @return the layout
+     */
+    Result layout(List<List<Box>> groups) {
+        int size = 0;
+        for (List<Box> group : groups) {
+            size += group.size();
+        }
+        Result result = new Result(size);
+        double minY = 0;
+        int offset = 0;
+        for (List<Box> group : groups) {
+            if (Thread.currentThread().isInterrupted()) {
+                break;
+            }
+            minY = layoutGroup(group, offset, minY, result);
+            offset += group.size();
+        }
+        result.maxY = minY;
+        return result;
+    }
+
+    /**
+     * Lay out one group of clusters, starting from the given minimum y
+     * coordinate.
+     *
+     * @return the bottom of the group
+     */
+    private double layoutGroup(List<Box> boxes, int offset, double minY, Result result) {
+        //find the boxes that are in runs of too many overlapping ones
+        boolean[] dense = new boolean[boxes.size()];
+        PriorityQueue<Integer> overlapping = new PriorityQueue<>(Comparator.comparingDouble(i -> boxes.get(i).right));
+        for (int i = 0; i < boxes.size(); i++) {
+            final Box box = boxes.get(i);
+            if (box.pinned) {
+                continue;
+            }
+            while (overlapping.isEmpty() == false && boxes.get(overlapping.peek()).right < box.x - MIN_GAP) {
+                overlapping.poll();
+            }
+            overlapping.add(i);
+            if (overlapping.size() > maxOverlappingClusters) {
+                for (Integer j : overlapping) {
+                    dense[j] = true;
+                }
+            }
+        }
+
+        //merge the dense boxes into bands, and place them in order along with the other boxes
+        List<Object> items = new ArrayList<>();
+        Band band = null;
+        for (int i = 0; i < boxes.size(); i++) {
+            final Box box = boxes.get(i);
+            if (dense[i]) {
+                if (band == null || box.x > band.right) {
+                    band = new Band(box.x);
+                    items.add(band);
+                    result.bands.add(band);
+                }
+                band.members.add(offset + i);
+                band.right = Math.max(band.right, box.right);
+                result.bandIndices[offset + i] = result.bands.size() - 1;
+            } else {
+                items.add(i);
+            }
+        }
+        items.sort(Comparator.comparingDouble(item -> (item instanceof Band) ? ((Band) item).x : boxes.get((Integer) item).x));
+
+        //hash map from y value to right most occupied x value.  This tells you for a given 'row' what is the first avaialable slot
+        Map<Integer, Double> maxXatY = new HashMap<>();
+        double localMax = minY;
+        for (Object item : items) {
+            final double x;
+            final double right;
+            final double h;
+            if (item instanceof Band) {
+                x = ((Band) item).x;
+                right = ((Band) item).right;
+                h = EventDetailChart.DEFAULT_ROW_HEIGHT;
+            } else {
+                final Box box = boxes.get((Integer) item);
+                x = box.x;
+                right = box.right;
+                h = box.height;
+            }
+            //initial test position
+            double yPos = minY;
+            double yPos2 = yPos + h;
+
+            if (oneEventPerRow) {
+                // if onePerRow, just put it at end
+                yPos = (localMax + 2);
+                yPos2 = yPos + h;
+            } else {
+                boolean overlappingItem = true;
+                while (overlappingItem) {
+                    //loop through y values looking for available slot.
+                    overlappingItem = false;
+                    //check each pixel from bottom to top.
+                    for (double y = yPos2; y >= yPos; y--) {
+                        final Double maxX = maxXatY.get((int) y);
+                        if (maxX != null && maxX >= x - MIN_GAP) {
+                            //if that pixel is already used
+                            //jump top to this y value and repeat until free slot is found.
+                            overlappingItem = true;
+                            yPos = y + MIN_GAP;
+                            yPos2 = yPos + h;
+                            break;
+                        }
+                    }
+                }
+                //mark used y values
+                for (double y = yPos; y <= yPos2; y++) {
+                    maxXatY.put((int) y, right);
+                }
+            }
+            localMax = Math.max(yPos2, localMax);
+
+            if (item instanceof Band) {
+                ((Band) item).y = yPos;
+            } else {
+                result.ys[offset + (Integer) item] = yPos;
+            }
+        }
+        return localMax;
+    }
+}
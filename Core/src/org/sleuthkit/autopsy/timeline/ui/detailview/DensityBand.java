@@ -0,0 +1,110 @@
+/*
+ * Autopsy Forensic Browser
+ *
+ * Copyright 2015 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.autopsy.timeline.ui.detailview;
+
+import java.util.List;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.Cursor;
+import javafx.scene.control.Label;
+import javafx.scene.control.OverrunStyle;
+import javafx.scene.control.Tooltip;
+import javafx.scene.input.MouseButton;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.layout.Background;
+import javafx.scene.layout.BackgroundFill;
+import javafx.scene.layout.CornerRadii;
+import javafx.scene.layout.StackPane;
+import javafx.scene.paint.Color;
+import org.joda.time.Interval;
+import org.openide.util.NbBundle;
+import org.sleuthkit.autopsy.coreutils.ColorUtilities;
+import org.sleuthkit.autopsy.timeline.TimeLineController;
+import org.sleuthkit.autopsy.timeline.events.AggregateEvent;
+import org.sleuthkit.autopsy.timeline.events.type.EventType;
+
+/**
+ * Stands in for a run of {@link AggregateEvent}s in an
+ * {@link EventDetailChart} that overlap too much to show as individual
+ * {@link AggregateEventNode}s. It shows how many clusters and events it
+ * covers, and clicking it zooms into its time range, where the clusters can
+ * be told apart.
+ */
+final class DensityBand extends StackPane {
+
+    private static final CornerRadii CORNER_RADII = new CornerRadii(3);
+
+    private final Interval span;
+
+    /**
+     * @param aggEvents  the aggregate events this band stands in for, not
+     *                   empty
+     * @param controller the controller to zoom with
+     */
+    DensityBand(List<AggregateEvent> aggEvents, TimeLineController controller) {
+        long start = Long.MAX_VALUE;
+        long end = Long.MIN_VALUE;
+        long eventCount = 0;
+        EventType type = aggEvents.get(0).getType();
+        for (AggregateEvent aggEvent : aggEvents) {
+            start = Math.min(start, aggEvent.getSpan().getStartMillis());
+            end = Math.max(end, aggEvent.getSpan().getEndMillis());
+            eventCount += aggEvent.getEventIDs().size();
+            if (type != null && type.equals(aggEvent.getType()) == false) {
+                type = null;
+            }
+        }
+        //make it end inclusive, so that zooming in still shows the last events
+        span = new Interval(start, end + 1000, TimeLineController.getJodaTimeZone());
+
+        //use the color of the event type if they all have the same one
+        final Color color = (type == null) ? Color.GRAY : type.getColor();
+        setBackground(new Background(new BackgroundFill(color.deriveColor(0, 1, 1, .3), CORNER_RADII, Insets.EMPTY)));
+        setStyle("-fx-border-width: 1; -fx-border-radius: 3; -fx-border-style: dashed; -fx-border-color: " + ColorUtilities.getRGBCode(color) + ";"); // NON-NLS
+
+        final Label label = new Label(NbBundle.getMessage(this.getClass(), "DensityBand.label.text", aggEvents.size(), eventCount));
+        label.setTextOverrun(OverrunStyle.ELLIPSIS);
+        label.setMouseTransparent(true);
+        label.setPadding(new Insets(2, 5, 2, 5));
+        getChildren().add(label);
+        setAlignment(Pos.CENTER_LEFT);
+        setMinHeight(24);
+
+        Tooltip.install(this, new Tooltip(NbBundle.getMessage(this.getClass(), "DensityBand.tooltip.text",
+                aggEvents.size(), eventCount,
+                span.getStart().toString(TimeLineController.getZonedFormatter()),
+                span.getEnd().toString(TimeLineController.getZonedFormatter()))));
+        setCursor(Cursor.HAND);
+        setOnMouseClicked((MouseEvent t) -> {
+            if (t.getButton() == MouseButton.PRIMARY) {
+                t.consume();
+                controller.pushTimeRange(span);
+            }
+        });
+    }
+
+    /**
+     * @param w the width of the time span this band covers, in pixels
+     */
+    void setBandWidth(double w) {
+        setMinWidth(w);
+        setPrefWidth(w);
+        setMaxWidth(w);
+    }
+}
@@ -20,14 +20,18 @@
 
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.ResourceBundle;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
 import javafx.application.Platform;
 import javafx.beans.InvalidationListener;
 import javafx.beans.Observable;
 import javafx.collections.FXCollections;
-import javafx.collections.ListChangeListener;
 import javafx.collections.ObservableList;
 import javafx.concurrent.Task;
 import javafx.event.EventHandler;
@@ -119,8 +123,6 @@ public class DetailViewPane extends AbstractVisualization<DateTime, AggregateEve
 
     private final ObservableList<AggregateEvent> aggregatedEvents = FXCollections.synchronizedObservableList(FXCollections.observableArrayList());
 
-    private final ObservableList<AggregateEventNode> highlightedNodes = FXCollections.synchronizedObservableList(FXCollections.observableArrayList());
-
     public ObservableList<AggregateEvent> getAggregatedEvents() {
         return aggregatedEvents;
     }
@@ -148,16 +150,6 @@ public DetailViewPane(Pane partPane, Pane contextPane, Region spacer) {
         vertScrollBar.visibleAmountProperty().bind(chart.heightProperty().multiply(100).divide(chart.getMaxVScroll()));
         requestLayout();
 
-        highlightedNodes.addListener((ListChangeListener.Change<? extends AggregateEventNode> change) -> {
-            while (change.next()) {
-                change.getAddedSubList().forEach(aeNode -> {
-                    aeNode.applyHighlightEffect(true);
-                });
-                change.getRemoved().forEach(aeNode -> {
-                    aeNode.applyHighlightEffect(false);
-                });
-            }
-        });
         //request focus for keyboard scrolling
         setOnMouseClicked((MouseEvent t) -> {
             requestFocus();
@@ -208,14 +200,12 @@ public DetailViewPane(Pane partPane, Pane contextPane, Region spacer) {
 
         dateAxis.setTickLabelGap(0);
 
+        //highlight by predicate, so that nodes made as they scroll into view are highlighted too
         selectedNodes.addListener((Observable observable) -> {
-            highlightedNodes.clear();
-            selectedNodes.stream().forEach((tn) -> {
-                for (AggregateEventNode n : chart.getNodes((AggregateEventNode t)
-                        -> t.getEvent().getDescription().equals(tn.getEvent().getDescription()))) {
-                    highlightedNodes.add(n);
-                }
-            });
+            final Set<String> descriptions = selectedNodes.stream()
+                    .map(tn -> tn.getEvent().getDescription())
+                    .collect(Collectors.toSet());
+            chart.setHighlightPredicate(aggEvent -> descriptions.contains(aggEvent.getDescription()));
         });
 
     }
@@ -228,16 +218,20 @@ public void setSelectionModel(MultipleSelectionModel<TreeItem<NavTreeNode>> sele
         this.treeSelectionModel = selectionModel;
 
         treeSelectionModel.getSelectedItems().addListener((Observable observable) -> {
-            highlightedNodes.clear();
+            final Set<String> descriptions = new HashSet<>();
             for (TreeItem<NavTreeNode> tn : treeSelectionModel.getSelectedItems()) {
-                for (AggregateEventNode n : chart.getNodes((AggregateEventNode t)
-                        -> t.getEvent().getDescription().equals(tn.getValue().getDescription()))) {
-                    highlightedNodes.add(n);
-                }
+                descriptions.add(tn.getValue().getDescription());
             }
+            chart.setHighlightPredicate(aggEvent -> descriptions.contains(aggEvent.getDescription()));
         });
     }
 
+    @Override
+    synchronized public void dispose() {
+        super.dispose();
+        chart.dispose();
+    }
+
     @Override
     protected Boolean isTickBold(DateTime value) {
         return false;
@@ -324,17 +318,21 @@ protected Boolean call() throws Exception {
                 });
                 final int size = aggregatedEvents.size();
                 int i = 0;
+                //group the data by type so each series gets one change, and the chart lays out once per series
+                final Map<EventType, List<XYChart.Data<DateTime, AggregateEvent>>> dataByType = new HashMap<>();
                 for (final AggregateEvent e : aggregatedEvents) {
                     if (isCancelled()) {
                         break;
                     }
                     updateProgress(i++, size);
                     updateMessage(NbBundle.getMessage(this.getClass(), "DetailViewPane.loggedTask.updateUI"));
-                    final XYChart.Data<DateTime, AggregateEvent> xyData = new BarChart.Data<>(new DateTime(e.getSpan().getStartMillis()), e);
-
+                    dataByType.computeIfAbsent(e.getType(), type -> new ArrayList<>())
+                            .add(new BarChart.Data<>(new DateTime(e.getSpan().getStartMillis()), e));
+                }
+                for (Map.Entry<EventType, List<XYChart.Data<DateTime, AggregateEvent>>> entry : dataByType.entrySet()) {
                     Platform.runLater(() -> {
                         if (isCancelled() == false) {
-                            getSeries(e.getType()).getData().add(xyData);
+                            getSeries(entry.getKey()).getData().addAll(entry.getValue());
                         }
                     });
                 }
@@ -18,21 +18,26 @@
  */
 package org.sleuthkit.autopsy.timeline.ui.detailview;
 
-import com.google.common.collect.Collections2;
 import com.google.common.eventbus.Subscribe;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import javafx.animation.KeyFrame;
 import javafx.animation.KeyValue;
 import javafx.animation.Timeline;
+import javafx.application.Platform;
 import javafx.beans.InvalidationListener;
 import javafx.beans.Observable;
 import javafx.beans.property.ReadOnlyDoubleProperty;
@@ -61,6 +66,7 @@
 import javafx.scene.input.MouseEvent;
 import javafx.scene.shape.Line;
 import javafx.scene.shape.StrokeLineCap;
+import javafx.scene.text.Text;
 import javafx.util.Duration;
 import javax.annotation.concurrent.GuardedBy;
 import org.controlsfx.control.action.Action;
@@ -91,6 +97,14 @@
  * Series help organize events for the banding by event type, we could add a
  * node to contain each band if we need a place for per band controls.
  *
+ * The chart is virtualized: the layout is computed for every aggregate event,
+ * from its time span and an estimate of its label's width, but
+ * {@link AggregateEventNode}s are only made for the events that are in (or
+ * near) the visible part of the chart. Nodes that scroll out of view are
+ * returned to a pool and reused for the events that scroll into view. Where
+ * more than {@link #MAX_OVERLAPPING_CLUSTERS} clusters would be stacked on top
+ * of each other, they are shown as a single {@link DensityBand} instead.
+ *
  * //TODO: refactor the projected lines to a separate class. -jm
  */
 public final class EventDetailChart extends XYChart<DateTime, AggregateEvent> implements TimeLineChart<DateTime> {
@@ -99,6 +113,31 @@ public final class EventDetailChart extends XYChart<DateTime, AggregateEvent> im
 
     private static final int PROJECTED_LINE_STROKE_WIDTH = 5;
 
+    /**
+     * the most clusters that may overlap horizontally before the overlapping
+     * run of them is shown as a density band.
+     */
+    private static final int MAX_OVERLAPPING_CLUSTERS = 50;
+
+    /**
+     * how far (in pixels) outside of the visible area nodes are made, so they
+     * are ready when they are scrolled into view
+     */
+    private static final double VIEWPORT_MARGIN = 200;
+
+    /**
+     * the most unused nodes to keep for reuse
+     */
+    private static final int MAX_POOLED_NODES = 500;
+
+    /**
+     * the horizontal padding, graphic size and gap of the label of an
+     * AggregateEventNode, used to estimate its width without making it.
+     */
+    private static final double LABEL_PADDING = 10;
+    private static final double ICON_WIDTH = 16;
+    private static final double GRAPHIC_TEXT_GAP = 4;
+
     /**
      * true == layout each event type in its own band, false == mix all the
      * events together during layout
@@ -152,18 +191,59 @@ public final class EventDetailChart extends XYChart<DateTime, AggregateEvent> im
     private final Group nodeGroup = new Group();
 
     /**
-     * map from event to node
+     * map from data item to the slot that holds its (current) aggregate event,
+     * position and node, if it has one
      */
-    private final Map<AggregateEvent, AggregateEventNode> nodeMap = new TreeMap<>((
-            AggregateEvent o1,
-            AggregateEvent o2) -> {
-                int comp = Long.compare(o1.getSpan().getStartMillis(), o2.getSpan().getStartMillis());
-                if (comp != 0) {
-                    return comp;
-                } else {
-                    return Comparator.comparing(AggregateEvent::hashCode).compare(o1, o2);
-                }
-            });
+    private final Map<Data<DateTime, AggregateEvent>, ClusterSlot> slotMap = new HashMap<>();
+
+    /**
+     * the slots of the aggregate events shown as nodes (rather than density
+     * bands) after the most recent layout pass
+     */
+    private final List<ClusterSlot> laidOutSlots = new ArrayList<>();
+
+    /**
+     * the density bands added to the nodeGroup during the most recent layout
+     * pass
+     */
+    private final List<DensityBand> densityBands = new ArrayList<>();
+
+    /**
+     * nodes that are not showing any event, ready to be reused
+     */
+    private final Deque<AggregateEventNode> nodePool = new ArrayDeque<>();
+
+    /**
+     * used to measure the width of description labels without making nodes
+     */
+    private final Text textMeasurer = new Text();
+
+    /**
+     * the distance (in pixels) the nodes are scrolled up
+     */
+    private double vScrollOffset = 0;
+
+    /**
+     * which aggregate events' nodes should be highlighted
+     */
+    private Predicate<AggregateEvent> highlightPredicate = aggEvent -> false;
+
+    /**
+     * assigns clusters to rows in the background, see
+     * {@link ClusterRowLayout}
+     */
+    private final ExecutorService layoutExecutor = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+            .setNameFormat("timeline-detail-layout-%d") // NON-NLS
+            .setDaemon(true)
+            .build());
+
+    /**
+     * incremented for every layout started, and whenever slots are removed,
+     * so that out of date layouts are not applied
+     */
+    private long layoutGeneration = 0;
+
+    private Future<?> pendingLayout;
 
     /**
      * true == enforce that no two events can share the same 'row', leading to
@@ -336,6 +416,19 @@ public synchronized SimpleBooleanProperty getBandByType() {
         return bandByType;
     }
 
+    /**
+     * Stop the background layout thread, dropping any layout in progress.
+     * Called when the chart is no longer used.
+     */
+    synchronized void dispose() {
+        layoutGeneration++;
+        if (pendingLayout != null) {
+            pendingLayout.cancel(true);
+            pendingLayout = null;
+        }
+        layoutExecutor.shutdownNow();
+    }
+
     @Override
     public synchronized void setController(TimeLineController controller) {
         this.controller = controller;
@@ -414,15 +507,9 @@ synchronized void setTruncateAll(Boolean t1) {
 
     @Override
     protected synchronized void dataItemAdded(Series<DateTime, AggregateEvent> series, int i, Data<DateTime, AggregateEvent> data) {
-        final AggregateEvent aggEvent = data.getYValue();
-        AggregateEventNode eventNode = nodeMap.get(aggEvent);
-        if (eventNode == null) {
-            eventNode = new AggregateEventNode(aggEvent, null, this);
-
-            eventNode.setLayoutX(getXAxis().getDisplayPosition(new DateTime(aggEvent.getSpan().getStartMillis())));
-            data.setNode(eventNode);
-            nodeMap.put(aggEvent, eventNode);
-            nodeGroup.getChildren().add(eventNode);
+        if (slotMap.containsKey(data) == false) {
+            //the node is only made when the event is laid out in view
+            slotMap.put(data, new ClusterSlot(data.getYValue()));
             requiresLayout = true;
         }
     }
@@ -435,9 +522,16 @@ protected synchronized void dataItemChanged(Data<DateTime, AggregateEvent> data)
 
     @Override
     protected synchronized void dataItemRemoved(Data<DateTime, AggregateEvent> data, Series<DateTime, AggregateEvent> series) {
-        nodeMap.remove(data.getYValue());
-        nodeGroup.getChildren().remove(data.getNode());
-        data.setNode(null);
+        ClusterSlot slot = slotMap.remove(data);
+        if (slot != null) {
+            //a pending layout may still include this slot
+            layoutGeneration++;
+            laidOutSlots.remove(slot);
+            if (slot.node != null) {
+                releaseNode(slot);
+            }
+        }
+        requiresLayout = true;
     }
 
     @Override
@@ -465,29 +559,11 @@ protected void layoutChildren() {
     protected synchronized void layoutPlotChildren() {
 
         if (requiresLayout) {
-            setCursor(Cursor.WAIT);
-            double minY = 0;
-
-            maxY.set(0.0);
-
-            if (bandByType.get() == false) {
-
-                ObservableList<Node> nodes = FXCollections.observableArrayList(nodeMap.values());
-                FXCollections.sort(nodes, new StartTimeComparator());
-                layoutNodes(nodes, minY, 0);
-//                layoutNodes(new ArrayList<>(nodeMap.values()), minY, 0);
-            } else {
-                for (Series<DateTime, AggregateEvent> s : sortedSeriesList) {
-                    ObservableList<Node> nodes = FXCollections.observableArrayList(Collections2.transform(s.getData(), Data::getNode));
-
-                    FXCollections.sort(nodes, new StartTimeComparator());
-                    layoutNodes(nodes.filtered((Node n) -> n != null), minY, 0);
-                    minY = maxY.get();
-                }
-            }
-            setCursor(null);
+            //the rows are assigned in the background, the nodes are moved when that is done
+            startLayout();
             requiresLayout = false;
         }
+        updateVisibleNodes();
         layoutProjectionMap();
     }
 
@@ -517,16 +593,36 @@ synchronized ReadOnlyDoubleProperty getMaxVScroll() {
         return maxY.getReadOnlyProperty();
     }
 
+    /**
+     * @param p
+     *
+     * @return the nodes that currently exist (ie are in or near the visible
+     *         part of the chart), including the nodes of sub-clusters, that
+     *         match the given predicate.
+     */
     Iterable<AggregateEventNode> getNodes(Predicate<AggregateEventNode> p) {
         List<AggregateEventNode> nodes = new ArrayList<>();
 
-        for (AggregateEventNode node : nodeMap.values()) {
-            checkNode(node, p, nodes);
+        for (ClusterSlot slot : slotMap.values()) {
+            checkNode(slot.node, p, nodes);
         }
 
         return nodes;
     }
 
+    /**
+     * highlight the nodes of the aggregate events that match the given
+     * predicate, including the ones made later as they are scrolled into view.
+     *
+     * @param highlightPredicate
+     */
+    synchronized void setHighlightPredicate(Predicate<AggregateEvent> highlightPredicate) {
+        this.highlightPredicate = highlightPredicate;
+        for (AggregateEventNode node : getAllNodes()) {
+            node.applyHighlightEffect(highlightPredicate.test(node.getEvent()));
+        }
+    }
+
     private Iterable<AggregateEventNode> getAllNodes() {
         return getNodes(x -> true);
     }
@@ -537,7 +633,9 @@ synchronized SimpleDoubleProperty getTruncateWidth() {
 
     synchronized void setVScroll(double d) {
         final double h = maxY.get() - (getHeight() * .9);
-        nodeGroup.setTranslateY(-d * h);
+        vScrollOffset = d * h;
+        nodeGroup.setTranslateY(-vScrollOffset);
+        updateVisibleNodes();
     }
 
     private static void checkNode(AggregateEventNode node, Predicate<AggregateEventNode> p, List<AggregateEventNode> nodes) {
@@ -570,34 +668,15 @@ private synchronized double layoutNodes(final List<Node> nodes, final double min
         //for each node lay size it and position it in first available slot
         for (Node n : nodes) {
             final AggregateEventNode tlNode = (AggregateEventNode) n;
-            tlNode.setDescriptionVisibility(descrVisibility.get());
-
-            AggregateEvent ie = tlNode.getEvent();
-            final double rawDisplayPosition = getXAxis().getDisplayPosition(new DateTime(ie.getSpan().getStartMillis()));
-            //position of start and end according to range of axis
-            double xPos = rawDisplayPosition - xOffset;
-            double layoutNodesResultHeight = 0;
-            if (tlNode.getSubNodePane().getChildren().isEmpty() == false) {
-                FXCollections.sort(tlNode.getSubNodePane().getChildren(), new StartTimeComparator());
-                layoutNodesResultHeight = layoutNodes(tlNode.getSubNodePane().getChildren(), 0, rawDisplayPosition);
-            }
-            double xPos2 = getXAxis().getDisplayPosition(new DateTime(ie.getSpan().getEndMillis())) - xOffset;
-            double span = xPos2 - xPos;
-
-            //size timespan border
-            tlNode.setSpanWidth(span);
-            if (truncateAll.get()) { //if truncate option is selected limit width of description label
-                tlNode.setDescriptionWidth(Math.max(span, truncateWidth.get()));
-            } else { //else set it unbounded
-                tlNode.setDescriptionWidth(USE_PREF_SIZE);//20 + new Text(tlNode.getDisplayedDescription()).getLayoutBounds().getWidth());
-            }
-            tlNode.autosize(); //compute size of tlNode based on constraints and event data
+            //position of start according to range of axis
+            double xPos = getXAxis().getDisplayPosition(new DateTime(tlNode.getEvent().getSpan().getStartMillis())) - xOffset;
+
+            //get the height of the node
+            final double h = sizeNode(tlNode, xOffset);
 
             //get position of right edge of node ( influenced by description label)
             double xRight = xPos + tlNode.getWidth();
 
-            //get the height of the node
-            final double h = layoutNodesResultHeight == 0 ? tlNode.getHeight() : layoutNodesResultHeight + DEFAULT_ROW_HEIGHT;
             //initial test position
             double yPos = minY;
 
@@ -645,7 +724,284 @@ private synchronized double layoutNodes(final List<Node> nodes, final double min
         maxY.set(Math.max(maxY.get(), localMax));
         return localMax - minY;
     }
-    private static final int DEFAULT_ROW_HEIGHT = 24;
+    static final int DEFAULT_ROW_HEIGHT = 24;
+
+    /**
+     * size the given node, and lay out its sub-nodes if it has any.
+     *
+     * @param tlNode  the node to size
+     * @param xOffset the x coordinate of the node's parent
+     *
+     * @return the height of the node including its sub-nodes
+     */
+    private double sizeNode(final AggregateEventNode tlNode, final double xOffset) {
+        tlNode.setDescriptionVisibility(descrVisibility.get());
+
+        AggregateEvent ie = tlNode.getEvent();
+        final double rawDisplayPosition = getXAxis().getDisplayPosition(new DateTime(ie.getSpan().getStartMillis()));
+        //position of start and end according to range of axis
+        double xPos = rawDisplayPosition - xOffset;
+        double layoutNodesResultHeight = 0;
+        if (tlNode.getSubNodePane().getChildren().isEmpty() == false) {
+            FXCollections.sort(tlNode.getSubNodePane().getChildren(), new StartTimeComparator());
+            layoutNodesResultHeight = layoutNodes(tlNode.getSubNodePane().getChildren(), 0, rawDisplayPosition);
+        }
+        double xPos2 = getXAxis().getDisplayPosition(new DateTime(ie.getSpan().getEndMillis())) - xOffset;
+        double span = xPos2 - xPos;
+
+        //size timespan border
+        tlNode.setSpanWidth(span);
+        if (truncateAll.get()) { //if truncate option is selected limit width of description label
+            tlNode.setDescriptionWidth(Math.max(span, truncateWidth.get()));
+        } else { //else set it unbounded
+            tlNode.setDescriptionWidth(USE_PREF_SIZE);//20 + new Text(tlNode.getDisplayedDescription()).getLayoutBounds().getWidth());
+        }
+        tlNode.autosize(); //compute size of tlNode based on constraints and event data
+
+        return layoutNodesResultHeight == 0 ? tlNode.getHeight() : layoutNodesResultHeight + DEFAULT_ROW_HEIGHT;
+    }
+
+    /**
+     * Measure the given top level slots, in order of start time, for the
+     * background layout: the width of a slot that has no node is estimated
+     * from its description, pinned (selected or expanded) slots are measured
+     * with their real nodes. Must be called on the JavaFX thread.
+     *
+     * @param slots the slots to measure, they will be sorted by start time
+     *
+     * @return the measurements of the slots, in the same order as the sorted
+     *         slots
+     */
+    private List<ClusterRowLayout.Box> measureSlots(final List<ClusterSlot> slots) {
+        slots.sort(Comparator.comparingLong(slot -> slot.aggEvent.getSpan().getStartMillis()));
+
+        List<ClusterRowLayout.Box> boxes = new ArrayList<>(slots.size());
+        for (ClusterSlot slot : slots) {
+            final AggregateEvent aggEvent = slot.aggEvent;
+            slot.x = getXAxis().getDisplayPosition(new DateTime(aggEvent.getSpan().getStartMillis()));
+            slot.spanWidth = getXAxis().getDisplayPosition(new DateTime(aggEvent.getSpan().getEndMillis())) - slot.x;
+            final boolean pinned = isPinned(slot.node);
+            if (pinned) {
+                //measure pinned (selected or expanded) nodes for real, they may have sub-nodes
+                slot.height = sizeNode(slot.node, 0);
+                slot.right = slot.x + slot.node.getWidth();
+            } else {
+                slot.height = DEFAULT_ROW_HEIGHT;
+                slot.right = slot.x + estimateWidth(aggEvent, slot.spanWidth);
+            }
+            boxes.add(new ClusterRowLayout.Box(slot.x, slot.right, slot.height, pinned));
+        }
+        return boxes;
+    }
+
+    /**
+     * Measure all the top level slots on the JavaFX thread, and then assign
+     * them to rows in the background. When the background layout is done the
+     * result is applied on the JavaFX thread, unless another layout has been
+     * started (or slots removed) in the mean time.
+     */
+    private synchronized void startLayout() {
+        List<ClusterSlot> orderedSlots = new ArrayList<>();
+        List<List<ClusterRowLayout.Box>> groups = new ArrayList<>();
+        if (bandByType.get() == false) {
+            List<ClusterSlot> slots = new ArrayList<>(slotMap.values());
+            groups.add(measureSlots(slots));
+            orderedSlots.addAll(slots);
+        } else {
+            for (Series<DateTime, AggregateEvent> s : sortedSeriesList) {
+                List<ClusterSlot> slots = s.getData().stream()
+                        .map(slotMap::get)
+                        .filter(slot -> slot != null)
+                        .collect(Collectors.toList());
+                groups.add(measureSlots(slots));
+                orderedSlots.addAll(slots);
+            }
+        }
+
+        final long generation = ++layoutGeneration;
+        final ClusterRowLayout rowLayout = new ClusterRowLayout(oneEventPerRow.get(), MAX_OVERLAPPING_CLUSTERS);
+        setCursor(Cursor.WAIT);
+        if (pendingLayout != null) {
+            pendingLayout.cancel(true);
+        }
+        if (layoutExecutor.isShutdown()) {
+            //the chart was disposed
+            setCursor(null);
+            return;
+        }
+        pendingLayout = layoutExecutor.submit(() -> {
+            final ClusterRowLayout.Result result = rowLayout.layout(groups);
+            Platform.runLater(() -> applyLayout(generation, orderedSlots, result));
+        });
+    }
+
+    /**
+     * Apply the result of a background layout: move the slots (and their
+     * nodes, if they have any) to their rows, and replace the runs of slots
+     * that are too dense with density bands. Must be called on the JavaFX
+     * thread.
+     *
+     * @param generation   the generation of the layout, if it is not the most
+     *                     recent one the result is out of date and ignored
+     * @param orderedSlots the slots that were laid out, in the order of the
+     *                     result's indices
+     * @param result       the layout
+     */
+    private synchronized void applyLayout(long generation, List<ClusterSlot> orderedSlots, ClusterRowLayout.Result result) {
+        if (generation != layoutGeneration) {
+            return;
+        }
+        pendingLayout = null;
+
+        laidOutSlots.clear();
+        nodeGroup.getChildren().removeAll(densityBands);
+        densityBands.clear();
+
+        for (int i = 0; i < orderedSlots.size(); i++) {
+            final ClusterSlot slot = orderedSlots.get(i);
+            if (result.isInBand(i)) {
+                //the nodes of slots that are now in bands are no longer needed
+                if (slot.node != null) {
+                    releaseNode(slot);
+                }
+            } else {
+                slot.y = result.getY(i);
+                laidOutSlots.add(slot);
+                if (slot.node != null) {
+                    //nodes that are already showing move to their new positions
+                    configureNode(slot);
+                    Timeline tm = new Timeline(new KeyFrame(Duration.seconds(1.0),
+                            new KeyValue(slot.node.layoutXProperty(), slot.x),
+                            new KeyValue(slot.node.layoutYProperty(), slot.y)));
+                    tm.play();
+                }
+            }
+        }
+        for (ClusterRowLayout.Band band : result.getBands()) {
+            List<AggregateEvent> aggEvents = new ArrayList<>(band.getMembers().size());
+            for (Integer member : band.getMembers()) {
+                aggEvents.add(orderedSlots.get(member).aggEvent);
+            }
+            DensityBand densityBand = new DensityBand(aggEvents, controller);
+            densityBand.setBandWidth(band.getWidth());
+            densityBand.autosize();
+            densityBand.relocate(band.getX(), band.getY());
+            densityBands.add(densityBand);
+            nodeGroup.getChildren().add(densityBand);
+        }
+        maxY.set(result.getMaxY());
+        setCursor(null);
+
+        updateVisibleNodes();
+        layoutProjectionMap();
+    }
+
+    /**
+     * Make sure that exactly the laid out slots that are in or near the
+     * visible area have nodes: give nodes (from the pool if possible) to the
+     * slots that have come into view, and return the nodes of the slots that
+     * have gone out of view to the pool. Selected and expanded nodes are kept
+     * regardless.
+     */
+    private synchronized void updateVisibleNodes() {
+        final double top = vScrollOffset - VIEWPORT_MARGIN;
+        final double bottom = vScrollOffset + getHeight() + VIEWPORT_MARGIN;
+        final double left = -VIEWPORT_MARGIN;
+        final double right = getWidth() + VIEWPORT_MARGIN;
+
+        for (ClusterSlot slot : laidOutSlots) {
+            final boolean inView = slot.y + slot.height >= top && slot.y <= bottom
+                    && slot.right >= left && slot.x <= right;
+            if (inView && slot.node == null) {
+                AggregateEventNode node = nodePool.poll();
+                if (node == null) {
+                    node = new AggregateEventNode(slot.aggEvent, null, this);
+                } else {
+                    node.setEvent(slot.aggEvent);
+                }
+                slot.node = node;
+                configureNode(slot);
+                node.applyHighlightEffect(highlightPredicate.test(slot.aggEvent));
+                node.relocate(slot.x, slot.y);
+                nodeGroup.getChildren().add(node);
+            } else if (inView == false && slot.node != null && isPinned(slot.node) == false) {
+                releaseNode(slot);
+            }
+        }
+    }
+
+    /**
+     * size the node of the given slot to its event and the layout settings
+     */
+    private void configureNode(ClusterSlot slot) {
+        final AggregateEventNode node = slot.node;
+        node.setDescriptionVisibility(descrVisibility.get());
+        node.setSpanWidth(slot.spanWidth);
+        if (truncateAll.get()) { //if truncate option is selected limit width of description label
+            node.setDescriptionWidth(Math.max(slot.spanWidth, truncateWidth.get()));
+        } else { //else set it unbounded
+            node.setDescriptionWidth(USE_PREF_SIZE);
+        }
+        node.autosize();
+    }
+
+    /**
+     * take the node away from the given slot, and keep it for reuse
+     */
+    private void releaseNode(ClusterSlot slot) {
+        final AggregateEventNode node = slot.node;
+        slot.node = null;
+        node.cancelSubClusterLoad();
+        nodeGroup.getChildren().remove(node);
+        selectedNodes.remove(node);
+        if (nodePool.size() < MAX_POOLED_NODES) {
+            nodePool.push(node);
+        }
+    }
+
+    /**
+     * @return true if the given node must not be released or replaced by a
+     *         density band, because it is selected, or shows or is loading
+     *         sub-clusters
+     */
+    private boolean isPinned(AggregateEventNode node) {
+        return node != null
+                && (selectedNodes.contains(node) || node.getSubNodePane().getChildren().isEmpty() == false || node.isLoadingSubClusters());
+    }
+
+    /**
+     * Estimate the width the node for the given event would have, as laid out
+     * by {@link #sizeNode(AggregateEventNode, double)}, without making it.
+     */
+    private double estimateWidth(AggregateEvent aggEvent, double spanWidth) {
+        final int size = aggEvent.getEventIDs().size();
+        final String text;
+        switch (descrVisibility.get()) {
+            case COUNT_ONLY:
+                text = String.valueOf(size);
+                break;
+            case HIDDEN:
+                text = "";
+                break;
+            default:
+            case SHOWN:
+                text = aggEvent.getDescription() + ((size == 1) ? "" : " (" + size + ")"); // NON-NLS
+                break;
+        }
+        textMeasurer.setText(text);
+        double labelWidth = ICON_WIDTH + GRAPHIC_TEXT_GAP + textMeasurer.getLayoutBounds().getWidth();
+        if (truncateAll.get()) {
+            labelWidth = Math.min(labelWidth, Math.max(spanWidth, truncateWidth.get()));
+        }
+        double width = LABEL_PADDING + labelWidth;
+        if (aggEvent.getEventIDsWithHashHits().isEmpty() == false) {
+            width += ICON_WIDTH;
+        }
+        if (aggEvent.getEventIDsWithTags().isEmpty() == false) {
+            width += ICON_WIDTH;
+        }
+        return Math.max(Math.max(2, spanWidth), width);
+    }
 
     private void layoutProjectionMap() {
         for (final Map.Entry<AggregateEventNode, Line> entry : projectionMap.entrySet()) {
@@ -739,6 +1095,9 @@ protected void requestChartLayout() {
 
     @Subscribe
     synchronized public void handleEventsUnTagged(EventsUnTaggedEvent tagEvent) {
+        for (ClusterSlot slot : slotMap.values()) {
+            slot.aggEvent = slot.aggEvent.withTagsRemoved(tagEvent.getEventIDs());
+        }
         for (AggregateEventNode t : getAllNodes()) {
             t.handleEventsUnTagged(tagEvent);
         }
@@ -746,8 +1105,43 @@ synchronized public void handleEventsUnTagged(EventsUnTaggedEvent tagEvent) {
 
     @Subscribe
     synchronized public void handleEventsTagged(EventsTaggedEvent tagEvent) {
+        for (ClusterSlot slot : slotMap.values()) {
+            slot.aggEvent = slot.aggEvent.withTagsAdded(tagEvent.getEventIDs());
+        }
         for (AggregateEventNode t : getAllNodes()) {
             t.handleEventsTagged(tagEvent);
         }
     }
+
+    /**
+     * The place of one top level aggregate event in the layout, and the node
+     * that shows it, if it is in view.
+     */
+    private static final class ClusterSlot {
+
+        /**
+         * the event, with the current tags
+         */
+        private AggregateEvent aggEvent;
+
+        private AggregateEventNode node;
+
+        /**
+         * the left and right edges, in the coordinates of the nodeGroup
+         */
+        private double x;
+        private double right;
+
+        private double y;
+        private double height = DEFAULT_ROW_HEIGHT;
+
+        /**
+         * the width of the event's time span, in pixels
+         */
+        private double spanWidth;
+
+        ClusterSlot(AggregateEvent aggEvent) {
+            this.aggEvent = aggEvent;
+        }
+    }
 }
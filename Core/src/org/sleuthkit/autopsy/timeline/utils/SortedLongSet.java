@@ -0,0 +1,230 @@
+/*
+ * Autopsy Forensic Browser
+ *
+ * Copyright 2015 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.autopsy.timeline.utils;
+
+import com.google.common.collect.Sets;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * An immutable set of longs backed by a sorted array of primitives. Used for
+ * the (potentially large) sets of event ids held by aggregate events, so the
+ * ids are not boxed until they are iterated over, and lookups are a binary
+ * search.
+ */
+@Immutable
+public final class SortedLongSet extends AbstractSet<Long> {
+
+    private static final SortedLongSet EMPTY = new SortedLongSet(new long[0]);
+
+    /**
+     * sorted, without duplicates
+     */
+    private final long[] values;
+
+    private SortedLongSet(long[] values) {
+        this.values = values;
+    }
+
+    /**
+     * @return an empty set
+     */
+    public static SortedLongSet empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Parse a comma separated list of longs, as produced by sqlite's
+     * group_concat, directly into a set, without splitting the string or
+     * boxing the values.
+     *
+     * @param commaSeparated the list to parse, may be null or empty
+     *
+     * @return a set of the values in the list
+     *
+     * @throws NumberFormatException if the list contains anything other than
+     *                               digits, '-' and commas
+     */
+    public static SortedLongSet parse(String commaSeparated) {
+        if (commaSeparated == null || commaSeparated.isEmpty()) {
+            return EMPTY;
+        }
+        long[] parsed = new long[16];
+        int count = 0;
+        long value = 0;
+        boolean negative = false;
+        boolean hasDigits = false;
+        for (int i = 0; i <= commaSeparated.length(); i++) {
+            char c = (i < commaSeparated.length()) ? commaSeparated.charAt(i) : ',';
+            if (c == ',') {
+                if (hasDigits == false) {
+                    throw new NumberFormatException("empty value in: " + commaSeparated);
+                }
+                if (count == parsed.length) {
+                    parsed = Arrays.copyOf(parsed, count * 2);
+                }
+                parsed[count++] = negative ? -value : value;
+                value = 0;
+                negative = false;
+                hasDigits = false;
+            } else if (c == '-' && hasDigits == false && negative == false) {
+                negative = true;
+            } else if (c >= '0' && c <= '9') {
+                value = value * 10 + (c - '0');
+                hasDigits = true;
+            } else {
+                throw new NumberFormatException("unexpected character '" + c + "' in: " + commaSeparated);
+            }
+        }
+        return of(parsed, count);
+    }
+
+    /**
+     * @param values the values to put in the set. The array is not retained.
+     *
+     * @return a set of the given values
+     */
+    public static SortedLongSet of(long... values) {
+        return of(values.clone(), values.length);
+    }
+
+    /**
+     * @param values an array that is owned by the new set
+     * @param count  the number of values in the array to use
+     */
+    private static SortedLongSet of(long[] values, int count) {
+        if (count == 0) {
+            return EMPTY;
+        }
+        Arrays.sort(values, 0, count);
+        int unique = 1;
+        for (int i = 1; i < count; i++) {
+            if (values[i] != values[unique - 1]) {
+                values[unique++] = values[i];
+            }
+        }
+        return new SortedLongSet(unique == values.length ? values : Arrays.copyOf(values, unique));
+    }
+
+    /**
+     * Get the union of two sets. If both are SortedLongSets, their arrays are
+     * merged into a new SortedLongSet, otherwise a view of the union is
+     * returned.
+     *
+     * @param set1
+     * @param set2
+     *
+     * @return the union of the two sets.
+     */
+    public static Set<Long> union(Set<Long> set1, Set<Long> set2) {
+        if (set1 instanceof SortedLongSet && set2 instanceof SortedLongSet) {
+            return union((SortedLongSet) set1, (SortedLongSet) set2);
+        }
+        return Sets.union(set1, set2);
+    }
+
+    private static SortedLongSet union(SortedLongSet set1, SortedLongSet set2) {
+        if (set2.values.length == 0) {
+            return set1;
+        } else if (set1.values.length == 0) {
+            return set2;
+        }
+        long[] a = set1.values;
+        long[] b = set2.values;
+        long[] merged = new long[a.length + b.length];
+        int i = 0, j = 0, k = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                merged[k++] = a[i++];
+            } else if (a[i] > b[j]) {
+                merged[k++] = b[j++];
+            } else {
+                merged[k++] = a[i++];
+                j++;
+            }
+        }
+        while (i < a.length) {
+            merged[k++] = a[i++];
+        }
+        while (j < b.length) {
+            merged[k++] = b[j++];
+        }
+        return new SortedLongSet(k == merged.length ? merged : Arrays.copyOf(merged, k));
+    }
+
+    /**
+     * @param value
+     *
+     * @return true if this set contains the given value, without boxing it
+     */
+    public boolean containsLong(long value) {
+        return Arrays.binarySearch(values, value) >= 0;
+    }
+
+    /**
+     * @return a copy of the values in this set, in ascending order
+     */
+    public long[] toLongArray() {
+        return values.clone();
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return (o instanceof Long) && containsLong((Long) o);
+    }
+
+    @Override
+    public int size() {
+        return values.length;
+    }
+
+    @Override
+    public Iterator<Long> iterator() {
+        return new Iterator<Long>() {
+            private int next = 0;
+
+            @Override
+            public boolean hasNext() {
+                return next < values.length;
+            }
+
+            @Override
+            public Long next() {
+                if (next >= values.length) {
+                    throw new NoSuchElementException();
+                }
+                return values[next++];
+            }
+        };
+    }
+
+    @Override
+    public int hashCode() {
+        //same as AbstractSet: the sum of the Long hashcodes
+        int hash = 0;
+        for (long value : values) {
+            hash += (int) (value ^ (value >>> 32));
+        }
+        return hash;
+    }
+}
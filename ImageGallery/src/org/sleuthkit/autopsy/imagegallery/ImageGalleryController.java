@@ -26,6 +26,7 @@
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.logging.Level;
+import java.util.stream.Collectors;
 import javafx.application.Platform;
 import javafx.beans.Observable;
 import javafx.beans.property.ReadOnlyBooleanProperty;
@@ -63,6 +64,7 @@
 import org.sleuthkit.autopsy.imagegallery.datamodel.CategoryManager;
 import org.sleuthkit.autopsy.imagegallery.datamodel.DrawableDB;
 import org.sleuthkit.autopsy.imagegallery.datamodel.DrawableFile;
+import org.sleuthkit.autopsy.imagegallery.datamodel.DrawableMetadataLoader;
 import org.sleuthkit.autopsy.imagegallery.datamodel.DrawableTagsManager;
 import org.sleuthkit.autopsy.imagegallery.datamodel.HashSetManager;
 import org.sleuthkit.autopsy.imagegallery.datamodel.grouping.GroupManager;
@@ -133,6 +135,9 @@ public static synchronized ImageGalleryController getDefault() {
     private final CategoryManager categoryManager = new CategoryManager(this);
     private final DrawableTagsManager tagsManager = new DrawableTagsManager(null);
 
+    /** generates thumbnails of images and videos in the background during ingest */
+    private final ThumbnailPregenerator thumbnailPregenerator = new ThumbnailPregenerator();
+
     private StackPane fullUIStackPane;
 
     private StackPane centralStackPane;
@@ -384,6 +389,8 @@ public synchronized void reset() {
         LOGGER.info("resetting ImageGalleryControler to initial state.");
         selectionModel.clearSelection();
         setListeningEnabled(false);
+        ThumbnailLoadingService.getDefault().cancelAll();
+        thumbnailPregenerator.cancelQueued();
         ThumbnailCache.getDefault().clearCache();
         Platform.runLater(() -> {
             historyManager.clear();
@@ -469,6 +476,10 @@ void onStart() {
                             if (ImageGalleryModule.isDrawableAndNotKnown(file)) {
                                 //this file should be included and we don't already know about it from hash sets (NSRL)
                                 queueDBWorkerTask(new UpdateFileTask(file, db));
+                                if (ImageGalleryPreferences.isPregenerateThumbnails()) {
+                                    //so the thumbnails are ready when the file is first looked at
+                                    thumbnailPregenerator.queue(file);
+                                }
                             } else if (FileTypeUtils.getAllSupportedExtensions().contains(file.getNameExtension())) {
                                 //doing this check results in fewer tasks queued up, and faster completion of db update
                                 //this file would have gotten scooped up in initial grab, but actually we don't need it
@@ -792,6 +803,10 @@ public void run() {
 
                 updateProgress(0.0);
 
+                //load the metadata of the files in chunks, rather than file by file
+                final DrawableMetadataLoader metadataLoader = new DrawableMetadataLoader(tskCase,
+                        files.stream().map(AbstractFile::getId).collect(Collectors.toList()));
+
                 //do in transaction
                 DrawableDB.DrawableTransaction tr = taskDB.beginTransaction();
                 int units = 0;
@@ -810,14 +825,18 @@ public void run() {
                         final Optional<Boolean> hasMimeType = FileTypeUtils.hasDrawableMimeType(f);
                         if (hasMimeType.isPresent()) {
                             if (hasMimeType.get()) {  // supported mimetype => analyzed
-                                taskDB.updateFile(DrawableFile.create(f, true, taskDB.isVideoFile(f)), tr);
+                                final DrawableFile<?> drawableFile = DrawableFile.create(f, true, taskDB.isVideoFile(f));
+                                metadataLoader.load(drawableFile);
+                                taskDB.updateFile(drawableFile, tr);
                             } else { //unsupported mimtype => analyzed but shouldn't include
                                 taskDB.removeFile(f.getId(), tr);
                             }
                         } else {
                             if (FileTypeUtils.isDrawable(f)) {
                                 //no mime type but supported =>  add as not analyzed
-                                taskDB.insertFile(DrawableFile.create(f, false, taskDB.isVideoFile(f)), tr);
+                                final DrawableFile<?> drawableFile = DrawableFile.create(f, false, taskDB.isVideoFile(f));
+                                metadataLoader.load(drawableFile);
+                                taskDB.insertFile(drawableFile, tr);
                             } else {
                                 //no mime type, not supported  => remove ( should never get here)
                                 taskDB.removeFile(f.getId(), tr);
@@ -923,6 +942,10 @@ public void run() {
                 files = getSleuthKitCase().findAllFilesWhere(fsQuery + " and " + DRAWABLE_QUERY);
                 progressHandle.switchToDeterminate(files.size());
 
+                //load the metadata of the files in chunks, rather than file by file
+                final DrawableMetadataLoader metadataLoader = new DrawableMetadataLoader(getSleuthKitCase(),
+                        files.stream().map(AbstractFile::getId).collect(Collectors.toList()));
+
                 //do in transaction
                 DrawableDB.DrawableTransaction tr = db.beginTransaction();
                 int units = 0;
@@ -932,7 +955,9 @@ public void run() {
                         progressHandle.finish();
                         break;
                     }
-                    db.insertFile(DrawableFile.create(f, false, db.isVideoFile(f)), tr);
+                    final DrawableFile<?> drawableFile = DrawableFile.create(f, false, db.isVideoFile(f));
+                    metadataLoader.load(drawableFile);
+                    db.insertFile(drawableFile, tr);
                     units++;
                     progressHandle.progress(f.getName(), units);
                 }
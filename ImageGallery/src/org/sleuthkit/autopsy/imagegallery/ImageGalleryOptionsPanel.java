@@ -44,6 +44,10 @@ final class ImageGalleryOptionsPanel extends javax.swing.JPanel {
             controller.changed();
         });
 
+        pregenerateThumbnailsBox.addActionListener((ActionEvent e) -> {
+            controller.changed();
+        });
+
         enabledForCaseBox.addActionListener((ActionEvent e) -> {
             controller.changed();
         });
@@ -59,6 +63,7 @@ private void initComponents() {
 
         enabledByDefaultBox = new javax.swing.JCheckBox();
         enabledForCaseBox = new javax.swing.JCheckBox();
+        pregenerateThumbnailsBox = new javax.swing.JCheckBox();
         descriptionLabel = new javax.swing.JLabel();
         furtherDescriptionArea = new javax.swing.JTextArea();
         infoIconLabel = new javax.swing.JLabel();
@@ -79,6 +84,8 @@ public void actionPerformed(java.awt.event.ActionEvent evt) {
             }
         });
 
+        org.openide.awt.Mnemonics.setLocalizedText(pregenerateThumbnailsBox, org.openide.util.NbBundle.getMessage(ImageGalleryOptionsPanel.class, "ImageGalleryOptionsPanel.pregenerateThumbnailsBox.text")); // NOI18N
+
         org.openide.awt.Mnemonics.setLocalizedText(descriptionLabel, org.openide.util.NbBundle.getMessage(ImageGalleryOptionsPanel.class, "ImageGalleryOptionsPanel.descriptionLabel.text")); // NOI18N
 
         furtherDescriptionArea.setBackground(new java.awt.Color(240, 240, 240));
@@ -114,6 +121,7 @@ public void actionPerformed(java.awt.event.ActionEvent evt) {
                             .addComponent(furtherDescriptionArea, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE))
                         .addComponent(enabledByDefaultBox)
                         .addComponent(enabledForCaseBox)
+                        .addComponent(pregenerateThumbnailsBox)
                         .addComponent(descriptionLabel, javax.swing.GroupLayout.PREFERRED_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.PREFERRED_SIZE)))
                 .addContainerGap(46, Short.MAX_VALUE))
         );
@@ -128,6 +136,8 @@ public void actionPerformed(java.awt.event.ActionEvent evt) {
                 .addComponent(enabledForCaseBox)
                 .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
                 .addComponent(unavailableDuringInjestLabel)
+                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.UNRELATED)
+                .addComponent(pregenerateThumbnailsBox)
                 .addGap(18, 18, 18)
                 .addGroup(layout.createParallelGroup(javax.swing.GroupLayout.Alignment.LEADING)
                     .addComponent(infoIconLabel)
@@ -147,6 +157,7 @@ private void enabledForCaseBoxActionPerformed(java.awt.event.ActionEvent evt) {/
     /** {@inheritDoc} */
     void load() {
         enabledByDefaultBox.setSelected(ImageGalleryPreferences.isEnabledByDefault());
+        pregenerateThumbnailsBox.setSelected(ImageGalleryPreferences.isPregenerateThumbnails());
         if (Case.isCaseOpen() && IngestManager.getInstance().isIngestRunning() == false) {
             enabledForCaseBox.setEnabled(true);
             enabledForCaseBox.setSelected(ImageGalleryModule.isEnabledforCase(Case.getCurrentCase()));
@@ -159,6 +170,7 @@ void load() {
     /** {@inheritDoc } */
     void store() {
         ImageGalleryPreferences.setEnabledByDefault(enabledByDefaultBox.isSelected());
+        ImageGalleryPreferences.setPregenerateThumbnails(pregenerateThumbnailsBox.isSelected());
         ImageGalleryController.getDefault().setListeningEnabled(enabledForCaseBox.isSelected());
         if (Case.isCaseOpen()) {
             new PerCaseProperties(Case.getCurrentCase()).setConfigSetting(ImageGalleryModule.getModuleName(), PerCaseProperties.ENABLED, Boolean.toString(enabledForCaseBox.isSelected()));
@@ -179,6 +191,7 @@ boolean valid() {
     private javax.swing.JCheckBox enabledForCaseBox;
     private javax.swing.JTextArea furtherDescriptionArea;
     private javax.swing.JLabel infoIconLabel;
+    private javax.swing.JCheckBox pregenerateThumbnailsBox;
     private javax.swing.JLabel unavailableDuringInjestLabel;
     // End of variables declaration//GEN-END:variables
 }
@@ -31,6 +31,9 @@ class ImageGalleryPreferences {
     /** key for the listening enabled for new cases setting */
     private static final String ENABLED_BY_DEFAULT = "enabled_by_default";
 
+    /** key for the generate thumbnails during ingest setting */
+    private static final String PREGENERATE_THUMBNAILS = "pregenerate_thumbnails";
+
     /**
      * Return setting of whether Image Analyzer should be automatically enabled
      * when a new case is created. Note that the current case may have a
@@ -47,6 +50,20 @@ static void setEnabledByDefault(boolean b) {
         preferences.putBoolean(ENABLED_BY_DEFAULT, b);
     }
 
+    /**
+     * Return setting of whether thumbnails of images and videos should be
+     * generated in the background as they are ingested.
+     *
+     * @return true if thumbnails should be generated during ingest.
+     */
+    static boolean isPregenerateThumbnails() {
+        return preferences.getBoolean(PREGENERATE_THUMBNAILS, true);
+    }
+
+    static void setPregenerateThumbnails(boolean b) {
+        preferences.putBoolean(PREGENERATE_THUMBNAILS, b);
+    }
+
     static void addChangeListener(PreferenceChangeListener l) {
         preferences.addPreferenceChangeListener(l);
     }
@@ -24,25 +24,23 @@
 import com.google.common.util.concurrent.UncheckedExecutionException;
 import java.awt.image.BufferedImage;
 import java.io.BufferedInputStream;
-import java.io.File;
-import java.io.IOException;
-import java.net.MalformedURLException;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
-import java.util.function.Function;
 import java.util.logging.Level;
 import javafx.beans.property.SimpleIntegerProperty;
 import javafx.embed.swing.SwingFXUtils;
 import javafx.scene.image.Image;
 import javafx.scene.image.WritableImage;
 import javax.annotation.Nullable;
-import javax.imageio.ImageIO;
-import org.openide.util.Exceptions;
 import org.sleuthkit.autopsy.coreutils.ImageUtils;
 import org.sleuthkit.autopsy.coreutils.Logger;
+import org.sleuthkit.autopsy.imagegallery.datamodel.DrawableDB;
 import org.sleuthkit.autopsy.imagegallery.datamodel.DrawableFile;
+import org.sleuthkit.autopsy.imagegallery.datamodel.PerceptualHash;
 import org.sleuthkit.autopsy.imagegallery.gui.Toolbar;
+import org.sleuthkit.datamodel.AbstractFile;
 import org.sleuthkit.datamodel.ReadContentInputStream;
 import org.sleuthkit.datamodel.TskCoreException;
 
@@ -56,7 +54,7 @@ public enum ThumbnailCache {
 
     instance;
 
-    private static final int MAX_THUMBNAIL_SIZE = 300;
+    static final int MAX_THUMBNAIL_SIZE = 300;
 
     private static final Logger LOGGER = Logger.getLogger(ThumbnailCache.class.getName());
 
@@ -100,6 +98,48 @@ public Image get(DrawableFile<?> file) {
         }
     }
 
+    /**
+     * Get the cached thumbnail for the given file, or generate a new one if
+     * needed, as in {@link #get(DrawableFile)}, without waiting for videos to
+     * be decoded.
+     *
+     * @param file
+     *
+     * @return a future of the thumbnail, or of null if the thumbnail could not
+     *         be generated. It is already complete unless the file is a video
+     *         whose thumbnail has to be made.
+     */
+    public CompletableFuture<Image> getAsync(DrawableFile<?> file) {
+        final Optional<Image> cached = cache.getIfPresent(file.getId());
+        if (cached != null || file.isVideo() == false) {
+            return CompletableFuture.completedFuture(cached != null ? cached.orElse(null) : get(file));
+        }
+        return ImageUtils.getThumbnailAsync(file.getAbstractFile(), MAX_THUMBNAIL_SIZE).thenApply(thumbnail -> {
+            final Optional<Image> image = toFXThumbnail(file, (BufferedImage) thumbnail);
+            cache.put(file.getId(), image);
+            return image.orElse(null);
+        });
+    }
+
+    /**
+     * @param fileID
+     *
+     * @return true if the thumbnail for the file with the given ID is in the
+     *         in memory cache (though it may be garbage collected at any time)
+     */
+    public boolean isCached(Long fileID) {
+        return cache.getIfPresent(fileID) != null;
+    }
+
+    public CompletableFuture<Image> getAsync(Long fileID) {
+        try {
+            return getAsync(ImageGalleryController.getDefault().getFileFromId(fileID));
+        } catch (TskCoreException ex) {
+            LOGGER.log(Level.WARNING, "failed to load icon for file id : " + fileID, ex.getCause());
+            return CompletableFuture.completedFuture(null);
+        }
+    }
+
     @Nullable
     public Image get(Long fileID) {
         try {
@@ -111,7 +151,7 @@ public Image get(Long fileID) {
     }
 
     /**
-     * load a thumbnail from the disk based cache for the given file, or
+     * load a thumbnail from the case's thumbnail store for the given file, or
      * generate and save a new thumbnail if one doesn't already exist
      *
      * @param file the DrawableFile to load a thumbnail of
@@ -126,60 +166,70 @@ private Optional<Image> load(DrawableFile<?> file) {
             return Optional.of(new Image(new BufferedInputStream(new ReadContentInputStream(file.getAbstractFile())), MAX_THUMBNAIL_SIZE, MAX_THUMBNAIL_SIZE, true, true));
         }
 
-        BufferedImage thumbnail = getCacheFile(file).map(new Function<File, BufferedImage>() {
-            @Override
-            public BufferedImage apply(File cachFile) {
-                if (cachFile.exists()) {
-                    // If a thumbnail file is already saved locally, load it
-                    try {
-                        BufferedImage read = ImageIO.read(cachFile);
-
-                        if (read.getWidth() < MAX_THUMBNAIL_SIZE) {
-                            return read;
-
-                        }
-                    } catch (MalformedURLException ex) {
-                        LOGGER.log(Level.WARNING, "Unable to parse cache file path..");
-                    } catch (IOException ex) {
-                        Exceptions.printStackTrace(ex);
-                    }
-                }
-                return null;
-            }
-        }).orElseGet(() -> {
-            return (BufferedImage) ImageUtils.getThumbnail(file.getAbstractFile(), MAX_THUMBNAIL_SIZE);
-        });
+        //ImageUtils reads the thumbnail from the case's thumbnail store, or generates and stores it
+        BufferedImage thumbnail = (BufferedImage) ImageUtils.getThumbnail(file.getAbstractFile(), MAX_THUMBNAIL_SIZE);
 
 //        } catch (IllegalStateException e) {
 //            LOGGER.log(Level.WARNING, "can't load icon when no case is open");
 //            return Optional.empty();
 //        }
+        return toFXThumbnail(file, thumbnail);
+    }
+
+    /**
+     * Convert the given thumbnail of the given file from ImageUtils for
+     * display, and update the perceptual hash of image files from it.
+     *
+     * @return an (possibly empty) optional containing the thumbnail
+     */
+    private Optional<Image> toFXThumbnail(DrawableFile<?> file, BufferedImage thumbnail) {
         WritableImage jfxthumbnail;
         if (thumbnail == ImageUtils.getDefaultThumbnail()) {
             // if we go the default icon, ignore it
             jfxthumbnail = null;
         } else {
             jfxthumbnail = SwingFXUtils.toFXImage(thumbnail, null);
+            if (file.isVideo() == false) {
+                updatePerceptualHash(file.getAbstractFile(), thumbnail);
+            }
         }
 
         return Optional.ofNullable(jfxthumbnail); //return icon, or null if generation failed
     }
 
     /**
-     * get a File to store the cached icon in.
-     *
-     * @param id the obj id of the file to get a cache file for
+     * Compute and store the perceptual hash of the given image file, from its
+     * thumbnail, if it is not already stored. Videos are skipped.
      *
-     * @return a Optional containing a File to store the cahced icon in or an
-     *         empty optional if there was a problem.
+     * @param file the file to hash
      */
-    private static Optional<File> getCacheFile(DrawableFile<?> file) {
-        try {
-            return Optional.of(ImageUtils.getCachedThumbnailFile(file.getAbstractFile(), MAX_THUMBNAIL_SIZE));
+    public void computePerceptualHash(AbstractFile file) {
+        final DrawableDB db = ImageGalleryController.getDefault().getDatabase();
+        if (db == null || FileTypeUtils.isVideoFile(file) || db.hasPerceptualHash(file.getId())) {
+            return;
+        }
+        BufferedImage thumbnail = (BufferedImage) ImageUtils.getThumbnail(file, MAX_THUMBNAIL_SIZE);
+        if (thumbnail != ImageUtils.getDefaultThumbnail()) {
+            updatePerceptualHash(file, thumbnail);
+        }
+    }
 
-        } catch (IllegalStateException e) {
-            LOGGER.log(Level.WARNING, "Failed to create cache file.{0}", e.getLocalizedMessage());
-            return Optional.empty();
+    /**
+     * Compute and store the perceptual hash of the image file with the given
+     * ID from the given thumbnail of it, if it is not already stored. For
+     * callers that already have the thumbnail, so it is not read again.
+     *
+     * @param fileID    the ID of the file to hash, not a video
+     * @param thumbnail a thumbnail of the file, of MAX_THUMBNAIL_SIZE
+     */
+    public void computePerceptualHash(long fileID, BufferedImage thumbnail) {
+        final DrawableDB db = ImageGalleryController.getDefault().getDatabase();
+        if (db != null && db.hasPerceptualHash(fileID) == false) {
+            db.setPerceptualHash(fileID, PerceptualHash.compute(thumbnail));
         }
     }
+
+    private void updatePerceptualHash(AbstractFile file, BufferedImage thumbnail) {
+        computePerceptualHash(file.getId(), thumbnail);
+    }
 }
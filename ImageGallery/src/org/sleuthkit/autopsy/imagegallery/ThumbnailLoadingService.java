@@ -0,0 +1,391 @@
+/*
+ * Autopsy Forensic Browser
+ *
+ * Copyright 2015 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.autopsy.imagegallery;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import javafx.concurrent.Task;
+import javafx.scene.image.Image;
+import javax.annotation.concurrent.GuardedBy;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.sleuthkit.autopsy.coreutils.Logger;
+import org.sleuthkit.autopsy.imagegallery.datamodel.DrawableFile;
+
+/**
+ * Singleton that runs the image loading tasks of the Image Gallery's tiles, the
+ * metadata pane and the slide show on a small, bounded pool of threads, rather
+ * than a new thread per tile.
+ *
+ * - Tasks for visible tiles are run before prefetches of thumbnails for
+ * nearby tiles, and the most recently requested ones first, so the tiles the
+ * user has scrolled to fill in first.
+ *
+ * - Requests for the thumbnail of the same file are collapsed: the thumbnail
+ * is loaded into the {@link ThumbnailCache} once, and then the tasks of all
+ * the requesters are run against the cached thumbnail.
+ *
+ * - Tasks that are cancelled (eg because their tile was recycled for another
+ * file) before they start are taken out of the queue.
+ *
+ * - Loads that are not thumbnails, eg full size images and videos, run on
+ * their own threads, so that slow loads of large files don't hold up the
+ * thumbnails.
+ */
+public enum ThumbnailLoadingService {
+
+    instance;
+
+    /**
+     * the most thumbnail prefetches to have waiting at once, prefetches
+     * beyond this are dropped.
+     */
+    private static final int MAX_QUEUED_PREFETCHES = 500;
+
+    /**
+     * The priority of a load, in order from most to least urgent.
+     */
+    public enum Priority {
+
+        /**
+         * the result will be shown as soon as it is loaded
+         */
+        VISIBLE,
+        /**
+         * the result may be shown soon, eg the thumbnails of the files just
+         * outside of the visible part of a group
+         */
+        PREFETCH;
+    }
+
+    /**
+     * runs the thumbnail loads
+     */
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * runs the tasks that are not thumbnail loads
+     */
+    private final ThreadPoolExecutor mediaExecutor;
+
+    /**
+     * used to run the most recent requests of each priority first
+     */
+    private final AtomicLong sequence = new AtomicLong();
+
+    /**
+     * the waiting or running thumbnail loads, by file ID
+     */
+    @GuardedBy("this")
+    private final Map<Long, LoadEntry> thumbnailLoads = new HashMap<>();
+
+    /**
+     * the entry each waiting task is part of
+     */
+    @GuardedBy("this")
+    private final Map<Task<?>, LoadEntry> taskEntries = new HashMap<>();
+
+    @GuardedBy("this")
+    private int queuedPrefetches = 0;
+
+    private ThumbnailLoadingService() {
+        executor = newExecutor(Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors())), "Image Gallery thumbnail loader-%d");
+        executor.allowCoreThreadTimeOut(true);
+        mediaExecutor = newExecutor(2, "Image Gallery media loader-%d");
+        mediaExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    private static ThreadPoolExecutor newExecutor(int threads, String namingPattern) {
+        return new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                new PriorityBlockingQueue<>(),
+                new BasicThreadFactory.Builder()
+                .namingPattern(namingPattern)
+                .daemon(true)
+                .uncaughtExceptionHandler((Thread t, Throwable e) -> {
+                    //the static LOGGER can't be used from the constructor of an enum
+                    Logger.getLogger(ThumbnailLoadingService.class.getName()).log(Level.SEVERE, "uncaught exception in thumbnail loader", e);
+                }).build());
+    }
+
+    public static ThumbnailLoadingService getDefault() {
+        return instance;
+    }
+
+    /**
+     * Run the given task, which shows the thumbnail of the given file, once
+     * the thumbnail is in the {@link ThumbnailCache}. If the thumbnail of the
+     * file is already being loaded, or waiting to be, the task waits for that
+     * load, and the load is made {@link Priority#VISIBLE} if it wasn't already.
+     *
+     * @param file the file whose thumbnail the task shows
+     * @param task a task that gets the thumbnail of the file from the
+     *             ThumbnailCache
+     */
+    public synchronized void submitThumbnailTask(DrawableFile<?> file, Task<?> task) {
+        LoadEntry entry = thumbnailLoads.get(file.getId());
+        if (entry == null) {
+            entry = new LoadEntry(file.getId(), file, Priority.VISIBLE);
+            thumbnailLoads.put(file.getId(), entry);
+            entry.tasks.add(task);
+            enqueue(entry);
+        } else {
+            entry.tasks.add(task);
+            if (entry.started == false) {
+                //move it to the front of the visible loads
+                requeue(entry, Priority.VISIBLE);
+            }
+        }
+        taskEntries.put(task, entry);
+    }
+
+    /**
+     * Run the given task, at {@link Priority#VISIBLE}, without collapsing it
+     * with other requests, on the threads for loads that are not thumbnails,
+     * eg full size images and videos.
+     *
+     * @param task the task to run
+     */
+    public synchronized void submit(Task<?> task) {
+        LoadEntry entry = new LoadEntry(null, null, Priority.VISIBLE);
+        entry.tasks.add(task);
+        taskEntries.put(task, entry);
+        enqueue(entry);
+    }
+
+    /**
+     * Load the thumbnail of the file with the given ID into the
+     * {@link ThumbnailCache}, at {@link Priority#PREFETCH}, unless it is
+     * already cached or being loaded.
+     *
+     * @param fileID the ID of the file whose thumbnail to load
+     */
+    public synchronized void prefetchThumbnail(Long fileID) {
+        if (thumbnailLoads.containsKey(fileID)
+                || queuedPrefetches >= MAX_QUEUED_PREFETCHES
+                || ThumbnailCache.getDefault().isCached(fileID)) {
+            return;
+        }
+        LoadEntry entry = new LoadEntry(fileID, null, Priority.PREFETCH);
+        thumbnailLoads.put(fileID, entry);
+        enqueue(entry);
+    }
+
+    /**
+     * Cancel the given task, and if no other task is waiting for its load, and
+     * the load has not started, take the load out of the queue.
+     *
+     * @param task the task to cancel
+     */
+    public synchronized void cancel(Task<?> task) {
+        task.cancel(true);
+        LoadEntry entry = taskEntries.remove(task);
+        if (entry != null) {
+            entry.tasks.remove(task);
+            if (entry.tasks.isEmpty() && entry.started == false) {
+                dequeue(entry);
+                if (entry.fileID != null) {
+                    thumbnailLoads.remove(entry.fileID);
+                }
+            }
+        }
+    }
+
+    /**
+     * Drop all the thumbnail prefetches that have not started yet, eg because
+     * the user has switched to another group.
+     */
+    public synchronized void cancelPrefetches() {
+        List<LoadEntry> prefetches = new ArrayList<>();
+        for (LoadEntry entry : thumbnailLoads.values()) {
+            if (entry.priority == Priority.PREFETCH && entry.started == false) {
+                prefetches.add(entry);
+            }
+        }
+        for (LoadEntry entry : prefetches) {
+            dequeue(entry);
+            thumbnailLoads.remove(entry.fileID);
+        }
+    }
+
+    /**
+     * Cancel all the tasks and loads that have not started yet, eg when the
+     * case is closed.
+     */
+    public synchronized void cancelAll() {
+        for (Task<?> task : taskEntries.keySet()) {
+            task.cancel(true);
+        }
+        //entries already taken by a worker will find they were cancelled
+        thumbnailLoads.values().forEach(this::uncountPrefetch);
+        taskEntries.clear();
+        thumbnailLoads.clear();
+        executor.getQueue().clear();
+        mediaExecutor.getQueue().clear();
+    }
+
+    @GuardedBy("this")
+    private void enqueue(LoadEntry entry) {
+        entry.sequence = sequence.incrementAndGet();
+        if (entry.priority == Priority.PREFETCH && entry.countedPrefetch == false) {
+            entry.countedPrefetch = true;
+            queuedPrefetches++;
+        }
+        (entry.fileID == null ? mediaExecutor : executor).execute(entry);
+    }
+
+    /**
+     * Take the given entry out of the executor's queue. If a worker has
+     * already taken it, it will find it was cancelled, or run it, so either
+     * way it is no longer a waiting prefetch.
+     */
+    @GuardedBy("this")
+    private void dequeue(LoadEntry entry) {
+        (entry.fileID == null ? mediaExecutor : executor).remove(entry);
+        uncountPrefetch(entry);
+    }
+
+    /**
+     * stop counting the given entry as a waiting prefetch, if it was counted
+     */
+    @GuardedBy("this")
+    private void uncountPrefetch(LoadEntry entry) {
+        if (entry.countedPrefetch) {
+            entry.countedPrefetch = false;
+            queuedPrefetches--;
+        }
+    }
+
+    /**
+     * take the given entry out of the queue and put it back in with the given
+     * priority, as the most recent request of that priority. The entry must be
+     * taken out first, since its position in the queue depends on its priority.
+     */
+    @GuardedBy("this")
+    private void requeue(LoadEntry entry, Priority priority) {
+        dequeue(entry);
+        entry.priority = priority;
+        enqueue(entry);
+    }
+
+    /**
+     * A load waiting in (or taken from) the executor's queue, and the tasks
+     * waiting for it.
+     */
+    private final class LoadEntry implements Runnable, Comparable<LoadEntry> {
+
+        /**
+         * the ID of the file whose thumbnail to load, or null if this entry
+         * just runs its task
+         */
+        private final Long fileID;
+
+        /**
+         * the file whose thumbnail to load, if the requester had it, else it
+         * is looked up by ID
+         */
+        private final DrawableFile<?> file;
+
+        @GuardedBy("ThumbnailLoadingService.this")
+        private Priority priority;
+
+        @GuardedBy("ThumbnailLoadingService.this")
+        private long sequence;
+
+        @GuardedBy("ThumbnailLoadingService.this")
+        private boolean started = false;
+
+        /**
+         * true while this entry is counted in queuedPrefetches
+         */
+        @GuardedBy("ThumbnailLoadingService.this")
+        private boolean countedPrefetch = false;
+
+        @GuardedBy("ThumbnailLoadingService.this")
+        private final List<Task<?>> tasks = new ArrayList<>();
+
+        LoadEntry(Long fileID, DrawableFile<?> file, Priority priority) {
+            this.fileID = fileID;
+            this.file = file;
+            this.priority = priority;
+        }
+
+        @Override
+        public void run() {
+            synchronized (ThumbnailLoadingService.this) {
+                uncountPrefetch(this);
+                if (started || (fileID != null && thumbnailLoads.get(fileID) != this)) {
+                    //this entry was cancelled
+                    return;
+                }
+                started = true;
+            }
+
+            if (fileID != null) {
+                //load the thumbnail once for all the tasks waiting on it.
+                //thumbnails of videos are made on the video thumbnailer
+                //threads, so the tasks are run there when it is done,
+                //rather than holding up this thread
+                final CompletableFuture<Image> thumbnail = (file != null)
+                        ? ThumbnailCache.getDefault().getAsync(file)
+                        : ThumbnailCache.getDefault().getAsync(fileID);
+                thumbnail.whenComplete((image, ex) -> runTasks());
+            } else {
+                runTasks();
+            }
+        }
+
+        /**
+         * Run the tasks waiting on this entry, once its thumbnail (if any) is
+         * loaded.
+         */
+        private void runTasks() {
+            final List<Task<?>> toRun;
+            synchronized (ThumbnailLoadingService.this) {
+                if (fileID != null) {
+                    thumbnailLoads.remove(fileID, this);
+                }
+                toRun = new ArrayList<>(tasks);
+                tasks.clear();
+                toRun.forEach(taskEntries::remove);
+            }
+            for (Task<?> task : toRun) {
+                if (task.isCancelled() == false) {
+                    task.run();
+                }
+            }
+        }
+
+        @Override
+        public int compareTo(LoadEntry o) {
+            int comp = priority.compareTo(o.priority);
+            if (comp != 0) {
+                return comp;
+            }
+            //most recent first
+            return Long.compare(o.sequence, sequence);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Autopsy Forensic Browser
+ *
+ * Copyright 2015 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.autopsy.imagegallery;
+
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.sleuthkit.autopsy.casemodule.Case;
+import org.sleuthkit.autopsy.coreutils.ImageUtils;
+import org.sleuthkit.autopsy.coreutils.Logger;
+import org.sleuthkit.autopsy.coreutils.ThumbnailStore;
+import org.sleuthkit.datamodel.AbstractFile;
+
+/**
+ * Generates the thumbnails of images and videos in the background as they are
+ * ingested, so that they are ready in the {@link ThumbnailStore} when the
+ * files are first looked at in the Image Gallery or the thumbnail result
+ * viewer, rather than being generated then. The perceptual hashes of the
+ * images are computed from their thumbnails at the same time.
+ *
+ * Runs on a few minimum priority threads (a quarter of the processors), so it
+ * uses at most that share of the CPU and yields to ingest and the UI. If the
+ * thumbnails can't keep up with ingest, the files beyond
+ * {@link #MAX_QUEUED_FILES} are skipped; their thumbnails are generated when
+ * they are first shown, as before. Can be turned off in the options.
+ */
+final class ThumbnailPregenerator {
+
+    private static final Logger LOGGER = Logger.getLogger(ThumbnailPregenerator.class.getName());
+
+    /**
+     * the most files to have waiting for thumbnails at once
+     */
+    private static final int MAX_QUEUED_FILES = 10000;
+
+    /**
+     * the sizes to generate: the size used by the Image Gallery and the
+     * default size of the thumbnail result viewer
+     */
+    private static final int[] SIZES = {ThumbnailCache.MAX_THUMBNAIL_SIZE, ImageUtils.ICON_SIZE_MEDIUM};
+
+    private final ThreadPoolExecutor executor;
+
+    ThumbnailPregenerator() {
+        final int threads = Math.max(1, Runtime.getRuntime().availableProcessors() / 4);
+        executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(MAX_QUEUED_FILES),
+                new BasicThreadFactory.Builder()
+                .namingPattern("thumbnail pregenerator-%d")
+                .daemon(true)
+                .priority(Thread.MIN_PRIORITY)
+                .uncaughtExceptionHandler((Thread t, Throwable e) -> {
+                    LOGGER.log(Level.SEVERE, "uncaught exception in thumbnail pregenerator", e);
+                }).build(),
+                new ThreadPoolExecutor.DiscardPolicy());
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Generate the thumbnails of the given file in the background, if they
+     * are not already stored.
+     *
+     * @param file an image or video
+     */
+    void queue(AbstractFile file) {
+        executor.execute(() -> generateThumbnails(file));
+    }
+
+    /**
+     * Skip the files that are still waiting, eg because the case is closing.
+     */
+    void cancelQueued() {
+        executor.getQueue().clear();
+    }
+
+    private void generateThumbnails(AbstractFile file) {
+        if (Case.isCaseOpen() == false) {
+            return;
+        }
+        try {
+            ThumbnailStore store = ThumbnailStore.getForCurrentCase();
+            BufferedImage hashThumbnail = null;
+            for (int size : SIZES) {
+                if (store.contains(file.getId(), size) == false) {
+                    //generates the thumbnail and adds it to the store (in the background)
+                    Image thumbnail = ImageUtils.getThumbnail(file, size);
+                    if (size == ThumbnailCache.MAX_THUMBNAIL_SIZE && thumbnail instanceof BufferedImage && thumbnail != ImageUtils.getDefaultThumbnail()) {
+                        hashThumbnail = (BufferedImage) thumbnail;
+                    }
+                }
+            }
+            //for grouping by visual similarity: hash the thumbnail just made,
+            //since it may not be in the store yet, or else the stored one
+            if (hashThumbnail == null) {
+                ThumbnailCache.getDefault().computePerceptualHash(file);
+            } else if (FileTypeUtils.isVideoFile(file) == false) {
+                ThumbnailCache.getDefault().computePerceptualHash(file.getId(), hashThumbnail);
+            }
+        } catch (IllegalStateException | IOException ex) {
+            LOGGER.log(Level.WARNING, "Failed to pregenerate thumbnails for " + file.getName(), ex);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Autopsy Forensic Browser
+ *
+ * Copyright 2015 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.autopsy.imagegallery.actions;
+
+import java.util.concurrent.ExecutionException;
+import java.util.logging.Level;
+import javafx.application.Platform;
+import javafx.event.ActionEvent;
+import javafx.scene.control.Alert;
+import javax.swing.SwingWorker;
+import org.controlsfx.control.action.Action;
+import org.sleuthkit.autopsy.coreutils.Logger;
+import org.sleuthkit.autopsy.imagegallery.ImageGalleryController;
+import org.sleuthkit.autopsy.imagegallery.ThumbnailCache;
+import org.sleuthkit.autopsy.imagegallery.datamodel.DrawableFile;
+import org.sleuthkit.autopsy.imagegallery.datamodel.grouping.DrawableGroup;
+import org.sleuthkit.autopsy.imagegallery.datamodel.grouping.GroupViewState;
+
+/**
+ * Action to show the images that look like the given one (resized or
+ * re-encoded copies, burst shots, etc), as found by comparing their
+ * perceptual hashes.
+ */
+public class FindSimilarImagesAction extends Action {
+
+    private static final Logger LOGGER = Logger.getLogger(FindSimilarImagesAction.class.getName());
+
+    public FindSimilarImagesAction(final ImageGalleryController controller, final DrawableFile<?> file) {
+        super("Find Similar Images");
+        setDisabled(file.isVideo());
+        setEventHandler((ActionEvent t) -> {
+            new SwingWorker<DrawableGroup, Void>() {
+
+                @Override
+                protected DrawableGroup doInBackground() throws Exception {
+                    //the hash may not have been computed yet, eg if thumbnails are not pregenerated
+                    ThumbnailCache.getDefault().computePerceptualHash(file.getAbstractFile());
+                    return controller.getGroupManager().getSimilarImagesGroup(file.getId());
+                }
+
+                @Override
+                protected void done() {
+                    super.done();
+                    try {
+                        final DrawableGroup group = get();
+                        Platform.runLater(() -> {
+                            if (group == null) {
+                                new Alert(Alert.AlertType.INFORMATION, "No images similar to " + file.getName() + " were found.").show();
+                            } else {
+                                controller.advance(GroupViewState.tile(group), false);
+                            }
+                        });
+                    } catch (InterruptedException | ExecutionException ex) {
+                        LOGGER.log(Level.SEVERE, "unexpected exception while finding similar images", ex);
+                    }
+                }
+            }.execute();
+        });
+    }
+}
@@ -28,6 +28,7 @@
 import javafx.scene.image.Image;
 import org.apache.commons.lang3.StringUtils;
 import org.sleuthkit.autopsy.datamodel.ContentUtils;
+import org.sleuthkit.autopsy.imagegallery.ImageGalleryController;
 import org.sleuthkit.datamodel.TagName;
 
 /**
@@ -89,8 +90,16 @@
     public final static DrawableAttribute<Double> HEIGHT
             = new DrawableAttribute<>(AttributeName.HEIGHT, "Height", true, "arrow-resize-090.png", f -> Collections.singleton(f.getHeight()));
 
+    /**
+     * the cluster of visually similar images a file is in, see
+     * {@link PerceptualHash}. Files that are not similar to any other file
+     * have no value.
+     */
+    public final static DrawableAttribute<SimilarImages> SIMILARITY
+            = new DrawableAttribute<>(AttributeName.SIMILARITY, "Visual Similarity", false, "page_white_stack.png", DrawableAttribute::getSimilarImages);
+
     final private static List< DrawableAttribute<?>> groupables
-            = Arrays.asList(PATH, HASHSET, CATEGORY, TAGS, MAKE, MODEL);
+            = Arrays.asList(PATH, HASHSET, CATEGORY, TAGS, MAKE, MODEL, SIMILARITY);
 
     final private static List<DrawableAttribute<?>> values
             = Arrays.asList(NAME, ANALYZED, CATEGORY, TAGS, PATH, CREATED_TIME,
@@ -156,7 +165,18 @@ public static enum AttributeName {
         OBJ_ID,
         WIDTH,
         HEIGHT,
-        MD5_HASH;
+        MD5_HASH,
+        SIMILARITY;
+    }
+
+    private static Collection<SimilarImages> getSimilarImages(DrawableFile<?> f) {
+        final DrawableDB db = ImageGalleryController.getDefault().getDatabase();
+        if (db == null) {
+            return Collections.emptySet();
+        }
+        return db.getSimilarImages(f.getId())
+                .map(Collections::singleton)
+                .orElse(Collections.emptySet());
     }
 
     public Collection<T> getValue(DrawableFile<?> f) {
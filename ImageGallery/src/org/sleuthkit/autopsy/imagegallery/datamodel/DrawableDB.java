@@ -28,17 +28,23 @@
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import static java.util.Objects.isNull;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Level;
 import javax.annotation.concurrent.GuardedBy;
 import javax.swing.SortOrder;
@@ -46,6 +52,7 @@
 import org.openide.util.Exceptions;
 import org.sleuthkit.autopsy.casemodule.Case;
 import org.sleuthkit.autopsy.coreutils.Logger;
+import org.sleuthkit.autopsy.coreutils.SQLiteConnectionPool;
 import org.sleuthkit.autopsy.imagegallery.FileTypeUtils;
 import org.sleuthkit.autopsy.imagegallery.ImageGalleryController;
 import org.sleuthkit.autopsy.imagegallery.ImageGalleryModule;
@@ -82,46 +89,92 @@ public final class DrawableDB {
 
     private final PreparedStatement insertHashSetStmt;
 
-    private final PreparedStatement groupSeenQueryStmt;
-
     private final PreparedStatement insertGroupStmt;
 
     private final List<PreparedStatement> preparedStatements = new ArrayList<>();
 
     private final PreparedStatement removeFileStmt;
 
+    private PreparedStatement insertPerceptualHashStmt;
+
+    private PreparedStatement removePerceptualHashStmt;
+
     private final PreparedStatement updateGroupStmt;
 
     private final PreparedStatement selectHashSetStmt;
 
-    private final PreparedStatement selectHashSetNamesStmt;
-
     private final PreparedStatement insertHashHitStmt;
 
     private final PreparedStatement updateFileStmt;
     private PreparedStatement insertFileStmt;
 
-    private final PreparedStatement pathGroupStmt;
+    /**
+     * map from {@link DrawableAttribute} to the query that is used to select
+     * groups for that attribute. The queries are prepared on a read connection
+     * when they are run.
+     */
+    private final Map<DrawableAttribute<?>, String> groupQueryMap = new HashMap<>();
+
+    /**
+     * map from attribute to a query for the files of all the groups of that
+     * attribute, see {@link #findGroupSummaries}
+     */
+    private final Map<DrawableAttribute<?>, String> groupSummaryQueryMap = new HashMap<>();
+
+    private static final String GROUP_SEEN_QUERY = "select seen from groups where value = ? and attribute = ?";
 
-    private final PreparedStatement nameGroupStmt;
+    private static final String GROUPS_SEEN_QUERY = "select value, seen from groups where attribute = ?";
 
-    private final PreparedStatement created_timeGroupStmt;
+    private static final String GROUP_VALUE = "group_value";
 
-    private final PreparedStatement modified_timeGroupStmt;
+    private static final String SELECT_HASH_SET_NAMES_QUERY = "SELECT DISTINCT hash_set_name FROM hash_sets";
 
-    private final PreparedStatement makeGroupStmt;
+    /**
+     * the number of read-only connections used for queries from the ui
+     */
+    private static final int READ_CONNECTIONS = 4;
 
-    private final PreparedStatement modelGroupStmt;
+    /**
+     * the number of file rows to buffer in a transaction before they are sent
+     * to the db as one JDBC batch
+     */
+    private static final int BATCH_SIZE = 1000;
 
-    private final PreparedStatement analyzedGroupStmt;
+    /**
+     * map from hash set name to hash_set_id, so the id is only looked up once
+     * per hash set rather than once per file. Hash sets are never deleted.
+     * Only updated when the transaction that inserted them is committed.
+     */
+    private final Map<String, Integer> hashSetIDs = new ConcurrentHashMap<>();
 
-    private final PreparedStatement hashSetGroupStmt;
+    /**
+     * the groups (as attribute name + value, see {@link #groupKey}) known to
+     * be in the groups table, so they are only inserted once. Only updated
+     * when the transaction that inserted them is committed.
+     */
+    private final Set<String> insertedGroups = ConcurrentHashMap.newKeySet();
 
     /**
-     * map from {@link DrawableAttribute} to the {@link PreparedStatement} thet
-     * is used to select groups for that attribute
+     * index of the perceptual hashes of the files, loaded in the background
+     * from the perceptual_hashes table when it is first needed. null until it
+     * is loaded.
      */
-    private final Map<DrawableAttribute<?>, PreparedStatement> groupStatementMap = new HashMap<>();
+    @GuardedBy("this")
+    private SimilarityIndex similarityIndex;
+
+    /**
+     * the load of the similarity index, null until it is started
+     */
+    @GuardedBy("this")
+    private CompletableFuture<SimilarityIndex> similarityIndexLoad;
+
+    /**
+     * changes to the perceptual hashes made while the similarity index is
+     * loading, to apply to it once it is loaded. They may already be in the
+     * loaded index, but applying them again is harmless.
+     */
+    @GuardedBy("this")
+    private final List<Function<SimilarityIndex, Set<Long>>> pendingSimilarityChanges = new ArrayList<>();
 
     private GroupManager groupManager;
 
@@ -129,9 +182,14 @@ public final class DrawableDB {
 
     volatile private Connection con;
 
-    private final ReentrantReadWriteLock rwLock = new ReentrantReadWriteLock(true); //use fairness policy
+    /**
+     * exclusive lock for the write connection (con). Queries that only read
+     * use a connection from the readPool, and see the database as of the last
+     * commit.
+     */
+    private final Lock DBLock = new ReentrantLock(true); //use fairness policy
 
-    private final Lock DBLock = rwLock.writeLock(); //using exclusing lock for all db ops for now
+    private final SQLiteConnectionPool readPool;
 
     static {//make sure sqlite driver is loaded // possibly redundant
         try {
@@ -145,14 +203,15 @@ public final class DrawableDB {
 
     //////////////general database logic , mostly borrowed from sleuthkitcase
     /**
-     * Lock to protect against concurrent write accesses to case database and to
-     * block readers while database is in write transaction. Should be utilized
-     * by all db code where underlying storage supports max. 1 concurrent writer
+     * Lock to protect against concurrent write accesses to the drawable
+     * database. Should be utilized by all db code that uses the write
+     * connection, since the underlying storage supports max. 1 concurrent
+     * writer. Readers use the read connection pool and are not blocked by it.
      * MUST always call dbWriteUnLock() as early as possible, in the same thread
      * where dbWriteLock() was called
      */
     public void dbWriteLock() {
-        //Logger.getLogger("LOCK").log(Level.INFO, "Locking " + rwLock.toString());
+        //Logger.getLogger("LOCK").log(Level.INFO, "Locking " + DBLock.toString());
         DBLock.lock();
     }
 
@@ -162,26 +221,7 @@ public void dbWriteLock() {
      * released.
      */
     public void dbWriteUnlock() {
-        //Logger.getLogger("LOCK").log(Level.INFO, "UNLocking " + rwLock.toString());
-        DBLock.unlock();
-    }
-
-    /**
-     * Lock to protect against read while it is in a write transaction state.
-     * Supports multiple concurrent readers if there is no writer. MUST always
-     * call dbReadUnLock() as early as possible, in the same thread where
-     * dbReadLock() was called.
-     */
-    void dbReadLock() {
-        DBLock.lock();
-    }
-
-    /**
-     * Release previously acquired read lock acquired in this thread using
-     * dbReadLock(). Call in "finally" block to ensure the lock is always
-     * released.
-     */
-    void dbReadUnlock() {
+        //Logger.getLogger("LOCK").log(Level.INFO, "UNLocking " + DBLock.toString());
         DBLock.unlock();
     }
 
@@ -196,6 +236,7 @@ private DrawableDB(Path dbPath, ImageGalleryController controller) throws SQLExc
         this.tskCase = controller.getSleuthKitCase();
         this.groupManager = controller.getGroupManager();
         Files.createDirectories(dbPath.getParent());
+        this.readPool = new SQLiteConnectionPool(dbPath.toString(), READ_CONNECTIONS);
         if (initializeDBSchema()) {
             updateFileStmt = prepareStatement(
                     "INSERT OR REPLACE INTO drawable_files (obj_id , path, name, created_time, modified_time, make, model, analyzed) "
@@ -206,21 +247,27 @@ private DrawableDB(Path dbPath, ImageGalleryController controller) throws SQLExc
 
             removeFileStmt = prepareStatement("delete from drawable_files where obj_id = ?");
 
-            pathGroupStmt = prepareStatement("select obj_id , analyzed from drawable_files where  path  = ? ", DrawableAttribute.PATH);
-            nameGroupStmt = prepareStatement("select obj_id , analyzed from drawable_files where  name  = ? ", DrawableAttribute.NAME);
-            created_timeGroupStmt = prepareStatement("select obj_id , analyzed from drawable_files where  created_time  = ? ", DrawableAttribute.CREATED_TIME);
-            modified_timeGroupStmt = prepareStatement("select obj_id , analyzed from drawable_files where  modified_time  = ? ", DrawableAttribute.MODIFIED_TIME);
-            makeGroupStmt = prepareStatement("select obj_id , analyzed from drawable_files where  make  = ? ", DrawableAttribute.MAKE);
-            modelGroupStmt = prepareStatement("select obj_id , analyzed from drawable_files where  model  = ? ", DrawableAttribute.MODEL);
-            analyzedGroupStmt = prepareStatement("Select obj_id , analyzed from drawable_files where analyzed = ?", DrawableAttribute.ANALYZED);
-            hashSetGroupStmt = prepareStatement("select drawable_files.obj_id as obj_id, analyzed from drawable_files ,  hash_sets , hash_set_hits  where drawable_files.obj_id = hash_set_hits.obj_id and hash_sets.hash_set_id = hash_set_hits.hash_set_id and hash_sets.hash_set_name = ?", DrawableAttribute.HASHSET);
+            insertPerceptualHashStmt = prepareStatement("insert or replace into perceptual_hashes (obj_id, phash) values (?,?)");
+            removePerceptualHashStmt = prepareStatement("delete from perceptual_hashes where obj_id = ?");
+
+            groupQueryMap.put(DrawableAttribute.PATH, "select obj_id , analyzed from drawable_files where  path  = ? ");
+            groupQueryMap.put(DrawableAttribute.NAME, "select obj_id , analyzed from drawable_files where  name  = ? ");
+            groupQueryMap.put(DrawableAttribute.CREATED_TIME, "select obj_id , analyzed from drawable_files where  created_time  = ? ");
+            groupQueryMap.put(DrawableAttribute.MODIFIED_TIME, "select obj_id , analyzed from drawable_files where  modified_time  = ? ");
+            groupQueryMap.put(DrawableAttribute.MAKE, "select obj_id , analyzed from drawable_files where  make  = ? ");
+            groupQueryMap.put(DrawableAttribute.MODEL, "select obj_id , analyzed from drawable_files where  model  = ? ");
+            groupQueryMap.put(DrawableAttribute.ANALYZED, "Select obj_id , analyzed from drawable_files where analyzed = ?");
+            for (DrawableAttribute<?> attr : Arrays.asList(DrawableAttribute.PATH, DrawableAttribute.NAME,
+                    DrawableAttribute.CREATED_TIME, DrawableAttribute.MODIFIED_TIME,
+                    DrawableAttribute.MAKE, DrawableAttribute.MODEL, DrawableAttribute.ANALYZED)) {
+                groupSummaryQueryMap.put(attr, "select obj_id , analyzed , " + attr.attrName.toString() + " as " + GROUP_VALUE + " from drawable_files order by " + attr.attrName.toString());
+            }
+            groupSummaryQueryMap.put(DrawableAttribute.HASHSET, "select drawable_files.obj_id as obj_id, analyzed, hash_sets.hash_set_name as " + GROUP_VALUE + " from drawable_files ,  hash_sets , hash_set_hits  where drawable_files.obj_id = hash_set_hits.obj_id and hash_sets.hash_set_id = hash_set_hits.hash_set_id order by hash_sets.hash_set_name");
+            groupQueryMap.put(DrawableAttribute.HASHSET, "select drawable_files.obj_id as obj_id, analyzed from drawable_files ,  hash_sets , hash_set_hits  where drawable_files.obj_id = hash_set_hits.obj_id and hash_sets.hash_set_id = hash_set_hits.hash_set_id and hash_sets.hash_set_name = ?");
 
             updateGroupStmt = prepareStatement("insert or replace into groups (seen, value, attribute) values( ?, ? , ?)");
             insertGroupStmt = prepareStatement("insert or ignore into groups (value, attribute) values (?,?)");
 
-            groupSeenQueryStmt = prepareStatement("select seen from groups where value = ? and attribute = ?");
-
-            selectHashSetNamesStmt = prepareStatement("SELECT DISTINCT hash_set_name FROM hash_sets");
             insertHashSetStmt = prepareStatement("insert or ignore into hash_sets (hash_set_name)  values (?)");
             selectHashSetStmt = prepareStatement("select hash_set_id from hash_sets where hash_set_name = ?");
 
@@ -253,28 +300,6 @@ private PreparedStatement prepareStatement(String stmtString) throws SQLExceptio
         return prepareStatement;
     }
 
-    /**
-     * calls {@link DrawableDB#prepareStatement(java.lang.String) ,
-     *  and then add the statement to the groupStatmentMap used to lookup
-     * statements by the attribute/column they group on
-     *
-     * @param stmtString the string representation of the sqlite statement to
-     *                   prepare
-     * @param attr       the {@link DrawableAttribute} this query groups by
-     *
-     * @return the prepared statement
-     *
-     * @throws SQLExceptionif unable to prepare the statement
-     */
-    private PreparedStatement prepareStatement(String stmtString, DrawableAttribute<?> attr) throws SQLException {
-        PreparedStatement prepareStatement = prepareStatement(stmtString);
-        if (attr != null) {
-            groupStatementMap.put(attr, prepareStatement);
-        }
-
-        return prepareStatement;
-    }
-
     /**
      * public factory method. Creates and opens a connection to a new database *
      * at the given path.
@@ -308,9 +333,6 @@ private void setPragmas() throws SQLException {
             //TODO: do we need this?
             statement.execute("PRAGMA foreign_keys = ON");
 
-            //TODO: test this
-            statement.execute("PRAGMA journal_mode  = MEMORY");
-//
             //we don't use this feature, so turn it off for minimal speed up on queries
             //this is deprecated and not recomended
             statement.execute("PRAGMA count_changes = OFF;");
@@ -322,6 +344,11 @@ private void setPragmas() throws SQLException {
             statement.execute("PRAGMA auto_vacuum = 0");
         }
 
+        //let the read connections query while the write connection is in a transaction
+        if (SQLiteConnectionPool.enableWriteAheadLog(con) == false) {
+            LOGGER.log(Level.WARNING, "Failed to put drawable.db in WAL mode, queries may fail while files are being added.");
+        }
+
         try {
             LOGGER.log(Level.INFO, String.format("sqlite-jdbc version %s loaded in %s mode",
                     SQLiteJDBCLoader.getVersion(), SQLiteJDBCLoader.isNativeMode()
@@ -399,6 +426,16 @@ private boolean initializeDBSchema() {
             return false;
         }
 
+        try (Statement stmt = con.createStatement()) {
+            String sql = "CREATE TABLE  if not exists perceptual_hashes "
+                    + "(obj_id INTEGER PRIMARY KEY REFERENCES drawable_files(obj_id), "
+                    + " phash INTEGER not null)";
+            stmt.execute(sql);
+        } catch (SQLException ex) {
+            LOGGER.log(Level.SEVERE, "problem creating perceptual_hashes table", ex);
+            return false;
+        }
+
         try (Statement stmt = con.createStatement()) {
             String sql = "CREATE  INDEX if not exists path_idx ON drawable_files(path)";
             stmt.execute(sql);
@@ -447,6 +484,7 @@ public void finalize() throws Throwable {
     }
 
     public void closeDBCon() {
+        readPool.close();
         if (con != null) {
             try {
                 closeStatements();
@@ -483,23 +521,21 @@ public boolean isClosed() throws SQLException {
     public Set<String> getHashSetNames() {
         Set<String> names = new HashSet<>();
         // "SELECT DISTINCT hash_set_name FROM hash_sets"
-        dbReadLock();
-        try (ResultSet rs = selectHashSetNamesStmt.executeQuery();) {
+        try (SQLiteConnectionPool.ReadConnection readCon = readPool.getReadConnection();
+                PreparedStatement selectHashSetNamesStmt = readCon.prepareStatement(SELECT_HASH_SET_NAMES_QUERY);
+                ResultSet rs = selectHashSetNamesStmt.executeQuery();) {
             while (rs.next()) {
                 names.add(rs.getString(HASH_SET_NAME));
             }
         } catch (SQLException sQLException) {
             LOGGER.log(Level.WARNING, "failed to get hash set names", sQLException);
-        } finally {
-            dbReadUnlock();
         }
         return names;
     }
 
     public boolean isGroupSeen(GroupKey<?> groupKey) {
-        dbReadLock();
-        try {
-            groupSeenQueryStmt.clearParameters();
+        try (SQLiteConnectionPool.ReadConnection readCon = readPool.getReadConnection();
+                PreparedStatement groupSeenQueryStmt = readCon.prepareStatement(GROUP_SEEN_QUERY)) {
             groupSeenQueryStmt.setString(1, groupKey.getValueDisplayName());
             groupSeenQueryStmt.setString(2, groupKey.getAttribute().attrName.toString());
             try (ResultSet rs = groupSeenQueryStmt.executeQuery()) {
@@ -509,8 +545,6 @@ public boolean isGroupSeen(GroupKey<?> groupKey) {
             }
         } catch (SQLException ex) {
             Exceptions.printStackTrace(ex);
-        } finally {
-            dbReadUnlock();
         }
         return false;
     }
@@ -558,9 +592,13 @@ public void updateFile(DrawableFile<?> f, DrawableTransaction tr) {
         insertOrUpdateFile(f, tr, updateFileStmt);
     }
 
+    /**
+     * Add the given file, its hash set hits and its groups to the given
+     * transaction. The rows are batched, and sent to the db when the batch is
+     * full or the transaction is committed.
+     */
     private void insertOrUpdateFile(DrawableFile<?> f, DrawableTransaction tr, PreparedStatement stmt) {
 
-        //TODO:      implement batch version -jm
         if (tr.isClosed()) {
             throw new IllegalArgumentException("can't update database with closed transaction");
         }
@@ -579,42 +617,39 @@ private void insertOrUpdateFile(DrawableFile<?> f, DrawableTransaction tr, Prepa
             stmt.setString(6, f.getMake());
             stmt.setString(7, f.getModel());
             stmt.setBoolean(8, f.isAnalyzed());
-            stmt.executeUpdate();
+            tr.addBatch(stmt);
 
             try {
                 for (String name : f.getHashSetNames()) {
-
-                    // "insert or ignore into hash_sets (hash_set_name)  values (?)"
-                    insertHashSetStmt.setString(1, name);
-                    insertHashSetStmt.executeUpdate();
-
-                    //TODO: use nested select to get hash_set_id rather than seperate statement/query
-                    //"select hash_set_id from hash_sets where hash_set_name = ?"
-                    selectHashSetStmt.setString(1, name);
-                    try (ResultSet rs = selectHashSetStmt.executeQuery()) {
-                        while (rs.next()) {
-                            int hashsetID = rs.getInt("hash_set_id");
-                            //"insert or ignore into hash_set_hits (hash_set_id, obj_id) values (?,?)";
-                            insertHashHitStmt.setInt(1, hashsetID);
-                            insertHashHitStmt.setLong(2, f.getId());
-                            insertHashHitStmt.executeUpdate();
-                            break;
-                        }
-                    }
+                    //"insert or ignore into hash_set_hits (hash_set_id, obj_id) values (?,?)";
+                    insertHashHitStmt.setInt(1, getHashSetID(name, tr));
+                    insertHashHitStmt.setLong(2, f.getId());
+                    tr.addBatch(insertHashHitStmt);
                 }
             } catch (TskCoreException ex) {
                 LOGGER.log(Level.SEVERE, "failed to insert/update hash hits for file" + f.getName(), ex);
             }
 
-            //and update all groups this file is in
+            //and update all groups this file is in, each group is only inserted once
             for (DrawableAttribute<?> attr : DrawableAttribute.getGroupableAttrs()) {
+                if (attr == DrawableAttribute.SIMILARITY) {
+                    //the clusters change as hashes are added, their groups are inserted when they are found
+                    continue;
+                }
                 Collection<? extends Comparable<?>> vals = attr.getValue(f);
                 for (Object val : vals) {
-                    insertGroup(val.toString(), attr);
+                    final String key = groupKey(val.toString(), attr);
+                    if (insertedGroups.contains(key) == false && tr.addInsertedGroup(key)) {
+                        //"insert or ignore into groups (value, attribute) values (?,?)"
+                        insertGroupStmt.setString(1, val.toString());
+                        insertGroupStmt.setString(2, attr.attrName.toString());
+                        tr.addBatch(insertGroupStmt);
+                    }
                 }
             }
 
             tr.addUpdatedFile(f.getId());
+            tr.fileAdded();
 
         } catch (SQLException | NullPointerException ex) {
             // This is one of the places where we get an error if the case is closed during processing,
@@ -628,6 +663,44 @@ private void insertOrUpdateFile(DrawableFile<?> f, DrawableTransaction tr, Prepa
         }
     }
 
+    /**
+     * Get the id of the hash set with the given name, inserting it if it is
+     * new. The caller must hold the write lock.
+     *
+     * @param name the name of the hash set
+     * @param tr   the transaction to insert the hash set in
+     *
+     * @return the hash_set_id of the hash set
+     *
+     * @throws SQLException
+     */
+    private int getHashSetID(String name, DrawableTransaction tr) throws SQLException {
+        Integer hashSetID = hashSetIDs.get(name);
+        if (hashSetID == null) {
+            hashSetID = tr.getNewHashSetID(name);
+        }
+        if (hashSetID == null) {
+            // "insert or ignore into hash_sets (hash_set_name)  values (?)"
+            insertHashSetStmt.setString(1, name);
+            insertHashSetStmt.executeUpdate();
+
+            //"select hash_set_id from hash_sets where hash_set_name = ?"
+            selectHashSetStmt.setString(1, name);
+            try (ResultSet rs = selectHashSetStmt.executeQuery()) {
+                if (rs.next() == false) {
+                    throw new SQLException("no hash_set_id for hash set " + name);
+                }
+                hashSetID = rs.getInt("hash_set_id");
+            }
+            tr.addNewHashSetID(name, hashSetID);
+        }
+        return hashSetID;
+    }
+
+    private static String groupKey(String value, DrawableAttribute<?> groupBy) {
+        return groupBy.attrName.toString() + "\0" + value;
+    }
+
     public DrawableTransaction beginTransaction() {
         return new DrawableTransaction();
     }
@@ -644,16 +717,14 @@ public Boolean isFileAnalyzed(DrawableFile<?> f) {
     }
 
     public Boolean isFileAnalyzed(long fileId) {
-        dbReadLock();
-        try (Statement stmt = con.createStatement();
+        try (SQLiteConnectionPool.ReadConnection readCon = readPool.getReadConnection();
+                Statement stmt = readCon.createStatement();
                 ResultSet analyzedQuery = stmt.executeQuery("select analyzed from drawable_files where obj_id = " + fileId)) {
             while (analyzedQuery.next()) {
                 return analyzedQuery.getBoolean(ANALYZED);
             }
         } catch (SQLException ex) {
             Exceptions.printStackTrace(ex);
-        } finally {
-            dbReadUnlock();
         }
 
         return false;
@@ -661,8 +732,8 @@ public Boolean isFileAnalyzed(long fileId) {
 
     public Boolean areFilesAnalyzed(Collection<Long> fileIds) {
 
-        dbReadLock();
-        try (Statement stmt = con.createStatement();
+        try (SQLiteConnectionPool.ReadConnection readCon = readPool.getReadConnection();
+                Statement stmt = readCon.createStatement();
                 //Can't make this a preprared statement because of the IN ( ... )
                 ResultSet analyzedQuery = stmt.executeQuery("select count(analyzed) as analyzed from drawable_files where analyzed = 1 and obj_id in (" + StringUtils.join(fileIds, ", ") + ")")) {
             while (analyzedQuery.next()) {
@@ -670,26 +741,25 @@ public Boolean areFilesAnalyzed(Collection<Long> fileIds) {
             }
         } catch (SQLException ex) {
             LOGGER.log(Level.WARNING, "problem counting analyzed files: ", ex);
-        } finally {
-            dbReadUnlock();
         }
 
         return false;
     }
 
     public Boolean isGroupAnalyzed(GroupKey<?> gk) {
-        dbReadLock();
-        try {
+        //hold one read connection for the whole check, the nested queries share it
+        try (SQLiteConnectionPool.ReadConnection readCon = readPool.getReadConnection()) {
             Set<Long> fileIDsInGroup = getFileIDsInGroup(gk);
 
             try {
                 // In testing, this method appears to be a lot faster than doing one large select statement
                 for (Long fileID : fileIDsInGroup) {
-                    Statement stmt = con.createStatement();
-                    ResultSet analyzedQuery = stmt.executeQuery("select analyzed from drawable_files where obj_id = " + fileID);
-                    while (analyzedQuery.next()) {
-                        if (analyzedQuery.getInt(ANALYZED) == 0) {
-                            return false;
+                    try (Statement stmt = readCon.createStatement();
+                            ResultSet analyzedQuery = stmt.executeQuery("select analyzed from drawable_files where obj_id = " + fileID)) {
+                        while (analyzedQuery.next()) {
+                            if (analyzedQuery.getInt(ANALYZED) == 0) {
+                                return false;
+                            }
                         }
                     }
                     return true;
@@ -709,10 +779,8 @@ public Boolean isGroupAnalyzed(GroupKey<?> gk) {
             //} catch (SQLException ex) {
             //    LOGGER.log(Level.WARNING, "problem counting analyzed files: ", ex);
             //}
-        } catch (TskCoreException tskCoreException) {
-            LOGGER.log(Level.WARNING, "problem counting analyzed files: ", tskCoreException);
-        } finally {
-            dbReadUnlock();
+        } catch (TskCoreException | SQLException ex) {
+            LOGGER.log(Level.WARNING, "problem counting analyzed files: ", ex);
         }
         return false;
     }
@@ -730,34 +798,15 @@ public Boolean isGroupAnalyzed(GroupKey<?> gk) {
      * @throws TskCoreException
      */
     public Set<Long> findAllFileIdsWhere(String sqlWhereClause) throws TskCoreException {
-        Statement statement = null;
-        ResultSet rs = null;
         Set<Long> ret = new HashSet<>();
-        dbReadLock();
-        try {
-            statement = con.createStatement();
-            rs = statement.executeQuery("SELECT obj_id FROM drawable_files WHERE " + sqlWhereClause);
+        try (SQLiteConnectionPool.ReadConnection readCon = readPool.getReadConnection();
+                Statement statement = readCon.createStatement();
+                ResultSet rs = statement.executeQuery("SELECT obj_id FROM drawable_files WHERE " + sqlWhereClause)) {
             while (rs.next()) {
                 ret.add(rs.getLong(1));
             }
         } catch (SQLException e) {
             throw new TskCoreException("SQLException thrown when calling 'DrawableDB.findAllFileIdsWhere(): " + sqlWhereClause, e);
-        } finally {
-            if (rs != null) {
-                try {
-                    rs.close();
-                } catch (SQLException ex) {
-                    LOGGER.log(Level.SEVERE, "Error closing result set after executing  findAllFileIdsWhere", ex);
-                }
-            }
-            if (statement != null) {
-                try {
-                    statement.close();
-                } catch (SQLException ex) {
-                    LOGGER.log(Level.SEVERE, "Error closing statement after executing  findAllFileIdsWhere", ex);
-                }
-            }
-            dbReadUnlock();
         }
         return ret;
     }
@@ -773,31 +822,12 @@ public Set<Long> findAllFileIdsWhere(String sqlWhereClause) throws TskCoreExcept
      * @throws TskCoreException
      */
     public long countFilesWhere(String sqlWhereClause) throws TskCoreException {
-        Statement statement = null;
-        ResultSet rs = null;
-        dbReadLock();
-        try {
-            statement = con.createStatement();
-            rs = statement.executeQuery("SELECT COUNT (*) FROM drawable_files WHERE " + sqlWhereClause); //NON-NLS
+        try (SQLiteConnectionPool.ReadConnection readCon = readPool.getReadConnection();
+                Statement statement = readCon.createStatement();
+                ResultSet rs = statement.executeQuery("SELECT COUNT (*) FROM drawable_files WHERE " + sqlWhereClause)) { //NON-NLS
             return rs.getLong(1);
         } catch (SQLException e) {
             throw new TskCoreException("SQLException thrown when calling 'DrawableDB.countFilesWhere(): " + sqlWhereClause, e);
-        } finally {
-            if (rs != null) {
-                try {
-                    rs.close();
-                } catch (SQLException ex) {
-                    LOGGER.log(Level.SEVERE, "Error closing result set after executing countFilesWhere", ex);
-                }
-            }
-            if (statement != null) {
-                try {
-                    statement.close();
-                } catch (SQLException ex) {
-                    LOGGER.log(Level.SEVERE, "Error closing statement after executing countFilesWhere", ex);
-                }
-            }
-            dbReadUnlock();
         }
     }
 
@@ -809,31 +839,12 @@ public long countFilesWhere(String sqlWhereClause) throws TskCoreException {
      * @throws TskCoreException
      */
     public long countFiles() throws TskCoreException {
-        Statement statement = null;
-        ResultSet rs = null;
-        dbReadLock();
-        try {
-            statement = con.createStatement();
-            rs = statement.executeQuery("SELECT COUNT (*) FROM drawable_files"); //NON-NLS
+        try (SQLiteConnectionPool.ReadConnection readCon = readPool.getReadConnection();
+                Statement statement = readCon.createStatement();
+                ResultSet rs = statement.executeQuery("SELECT COUNT (*) FROM drawable_files")) { //NON-NLS
             return rs.getLong(1);
         } catch (SQLException e) {
             throw new TskCoreException("SQLException thrown when calling 'DrawableDB.countFiles(): ", e);
-        } finally {
-            if (rs != null) {
-                try {
-                    rs.close();
-                } catch (SQLException ex) {
-                    LOGGER.log(Level.SEVERE, "Error closing result set after executing countFiles", ex);
-                }
-            }
-            if (statement != null) {
-                try {
-                    statement.close();
-                } catch (SQLException ex) {
-                    LOGGER.log(Level.SEVERE, "Error closing statement after executing countFiles", ex);
-                }
-            }
-            dbReadUnlock();
         }
     }
 
@@ -859,7 +870,6 @@ public <A extends Comparable<A>> List<A> findValuesForAttribute(DrawableAttribut
                 //they should have special handling at a higher level of the stack.
                 throw new UnsupportedOperationException();
             default:
-                dbReadLock();
                 //TODO: convert this to prepared statement 
                 StringBuilder query = new StringBuilder("select " + groupBy.attrName.toString() + ", count(*) from drawable_files group by " + groupBy.attrName.toString());
 
@@ -894,22 +904,292 @@ public <A extends Comparable<A>> List<A> findValuesForAttribute(DrawableAttribut
                     query.append(sortOrderClause);
                 }
 
-                try (Statement stmt = con.createStatement();
+                try (SQLiteConnectionPool.ReadConnection readCon = readPool.getReadConnection();
+                        Statement stmt = readCon.createStatement();
                         ResultSet valsResults = stmt.executeQuery(query.toString())) {
                     while (valsResults.next()) {
                         vals.add((A) valsResults.getObject(groupBy.attrName.toString()));
                     }
                 } catch (SQLException ex) {
                     LOGGER.log(Level.WARNING, "Unable to get values for attribute", ex);
-                } finally {
-                    dbReadUnlock();
                 }
         }
 
         return vals;
     }
 
+    /**
+     * Find the files, analyzed state and seen state of every group of the
+     * given attribute with one query for the files and one for the seen
+     * states, rather than several queries per group.
+     *
+     * @param groupBy the attribute to group by
+     *
+     * @return map from group value to the summary of that group, in the order
+     *         of the group values, or null if the groups of the given
+     *         attribute are not in this db (eg {@link DrawableAttribute#TAGS})
+     */
+    @SuppressWarnings("unchecked")
+    public <A extends Comparable<A>> Map<A, GroupSummary> findGroupSummaries(DrawableAttribute<A> groupBy) {
+        if (groupBy == DrawableAttribute.SIMILARITY) {
+            return (Map<A, GroupSummary>) findSimilarityGroupSummaries();
+        }
+        final String query = groupSummaryQueryMap.get(groupBy);
+        if (query == null) {
+            return null;
+        }
+        Map<A, GroupSummary> summaries = new LinkedHashMap<>();
+        try (SQLiteConnectionPool.ReadConnection readCon = readPool.getReadConnection()) {
+            try (Statement stmt = readCon.createStatement();
+                    ResultSet rs = stmt.executeQuery(query)) {
+                while (rs.next()) {
+                    //analyzed is stored as an integer, but its groups are keyed by Boolean
+                    final A value = (A) (groupBy == DrawableAttribute.ANALYZED
+                            ? (Object) rs.getBoolean(GROUP_VALUE)
+                            : rs.getObject(GROUP_VALUE));
+                    if (value != null) {
+                        summaries.computeIfAbsent(value, v -> new GroupSummary())
+                                .addFile(rs.getLong(OBJ_ID), rs.getBoolean(ANALYZED));
+                    }
+                }
+            }
+
+            readSeenStates(readCon, groupBy, summaries);
+        } catch (SQLException ex) {
+            LOGGER.log(Level.WARNING, "failed to get groups for attribute: " + groupBy.attrName, ex);
+        }
+        return summaries;
+    }
+
+    /**
+     * set the seen states of the given summaries of the groups of the given
+     * attribute
+     */
+    private void readSeenStates(SQLiteConnectionPool.ReadConnection readCon, DrawableAttribute<?> groupBy, Map<?, GroupSummary> summaries) throws SQLException {
+        //groups are stored by the display name of their value, see GroupKey.getValueDisplayName()
+        Map<String, GroupSummary> byName = new HashMap<>();
+        summaries.forEach((value, summary) -> byName.put(value.toString(), summary));
+        try (PreparedStatement stmt = readCon.prepareStatement(GROUPS_SEEN_QUERY)) {
+            stmt.setString(1, groupBy.attrName.toString());
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    final GroupSummary summary = byName.get(rs.getString("value"));
+                    if (summary != null) {
+                        summary.seen = rs.getBoolean("seen");
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Find the clusters of visually similar images, from the similarity index
+     * rather than a query.
+     */
+    private Map<SimilarImages, GroupSummary> findSimilarityGroupSummaries() {
+        final Map<Long, Set<Long>> clusters = getSimilarityIndex().findClusters();
+        Map<SimilarImages, GroupSummary> summaries = new LinkedHashMap<>();
+        try (SQLiteConnectionPool.ReadConnection readCon = readPool.getReadConnection()) {
+            Map<Long, String> names = getFileNames(readCon, clusters.keySet());
+            clusters.forEach((representativeID, fileIDs) -> {
+                GroupSummary summary = new GroupSummary();
+                fileIDs.forEach(fileID -> summary.addFile(fileID, true));
+                summaries.put(new SimilarImages(representativeID, names.getOrDefault(representativeID, "")), summary);
+            });
+            readSeenStates(readCon, DrawableAttribute.SIMILARITY, summaries);
+        } catch (SQLException ex) {
+            LOGGER.log(Level.WARNING, "failed to get groups of similar images", ex);
+        }
+        return summaries;
+    }
+
+    /**
+     * @return map from file ID to name, for the given files
+     */
+    private Map<Long, String> getFileNames(SQLiteConnectionPool.ReadConnection readCon, Collection<Long> fileIDs) throws SQLException {
+        Map<Long, String> names = new HashMap<>();
+        List<Long> ids = new ArrayList<>(fileIDs);
+        //keep the IN clauses to a reasonable length
+        for (int i = 0; i < ids.size(); i += 500) {
+            try (Statement stmt = readCon.createStatement();
+                    ResultSet rs = stmt.executeQuery("select obj_id, name from drawable_files where obj_id in ("
+                            + StringUtils.join(ids.subList(i, Math.min(i + 500, ids.size())), ",") + ")")) {
+                while (rs.next()) {
+                    names.put(rs.getLong(OBJ_ID), rs.getString("name"));
+                }
+            }
+        }
+        return names;
+    }
+
+    /**
+     * @return the index of the perceptual hashes of the files in this db,
+     *         waiting for it to load if it has not been loaded yet.
+     */
+    private SimilarityIndex getSimilarityIndex() {
+        return startLoadingSimilarityIndex().join();
+    }
+
+    /**
+     * Start loading the similarity index on a thread of its own, if it has not
+     * been started already.
+     *
+     * @return the load of the index
+     */
+    private synchronized CompletableFuture<SimilarityIndex> startLoadingSimilarityIndex() {
+        if (similarityIndexLoad == null) {
+            similarityIndexLoad = CompletableFuture.supplyAsync(this::loadSimilarityIndex, task -> {
+                Thread thread = new Thread(task, "Image Gallery similarity index loader");
+                thread.setDaemon(true);
+                thread.start();
+            });
+        }
+        return similarityIndexLoad;
+    }
+
+    private SimilarityIndex loadSimilarityIndex() {
+        SimilarityIndex index = new SimilarityIndex();
+        //in the order the hashes were stored, so the files are clustered the same way as when they were added
+        try (SQLiteConnectionPool.ReadConnection readCon = readPool.getReadConnection();
+                Statement stmt = readCon.createStatement();
+                ResultSet rs = stmt.executeQuery("select obj_id, phash from perceptual_hashes order by rowid")) {
+            while (rs.next()) {
+                index.put(rs.getLong(OBJ_ID), rs.getLong("phash"));
+            }
+        } catch (SQLException ex) {
+            LOGGER.log(Level.WARNING, "failed to load perceptual hashes", ex);
+        }
+        synchronized (this) {
+            for (Function<SimilarityIndex, Set<Long>> change : pendingSimilarityChanges) {
+                change.apply(index);
+            }
+            pendingSimilarityChanges.clear();
+            similarityIndex = index;
+        }
+        return index;
+    }
+
+    /**
+     * Apply the given change to the similarity index, or save it to apply once
+     * the index is loaded. If the load has not started, the change will be
+     * read from the perceptual_hashes table.
+     *
+     * @return the IDs of the files whose cluster the change moved, or an empty
+     *         set if the index is not loaded yet
+     */
+    private synchronized Set<Long> updateSimilarityIndex(Function<SimilarityIndex, Set<Long>> change) {
+        if (similarityIndex != null) {
+            return change.apply(similarityIndex);
+        }
+        if (similarityIndexLoad != null) {
+            pendingSimilarityChanges.add(change);
+        }
+        return Collections.emptySet();
+    }
+
+    /**
+     * @return true if the perceptual hash of the given file has been computed
+     */
+    public boolean hasPerceptualHash(long fileID) {
+        synchronized (this) {
+            if (similarityIndex != null) {
+                return similarityIndex.getHash(fileID) != null;
+            }
+        }
+        //look the file up in the table until the index is loaded, rather than waiting for the whole table
+        startLoadingSimilarityIndex();
+        try (SQLiteConnectionPool.ReadConnection readCon = readPool.getReadConnection();
+                PreparedStatement stmt = readCon.prepareStatement("select obj_id from perceptual_hashes where obj_id = ?")) {
+            stmt.setLong(1, fileID);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next();
+            }
+        } catch (SQLException ex) {
+            LOGGER.log(Level.WARNING, "failed to look up perceptual hash for obj_id = " + fileID, ex);
+            return false;
+        }
+    }
+
+    /**
+     * Store the perceptual hash of the given file, see {@link PerceptualHash}.
+     *
+     * @param fileID the ID of the file
+     * @param phash  the perceptual hash of the file's image
+     */
+    public void setPerceptualHash(long fileID, long phash) {
+        final Set<Long> changedFiles = new HashSet<>();
+        dbWriteLock();
+        try {
+            //"insert or replace into perceptual_hashes (obj_id, phash) values (?,?)"
+            insertPerceptualHashStmt.setLong(1, fileID);
+            insertPerceptualHashStmt.setLong(2, phash);
+            insertPerceptualHashStmt.executeUpdate();
+            changedFiles.add(fileID);
+            changedFiles.addAll(updateSimilarityIndex(index -> index.put(fileID, phash)));
+        } catch (SQLException ex) {
+            LOGGER.log(Level.WARNING, "failed to store perceptual hash for obj_id = " + fileID, ex);
+        } finally {
+            dbWriteUnlock();
+        }
+        if (groupManager != null && changedFiles.isEmpty() == false) {
+            //the file may have joined or started a cluster
+            groupManager.handleSimilarityUpdate(changedFiles);
+        }
+    }
+
+    /**
+     * @return the IDs of the files whose images look like the image of the
+     *         given file, not including the file itself.
+     */
+    public Set<Long> findSimilarFileIDs(long fileID) {
+        final SimilarityIndex index = getSimilarityIndex();
+        final Long phash = index.getHash(fileID);
+        if (phash == null) {
+            return Collections.emptySet();
+        }
+        Set<Long> similar = index.findSimilarFiles(phash);
+        similar.remove(fileID);
+        return similar;
+    }
+
+    /**
+     * @return the cluster of visually similar images the given file is in, if
+     *         it is in one.
+     */
+    public Optional<SimilarImages> getSimilarImages(long fileID) {
+        final SimilarityIndex index = getSimilarityIndex();
+        final Long leaderID = index.getClusterID(fileID);
+        if (leaderID == null || index.findCluster(leaderID).size() < 2) {
+            return Optional.empty();
+        }
+        return getFileName(leaderID).map(name -> new SimilarImages(leaderID, name));
+    }
+
+    /**
+     * @return the images that look like the given file, see
+     *         {@link SimilarImages#like(long, String)}, if any other image
+     *         looks like it.
+     */
+    public Optional<SimilarImages> getImagesLike(long fileID) {
+        if (findSimilarFileIDs(fileID).isEmpty()) {
+            return Optional.empty();
+        }
+        return getFileName(fileID).map(name -> SimilarImages.like(fileID, name));
+    }
+
+    private Optional<String> getFileName(long fileID) {
+        try (SQLiteConnectionPool.ReadConnection readCon = readPool.getReadConnection()) {
+            return Optional.of(getFileNames(readCon, Collections.singleton(fileID)).getOrDefault(fileID, ""));
+        } catch (SQLException ex) {
+            LOGGER.log(Level.WARNING, "failed to get the name of obj_id = " + fileID, ex);
+            return Optional.empty();
+        }
+    }
+
     public void insertGroup(final String value, DrawableAttribute<?> groupBy) {
+        if (insertedGroups.contains(groupKey(value, groupBy))) {
+            return;
+        }
         dbWriteLock();
 
         try {
@@ -918,6 +1198,10 @@ public void insertGroup(final String value, DrawableAttribute<?> groupBy) {
             insertGroupStmt.setString(1, value);
             insertGroupStmt.setString(2, groupBy.attrName.toString());
             insertGroupStmt.execute();
+            if (con.getAutoCommit()) {
+                //otherwise the group is in an open transaction, that may be rolled back
+                insertedGroups.add(groupKey(value, groupBy));
+            }
         } catch (SQLException sQLException) {
             // Don't need to report it if the case was closed
             if (Case.isCaseOpen()) {
@@ -967,6 +1251,18 @@ public DrawableFile<?> getFileFromID(Long id) throws TskCoreException {
     }
 
     public Set<Long> getFileIDsInGroup(GroupKey<?> groupKey) throws TskCoreException {
+        if (groupKey.getAttribute() == DrawableAttribute.SIMILARITY) {
+            final SimilarImages similarImages = (SimilarImages) groupKey.getValue();
+            if (similarImages.isLike()) {
+                Set<Long> files = new HashSet<>(findSimilarFileIDs(similarImages.getRepresentativeID()));
+                if (files.isEmpty() == false) {
+                    files.add(similarImages.getRepresentativeID());
+                }
+                return files;
+            }
+            final Set<Long> cluster = getSimilarityIndex().findCluster(similarImages.getRepresentativeID());
+            return cluster.size() < 2 ? Collections.emptySet() : cluster;
+        }
 
         if (groupKey.getAttribute().isDBColumn) {
             switch (groupKey.getAttribute().attrName) {
@@ -977,9 +1273,8 @@ public Set<Long> getFileIDsInGroup(GroupKey<?> groupKey) throws TskCoreException
             }
         }
         Set<Long> files = new HashSet<>();
-        dbReadLock();
-        try {
-            PreparedStatement statement = getGroupStatment(groupKey.getAttribute());
+        try (SQLiteConnectionPool.ReadConnection readCon = readPool.getReadConnection();
+                PreparedStatement statement = readCon.prepareStatement(getGroupQuery(groupKey.getAttribute()))) {
             statement.setObject(1, groupKey.getValue());
 
             try (ResultSet valsResults = statement.executeQuery()) {
@@ -989,8 +1284,6 @@ public Set<Long> getFileIDsInGroup(GroupKey<?> groupKey) throws TskCoreException
             }
         } catch (SQLException ex) {
             LOGGER.log(Level.WARNING, "failed to get file for group:" + groupKey.getAttribute() + " == " + groupKey.getValue(), ex);
-        } finally {
-            dbReadUnlock();
         }
 
         return files;
@@ -998,20 +1291,25 @@ public Set<Long> getFileIDsInGroup(GroupKey<?> groupKey) throws TskCoreException
 
     public List<DrawableFile<?>> getFilesInGroup(GroupKey<?> key) throws TskCoreException {
         List<DrawableFile<?>> files = new ArrayList<>();
-        dbReadLock();
-        try {
-            PreparedStatement statement = null;
-
-            /* I hate this! not flexible/generic/maintainable we could have the
-             * DrawableAttribute provide/create/configure the correct statement
-             * but they shouldn't be coupled like that -jm */
-            switch (key.getAttribute().attrName) {
-                case CATEGORY:
-                    return getFilesWithCategory((Category) key.getValue());
-                default:
-                    statement = getGroupStatment(key.getAttribute());
-            }
+        /* I hate this! not flexible/generic/maintainable we could have the
+         * DrawableAttribute provide/create/configure the correct statement
+         * but they shouldn't be coupled like that -jm */
+        switch (key.getAttribute().attrName) {
+            case CATEGORY:
+                return getFilesWithCategory((Category) key.getValue());
+            case SIMILARITY:
+                for (Long fileID : getFileIDsInGroup(key)) {
+                    final DrawableFile<?> file = getFileFromID(fileID);
+                    if (file != null) {
+                        files.add(file);
+                    }
+                }
+                DrawableMetadataLoader.loadAll(tskCase, files);
+                return files;
+        }
 
+        try (SQLiteConnectionPool.ReadConnection readCon = readPool.getReadConnection();
+                PreparedStatement statement = readCon.prepareStatement(getGroupQuery(key.getAttribute()))) {
             statement.setObject(1, key.getValue());
 
             try (ResultSet valsResults = statement.executeQuery()) {
@@ -1021,9 +1319,8 @@ public List<DrawableFile<?>> getFilesInGroup(GroupKey<?> key) throws TskCoreExce
             }
         } catch (SQLException ex) {
             LOGGER.log(Level.WARNING, "failed to get file for group:" + key.getAttribute() + " == " + key.getValue(), ex);
-        } finally {
-            dbReadUnlock();
         }
+        DrawableMetadataLoader.loadAll(tskCase, files);
 
         return files;
     }
@@ -1044,6 +1341,7 @@ public List<DrawableFile<?>> getFilesWithCategory(Category cat) throws TskCoreEx
                             isVideoFile((AbstractFile) ct.getContent())));
                 }
             }
+            DrawableMetadataLoader.loadAll(tskCase, files);
             return files;
         } catch (TskCoreException ex) {
             LOGGER.log(Level.WARNING, "TSK error getting files in Category:" + cat.getDisplayName(), ex);
@@ -1051,15 +1349,16 @@ public List<DrawableFile<?>> getFilesWithCategory(Category cat) throws TskCoreEx
         }
     }
 
-    private PreparedStatement getGroupStatment(DrawableAttribute<?> groupBy) {
-        return groupStatementMap.get(groupBy);
+    private String getGroupQuery(DrawableAttribute<?> groupBy) {
+        return groupQueryMap.get(groupBy);
 
     }
 
     public int countAllFiles() {
         int result = -1;
-        dbReadLock();
-        try (ResultSet rs = con.createStatement().executeQuery("select count(*) as COUNT from drawable_files")) {
+        try (SQLiteConnectionPool.ReadConnection readCon = readPool.getReadConnection();
+                Statement stmt = readCon.createStatement();
+                ResultSet rs = stmt.executeQuery("select count(*) as COUNT from drawable_files")) {
             while (rs.next()) {
 
                 result = rs.getInt("COUNT");
@@ -1067,8 +1366,6 @@ public int countAllFiles() {
             }
         } catch (SQLException ex) {
             LOGGER.log(Level.SEVERE, "Error accessing SQLite database");
-        } finally {
-            dbReadUnlock();
         }
         return result;
     }
@@ -1091,10 +1388,19 @@ public boolean removeFile(long id, DrawableTransaction tr) {
             // Update the list of file IDs in memory
             removeImageFileFromList(id);
 
+            //the batched rows must go first, in case they include this file
+            tr.executeBatches();
+
             //"delete from drawable_files where (obj_id = " + id + ")"
             removeFileStmt.setLong(1, id);
             removeFileStmt.executeUpdate();
+            removePerceptualHashStmt.setLong(1, id);
+            removePerceptualHashStmt.executeUpdate();
             tr.addRemovedFile(id);
+            //the other files of a cluster the file led join other clusters
+            for (Long changedID : updateSimilarityIndex(index -> index.remove(id))) {
+                tr.addUpdatedFile(changedID);
+            }
 
             //TODO: delete from hash_set_hits table also...
         } catch (SQLException ex) {
@@ -1150,17 +1456,14 @@ public int getNumberOfImageFilesInList() {
 
     private void initializeImageList() {
         synchronized (fileIDsInDB) {
-            dbReadLock();
-            try {
-                Statement stmt = con.createStatement();
-                ResultSet analyzedQuery = stmt.executeQuery("select obj_id from drawable_files");
+            try (SQLiteConnectionPool.ReadConnection readCon = readPool.getReadConnection();
+                    Statement stmt = readCon.createStatement();
+                    ResultSet analyzedQuery = stmt.executeQuery("select obj_id from drawable_files")) {
                 while (analyzedQuery.next()) {
                     addImageFileToList(analyzedQuery.getLong(OBJ_ID));
                 }
             } catch (SQLException ex) {
                 LOGGER.log(Level.WARNING, "problem loading file IDs: ", ex);
-            } finally {
-                dbReadUnlock();
             }
         }
     }
@@ -1225,6 +1528,27 @@ public class DrawableTransaction {
 
         private final Set<Long> removedFiles;
 
+        /**
+         * the statements that have rows batched, in the order they were first
+         * used, so the file rows go before the rows that refer to them
+         */
+        private final Set<PreparedStatement> batchedStatements = new LinkedHashSet<>();
+
+        /**
+         * the groups inserted in this transaction
+         */
+        private final Set<String> newGroups = new HashSet<>();
+
+        /**
+         * the ids of the hash sets inserted in this transaction, by name
+         */
+        private final Map<String, Integer> newHashSetIDs = new HashMap<>();
+
+        /**
+         * the number of files batched since the batches were last executed
+         */
+        private int batchedFiles = 0;
+
         private boolean closed = false;
 
         /**
@@ -1253,8 +1577,11 @@ private DrawableTransaction() {
         synchronized public void rollback() {
             if (!closed) {
                 try {
+                    clearBatches();
                     con.rollback();
                     updatedFiles.clear();
+                    newGroups.clear();
+                    newHashSetIDs.clear();
                 } catch (SQLException ex1) {
                     LOGGER.log(Level.SEVERE, "Exception while attempting to rollback!!", ex1);
                 } finally {
@@ -1266,7 +1593,10 @@ synchronized public void rollback() {
         synchronized private void commit(Boolean notify) {
             if (!closed) {
                 try {
+                    executeBatches();
                     con.commit();
+                    insertedGroups.addAll(newGroups);
+                    hashSetIDs.putAll(newHashSetIDs);
                     // make sure we close before we update, bc they'll need locks
                     close();
 
@@ -1315,5 +1645,98 @@ synchronized private void addUpdatedFile(Long f) {
         synchronized private void addRemovedFile(long id) {
             removedFiles.add(id);
         }
+
+        /**
+         * add the current parameters of the given statement to its batch
+         */
+        synchronized private void addBatch(PreparedStatement stmt) throws SQLException {
+            stmt.addBatch();
+            batchedStatements.add(stmt);
+        }
+
+        /**
+         * @return true if the given group was not already inserted in this
+         *         transaction
+         */
+        synchronized private boolean addInsertedGroup(String groupKey) {
+            return newGroups.add(groupKey);
+        }
+
+        synchronized private Integer getNewHashSetID(String name) {
+            return newHashSetIDs.get(name);
+        }
+
+        synchronized private void addNewHashSetID(String name, int hashSetID) {
+            newHashSetIDs.put(name, hashSetID);
+        }
+
+        /**
+         * note that a file was added, and send the batches to the db if they
+         * are full
+         */
+        synchronized private void fileAdded() throws SQLException {
+            if (++batchedFiles >= BATCH_SIZE) {
+                executeBatches();
+            }
+        }
+
+        /**
+         * send the batched rows to the db, within this transaction
+         */
+        synchronized private void executeBatches() throws SQLException {
+            for (PreparedStatement stmt : batchedStatements) {
+                stmt.executeBatch();
+            }
+            batchedStatements.clear();
+            batchedFiles = 0;
+        }
+
+        synchronized private void clearBatches() {
+            for (PreparedStatement stmt : batchedStatements) {
+                try {
+                    stmt.clearBatch();
+                } catch (SQLException ex) {
+                    LOGGER.log(Level.WARNING, "failed to clear batch", ex);
+                }
+            }
+            batchedStatements.clear();
+            batchedFiles = 0;
+        }
+    }
+
+    /**
+     * The files, analyzed state and seen state of one group, as found by
+     * {@link #findGroupSummaries}.
+     */
+    public static final class GroupSummary {
+
+        private final Set<Long> fileIDs = new HashSet<>();
+
+        private boolean analyzed = true;
+
+        private boolean seen = false;
+
+        private GroupSummary() {
+        }
+
+        private void addFile(long fileID, boolean fileAnalyzed) {
+            fileIDs.add(fileID);
+            analyzed &= fileAnalyzed;
+        }
+
+        public Set<Long> getFileIDs() {
+            return Collections.unmodifiableSet(fileIDs);
+        }
+
+        /**
+         * @return true if all the files in the group are analyzed
+         */
+        public boolean isAnalyzed() {
+            return analyzed;
+        }
+
+        public boolean isSeen() {
+            return seen;
+        }
     }
 }
@@ -90,6 +90,19 @@ public static DrawableFile<?> create(Long id, boolean analyzed) throws TskCoreEx
 
     private String model;
 
+    /**
+     * the names of the hash sets this file is in, if they were loaded by a
+     * {@link DrawableMetadataLoader}, else null
+     */
+    private volatile Set<String> hashSetNames;
+
+    /**
+     * the names of the tags of this file, if they were loaded by a
+     * {@link DrawableMetadataLoader} and have not been changed since, else
+     * null
+     */
+    private volatile Set<TagName> tagNames;
+
     protected DrawableFile(T file, Boolean analyzed) {
         /* @TODO: the two 'new Integer(0).shortValue()' values and null are
          * placeholders because the super constructor expects values i can't get
@@ -152,7 +165,28 @@ public String getMake() {
         return make;
     }
 
+    /**
+     * Set the metadata of this file that was loaded in bulk, so that it is not
+     * looked up file by file.
+     */
+    void setLoadedMetadata(String make, String model, Set<String> hashSetNames, Set<TagName> tagNames) {
+        this.make = make;
+        this.model = model;
+        this.hashSetNames = Collections.unmodifiableSet(hashSetNames);
+        this.tagNames = Collections.unmodifiableSet(tagNames);
+    }
+
+    @Override
+    public Set<String> getHashSetNames() throws TskCoreException {
+        final Set<String> loaded = hashSetNames;
+        return (loaded != null) ? loaded : super.getHashSetNames();
+    }
+
     public Set<TagName> getTagNames() {
+        final Set<TagName> loaded = tagNames;
+        if (loaded != null) {
+            return loaded;
+        }
         try {
 
             return getSleuthkitCase().getContentTagsByContent(this).stream()
@@ -200,6 +234,8 @@ protected Object getValueOfBBAttribute(BlackboardArtifact.ARTIFACT_TYPE artType,
     }
 
     public void setCategory(Category category) {
+        //the tags have changed, so look them up again
+        tagNames = null;
         categoryProperty().set(category);
 
     }
@@ -215,6 +251,16 @@ public SimpleObjectProperty<Category> categoryProperty() {
 
     /** set the category property to the most severe one found */
     private void updateCategory() {
+        final Set<TagName> loaded = tagNames;
+        if (loaded != null) {
+            category.set(loaded.stream().filter(CategoryManager::isCategoryTagName)
+                    .map(TagName::getDisplayName)
+                    .map(Category::fromDisplayName)
+                    .sorted().findFirst() //sort by severity and take the first
+                    .orElse(Category.ZERO)
+            );
+            return;
+        }
         try {
             category.set(getSleuthkitCase().getContentTagsByContent(this).stream()
                     .map(Tag::getName).filter(CategoryManager::isCategoryTagName)
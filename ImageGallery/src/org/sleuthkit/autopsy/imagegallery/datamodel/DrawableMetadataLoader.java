@@ -0,0 +1,226 @@
+/*
+ * Autopsy Forensic Browser
+ *
+ * Copyright 2015 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.autopsy.imagegallery.datamodel;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.text.WordUtils;
+import org.sleuthkit.autopsy.coreutils.Logger;
+import org.sleuthkit.datamodel.BlackboardArtifact;
+import org.sleuthkit.datamodel.BlackboardAttribute;
+import org.sleuthkit.datamodel.SleuthkitCase;
+import org.sleuthkit.datamodel.SleuthkitCase.CaseDbQuery;
+import org.sleuthkit.datamodel.TagName;
+import org.sleuthkit.datamodel.TskCoreException;
+
+/**
+ * Loads the metadata of many {@link DrawableFile}s at once: the camera make
+ * and model from their EXIF artifacts, the hash sets they are in and their
+ * tags. Each chunk of {@link #CHUNK_SIZE} files takes three queries, rather
+ * than the several queries per file that the lazy lookups in DrawableFile
+ * take.
+ *
+ * The loader is given the IDs of all the files that will be loaded, in the
+ * order they will be loaded (eg all the files being copied into the drawable
+ * db), and loads the chunk of IDs starting at each file that is not already
+ * loaded. Files that were not given up front are left to look up their own
+ * metadata.
+ */
+public final class DrawableMetadataLoader {
+
+    private static final Logger LOGGER = Logger.getLogger(DrawableMetadataLoader.class.getName());
+
+    /**
+     * the number of files to load the metadata of with each set of queries,
+     * this also bounds the length of the IN clauses.
+     */
+    private static final int CHUNK_SIZE = 500;
+
+    private final SleuthkitCase tskCase;
+
+    private final List<Long> fileIDs;
+
+    /**
+     * map from file ID to its index in fileIDs
+     */
+    private final Map<Long, Integer> indices = new HashMap<>();
+
+    /**
+     * the metadata of the current chunk, by file ID
+     */
+    private final Map<Long, Metadata> chunk = new HashMap<>();
+
+    /**
+     * map from tag name ID to tag name, loaded with the first chunk
+     */
+    private Map<Long, TagName> tagNames;
+
+    /**
+     * @param tskCase the case the files are in
+     * @param fileIDs the IDs of the files that will be loaded, in the order
+     *                they will be loaded
+     */
+    public DrawableMetadataLoader(SleuthkitCase tskCase, List<Long> fileIDs) {
+        this.tskCase = tskCase;
+        this.fileIDs = fileIDs;
+        for (int i = 0; i < fileIDs.size(); i++) {
+            indices.putIfAbsent(fileIDs.get(i), i);
+        }
+    }
+
+    /**
+     * Load the metadata of all the given files, a chunk at a time.
+     *
+     * @param tskCase the case the files are in
+     * @param files   the files to load the metadata of
+     */
+    public static void loadAll(SleuthkitCase tskCase, Collection<? extends DrawableFile<?>> files) {
+        List<Long> ids = new ArrayList<>(files.size());
+        for (DrawableFile<?> file : files) {
+            ids.add(file.getId());
+        }
+        DrawableMetadataLoader loader = new DrawableMetadataLoader(tskCase, ids);
+        for (DrawableFile<?> file : files) {
+            loader.load(file);
+        }
+    }
+
+    /**
+     * Fill the given file with its metadata, loading the chunk of files
+     * starting with it if it is not already loaded. If the file was not one of
+     * the files given to this loader, or the metadata could not be loaded, the
+     * file is left to look it up itself.
+     *
+     * @param file the file to fill in
+     */
+    public synchronized void load(DrawableFile<?> file) {
+        Metadata metadata = chunk.get(file.getId());
+        if (metadata == null) {
+            final Integer index = indices.get(file.getId());
+            if (index == null) {
+                return;
+            }
+            try {
+                loadChunk(fileIDs.subList(index, Math.min(index + CHUNK_SIZE, fileIDs.size())));
+            } catch (TskCoreException ex) {
+                LOGGER.log(Level.WARNING, "Failed to bulk load the metadata of drawable files.", ex);
+                chunk.clear();
+                return;
+            }
+            metadata = chunk.get(file.getId());
+        }
+        file.setLoadedMetadata(WordUtils.capitalizeFully(metadata.make),
+                WordUtils.capitalizeFully(metadata.model),
+                metadata.hashSetNames, metadata.tagNames);
+    }
+
+    private void loadChunk(List<Long> ids) throws TskCoreException {
+        if (tagNames == null) {
+            tagNames = new HashMap<>();
+            for (TagName tagName : tskCase.getAllTagNames()) {
+                tagNames.put(tagName.getId(), tagName);
+            }
+        }
+
+        chunk.clear();
+        for (Long id : ids) {
+            chunk.put(id, new Metadata());
+        }
+        final String idList = StringUtils.join(ids, ","); // NON-NLS
+
+        //camera make and model, the first value of each wins, as in DrawableFile.getValueOfBBAttribute()
+        query("SELECT blackboard_artifacts.obj_id, blackboard_attributes.attribute_type_id, blackboard_attributes.value_text " // NON-NLS
+                + "FROM blackboard_artifacts, blackboard_attributes " // NON-NLS
+                + "WHERE blackboard_artifacts.artifact_type_id = " + BlackboardArtifact.ARTIFACT_TYPE.TSK_METADATA_EXIF.getTypeID() // NON-NLS
+                + " AND blackboard_attributes.artifact_id = blackboard_artifacts.artifact_id" // NON-NLS
+                + " AND blackboard_attributes.attribute_type_id IN (" // NON-NLS
+                + BlackboardAttribute.ATTRIBUTE_TYPE.TSK_DEVICE_MAKE.getTypeID() + ", " // NON-NLS
+                + BlackboardAttribute.ATTRIBUTE_TYPE.TSK_DEVICE_MODEL.getTypeID() + ")" // NON-NLS
+                + " AND blackboard_artifacts.obj_id IN (" + idList + ")" // NON-NLS
+                + " ORDER BY blackboard_artifacts.artifact_id", // NON-NLS
+                (ResultSet rs) -> {
+                    Metadata metadata = chunk.get(rs.getLong("obj_id")); // NON-NLS
+                    final String value = StringUtils.defaultString(rs.getString("value_text")); // NON-NLS
+                    if (rs.getInt("attribute_type_id") == BlackboardAttribute.ATTRIBUTE_TYPE.TSK_DEVICE_MAKE.getTypeID()) { // NON-NLS
+                        if (metadata.make.isEmpty()) {
+                            metadata.make = value;
+                        }
+                    } else if (metadata.model.isEmpty()) {
+                        metadata.model = value;
+                    }
+                });
+
+        //hash set names
+        query("SELECT blackboard_artifacts.obj_id, blackboard_attributes.value_text " // NON-NLS
+                + "FROM blackboard_artifacts, blackboard_attributes " // NON-NLS
+                + "WHERE blackboard_artifacts.artifact_type_id = " + BlackboardArtifact.ARTIFACT_TYPE.TSK_HASHSET_HIT.getTypeID() // NON-NLS
+                + " AND blackboard_attributes.artifact_id = blackboard_artifacts.artifact_id" // NON-NLS
+                + " AND blackboard_attributes.attribute_type_id = " + BlackboardAttribute.ATTRIBUTE_TYPE.TSK_SET_NAME.getTypeID() // NON-NLS
+                + " AND blackboard_artifacts.obj_id IN (" + idList + ")", // NON-NLS
+                (ResultSet rs) -> {
+                    chunk.get(rs.getLong("obj_id")).hashSetNames.add(rs.getString("value_text")); // NON-NLS
+                });
+
+        //tags
+        query("SELECT obj_id, tag_name_id FROM content_tags WHERE obj_id IN (" + idList + ")", // NON-NLS
+                (ResultSet rs) -> {
+                    final TagName tagName = tagNames.get(rs.getLong("tag_name_id")); // NON-NLS
+                    if (tagName != null) {
+                        chunk.get(rs.getLong("obj_id")).tagNames.add(tagName); // NON-NLS
+                    }
+                });
+    }
+
+    @SuppressWarnings("deprecation")
+    private void query(String query, RowHandler handler) throws TskCoreException {
+        try (CaseDbQuery dbQuery = tskCase.executeQuery(query)) {
+            ResultSet rs = dbQuery.getResultSet();
+            while (rs.next()) {
+                handler.handle(rs);
+            }
+        } catch (SQLException ex) {
+            throw new TskCoreException("Error bulk loading drawable file metadata.", ex); // NON-NLS
+        }
+    }
+
+    private interface RowHandler {
+
+        void handle(ResultSet rs) throws SQLException;
+    }
+
+    /**
+     * the metadata of one file, as loaded from the case db
+     */
+    private static final class Metadata {
+
+        private String make = "";
+        private String model = "";
+        private final Set<String> hashSetNames = new HashSet<>();
+        private final Set<TagName> tagNames = new HashSet<>();
+    }
+}
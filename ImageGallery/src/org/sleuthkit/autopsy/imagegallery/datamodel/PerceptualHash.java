@@ -0,0 +1,138 @@
+/*
+ * Autopsy Forensic Browser
+ *
+ * Copyright 2015 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.autopsy.imagegallery.datamodel;
+
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+import java.util.Arrays;
+
+/**
+ * Computes a 64 bit DCT based perceptual hash (pHash) of an image. Images that
+ * look alike (resized or re-encoded copies, burst shots) have hashes that
+ * differ in only a few bits, so the hamming distance between two hashes
+ * measures how visually different the images are.
+ *
+ * The image is scaled to 32x32 greyscale, and each bit of the hash says
+ * whether one of the 8x8 lowest (non constant) frequencies of its discrete
+ * cosine transform is above the median of those frequencies.
+ */
+public final class PerceptualHash {
+
+    /**
+     * the width and height the image is scaled to
+     */
+    private static final int SIZE = 32;
+
+    /**
+     * the number of frequencies used in each direction
+     */
+    private static final int FREQUENCIES = 8;
+
+    /**
+     * COSINES[u][x] = cos((2x + 1) * u * pi / (2 * SIZE)), for the
+     * frequencies 1 to FREQUENCIES. The constant frequency (0) is skipped
+     * since it only reflects the overall brightness.
+     */
+    private static final double[][] COSINES = new double[FREQUENCIES + 1][SIZE];
+
+    static {
+        for (int u = 1; u <= FREQUENCIES; u++) {
+            for (int x = 0; x < SIZE; x++) {
+                COSINES[u][x] = Math.cos((2 * x + 1) * u * Math.PI / (2 * SIZE));
+            }
+        }
+    }
+
+    private PerceptualHash() {
+    }
+
+    /**
+     * Compute the perceptual hash of the given image. A thumbnail is as good
+     * as the full image for this, since the image is scaled down to 32x32.
+     *
+     * @param image the image to hash
+     *
+     * @return the 64 bit perceptual hash of the image
+     */
+    public static long compute(Image image) {
+        BufferedImage grey = new BufferedImage(SIZE, SIZE, BufferedImage.TYPE_BYTE_GRAY);
+        Graphics2D g = grey.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.drawImage(image, 0, 0, SIZE, SIZE, null);
+        } finally {
+            g.dispose();
+        }
+
+        final Raster raster = grey.getRaster();
+        double[][] pixels = new double[SIZE][SIZE];
+        for (int y = 0; y < SIZE; y++) {
+            for (int x = 0; x < SIZE; x++) {
+                pixels[y][x] = raster.getSample(x, y, 0);
+            }
+        }
+
+        //the low frequencies of the 2D DCT, done as a DCT of the rows and then of the columns
+        double[][] rows = new double[SIZE][FREQUENCIES + 1];
+        for (int y = 0; y < SIZE; y++) {
+            for (int u = 1; u <= FREQUENCIES; u++) {
+                double sum = 0;
+                for (int x = 0; x < SIZE; x++) {
+                    sum += pixels[y][x] * COSINES[u][x];
+                }
+                rows[y][u] = sum;
+            }
+        }
+        double[] coefficients = new double[FREQUENCIES * FREQUENCIES];
+        for (int v = 1; v <= FREQUENCIES; v++) {
+            for (int u = 1; u <= FREQUENCIES; u++) {
+                double sum = 0;
+                for (int y = 0; y < SIZE; y++) {
+                    sum += rows[y][u] * COSINES[v][y];
+                }
+                coefficients[(v - 1) * FREQUENCIES + (u - 1)] = sum;
+            }
+        }
+
+        double[] sorted = coefficients.clone();
+        Arrays.sort(sorted);
+        final double median = (sorted[sorted.length / 2 - 1] + sorted[sorted.length / 2]) / 2;
+
+        long hash = 0;
+        for (int i = 0; i < coefficients.length; i++) {
+            if (coefficients[i] > median) {
+                hash |= 1L << i;
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * @return the number of bits that differ between the given hashes, 0
+     *         means the images look the same, and 32 is what is expected of
+     *         unrelated images.
+     */
+    public static int distance(long hash1, long hash2) {
+        return Long.bitCount(hash1 ^ hash2);
+    }
+}
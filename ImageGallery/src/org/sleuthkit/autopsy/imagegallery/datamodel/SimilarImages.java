@@ -0,0 +1,106 @@
+/*
+ * Autopsy Forensic Browser
+ *
+ * Copyright 2015 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.autopsy.imagegallery.datamodel;
+
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * The value of the {@link DrawableAttribute#SIMILARITY} attribute: identifies
+ * a cluster of visually similar images by its leader, the file in it with the
+ * lowest ID, see {@link SimilarityIndex}. Also identifies the images that look
+ * like one file, for {@link #like(long, String)}.
+ */
+@Immutable
+public final class SimilarImages implements Comparable<SimilarImages> {
+
+    private final long representativeID;
+
+    private final String displayName;
+
+    /**
+     * true if this is the images that look like the representative file,
+     * rather than a cluster
+     */
+    private final boolean like;
+
+    SimilarImages(long representativeID, String representativeName) {
+        this(representativeID, representativeName, false);
+    }
+
+    private SimilarImages(long representativeID, String representativeName, boolean like) {
+        this.representativeID = representativeID;
+        this.like = like;
+        //the ID keeps the names of clusters whose first files have the same name distinct
+        this.displayName = (like ? "like " : "") + representativeName + " [" + representativeID + "]";
+    }
+
+    /**
+     * @return the images that look like the given file: the files whose
+     *         hashes are within {@link SimilarityIndex#MAX_DISTANCE} of its
+     *         hash, whatever clusters they are in.
+     */
+    static SimilarImages like(long fileID, String fileName) {
+        return new SimilarImages(fileID, fileName, true);
+    }
+
+    /**
+     * @return the ID of the leader of the cluster, or of the file the images
+     *         look like
+     */
+    public long getRepresentativeID() {
+        return representativeID;
+    }
+
+    /**
+     * @return true if this is the images that look like one file, false if it
+     *         is a cluster
+     */
+    public boolean isLike() {
+        return like;
+    }
+
+    @Override
+    public String toString() {
+        return displayName;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(representativeID) * 2 + (like ? 1 : 0);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+        return representativeID == ((SimilarImages) obj).representativeID
+                && like == ((SimilarImages) obj).like;
+    }
+
+    @Override
+    public int compareTo(SimilarImages o) {
+        int comp = displayName.compareTo(o.displayName);
+        if (comp != 0) {
+            return comp;
+        }
+        comp = Long.compare(representativeID, o.representativeID);
+        return comp != 0 ? comp : Boolean.compare(like, o.like);
+    }
+}
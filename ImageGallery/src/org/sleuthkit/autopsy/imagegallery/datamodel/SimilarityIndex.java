@@ -0,0 +1,435 @@
+/*
+ * Autopsy Forensic Browser
+ *
+ * Copyright 2015 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.autopsy.imagegallery.datamodel;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.IntConsumer;
+
+/**
+ * In memory index of the {@link PerceptualHash}es of the files in the
+ * drawable db, that finds the files whose hashes are within
+ * {@link #MAX_DISTANCE} bits of a given hash without comparing it to every
+ * hash.
+ *
+ * This is a multi-index hash: each hash is split into four 16 bit chunks, and
+ * each chunk is indexed in a table of its own. If two hashes differ in at most
+ * seven bits, then at least one of their chunks differs in at most one bit, so
+ * all the similar hashes are found by looking up each chunk of the query, and
+ * the 16 values one bit away from it, in the chunk's table. With 65536 values
+ * per chunk, each lookup only compares against a handful of hashes, even with
+ * millions of files.
+ *
+ * The entries are kept in flat primitive arrays, in the order they were added.
+ * Each chunk table is the positions of the entries ordered by the value of
+ * that chunk (by counting sort) and the offset of each chunk value's bucket.
+ * The tables are rebuilt once enough entries have been added after them; the
+ * entries added since are compared one by one. Removed entries are only marked
+ * until the next rebuild.
+ *
+ * The files are also grouped into clusters of similar images. Each cluster
+ * has a leader, and every file in it is within MAX_DISTANCE of its leader, so
+ * the files in a cluster are at most twice MAX_DISTANCE apart, rather than
+ * chains of similar images joining far apart ones. A file added to the index
+ * joins the cluster of the leader with the lowest ID that it is similar to,
+ * or leads a new cluster of its own. Adding files never changes the leader of
+ * an existing cluster, so the leader's ID identifies the cluster.
+ */
+final class SimilarityIndex {
+
+    /**
+     * the most bits two hashes can differ by for their images to be
+     * considered similar. The chunking relies on this being less than 8.
+     */
+    static final int MAX_DISTANCE = 7;
+
+    private static final int CHUNKS = 4;
+
+    private static final int CHUNK_BITS = 16;
+
+    private static final int CHUNK_MASK = (1 << CHUNK_BITS) - 1;
+
+    private static final int BUCKETS = 1 << CHUNK_BITS;
+
+    /**
+     * the fewest entries to add after the chunk tables before they are rebuilt
+     */
+    private static final int MIN_UNINDEXED = 4096;
+
+    /*
+     * the entries, in the order they were added: the file ID, its hash, and
+     * the ID of the leader of its cluster
+     */
+    private long[] fileIDs = new long[1024];
+    private long[] hashes = new long[1024];
+    private long[] leaderIDs = new long[1024];
+
+    /**
+     * the number of entries, including the removed ones
+     */
+    private int count = 0;
+
+    private final BitSet removed = new BitSet();
+
+    private int removedCount = 0;
+
+    /**
+     * the position of each file's (not removed) entry
+     */
+    private LongIntMap positions = new LongIntMap(1024);
+
+    /**
+     * the entries before this position are in the chunk tables
+     */
+    private int indexedCount = 0;
+
+    /**
+     * for each chunk, the positions of the indexed entries ordered by the
+     * value of that chunk
+     */
+    private final int[][] chunkOrder = new int[CHUNKS][0];
+
+    /**
+     * for each chunk, the offset into chunkOrder of the bucket of each value
+     * of that chunk, and one more for the end of the last bucket
+     */
+    private final int[][] chunkOffsets = new int[CHUNKS][BUCKETS + 1];
+
+    private static int chunk(long hash, int i) {
+        return (int) (hash >>> (i * CHUNK_BITS)) & CHUNK_MASK;
+    }
+
+    /**
+     * Add the given file to the index, replacing its previous hash if it had
+     * one.
+     *
+     * @return the IDs of the other files whose cluster changed, because the
+     *         file led their cluster under its previous hash
+     */
+    synchronized Set<Long> put(long fileID, long hash) {
+        Set<Long> changed = new HashSet<>();
+        final int oldPosition = positions.get(fileID);
+        if (oldPosition >= 0) {
+            if (hashes[oldPosition] == hash) {
+                return changed;
+            }
+            changed = remove(fileID);
+        }
+        final long leaderID = findLeader(hash);
+        append(fileID, hash, leaderID < 0 ? fileID : leaderID);
+        return changed;
+    }
+
+    /**
+     * Remove the given file from the index. If it led a cluster, the other
+     * files of the cluster each join another cluster, or lead a new one, in
+     * the order they were added.
+     *
+     * @return the IDs of the other files whose cluster changed
+     */
+    synchronized Set<Long> remove(long fileID) {
+        final Set<Long> changed = new HashSet<>();
+        final int position = positions.remove(fileID);
+        if (position < 0) {
+            return changed;
+        }
+        removed.set(position);
+        removedCount++;
+        if (leaderIDs[position] == fileID) {
+            //no one is led by the removed file once they are all taken out of its cluster
+            for (int p = 0; p < count; p++) {
+                if (removed.get(p) == false && leaderIDs[p] == fileID) {
+                    leaderIDs[p] = -1;
+                    changed.add(fileIDs[p]);
+                }
+            }
+            for (int p = 0; p < count; p++) {
+                if (removed.get(p) == false && leaderIDs[p] == -1) {
+                    final long leaderID = findLeader(hashes[p]);
+                    leaderIDs[p] = leaderID < 0 ? fileIDs[p] : leaderID;
+                }
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * @return the hash of the given file, or null if it is not in the index
+     */
+    synchronized Long getHash(long fileID) {
+        final int position = positions.get(fileID);
+        return position < 0 ? null : hashes[position];
+    }
+
+    /**
+     * @return the ID of the leader of the cluster of the given file, or null
+     *         if it is not in the index
+     */
+    synchronized Long getClusterID(long fileID) {
+        final int position = positions.get(fileID);
+        return position < 0 ? null : leaderIDs[position];
+    }
+
+    /**
+     * @return the IDs of the files whose hashes are within MAX_DISTANCE of the
+     *         given hash
+     */
+    synchronized Set<Long> findSimilarFiles(long hash) {
+        Set<Long> files = new HashSet<>();
+        forEachSimilar(hash, p -> files.add(fileIDs[p]));
+        return files;
+    }
+
+    /**
+     * @param leaderID the ID of the leader of a cluster, see
+     *                 {@link #getClusterID(long)}
+     *
+     * @return the IDs of the files in the cluster, including the leader, or an
+     *         empty set if there is no such cluster.
+     */
+    synchronized Set<Long> findCluster(long leaderID) {
+        Set<Long> files = new HashSet<>();
+        for (int p = 0; p < count; p++) {
+            if (leaderIDs[p] == leaderID && removed.get(p) == false) {
+                files.add(fileIDs[p]);
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Find all the clusters of more than one file.
+     *
+     * @return map from the ID of the leader of each cluster to the IDs of the
+     *         files in it
+     */
+    synchronized Map<Long, Set<Long>> findClusters() {
+        //find the leaders that lead any other file first, to skip the singletons without allocating sets for them
+        Set<Long> sharedLeaders = new HashSet<>();
+        for (int p = 0; p < count; p++) {
+            if (leaderIDs[p] != fileIDs[p] && removed.get(p) == false) {
+                sharedLeaders.add(leaderIDs[p]);
+            }
+        }
+        Map<Long, Set<Long>> clusters = new HashMap<>();
+        for (int p = 0; p < count; p++) {
+            if (removed.get(p) == false && sharedLeaders.contains(leaderIDs[p])) {
+                clusters.computeIfAbsent(leaderIDs[p], l -> new HashSet<>()).add(fileIDs[p]);
+            }
+        }
+        return clusters;
+    }
+
+    /**
+     * @return the ID of the leader with the lowest ID within MAX_DISTANCE of
+     *         the given hash, or -1 if there is none.
+     */
+    private long findLeader(long hash) {
+        final long[] leader = {-1};
+        forEachSimilar(hash, p -> {
+            if (leaderIDs[p] == fileIDs[p] && (leader[0] < 0 || fileIDs[p] < leader[0])) {
+                leader[0] = fileIDs[p];
+            }
+        });
+        return leader[0];
+    }
+
+    /**
+     * Run the given consumer on the position of each (not removed) entry whose
+     * hash is within MAX_DISTANCE of the given hash. An entry may be visited
+     * more than once.
+     */
+    private void forEachSimilar(long hash, IntConsumer consumer) {
+        for (int i = 0; i < CHUNKS; i++) {
+            final int value = chunk(hash, i);
+            final int[] order = chunkOrder[i];
+            final int[] offsets = chunkOffsets[i];
+            for (int bit = -1; bit < CHUNK_BITS; bit++) {
+                final int bucket = bit < 0 ? value : value ^ (1 << bit);
+                for (int k = offsets[bucket]; k < offsets[bucket + 1]; k++) {
+                    final int p = order[k];
+                    if (removed.get(p) == false && PerceptualHash.distance(hash, hashes[p]) <= MAX_DISTANCE) {
+                        consumer.accept(p);
+                    }
+                }
+            }
+        }
+        //the entries added since the chunk tables were built
+        for (int p = indexedCount; p < count; p++) {
+            if (removed.get(p) == false && PerceptualHash.distance(hash, hashes[p]) <= MAX_DISTANCE) {
+                consumer.accept(p);
+            }
+        }
+    }
+
+    private void append(long fileID, long hash, long leaderID) {
+        if (count == fileIDs.length) {
+            final int capacity = count * 2;
+            fileIDs = Arrays.copyOf(fileIDs, capacity);
+            hashes = Arrays.copyOf(hashes, capacity);
+            leaderIDs = Arrays.copyOf(leaderIDs, capacity);
+        }
+        fileIDs[count] = fileID;
+        hashes[count] = hash;
+        leaderIDs[count] = leaderID;
+        positions.put(fileID, count);
+        count++;
+        if (count - indexedCount > Math.max(MIN_UNINDEXED, indexedCount / 16)) {
+            rebuildChunkTables();
+        }
+    }
+
+    /**
+     * Drop the removed entries, if there are many, and rebuild the chunk
+     * tables over all the entries.
+     */
+    private void rebuildChunkTables() {
+        if (removedCount > count / 4) {
+            int kept = 0;
+            positions = new LongIntMap(count - removedCount);
+            for (int p = 0; p < count; p++) {
+                if (removed.get(p) == false) {
+                    fileIDs[kept] = fileIDs[p];
+                    hashes[kept] = hashes[p];
+                    leaderIDs[kept] = leaderIDs[p];
+                    positions.put(fileIDs[kept], kept);
+                    kept++;
+                }
+            }
+            count = kept;
+            removed.clear();
+            removedCount = 0;
+        }
+
+        for (int i = 0; i < CHUNKS; i++) {
+            final int[] offsets = chunkOffsets[i];
+            Arrays.fill(offsets, 0);
+            for (int p = 0; p < count; p++) {
+                offsets[chunk(hashes[p], i) + 1]++;
+            }
+            for (int b = 0; b < BUCKETS; b++) {
+                offsets[b + 1] += offsets[b];
+            }
+            final int[] next = Arrays.copyOf(offsets, BUCKETS);
+            final int[] order = new int[count];
+            for (int p = 0; p < count; p++) {
+                order[next[chunk(hashes[p], i)]++] = p;
+            }
+            chunkOrder[i] = order;
+        }
+        indexedCount = count;
+    }
+
+    /**
+     * Map from file ID to position, with open addressing in primitive arrays.
+     * File IDs are never negative.
+     */
+    private static final class LongIntMap {
+
+        private static final long EMPTY = -1;
+
+        private long[] keys;
+        private int[] values;
+        private int size = 0;
+
+        LongIntMap(int expectedSize) {
+            int capacity = 16;
+            while (capacity < expectedSize * 2) {
+                capacity *= 2;
+            }
+            keys = new long[capacity];
+            Arrays.fill(keys, EMPTY);
+            values = new int[capacity];
+        }
+
+        private int slot(long key) {
+            //spread the bits of the key, IDs are often sequential
+            return (int) ((key * 0x9E3779B97F4A7C15L) >>> 32) & (keys.length - 1);
+        }
+
+        /**
+         * @return the value of the given key, or -1 if it has none
+         */
+        int get(long key) {
+            for (int s = slot(key); keys[s] != EMPTY; s = (s + 1) & (keys.length - 1)) {
+                if (keys[s] == key) {
+                    return values[s];
+                }
+            }
+            return -1;
+        }
+
+        void put(long key, int value) {
+            if ((size + 1) * 2 > keys.length) {
+                final long[] oldKeys = keys;
+                final int[] oldValues = values;
+                keys = new long[oldKeys.length * 2];
+                Arrays.fill(keys, EMPTY);
+                values = new int[oldValues.length * 2];
+                size = 0;
+                for (int s = 0; s < oldKeys.length; s++) {
+                    if (oldKeys[s] != EMPTY) {
+                        put(oldKeys[s], oldValues[s]);
+                    }
+                }
+            }
+            int s = slot(key);
+            while (keys[s] != EMPTY && keys[s] != key) {
+                s = (s + 1) & (keys.length - 1);
+            }
+            if (keys[s] == EMPTY) {
+                size++;
+            }
+            keys[s] = key;
+            values[s] = value;
+        }
+
+        /**
+         * @return the value the given key had, or -1 if it had none
+         */
+        int remove(long key) {
+            int s = slot(key);
+            while (keys[s] != key) {
+                if (keys[s] == EMPTY) {
+                    return -1;
+                }
+                s = (s + 1) & (keys.length - 1);
+            }
+            final int value = values[s];
+            //shift the following keys of the run back, so that no lookup stops early at the hole
+            int hole = s;
+            for (int next = (s + 1) & (keys.length - 1); keys[next] != EMPTY; next = (next + 1) & (keys.length - 1)) {
+                final int home = slot(keys[next]);
+                //move the key if its home slot is not between the hole and where it is now (cyclically)
+                if (((next - home) & (keys.length - 1)) >= ((next - hole) & (keys.length - 1))) {
+                    keys[hole] = keys[next];
+                    values[hole] = values[next];
+                    hole = next;
+                }
+            }
+            keys[hole] = EMPTY;
+            size--;
+            return value;
+        }
+    }
+}
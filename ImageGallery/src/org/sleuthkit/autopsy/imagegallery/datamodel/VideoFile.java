@@ -18,7 +18,6 @@
  */
 package org.sleuthkit.autopsy.imagegallery.datamodel;
 
-import com.google.common.io.Files;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
@@ -30,12 +29,9 @@
 import javafx.scene.image.Image;
 import javafx.scene.media.Media;
 import javafx.scene.media.MediaException;
-import org.netbeans.api.progress.ProgressHandle;
-import org.netbeans.api.progress.ProgressHandleFactory;
 import org.sleuthkit.autopsy.coreutils.ImageUtils;
 import org.sleuthkit.autopsy.coreutils.Logger;
 import org.sleuthkit.autopsy.coreutils.VideoUtils;
-import org.sleuthkit.autopsy.datamodel.ContentUtils;
 import org.sleuthkit.datamodel.AbstractFile;
 
 public class VideoFile<T extends AbstractFile> extends DrawableFile<T> {
@@ -71,17 +67,8 @@ public Media getMedia() throws IOException, MediaException {
         if (media != null) {
             return media;
         }
-        final File cacheFile = VideoUtils.getTempVideoFile(this.getAbstractFile());
-
-        if (cacheFile.exists() == false || cacheFile.length() < getAbstractFile().getSize()) {
-
-            Files.createParentDirs(cacheFile);
-            ProgressHandle progressHandle = ProgressHandleFactory.createHandle("writing temporary file to disk");
-            progressHandle.start(100);
-            ContentUtils.writeToFile(this.getAbstractFile(), cacheFile, progressHandle, null, true);
-            progressHandle.finish();
-
-        }
+        //shares the temp copy with the video thumbnails
+        final File cacheFile = VideoUtils.extractTempVideoFile(this.getAbstractFile());
 
         media = new Media(Paths.get(cacheFile.getAbsolutePath()).toUri().toString());
         mediaRef = new SoftReference<>(media);
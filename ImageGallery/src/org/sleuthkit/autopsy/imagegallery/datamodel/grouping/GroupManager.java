@@ -28,6 +28,7 @@
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
 import java.util.Set;
 import java.util.TreeSet;
 import java.util.concurrent.ExecutorService;
@@ -68,7 +69,9 @@
 import org.sleuthkit.autopsy.imagegallery.datamodel.DrawableAttribute;
 import org.sleuthkit.autopsy.imagegallery.datamodel.DrawableDB;
 import org.sleuthkit.autopsy.imagegallery.datamodel.DrawableFile;
+import org.sleuthkit.autopsy.imagegallery.datamodel.DrawableMetadataLoader;
 import org.sleuthkit.autopsy.imagegallery.datamodel.DrawableTagsManager;
+import org.sleuthkit.autopsy.imagegallery.datamodel.SimilarImages;
 import org.sleuthkit.datamodel.AbstractFile;
 import org.sleuthkit.datamodel.ContentTag;
 import org.sleuthkit.datamodel.SleuthkitCase;
@@ -84,6 +87,11 @@ public class GroupManager {
 
     private static final Logger LOGGER = Logger.getLogger(GroupManager.class.getName());
 
+    /**
+     * the number of groups to add to the ui at once when regrouping
+     */
+    private static final int GROUPS_PER_BATCH = 500;
+
     private DrawableDB db;
 
     private final ImageGalleryController controller;
@@ -201,6 +209,34 @@ public DrawableGroup getGroupForKey(@Nonnull GroupKey<?> groupKey) {
         }
     }
 
+    /**
+     * Get the group of the images that look like the given file: the file and
+     * the images whose perceptual hashes are close to its hash, see
+     * {@link DrawableDB#getImagesLike(long)}. Unlike the clusters of
+     * {@link DrawableAttribute#SIMILARITY}, this never includes images that
+     * only look like images that look like the file. It is a group of its
+     * own, not part of the current grouping.
+     *
+     * @param fileID the ID of the file to find similar images to
+     *
+     * @return the group, or null if no other image looks like the file (or its
+     *         perceptual hash has not been computed)
+     */
+    @Nullable
+    public DrawableGroup getSimilarImagesGroup(long fileID) {
+        final Optional<SimilarImages> imagesLike = db.getImagesLike(fileID);
+        if (imagesLike.isPresent() == false) {
+            return null;
+        }
+        final GroupKey<SimilarImages> groupKey = new GroupKey<>(DrawableAttribute.SIMILARITY, imagesLike.get());
+        try {
+            return new DrawableGroup(groupKey, getFileIDsInGroup(groupKey), false);
+        } catch (TskCoreException ex) {
+            LOGGER.log(Level.WARNING, "failed to get files similar to file with id: " + fileID, ex);
+            return null;
+        }
+    }
+
     synchronized public void clear() {
 
         if (groupByTask != null) {
@@ -322,6 +358,9 @@ public <A extends Comparable<A>> List<A> findValuesForAttribute(DrawableAttribut
                 case ANALYZED:
                     values = (List<A>) Arrays.asList(false, true);
                     break;
+                case SIMILARITY:
+                    values = new ArrayList<>(db.findGroupSummaries(groupBy).keySet());
+                    break;
                 case HASHSET:
                     TreeSet<A> names = new TreeSet<>((Collection<? extends A>) db.getHashSetNames());
                     values = new ArrayList<>(names);
@@ -554,28 +593,59 @@ synchronized public void handleFileRemoved(Collection<Long> removedFileIDs) {
      */
     @Subscribe
     synchronized public void handleFileUpdate(Collection<Long> updatedFileIDs) {
-        /**
-         * TODO: is there a way to optimize this to avoid quering to db
-         * so much. the problem is that as a new files are analyzed they
-         * might be in new groups( if we are grouping by say make or
-         * model) -jm
-         */
+        List<DrawableFile<?>> files = new ArrayList<>(updatedFileIDs.size());
         for (long fileId : updatedFileIDs) {
-
             controller.getHashSetManager().invalidateHashSetsForFile(fileId);
+            try {
+                DrawableFile<?> file = db.getFileFromID(fileId);
+                if (file != null) {
+                    files.add(file);
+                }
+            } catch (TskCoreException ex) {
+                LOGGER.log(Level.SEVERE, "failed to load file with id: " + fileId + " from database", ex);
+            }
+        }
+        //look up the attributes of all the files at once, rather than file by file
+        DrawableMetadataLoader.loadAll(controller.getSleuthKitCase(), files);
 
+        //add the files to the groups that exist in place, and check each new group only once
+        Map<GroupKey<?>, List<Long>> newGroupFiles = new HashMap<>();
+        for (DrawableFile<?> file : files) {
             //get grouping(s) this file would be in
-            Set<GroupKey<?>> groupsForFile = getGroupKeysForFileID(fileId);
-            for (GroupKey<?> gk : groupsForFile) {
+            for (GroupKey<?> gk : getGroupKeysForFile(file)) {
                 DrawableGroup g = getGroupForKey(gk);
-                addFileToGroup(g, gk, fileId);
+                if (g != null) {
+                    addFileToGroup(g, gk, file.getId());
+                } else {
+                    newGroupFiles.computeIfAbsent(gk, k -> new ArrayList<>()).add(file.getId());
+                }
             }
         }
+        newGroupFiles.forEach((gk, fileIDs) -> {
+            DrawableGroup g = popuplateIfAnalyzed(gk, null);
+            if (g != null) {
+                fileIDs.forEach(fileID -> addFileToGroup(g, gk, fileID));
+            }
+        });
 
         //we fire this event for all files so that the category counts get updated during initial db population
         controller.getCategoryManager().fireChange(updatedFileIDs, null);
     }
 
+    /**
+     * Handle new perceptual hashes: if the files are grouped by similarity,
+     * update the groups of the given files, whose clusters may have changed.
+     * The groups are updated on the regroup thread, so the thumbnail loaders
+     * that compute the hashes are not held up.
+     *
+     * @param fileIDs the IDs of the files whose clusters may have changed
+     */
+    public void handleSimilarityUpdate(Collection<Long> fileIDs) {
+        if (getGroupBy() == DrawableAttribute.SIMILARITY) {
+            regroupExecutor.submit(() -> handleFileUpdate(fileIDs));
+        }
+    }
+
     private DrawableGroup popuplateIfAnalyzed(GroupKey<?> groupKey, ReGroupTask<?> task) {
 
         if (Objects.nonNull(task) && (task.isCancelled())) {
@@ -595,20 +665,12 @@ private DrawableGroup popuplateIfAnalyzed(GroupKey<?> groupKey, ReGroupTask<?> t
                 try {
                     Set<Long> fileIDs = getFileIDsInGroup(groupKey);
                     if (Objects.nonNull(fileIDs)) {
-                        DrawableGroup group;
-                        final boolean groupSeen = db.isGroupSeen(groupKey);
-                        synchronized (groupMap) {
-                            if (groupMap.containsKey(groupKey)) {
-                                group = groupMap.get(groupKey);
-                                group.setFiles(ObjectUtils.defaultIfNull(fileIDs, Collections.emptySet()));
-                            } else {
-                                group = new DrawableGroup(groupKey, fileIDs, groupSeen);
-                                group.seenProperty().addListener((o, oldSeen, newSeen) -> {
-                                    markGroupSeen(group, newSeen);
-                                });
-                                groupMap.put(groupKey, group);
-                            }
+                        if (groupKey.getAttribute() == DrawableAttribute.SIMILARITY) {
+                            //these groups are not inserted with the files, so that their seen state can be saved
+                            db.insertGroup(groupKey.getValueDisplayName(), DrawableAttribute.SIMILARITY);
                         }
+                        final boolean groupSeen = db.isGroupSeen(groupKey);
+                        final DrawableGroup group = putGroup(groupKey, fileIDs, groupSeen);
                         Platform.runLater(() -> {
                             if (analyzedGroups.contains(group) == false) {
                                 analyzedGroups.add(group);
@@ -628,6 +690,49 @@ private DrawableGroup popuplateIfAnalyzed(GroupKey<?> groupKey, ReGroupTask<?> t
         return null;
     }
 
+    /**
+     * Get the group for the given key, with the given files, creating it if it
+     * doesn't exist yet.
+     */
+    private DrawableGroup putGroup(GroupKey<?> groupKey, Set<Long> fileIDs, boolean groupSeen) {
+        synchronized (groupMap) {
+            DrawableGroup group = groupMap.get(groupKey);
+            if (group != null) {
+                group.setFiles(ObjectUtils.defaultIfNull(fileIDs, Collections.emptySet()));
+            } else {
+                final DrawableGroup newGroup = new DrawableGroup(groupKey, fileIDs, groupSeen);
+                newGroup.seenProperty().addListener((o, oldSeen, newSeen) -> {
+                    markGroupSeen(newGroup, newSeen);
+                });
+                groupMap.put(groupKey, newGroup);
+                group = newGroup;
+            }
+            return group;
+        }
+    }
+
+    /**
+     * Add the given groups to the lists of analyzed and unseen groups, as one
+     * change to each list.
+     */
+    @ThreadConfined(type = ThreadType.JFX)
+    private void addGroups(Collection<DrawableGroup> groups) {
+        Set<DrawableGroup> analyzed = new HashSet<>(analyzedGroups);
+        Set<DrawableGroup> unSeen = new HashSet<>(unSeenGroups);
+        List<DrawableGroup> newAnalyzed = new ArrayList<>();
+        List<DrawableGroup> newUnSeen = new ArrayList<>();
+        for (DrawableGroup group : groups) {
+            if (analyzed.add(group)) {
+                newAnalyzed.add(group);
+            }
+            if (group.isSeen() == false && unSeen.add(group)) {
+                newUnSeen.add(group);
+            }
+        }
+        analyzedGroups.addAll(newAnalyzed);
+        unSeenGroups.addAll(newUnSeen);
+    }
+
     /**
      * Task to query database for files in sorted groups and build
      * {@link Groupings} for them
@@ -669,6 +774,13 @@ protected Void call() throws Exception {
                 unSeenGroups.clear();
             });
 
+            //for the attributes in the drawable db, get all the groups at once
+            final Map<A, DrawableDB.GroupSummary> summaries = db.findGroupSummaries(groupBy);
+            if (summaries != null) {
+                regroupFromSummaries(summaries);
+                return null;
+            }
+
             // Get the list of group keys
             final List<A> vals = findValuesForAttribute(groupBy);
 
@@ -691,6 +803,45 @@ protected Void call() throws Exception {
             return null;
         }
 
+        /**
+         * build the groups from the given summaries, without any more
+         * queries, and add them to the ui a batch at a time.
+         */
+        private void regroupFromSummaries(Map<A, DrawableDB.GroupSummary> summaries) {
+            groupProgress.start(summaries.size());
+            List<DrawableGroup> batch = new ArrayList<>(GROUPS_PER_BATCH);
+            int p = 0;
+            for (Map.Entry<A, DrawableDB.GroupSummary> entry : summaries.entrySet()) {
+                if (isCancelled()) {
+                    return;//abort
+                }
+                p++;
+                final DrawableDB.GroupSummary summary = entry.getValue();
+                //see popuplateIfAnalyzed(): only path groups need to be fully analyzed to be shown
+                if (groupBy != DrawableAttribute.PATH || summary.isAnalyzed()) {
+                    if (groupBy == DrawableAttribute.SIMILARITY) {
+                        //these groups are not inserted with the files, so that their seen state can be saved
+                        db.insertGroup(entry.getKey().toString(), groupBy);
+                    }
+                    batch.add(putGroup(new GroupKey<A>(groupBy, entry.getKey()), summary.getFileIDs(), summary.isSeen()));
+                }
+                if (batch.size() >= GROUPS_PER_BATCH || p == summaries.size()) {
+                    final List<DrawableGroup> groups = batch;
+                    Platform.runLater(() -> addGroups(groups));
+                    batch = new ArrayList<>(GROUPS_PER_BATCH);
+
+                    updateMessage("regrouping files by " + groupBy.attrName.toString() + " : " + entry.getKey());
+                    updateProgress(p, summaries.size());
+                    groupProgress.progress("regrouping files by " + groupBy.attrName.toString() + " : " + entry.getKey(), p);
+                }
+            }
+            Platform.runLater(() -> {
+                FXCollections.sort(analyzedGroups, sortBy.getGrpComparator(sortOrder));
+                FXCollections.sort(unSeenGroups, sortBy.getGrpComparator(sortOrder));
+            });
+            updateProgress(1, 1);
+        }
+
         @Override
         protected void done() {
             super.done();
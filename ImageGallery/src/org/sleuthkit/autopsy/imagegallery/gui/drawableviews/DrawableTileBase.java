@@ -47,6 +47,7 @@
 import javafx.scene.paint.Color;
 import javax.swing.Action;
 import javax.swing.SwingUtilities;
+import org.controlsfx.control.action.ActionUtils;
 import org.openide.util.Lookup;
 import org.openide.util.actions.Presenter;
 import org.openide.windows.TopComponent;
@@ -66,6 +67,7 @@
 import org.sleuthkit.autopsy.imagegallery.actions.AddDrawableTagAction;
 import org.sleuthkit.autopsy.imagegallery.actions.CategorizeAction;
 import org.sleuthkit.autopsy.imagegallery.actions.DeleteFollowUpTagAction;
+import org.sleuthkit.autopsy.imagegallery.actions.FindSimilarImagesAction;
 import org.sleuthkit.autopsy.imagegallery.actions.SwingMenuItemAdapter;
 import org.sleuthkit.autopsy.imagegallery.datamodel.DrawableAttribute;
 import org.sleuthkit.autopsy.imagegallery.datamodel.DrawableFile;
@@ -189,6 +191,8 @@ private ContextMenu buildContextMenu(DrawableFile<?> file) {
 
                 menuItems.add(new AddDrawableTagAction(getController()).getPopupMenu());
 
+                menuItems.add(ActionUtils.createMenuItem(new FindSimilarImagesAction(getController(), file)));
+
                 final MenuItem extractMenuItem = new MenuItem("Extract File(s)");
                 extractMenuItem.setOnAction((ActionEvent t) -> {
                     SwingUtilities.invokeLater(() -> {
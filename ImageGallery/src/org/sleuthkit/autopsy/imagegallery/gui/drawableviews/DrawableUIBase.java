@@ -36,6 +36,7 @@
 import javafx.scene.layout.BorderPane;
 import org.sleuthkit.autopsy.coreutils.Logger;
 import org.sleuthkit.autopsy.imagegallery.ImageGalleryController;
+import org.sleuthkit.autopsy.imagegallery.ThumbnailLoadingService;
 import org.sleuthkit.autopsy.imagegallery.datamodel.DrawableFile;
 import org.sleuthkit.datamodel.TskCoreException;
 
@@ -125,7 +126,8 @@ synchronized protected void updateContent() {
 
     synchronized protected void disposeContent() {
         if (imageTask != null) {
-            imageTask.cancel(true);
+            //also takes the load out of the queue, if nothing else is waiting for it
+            ThumbnailLoadingService.getDefault().cancel(imageTask);
         }
         imageTask = null;
         imageCache = null;
@@ -162,7 +164,11 @@ Node getContentNode() {
 
                 if (isNull(imageTask)) {
                     imageTask = getNewImageLoadTask(file);
-                    new Thread(imageTask).start();
+                    if (imageTask instanceof ThumbnailLoaderTask) {
+                        ThumbnailLoadingService.getDefault().submitThumbnailTask(file, imageTask);
+                    } else {
+                        ThumbnailLoadingService.getDefault().submit(imageTask);
+                    }
                 } else if (imageTask.isDone()) {
                     return null;
                 }
@@ -104,6 +104,7 @@
 import org.sleuthkit.autopsy.imagegallery.FileIDSelectionModel;
 import org.sleuthkit.autopsy.imagegallery.ImageGalleryController;
 import org.sleuthkit.autopsy.imagegallery.ImageGalleryTopComponent;
+import org.sleuthkit.autopsy.imagegallery.ThumbnailLoadingService;
 import org.sleuthkit.autopsy.imagegallery.actions.AddDrawableTagAction;
 import org.sleuthkit.autopsy.imagegallery.actions.Back;
 import org.sleuthkit.autopsy.imagegallery.actions.CategorizeAction;
@@ -143,6 +144,12 @@ public class GroupPane extends BorderPane {
     );
 
     private static final FileIDSelectionModel globalSelectionModel = FileIDSelectionModel.getInstance();
+
+    /**
+     * how many rows above and below each visible tile to prefetch thumbnails
+     * for
+     */
+    private static final int PREFETCH_ROWS = 2;
     private static final List<KeyCode> categoryKeyCodes = Arrays.asList(KeyCode.NUMPAD0, KeyCode.NUMPAD1, KeyCode.NUMPAD2, KeyCode.NUMPAD3, KeyCode.NUMPAD4, KeyCode.NUMPAD5,
             KeyCode.DIGIT0, KeyCode.DIGIT1, KeyCode.DIGIT2, KeyCode.DIGIT3, KeyCode.DIGIT4, KeyCode.DIGIT5);
 
@@ -604,6 +611,8 @@ void setViewState(GroupViewState viewState) {
                 if (nonNull(getGroup())) {
                     getGroup().fileIds().removeListener(filesSyncListener);
                 }
+                //the thumbnails near the old group's visible tiles are no longer needed
+                ThumbnailLoadingService.getDefault().cancelPrefetches();
                 this.grouping.set(viewState.getGroup());
 
                 getGroup().fileIds().addListener(filesSyncListener);
@@ -692,6 +701,27 @@ protected void updateItem(Long item, boolean empty) {
             super.updateItem(item, empty);
 
             tile.setFile(item);
+            if (empty == false && item != null) {
+                prefetchNeighbours(getIndex());
+            }
+        }
+
+        /**
+         * prefetch the thumbnails of the files in the same column as this
+         * cell, a few rows above and below it, so they are ready when the
+         * user scrolls to them.
+         */
+        private void prefetchNeighbours(int index) {
+            final List<Long> items = gridView.getItems();
+            final double cellWidth = gridView.getCellWidth() + gridView.getHorizontalCellSpacing() * 2;
+            final int columns = Math.max(1, (int) (gridView.getWidth() / cellWidth));
+            for (int row = 1; row <= PREFETCH_ROWS; row++) {
+                for (int neighbour : new int[]{index + row * columns, index - row * columns}) {
+                    if (neighbour >= 0 && neighbour < items.size()) {
+                        ThumbnailLoadingService.getDefault().prefetchThumbnail(items.get(neighbour));
+                    }
+                }
+            }
         }
 
         void resetItem() {
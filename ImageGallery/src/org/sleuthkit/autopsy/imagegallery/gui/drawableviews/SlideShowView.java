@@ -62,6 +62,7 @@
 import org.sleuthkit.autopsy.coreutils.ThreadConfined.ThreadType;
 import org.sleuthkit.autopsy.imagegallery.FXMLConstructor;
 import org.sleuthkit.autopsy.imagegallery.FileIDSelectionModel;
+import org.sleuthkit.autopsy.imagegallery.ThumbnailLoadingService;
 import org.sleuthkit.autopsy.imagegallery.actions.CategorizeAction;
 import org.sleuthkit.autopsy.imagegallery.datamodel.Category;
 import org.sleuthkit.autopsy.imagegallery.datamodel.DrawableAttribute;
@@ -255,7 +256,7 @@ protected void disposeContent() {
 
         super.disposeContent();
         if (mediaTask != null) {
-            mediaTask.cancel(true);
+            ThumbnailLoadingService.getDefault().cancel(mediaTask);
         }
         mediaTask = null;
         mediaCache = null;
@@ -277,7 +278,7 @@ Node getContentNode() {
                 } else {
                     if (isNull(mediaTask)) {
                         mediaTask = new MediaLoadTask(((VideoFile<?>) file));
-                        new Thread(mediaTask).start();
+                        ThumbnailLoadingService.getDefault().submit(mediaTask);
                     } else if (mediaTask.isDone()) {
                         return null;
                     }